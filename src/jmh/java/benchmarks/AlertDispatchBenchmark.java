@@ -0,0 +1,76 @@
+package benchmarks;
+
+import com.alerts.Alert;
+import com.alerts.dispatch.AlertDispatcher;
+import com.alerts.dispatch.AlertSink;
+import com.alerts.dispatch.FileAlertSink;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost to the evaluating thread of raising one alert that ends up in a file.
+ * {@code direct} writes the alert itself, as {@code triggerAlert} used to
+ * print it; {@code dispatched} hands it to an {@link AlertDispatcher}, whose
+ * sink thread writes the alerts in batches. Run with {@code -t} to raise
+ * alerts from several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlertDispatchBenchmark {
+
+    private final Alert alert = new Alert("42", "Low Saturation Alert", 1716683934356L);
+    private Path directory;
+    private AlertSink directSink;
+    private AlertDispatcher dispatcher;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("alert-dispatch");
+        directSink = new FileAlertSink(directory.resolve("direct.log"));
+        dispatcher = new AlertDispatcher(List.of(new FileAlertSink(directory.resolve("dispatched.log"))));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        directSink.close();
+        dispatcher.close();
+        System.out.println("dispatcher dropped " + dispatcher.getDroppedAlerts() + " alerts");
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void direct() throws IOException {
+        synchronized (directSink) {
+            directSink.send(List.of(alert));
+        }
+    }
+
+    @Benchmark
+    public void dispatched() {
+        dispatcher.accept(alert);
+    }
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import com.alerts.AlertGenerator;
+import com.alerts.streaming.StreamingAlertEngine;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of alert evaluation per patient. {@code evaluateData}
+ * runs the window-scanning {@link AlertGenerator#evaluateData} over a 1 Hz
+ * history that ends now; {@code streamingSample} stores one sample with a
+ * {@link StreamingAlertEngine} attached, which is the per-sample cost of the
+ * push-based rules. Console output from {@code triggerAlert} is discarded so
+ * that it does not dominate the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AlertEvaluationBenchmark {
+
+    @Param({"10", "100"})
+    public int patientCount;
+
+    @Param({"600", "3600"})
+    public int historyLength;
+
+    private AlertGenerator alertGenerator;
+    private List<Patient> patients;
+    private int next;
+
+    private DataStorage streamingStorage;
+    private long timestamp;
+    private int sample;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        DataStorage storage = BenchmarkData.history(patientCount, historyLength, System.currentTimeMillis());
+        alertGenerator = new AlertGenerator(storage);
+        patients = storage.getAllPatients();
+
+        streamingStorage = BenchmarkData.history(patientCount, historyLength, BenchmarkData.START_TIME);
+        streamingStorage.addListener(new StreamingAlertEngine(blackhole::consume));
+        timestamp = BenchmarkData.START_TIME;
+
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void evaluateData() {
+        alertGenerator.evaluateData(patients.get(next));
+        next = (next + 1) % patients.size();
+    }
+
+    @Benchmark
+    public void streamingSample() {
+        int patientId = sample % patientCount + 1;
+        int type = (sample / patientCount) % BenchmarkData.RECORD_TYPES.length;
+        if (patientId == 1 && type == 0) {
+            timestamp += BenchmarkData.INTERVAL_MS;
+        }
+        streamingStorage.addPatientData(patientId, BenchmarkData.value(type, sample),
+                BenchmarkData.RECORD_TYPES[type], timestamp);
+        sample++;
+    }
+}
@@ -0,0 +1,106 @@
+package benchmarks;
+
+import com.alerts.AlertEvaluationScheduler;
+import com.alerts.AlertGenerator;
+import com.data_management.DataStorage;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Wall time of one {@link AlertEvaluationScheduler} cycle running
+ * {@link AlertGenerator#evaluateData} over all patients. Before every cycle
+ * {@code dirtyPercent} of the patients receive a new sample; the others are
+ * skipped by the scheduler. {@code sequential} is the plain loop over
+ * {@code getAllPatients()} that the scheduler replaces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class AlertSchedulerBenchmark {
+
+    @Param({"100000"})
+    public int patientCount;
+
+    @Param({"10"})
+    public int historyLength;
+
+    @Param({"1", "10", "100"})
+    public int dirtyPercent;
+
+    private DataStorage storage;
+    private AlertGenerator alertGenerator;
+    private AlertEvaluationScheduler scheduler;
+    private long timestamp;
+    private int sample;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        timestamp = System.currentTimeMillis();
+        storage = BenchmarkData.history(patientCount, historyLength, timestamp);
+        alertGenerator = new AlertGenerator(storage);
+        scheduler = new AlertEvaluationScheduler(storage, List.of(alertGenerator::evaluateData));
+        scheduler.runCycle(); // every patient starts out evaluated
+
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+        scheduler.stop();
+    }
+
+    /**
+     * Patients evaluated in the last cycle.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Evaluated {
+
+        public long evaluated;
+    }
+
+    @Setup(Level.Invocation)
+    public void addNewData() {
+        timestamp += BenchmarkData.INTERVAL_MS;
+        int dirty = patientCount * dirtyPercent / 100;
+        for (int i = 0; i < dirty; i++) {
+            // spread the dirty patients over the whole range
+            int patientId = (int) ((long) i * patientCount / dirty) + 1;
+            storage.addPatientData(patientId, BenchmarkData.value(1, sample++), "Saturation", timestamp);
+        }
+    }
+
+    @Benchmark
+    public void cycle(Evaluated counter) {
+        counter.evaluated += scheduler.runCycle().getEvaluated();
+    }
+
+    @Benchmark
+    public void sequential() {
+        for (com.data_management.Patient patient : storage.getAllPatients()) {
+            alertGenerator.evaluateData(patient);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package benchmarks;
+
+import com.data_management.BinaryRecordFormat;
+import com.data_management.DataStorage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Synthetic patient histories shared by the benchmarks. Values stay inside
+ * the normal ranges used by the alert rules, so alert evaluation measures the
+ * rule checks rather than console output.
+ */
+final class BenchmarkData {
+
+    /** Timestamp of the first generated sample. */
+    static final long START_TIME = 1_700_000_000_000L;
+    /** Interval between two generated samples of one series. */
+    static final long INTERVAL_MS = 1000;
+
+    static final String[] RECORD_TYPES = {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure"};
+    private static final double[] NORMAL_VALUES = {72.0, 97.0, 120.0, 80.0};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return a plausible, non-alerting value for the given record type index
+     */
+    static double value(int typeIndex, int sample) {
+        return NORMAL_VALUES[typeIndex] + (sample % 3) - 1;
+    }
+
+    /**
+     * Fills a storage with {@code historyLength} samples of every record type
+     * for patients {@code 1..patientCount}.
+     *
+     * @param endTime timestamp of the newest sample of every series
+     */
+    static DataStorage history(int patientCount, int historyLength, long endTime) {
+        DataStorage storage = new DataStorage();
+        long firstTime = endTime - (historyLength - 1) * INTERVAL_MS;
+        for (int sample = 0; sample < historyLength; sample++) {
+            long timestamp = firstTime + sample * INTERVAL_MS;
+            for (int patientId = 1; patientId <= patientCount; patientId++) {
+                for (int type = 0; type < RECORD_TYPES.length; type++) {
+                    storage.addPatientData(patientId, value(type, sample), RECORD_TYPES[type], timestamp);
+                }
+            }
+        }
+        return storage;
+    }
+
+    /**
+     * Formats a sample the way {@code FileOutputStrategy} and
+     * {@code ConsoleOutputStrategy} write it.
+     */
+    static String line(int patientId, long timestamp, String label, double value) {
+        return "Patient ID: " + patientId + ", Timestamp: " + timestamp + ", Label: " + label + ", Data: " + value;
+    }
+
+    /**
+     * Writes one text file per record type in the {@code FileOutputStrategy}
+     * layout.
+     *
+     * @return the total number of bytes written
+     */
+    static long writeFiles(Path directory, int patientCount, int historyLength) throws IOException {
+        long bytes = 0;
+        for (int type = 0; type < RECORD_TYPES.length; type++) {
+            Path file = directory.resolve(RECORD_TYPES[type] + ".txt");
+            try (BufferedWriter out = Files.newBufferedWriter(file)) {
+                for (int sample = 0; sample < historyLength; sample++) {
+                    long timestamp = START_TIME + sample * INTERVAL_MS;
+                    for (int patientId = 1; patientId <= patientCount; patientId++) {
+                        out.write(line(patientId, timestamp, RECORD_TYPES[type], value(type, sample)));
+                        out.newLine();
+                    }
+                }
+            }
+            bytes += Files.size(file);
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes one binary file per record type in the {@link BinaryRecordFormat}
+     * layout, holding the same samples as {@link #writeFiles}.
+     *
+     * @return the total number of bytes written
+     */
+    static long writeBinaryFiles(Path directory, int patientCount, int historyLength) throws IOException {
+        long bytes = 0;
+        for (int type = 0; type < RECORD_TYPES.length; type++) {
+            Path file = directory.resolve(RECORD_TYPES[type] + BinaryRecordFormat.FILE_EXTENSION);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                BinaryRecordFormat.writeHeader(buffer);
+                int labelId = BinaryRecordFormat.labelId(RECORD_TYPES[type]);
+                for (int sample = 0; sample < historyLength; sample++) {
+                    long timestamp = START_TIME + sample * INTERVAL_MS;
+                    for (int patientId = 1; patientId <= patientCount; patientId++) {
+                        if (buffer.remaining() < BinaryRecordFormat.RECORD_SIZE) {
+                            buffer.flip();
+                            channel.write(buffer);
+                            buffer.clear();
+                        }
+                        BinaryRecordFormat.writeRecord(buffer, patientId, timestamp, labelId, value(type, sample));
+                    }
+                }
+                buffer.flip();
+                channel.write(buffer);
+            }
+            bytes += Files.size(file);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,121 @@
+package benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.SampleBatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Measures {@link DataStorage#addPatientData} throughput with several writer
+ * threads on top of an existing history. In {@code addPatientData} each
+ * thread feeds its own shard of patients; in {@code addPatientDataContended}
+ * every thread writes to every patient, so threads collide on the same
+ * series. {@code addPatientDataBatch} stores the sharded samples in
+ * {@link SampleBatch}es of {@value #BATCH_SIZE}, and its score is per sample
+ * as well. Run it with an increasing thread count to check how writes scale
+ * across cores:
+ *
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="DataStorageIngest -t 1"
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="DataStorageIngest -t 16"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DataStorageIngestBenchmark {
+
+    static final int BATCH_SIZE = 256;
+
+    @Param({"1", "1000"})
+    public int patientCount;
+
+    @Param({"0", "10000"})
+    public int historyLength;
+
+    private DataStorage storage;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // a fresh storage per iteration keeps the heap from growing across the run
+        storage = historyLength == 0 ? new DataStorage()
+                : BenchmarkData.history(patientCount, historyLength, BenchmarkData.START_TIME);
+    }
+
+    /**
+     * Per-thread writer cursor over the patients written by that thread.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+
+        final SampleBatch batch = new SampleBatch(BATCH_SIZE);
+        int firstPatient;
+        int stride;
+        int patientId;
+        long timestamp;
+
+        @Setup(Level.Iteration)
+        public void setUp(DataStorageIngestBenchmark benchmark, ThreadParams threads) {
+            firstPatient = threads.getThreadIndex() + 1;
+            stride = threads.getThreadCount();
+            patientId = firstPatient;
+            timestamp = BenchmarkData.START_TIME + BenchmarkData.INTERVAL_MS;
+        }
+
+        int nextPatient(int patientCount) {
+            int id = patientId;
+            patientId += stride;
+            if (patientId > patientCount) {
+                patientId = firstPatient;
+                timestamp += BenchmarkData.INTERVAL_MS;
+            }
+            return id;
+        }
+
+        int nextSharedPatient(int patientCount) {
+            int id = patientId;
+            if (++patientId > patientCount) {
+                patientId = 1;
+                timestamp += BenchmarkData.INTERVAL_MS;
+            }
+            return id;
+        }
+    }
+
+    @Benchmark
+    public void addPatientData(Writer writer) {
+        storage.addPatientData(writer.nextPatient(patientCount), 98.0, "Saturation", writer.timestamp);
+    }
+
+    @Benchmark
+    public void addPatientDataContended(Writer writer) {
+        storage.addPatientData(writer.nextSharedPatient(patientCount), 98.0, "Saturation", writer.timestamp);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void addPatientDataBatch(Writer writer) {
+        SampleBatch batch = writer.batch;
+        batch.clear();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(writer.nextPatient(patientCount), 98.0, "Saturation", writer.timestamp);
+        }
+        storage.addPatientData(batch);
+    }
+}
@@ -0,0 +1,119 @@
+package benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RollingWindow;
+import com.data_management.SampleBatch;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link DataStorage#getRecords} latency as the stored history grows.
+ * {@code recentWindow} asks for the last ten minutes, the typical alert
+ * window, and should stay flat as history grows; {@code fullHistory} returns
+ * every sample of a patient. Both touch every returned record so that lazily
+ * created records are included in the cost. {@code windowMax} reads the
+ * highest systolic pressure of the last day from the rolling statistics,
+ * against {@code scanMax} which finds it in the records. {@code latestValues}
+ * reads the newest sample of every series of the ward into a reused batch,
+ * against {@code latestByScan} which picks them out of each patient's recent
+ * records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DataStorageQueryBenchmark {
+
+    private static final long RECENT_WINDOW_MS = 600000;
+    private static final long DAY_MS = 86400000;
+    private static final RollingWindow DAY = RollingWindow.lastMillis(DAY_MS);
+
+    @Param({"10", "100"})
+    public int patientCount;
+
+    @Param({"1000", "100000"})
+    public int historyLength;
+
+    private DataStorage storage;
+    private final SampleBatch latest = new SampleBatch();
+    private long endTime;
+    private int patientId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        endTime = BenchmarkData.START_TIME + historyLength * BenchmarkData.INTERVAL_MS;
+        storage = BenchmarkData.history(patientCount, historyLength, endTime);
+        for (int patient = 1; patient <= patientCount; patient++) {
+            storage.getWindowStatistics(patient, "SystolicPressure", DAY); // start tracking before measuring
+        }
+    }
+
+    private int nextPatient() {
+        patientId = patientId % patientCount + 1;
+        return patientId;
+    }
+
+    @Benchmark
+    public void recentWindow(Blackhole blackhole) {
+        consume(storage.getRecords(nextPatient(), endTime - RECENT_WINDOW_MS, endTime), blackhole);
+    }
+
+    @Benchmark
+    public void fullHistory(Blackhole blackhole) {
+        consume(storage.getRecords(nextPatient(), 0L, endTime), blackhole);
+    }
+
+    @Benchmark
+    public double windowMax() {
+        return storage.getWindowStatistics(nextPatient(), "SystolicPressure", DAY).getMax();
+    }
+
+    @Benchmark
+    public double scanMax() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (PatientRecord record : storage.getRecords(nextPatient(), endTime - DAY_MS, endTime)) {
+            if (record.getRecordType().equals("SystolicPressure")) {
+                max = Math.max(max, record.getMeasurementValue());
+            }
+        }
+        return max;
+    }
+
+    @Benchmark
+    public SampleBatch latestValues() {
+        return storage.getLatestValues(latest);
+    }
+
+    @Benchmark
+    public void latestByScan(Blackhole blackhole) {
+        for (int patient = 1; patient <= patientCount; patient++) {
+            PatientRecord[] newest = new PatientRecord[BenchmarkData.RECORD_TYPES.length];
+            for (PatientRecord record : storage.getRecords(patient, endTime - RECENT_WINDOW_MS, endTime)) {
+                newest[record.getRecordTypeCode()] = record; // records of a type come oldest first
+            }
+            blackhole.consume(newest);
+        }
+    }
+
+    private static void consume(List<PatientRecord> records, Blackhole blackhole) {
+        for (PatientRecord record : records) {
+            blackhole.consume(record.getMeasurementValue());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package benchmarks;
+
+import com.cardio_generator.ExecutorMode;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the platform and virtual {@link ExecutorMode}s of the simulator.
+ * {@code tick} runs the ECG generator once for every patient, the way one
+ * scheduler tick does, against an output that blocks for
+ * {@code outputLatencyMicros} per sample like a slow socket.
+ * {@code idleClients} starts one long-lived thread per client, as the TCP
+ * output does for its writers, and reports the resident memory they take as
+ * {@code rssKilobytes}.
+ *
+ * <p>Virtual threads need a Java 21 or newer JVM to run the benchmark; on older
+ * JVMs the {@code VIRTUAL} runs fail in setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ExecutorModeBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public ExecutorMode mode;
+
+    @Param({"1000", "10000"})
+    public int patientCount;
+
+    @Param({"100"})
+    public int outputLatencyMicros;
+
+    private ExecutorService workers;
+    private ECGDataGenerator generator;
+    private OutputStrategy slowOutput;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!mode.isAvailable()) {
+            throw new IllegalStateException(mode + " threads are not available on Java "
+                    + System.getProperty("java.version"));
+        }
+        workers = mode.newWorkerPool("bench-worker-");
+        generator = new ECGDataGenerator(patientCount);
+        long latencyNanos = TimeUnit.MICROSECONDS.toNanos(outputLatencyMicros);
+        slowOutput = (patientId, timestamp, label, data) -> LockSupport.parkNanos(latencyNanos);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Resident set size of the process grown while the idle clients were
+     * started.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long rssKilobytes;
+    }
+
+    @Benchmark
+    public void tick() throws InterruptedException {
+        int batchSize = mode.getBatchSize();
+        CountDownLatch done = new CountDownLatch((patientCount + batchSize - 1) / batchSize);
+        for (int first = 1; first <= patientCount; first += batchSize) {
+            int from = first;
+            int to = Math.min(patientCount, first + batchSize - 1);
+            workers.execute(() -> {
+                for (int patientId = from; patientId <= to; patientId++) {
+                    generator.generate(patientId, slowOutput);
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+    @Benchmark
+    public void idleClients(Footprint footprint) throws Exception {
+        ThreadFactory factory = mode.newThreadFactory("bench-client-");
+        CountDownLatch started = new CountDownLatch(patientCount);
+        CountDownLatch release = new CountDownLatch(1);
+        long rssBefore = residentKilobytes();
+        List<Thread> clients = new ArrayList<>(patientCount);
+        for (int i = 0; i < patientCount; i++) {
+            Thread client = factory.newThread(() -> {
+                started.countDown();
+                try {
+                    release.await(); // a writer waiting for its next message
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            client.start();
+            clients.add(client);
+        }
+        started.await();
+        footprint.rssKilobytes += residentKilobytes() - rssBefore;
+        release.countDown();
+        for (Thread client : clients) {
+            client.join();
+        }
+    }
+
+    private static long residentKilobytes() throws IOException {
+        for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return 0; // not Linux
+    }
+}
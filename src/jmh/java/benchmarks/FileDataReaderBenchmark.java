@@ -0,0 +1,123 @@
+package benchmarks;
+
+import com.data_management.BulkFileDataReader;
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast {@link FileDataReader#readData} loads a directory written
+ * in the {@code FileOutputStrategy} text layout, and compares it with the
+ * memory-mapped, parallel {@link BulkFileDataReader} and with reading the
+ * same samples from binary files. The {@code bytes} counter reports the load
+ * rate in bytes per second, and {@code samples} in samples per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FileDataReaderBenchmark {
+
+    @Param({"10", "100"})
+    public int patientCount;
+
+    @Param({"1000"})
+    public int historyLength;
+
+    private Path directory;
+    private Path binaryDirectory;
+    private long fileBytes;
+    private long binaryFileBytes;
+    private PrintStream originalOut;
+
+    /**
+     * Bytes loaded, reported by JMH as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Loaded {
+
+        public long bytes;
+        public long samples;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("file-reader-bench");
+        fileBytes = BenchmarkData.writeFiles(directory, patientCount, historyLength);
+        binaryDirectory = Files.createTempDirectory("binary-reader-bench");
+        binaryFileBytes = BenchmarkData.writeBinaryFiles(binaryDirectory, patientCount, historyLength);
+        // keep any per-line console output out of the measurement
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(originalOut);
+        delete(directory);
+        delete(binaryDirectory);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public DataStorage readData(Loaded loaded) throws IOException {
+        DataStorage storage = new DataStorage();
+        new FileDataReader(directory.toString()).readData(storage);
+        loaded.bytes += fileBytes;
+        loaded.samples += samples();
+        return storage;
+    }
+
+    @Benchmark
+    public DataStorage bulkReadData(Loaded loaded) throws IOException {
+        DataStorage storage = new DataStorage();
+        new BulkFileDataReader(directory.toString()).readData(storage);
+        loaded.bytes += fileBytes;
+        loaded.samples += samples();
+        return storage;
+    }
+
+    @Benchmark
+    public DataStorage readBinaryData(Loaded loaded) throws IOException {
+        DataStorage storage = new DataStorage();
+        new FileDataReader(binaryDirectory.toString()).readData(storage);
+        loaded.bytes += binaryFileBytes;
+        loaded.samples += samples();
+        return storage;
+    }
+
+    private long samples() {
+        return (long) patientCount * historyLength * BenchmarkData.RECORD_TYPES.length;
+    }
+}
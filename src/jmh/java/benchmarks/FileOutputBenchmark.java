@@ -0,0 +1,78 @@
+package benchmarks;
+
+import com.cardio_generator.outputs.FileOutputStrategy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many samples per second {@link FileOutputStrategy} takes in
+ * and writes to disk. Each iteration ends with a flush, so samples still
+ * queued when the iteration stops are paid for by that iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileOutputBenchmark {
+
+    @Param({"false", "true"})
+    public boolean binary;
+
+    @Param({"1000"})
+    public int patientCount;
+
+    private Path directory;
+    private FileOutputStrategy output;
+    private int patientId;
+    private long timestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("file-output-bench");
+        output = new FileOutputStrategy(directory.toString(), binary);
+        timestamp = BenchmarkData.START_TIME;
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() {
+        output.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        output.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void output() {
+        if (++patientId > patientCount) {
+            patientId = 1;
+            timestamp += BenchmarkData.INTERVAL_MS;
+        }
+        output.output(patientId, timestamp, "ECG", "0.19370658167173713");
+    }
+}
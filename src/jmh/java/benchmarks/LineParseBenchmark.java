@@ -0,0 +1,81 @@
+package benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.MyWebSocketClient;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the line-parse cost of {@link MyWebSocketClient#onMessage}. The
+ * parsed samples go to a storage that only hands them to a {@link Blackhole},
+ * so the score is the parsing alone; storage costs are covered by
+ * {@link DataStorageIngestBenchmark}. The client is never connected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineParseBenchmark {
+
+    private static final int MESSAGES = 4096;
+
+    @Param({"10", "1000"})
+    public int patientCount;
+
+    private MyWebSocketClient client;
+    private String[] messages;
+    private int next;
+
+    /**
+     * Storage that discards samples after handing them to the blackhole.
+     */
+    private static class DiscardingStorage extends DataStorage {
+
+        private final Blackhole blackhole;
+
+        DiscardingStorage(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+            blackhole.consume(patientId);
+            blackhole.consume(measurementValue);
+            blackhole.consume(recordType);
+            blackhole.consume(timestamp);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws Exception {
+        client = new MyWebSocketClient(new URI("ws://localhost:8080"), new DiscardingStorage(blackhole));
+        messages = new String[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            int type = i % BenchmarkData.RECORD_TYPES.length;
+            long timestamp = BenchmarkData.START_TIME + (i + 1) * BenchmarkData.INTERVAL_MS;
+            messages[i] = BenchmarkData.line(i % patientCount + 1, timestamp, BenchmarkData.RECORD_TYPES[type],
+                    BenchmarkData.value(type, i));
+        }
+    }
+
+    @Benchmark
+    public void onMessage() {
+        client.onMessage(messages[next]);
+        next = (next + 1) & (MESSAGES - 1);
+    }
+}
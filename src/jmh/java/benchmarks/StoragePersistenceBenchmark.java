@@ -0,0 +1,149 @@
+package benchmarks;
+
+import com.data_management.DataStorage;
+import com.data_management.SampleBatch;
+import com.data_management.StoragePersistence;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link StoragePersistence}. {@code coldStart} opens a directory
+ * holding {@code patientCount * historyLength} samples of each of the four
+ * benchmark record types (10M by default), either as a snapshot or only as
+ * write-ahead log segments, into an empty storage. {@code addPatientDataLogged}
+ * is the sharded single-writer case of {@code DataStorageIngestBenchmark} with
+ * every sample also appended to the log.
+ *
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="StoragePersistence"
+ * </pre>
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StoragePersistenceBenchmark {
+
+    /**
+     * A directory filled once per trial.
+     */
+    @State(Scope.Benchmark)
+    public static class Saved {
+
+        @Param({"1000"})
+        public int patientCount;
+
+        @Param({"2500"})
+        public int historyLength;
+
+        @Param({"snapshot", "log"})
+        public String source;
+
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("persistence-benchmark");
+            DataStorage storage = new DataStorage();
+            SampleBatch batch = new SampleBatch(patientCount * BenchmarkData.RECORD_TYPES.length);
+            try (StoragePersistence persistence = StoragePersistence.open(directory, storage)) {
+                for (int sample = 0; sample < historyLength; sample++) {
+                    long timestamp = BenchmarkData.START_TIME + sample * BenchmarkData.INTERVAL_MS;
+                    batch.clear();
+                    for (int patientId = 1; patientId <= patientCount; patientId++) {
+                        for (int type = 0; type < BenchmarkData.RECORD_TYPES.length; type++) {
+                            batch.add(patientId, BenchmarkData.value(type, sample), BenchmarkData.RECORD_TYPES[type],
+                                    timestamp);
+                        }
+                    }
+                    storage.addPatientData(batch);
+                }
+                if (source.equals("snapshot")) {
+                    persistence.checkpoint();
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+    }
+
+    /**
+     * A storage logging to a fresh directory per iteration.
+     */
+    @State(Scope.Benchmark)
+    public static class Logged {
+
+        @Param({"1000"})
+        public int patientCount;
+
+        DataStorage storage;
+        StoragePersistence persistence;
+        Path directory;
+        int patientId;
+        long timestamp;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("persistence-benchmark");
+            storage = new DataStorage();
+            persistence = StoragePersistence.open(directory, storage);
+            patientId = 1;
+            timestamp = BenchmarkData.START_TIME;
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            persistence.close();
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public DataStorage coldStart(Saved saved) throws IOException {
+        DataStorage storage = new DataStorage();
+        StoragePersistence.open(saved.directory, storage).close();
+        return storage;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public void addPatientDataLogged(Logged logged) {
+        logged.storage.addPatientData(logged.patientId, 98.0, "Saturation", logged.timestamp);
+        if (++logged.patientId > logged.patientCount) {
+            logged.patientId = 1;
+            logged.timestamp += BenchmarkData.INTERVAL_MS;
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
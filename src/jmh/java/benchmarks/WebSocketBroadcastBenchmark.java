@@ -0,0 +1,125 @@
+package benchmarks;
+
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many samples per second {@link WebSocketOutputStrategy} can
+ * take with a number of connected viewers, sending every sample on its own
+ * ({@code batchWindowMillis = 0}) or coalesced into 10 ms batches. The
+ * {@code received} counter reports the samples per second that reached the
+ * viewers, summed over all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSocketBroadcastBenchmark {
+
+    @Param({"10", "100"})
+    public int viewers;
+
+    @Param({"0", "10"})
+    public long batchWindowMillis;
+
+    private WebSocketOutputStrategy output;
+    private final List<WebSocketClient> clients = new ArrayList<>();
+    private final LongAdder receivedSamples = new LongAdder();
+    private long timestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        output = new WebSocketOutputStrategy(port, batchWindowMillis);
+        for (int i = 0; i < viewers; i++) {
+            WebSocketClient client = new WebSocketClient(URI.create("ws://localhost:" + port)) {
+                @Override
+                public void onOpen(ServerHandshake handshake) {
+                }
+
+                @Override
+                public void onMessage(String message) {
+                    int samples = 1;
+                    for (int c = message.indexOf('\n'); c >= 0; c = message.indexOf('\n', c + 1)) {
+                        samples++;
+                    }
+                    receivedSamples.add(samples);
+                }
+
+                @Override
+                public void onClose(int code, String reason, boolean remote) {
+                }
+
+                @Override
+                public void onError(Exception ex) {
+                }
+            };
+            if (!client.connectBlocking(10, TimeUnit.SECONDS)) {
+                throw new IOException("Viewer " + i + " could not connect");
+            }
+            clients.add(client);
+        }
+        Thread.sleep(500); // let the server register every connection
+        timestamp = BenchmarkData.START_TIME;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        for (WebSocketClient client : clients) {
+            client.closeBlocking();
+        }
+        output.close();
+    }
+
+    /**
+     * Samples received by the viewers during the iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Received {
+
+        public long received;
+    }
+
+    @Setup(Level.Iteration)
+    public void resetReceived() {
+        receivedSamples.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void recordReceived(Received received) {
+        received.received = receivedSamples.sum();
+    }
+
+    @Benchmark
+    public void output() {
+        output.output(1, timestamp++, "ECG", "0.19370658167173713");
+    }
+}
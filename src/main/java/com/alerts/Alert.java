@@ -23,4 +23,13 @@ public class Alert {
     public long getTimestamp() {
         return timestamp;
     }
+
+    /**
+     * @return the alert as a console line, e.g.
+     * {@code Patient ID: 1, Condition: Low Saturation Alert, Timestamp: 1716683934356}
+     */
+    @Override
+    public String toString() {
+        return "Patient ID: " + getPatientId() + ", Condition: " + getCondition() + ", Timestamp: " + getTimestamp();
+    }
 }
@@ -0,0 +1,68 @@
+package com.alerts;
+
+import com.metrics.Counter;
+import com.metrics.MetricsRegistry;
+
+/**
+ * Counters of fired alerts in the default {@link MetricsRegistry}, one per
+ * family of conditions, such as
+ * {@code alerts.fired.blood_pressure.critical_high}. Condition texts name the
+ * measured type and threshold, so they are not used as metric names; the
+ * rules pick the counter of their family, which is resolved once here, and
+ * raising an alert only increments it.
+ */
+public final class AlertCounters {
+
+    public static final Counter BLOOD_PRESSURE_INCREASING_TREND = fired("blood_pressure.increasing_trend");
+    public static final Counter BLOOD_PRESSURE_DECREASING_TREND = fired("blood_pressure.decreasing_trend");
+    public static final Counter BLOOD_PRESSURE_CRITICAL_HIGH = fired("blood_pressure.critical_high");
+    public static final Counter BLOOD_PRESSURE_CRITICAL_LOW = fired("blood_pressure.critical_low");
+    public static final Counter SATURATION_LOW = fired("saturation.low");
+    public static final Counter SATURATION_RAPID_DROP = fired("saturation.rapid_drop");
+    public static final Counter HYPOTENSIVE_HYPOXEMIA = fired("hypotensive_hypoxemia");
+    public static final Counter HEART_RATE_CRITICAL = fired("heart_rate.critical");
+    public static final Counter HEART_RATE_IRREGULAR = fired("heart_rate.irregular");
+    /** Alerts raised outside the built-in rules, such as triggered alerts. */
+    public static final Counter OTHER = fired("other");
+
+    private AlertCounters() {
+    }
+
+    /**
+     * Finds the family of a condition text written by the built-in rules, for
+     * alerts whose rule did not pick a counter.
+     *
+     * @param condition the condition of an alert
+     * @return the counter of its family, or {@link #OTHER}
+     */
+    public static Counter forCondition(String condition) {
+        if (condition == null) {
+            return OTHER;
+        } else if (condition.startsWith("Hypotensive Hypoxemia")) {
+            return HYPOTENSIVE_HYPOXEMIA;
+        } else if (condition.startsWith("Critical Heart Rate")) {
+            return HEART_RATE_CRITICAL;
+        } else if (condition.startsWith("Irregular Heart Rate")) {
+            return HEART_RATE_IRREGULAR;
+        } else if (condition.startsWith("Low Saturation")) {
+            return SATURATION_LOW;
+        } else if (condition.startsWith("Saturation Rapid Drop")) {
+            return SATURATION_RAPID_DROP;
+        } else if (!condition.contains("Blood Pressure")) {
+            return OTHER;
+        } else if (condition.contains(" Critical High Alert")) {
+            return BLOOD_PRESSURE_CRITICAL_HIGH;
+        } else if (condition.contains(" Critical Low Alert")) {
+            return BLOOD_PRESSURE_CRITICAL_LOW;
+        } else if (condition.endsWith(" Increasing Trend Alert")) {
+            return BLOOD_PRESSURE_INCREASING_TREND;
+        } else if (condition.endsWith(" Decreasing Trend Alert")) {
+            return BLOOD_PRESSURE_DECREASING_TREND;
+        }
+        return OTHER;
+    }
+
+    private static Counter fired(String family) {
+        return MetricsRegistry.getDefault().counter("alerts.fired." + family);
+    }
+}
@@ -0,0 +1,294 @@
+package com.alerts;
+
+import com.alerts.strategy.AlertStrategy;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import com.metrics.Histogram;
+import com.metrics.MetricsRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Evaluates alert strategies for every patient in a {@link DataStorage} on a
+ * fixed cadence. Each cycle splits the patients into shards of
+ * {@value #SHARD_SIZE} that are evaluated in parallel on a
+ * {@link ForkJoinPool}. Patients whose {@link Patient#getDataVersion()} has
+ * not changed since their last evaluation are skipped, so a cycle only pays
+ * for the patients that received new data.
+ *
+ * <p>Any {@link AlertStrategy} can be evaluated, including
+ * {@code alertGenerator::evaluateData}. Strategies are called concurrently
+ * for different patients, but never concurrently for the same patient. The
+ * time of every call is recorded in the {@code alerts.strategy.<name>.nanos}
+ * histogram of the default {@link MetricsRegistry}.
+ */
+public class AlertEvaluationScheduler {
+
+    /** Number of patients evaluated by one task. */
+    public static final int SHARD_SIZE = 512;
+
+    private final DataStorage dataStorage;
+    private final List<AlertStrategy> strategies;
+    private final Histogram[] strategyNanos;
+    private final ForkJoinPool pool;
+    private final Consumer<CycleReport> reportHandler;
+    private final Map<Integer, Long> evaluatedVersions = new ConcurrentHashMap<>();
+    private ScheduledExecutorService timer;
+    private volatile CycleReport lastCycle;
+
+    /**
+     * Creates a scheduler that uses one worker per processor and does not
+     * report its cycles.
+     *
+     * @param dataStorage the storage whose patients are evaluated
+     * @param strategies the strategies to evaluate for every patient
+     */
+    public AlertEvaluationScheduler(DataStorage dataStorage, List<AlertStrategy> strategies) {
+        this(dataStorage, strategies, Runtime.getRuntime().availableProcessors(), report -> { });
+    }
+
+    /**
+     * @param dataStorage the storage whose patients are evaluated
+     * @param strategies the strategies to evaluate for every patient
+     * @param parallelism the number of worker threads
+     * @param reportHandler receives the report of every cycle, on the thread
+     * that ran it
+     */
+    public AlertEvaluationScheduler(DataStorage dataStorage, List<AlertStrategy> strategies, int parallelism,
+            Consumer<CycleReport> reportHandler) {
+        this.dataStorage = dataStorage;
+        this.strategies = List.copyOf(strategies);
+        this.strategyNanos = new Histogram[strategies.size()];
+        for (int i = 0; i < strategyNanos.length; i++) {
+            strategyNanos[i] = MetricsRegistry.getDefault()
+                    .histogram("alerts.strategy." + strategyName(this.strategies.get(i), i) + ".nanos");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.reportHandler = reportHandler;
+    }
+
+    /**
+     * Runs one evaluation cycle over all patients and waits for it to finish.
+     * Cycles never overlap; a call made while another cycle runs waits for it.
+     *
+     * @return the report of the cycle
+     */
+    public synchronized CycleReport runCycle() {
+        long startTime = System.currentTimeMillis();
+        long start = System.nanoTime();
+        List<Patient> patients = dataStorage.getAllPatients();
+        Shard sweep = new Shard(patients, 0, patients.size());
+        pool.invoke(sweep);
+        CycleReport report = new CycleReport(startTime, System.nanoTime() - start, patients.size(),
+                sweep.counters.evaluated.sum(), sweep.counters.failed.sum());
+        lastCycle = report;
+        reportHandler.accept(report);
+        return report;
+    }
+
+    /**
+     * Starts running cycles at a fixed rate on a background thread. A cycle
+     * that takes longer than the period delays the next one rather than
+     * overlapping it.
+     *
+     * @param period the time between the starts of two cycles
+     * @param unit the unit of {@code period}
+     * @throws IllegalStateException if the scheduler has already been started
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (timer != null) {
+            throw new IllegalStateException("Alert evaluation scheduler already started");
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "alert-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::runCycleSafely, 0, period, unit);
+    }
+
+    /**
+     * Stops the background cycles and the worker threads. A cycle in progress
+     * is interrupted.
+     */
+    public void stop() {
+        ScheduledExecutorService current;
+        synchronized (this) {
+            current = timer;
+        }
+        if (current != null) {
+            current.shutdownNow();
+        }
+        pool.shutdownNow();
+    }
+
+    /**
+     * @return the report of the last completed cycle, or null before the first
+     */
+    public CycleReport getLastCycle() {
+        return lastCycle;
+    }
+
+    private void runCycleSafely() {
+        try {
+            runCycle();
+        } catch (RuntimeException e) {
+            // an exception would cancel the periodic task
+            System.out.println("Alert evaluation cycle failed: " + e);
+        }
+    }
+
+    private void evaluate(Patient patient, Counters counters) {
+        long version = patient.getDataVersion();
+        Long evaluated = evaluatedVersions.get(patient.getPatientID());
+        if (evaluated != null && evaluated == version) {
+            return;
+        }
+        try {
+            for (int i = 0; i < strategyNanos.length; i++) {
+                long start = System.nanoTime();
+                strategies.get(i).checkAlert(patient);
+                strategyNanos[i].recordSince(start);
+            }
+            // data added while the strategies ran has a newer version and is evaluated next cycle
+            evaluatedVersions.put(patient.getPatientID(), version);
+        } catch (RuntimeException e) {
+            // the version stays unrecorded, so the patient is evaluated again next cycle
+            counters.failed.increment();
+            System.out.println("Alert evaluation failed for patient " + patient.getPatientID() + ": " + e);
+        }
+        counters.evaluated.increment();
+    }
+
+    /**
+     * @return the simple class name of a strategy, or its position for
+     * lambdas and method references, whose class names are generated
+     */
+    private static String strategyName(AlertStrategy strategy, int index) {
+        Class<?> type = strategy.getClass();
+        if (type.isSynthetic() || type.isAnonymousClass() || type.getSimpleName().contains("$$Lambda")) {
+            return "strategy" + index;
+        }
+        return type.getSimpleName();
+    }
+
+    private static final class Counters {
+
+        final LongAdder evaluated = new LongAdder();
+        final LongAdder failed = new LongAdder();
+    }
+
+    /**
+     * Evaluates a range of patients, splitting it in halves down to
+     * {@value #SHARD_SIZE} patients.
+     */
+    private final class Shard extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Patient> patients;
+        private final int from;
+        private final int to;
+        final Counters counters;
+
+        Shard(List<Patient> patients, int from, int to) {
+            this(patients, from, to, new Counters());
+        }
+
+        private Shard(List<Patient> patients, int from, int to, Counters counters) {
+            this.patients = patients;
+            this.from = from;
+            this.to = to;
+            this.counters = counters;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SHARD_SIZE) {
+                for (int i = from; i < to; i++) {
+                    evaluate(patients.get(i), counters);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Shard(patients, from, middle, counters), new Shard(patients, middle, to, counters));
+        }
+    }
+
+    /**
+     * Outcome of one evaluation cycle.
+     */
+    public static final class CycleReport {
+
+        private final long startTime;
+        private final long wallNanos;
+        private final int patients;
+        private final long evaluated;
+        private final long failed;
+
+        CycleReport(long startTime, long wallNanos, int patients, long evaluated, long failed) {
+            this.startTime = startTime;
+            this.wallNanos = wallNanos;
+            this.patients = patients;
+            this.evaluated = evaluated;
+            this.failed = failed;
+        }
+
+        /**
+         * @return when the cycle started, in milliseconds since epoch
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * @return the wall time of the cycle, in nanoseconds
+         */
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        /**
+         * @return the number of patients in the storage
+         */
+        public int getPatients() {
+            return patients;
+        }
+
+        /**
+         * @return the number of patients whose strategies were run
+         */
+        public long getEvaluated() {
+            return evaluated;
+        }
+
+        /**
+         * @return the number of patients skipped because they had no new data
+         */
+        public long getSkipped() {
+            return patients - evaluated;
+        }
+
+        /**
+         * @return the number of patients whose evaluation threw an exception
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return "Alert evaluation cycle: " + patients + " patients, " + evaluated + " evaluated, "
+                    + getSkipped() + " skipped, " + failed + " failed in "
+                    + TimeUnit.NANOSECONDS.toMillis(wallNanos) + " ms";
+        }
+    }
+}
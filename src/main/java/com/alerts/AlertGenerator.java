@@ -4,10 +4,15 @@ import com.cardio_generator.outputs.OutputStrategy;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
+import com.data_management.RollingWindow;
+import com.data_management.WindowStatistics;
+import com.metrics.Counter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * The {@code AlertGenerator} class is responsible for monitoring patient data
@@ -18,9 +23,11 @@ import java.util.Map;
 public class AlertGenerator {
 
     private DataStorage dataStorage;
+    private final Consumer<Alert> alertHandler;
     private static final long TIME_WINDOW_MS = 100000;// 100 seconds, configurable
     private static final long HOUR_INTERVAL_MS = 3600000;
     public static final long DAY_INTERVAL_MS = 86400000;
+    private static final RollingWindow DAY_WINDOW = RollingWindow.lastMillis(DAY_INTERVAL_MS);
 
     /**
      * Constructs an {@code AlertGenerator} with a specified
@@ -31,8 +38,23 @@ public class AlertGenerator {
      * patient data
      */
     public AlertGenerator(DataStorage dataStorage) {
-        this.dataStorage = dataStorage;
+        this(dataStorage, alert -> System.out.println(alert));
+    }
 
+    /**
+     * Constructs an {@code AlertGenerator} that hands its alerts to
+     * {@code alertHandler}, for example a
+     * {@link com.alerts.dispatch.AlertDispatcher} so that evaluation does not
+     * wait for the alerts to be delivered.
+     *
+     * @param dataStorage the data storage system that provides access to
+     * patient data
+     * @param alertHandler receives every triggered alert, on the evaluating
+     * thread
+     */
+    public AlertGenerator(DataStorage dataStorage, Consumer<Alert> alertHandler) {
+        this.dataStorage = dataStorage;
+        this.alertHandler = alertHandler;
     }
 
     /**
@@ -60,17 +82,27 @@ public class AlertGenerator {
      * Triggers an alert for the monitoring system. This method can be extended
      * to notify medical staff, log the alert, or perform other actions. The
      * method currently assumes that the alert information is fully formed when
-     * passed as an argument.
+     * passed as an argument. The alert is handed to the handler given at
+     * construction, which prints it by default.
      *
      * @param alert the alert object containing details about the alert
      * condition
      */
     public void triggerAlert(Alert alert) {
-        // Implementation might involve logging the alert or notifying staff
-        System.out.println("Patient ID: " + alert.getPatientId()
-                + ", Condition: " + alert.getCondition()
-                + ", Timestamp: " + alert.getTimestamp());
+        triggerAlert(alert, AlertCounters.forCondition(alert.getCondition()));
+    }
 
+    /**
+     * Triggers an alert raised by a rule that knows its family of conditions,
+     * so that counting it does not look at the condition text.
+     *
+     * @param alert the alert object containing details about the alert
+     * condition
+     * @param fired the {@link AlertCounters} counter of the alert's family
+     */
+    protected void triggerAlert(Alert alert, Counter fired) {
+        fired.increment();
+        alertHandler.accept(alert);
     }
 
     /**
@@ -94,20 +126,45 @@ public class AlertGenerator {
         }
 
         //Filter out the systolic and diastolic blood pressures
-        List<PatientRecord> systolicRecords = getRecordsByType(records, "SystolicPressure");
-        List<PatientRecord> diastolicRecords = getRecordsByType(records, "DiastolicPressure");
+        List<PatientRecord> systolicRecords = getRecordsByType(records, RecordTypes.SYSTOLIC_PRESSURE);
+        List<PatientRecord> diastolicRecords = getRecordsByType(records, RecordTypes.DIASTOLIC_PRESSURE);
 
         //Call all blood pressure checks
         //Check for an increase/decrease in patients blood pressure accross 3 consecutive readings
         trendCheck(systolicRecords, patient, "Systolic Blood Pressure");
         trendCheck(diastolicRecords, patient, "Diastolic Blood Pressure");
 
-        //Check for a reading exceeding or dropping below a given threshold
-        criticalTresholdCheck(systolicRecords, patient, "Systolic Blood Pressure", 90, 180);
-        criticalTresholdCheck(diastolicRecords, patient, "Diastolic Blood Pressure", 60, 120);
+        //Check for a reading exceeding or dropping below a given threshold, unless the day's extremes rule it out
+        if (!dayWithinRange(patient, RecordTypes.SYSTOLIC_PRESSURE, startTime, 90, 180)) {
+            criticalTresholdCheck(systolicRecords, patient, "Systolic Blood Pressure", 90, 180);
+        }
+        if (!dayWithinRange(patient, RecordTypes.DIASTOLIC_PRESSURE, startTime, 60, 120)) {
+            criticalTresholdCheck(diastolicRecords, patient, "Diastolic Blood Pressure", 60, 120);
+        }
 
     }
 
+    /**
+     * Tells from the rolling statistics kept by the storage, without reading
+     * the records, whether every record of a type since {@code startTime}
+     * lies within a range. The statistics cover the day up to the newest
+     * record, so they only answer when that day includes
+     * {@code startTime} onwards and none of it has been rolled up.
+     *
+     * @param patient the patient to check
+     * @param recordType the {@link RecordTypes} code of the type of record
+     * @param startTime the start of the checked time range, at most a day ago
+     * @param lower the smallest value within the range
+     * @param upper the largest value within the range
+     * @return true if every record is known to be within the range, false if
+     * one is not or the statistics cannot tell
+     */
+    protected boolean dayWithinRange(Patient patient, int recordType, long startTime, double lower, double upper) {
+        WindowStatistics day = dataStorage.getWindowStatistics(patient.getPatientID(), recordType, DAY_WINDOW);
+        return day != null && day.isComplete() && day.getEndTime() - DAY_INTERVAL_MS <= startTime
+                && day.getMin() >= lower && day.getMax() <= upper;
+    }
+
     private void trendCheck(List<PatientRecord> records, Patient patient, String type) {
         if (records.size() >= 3) {
             boolean decreasingTrend = true;
@@ -128,11 +185,11 @@ public class AlertGenerator {
             String patientID = Integer.toString(patient.getPatientID());
             if (decreasingTrend == true) {
                 Alert alert = new Alert(patientID, type + " Decreasing Trend Alert", records.get(records.size() - 1).getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.BLOOD_PRESSURE_DECREASING_TREND);
             }
             if (increasingTrend == true) {
                 Alert alert = new Alert(patientID, type + " Increasing Trend Alert", records.get(records.size() - 1).getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.BLOOD_PRESSURE_INCREASING_TREND);
             }
         }
     }
@@ -143,12 +200,12 @@ public class AlertGenerator {
 
             if (record.getMeasurementValue() > upperThreshold) {
                 Alert alert = new Alert(String.valueOf(patient.getPatientID()), type + " Critical High Alert: " + type + " has exceeded " + upperThreshold + " mmHg", record.getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.BLOOD_PRESSURE_CRITICAL_HIGH);
             }
 
             if (record.getMeasurementValue() < lowerTreshold) {
                 Alert alert = new Alert(String.valueOf(patient.getPatientID()), type + " Critical Low Alert: " + type + " has dropped below " + lowerTreshold + " mmHg", record.getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.BLOOD_PRESSURE_CRITICAL_LOW);
             }
         }
 
@@ -172,7 +229,7 @@ public class AlertGenerator {
             return;
         }
 
-        List<PatientRecord> saturationRecords = getRecordsByType(records, "Saturation");
+        List<PatientRecord> saturationRecords = getRecordsByType(records, RecordTypes.SATURATION);
 
         lowSaturationCheck(saturationRecords, patient);
         rapidDropCheck(saturationRecords, patient);
@@ -182,7 +239,7 @@ public class AlertGenerator {
         for (PatientRecord record : records) {
             if (record.getMeasurementValue() < 92) {
                 Alert alert = new Alert(String.valueOf(patient.getPatientID()), "Low Saturation Alert", record.getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.SATURATION_LOW);
             }
         }
     }
@@ -193,7 +250,7 @@ public class AlertGenerator {
             double dropPercentage = 100.0 * (records.get(i - 1).getMeasurementValue() - records.get(i).getMeasurementValue()) / records.get(i - 1).getMeasurementValue();
             if (dropPercentage >= 5) {
                 Alert alert = new Alert(String.valueOf(patient.getPatientID()), "Saturation Rapid Drop Alert", records.get(i).getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.SATURATION_RAPID_DROP);
 
             }
         }
@@ -218,8 +275,8 @@ public class AlertGenerator {
         }
 
         //retrieve the recent systolic and saturation records
-        List<PatientRecord> recentSystolicRecords = getRecordsByType(records, "SystolicPressure");
-        List<PatientRecord> recentSaturationRecords = getRecordsByType(records, "Saturation");
+        List<PatientRecord> recentSystolicRecords = getRecordsByType(records, RecordTypes.SYSTOLIC_PRESSURE);
+        List<PatientRecord> recentSaturationRecords = getRecordsByType(records, RecordTypes.SATURATION);
 
         boolean systolic = false;
         for (PatientRecord record : recentSystolicRecords) {
@@ -236,7 +293,7 @@ public class AlertGenerator {
 
         if (saturation && systolic) {
             Alert alert = new Alert(String.valueOf(patient.getPatientID()), "Hypotensive Hypoxemia Alert", endTime);
-            triggerAlert(alert);
+            triggerAlert(alert, AlertCounters.HYPOTENSIVE_HYPOXEMIA);
         }
     }
 
@@ -256,56 +313,64 @@ public class AlertGenerator {
             return;
         }
 
-        List<PatientRecord> ECGRecords = getRecordsByType(records, "ECG");
+        List<PatientRecord> ECGRecords = getRecordsByType(records, RecordTypes.ECG);
 
         checkIrregularHeartRate(ECGRecords, patient);
         criticalHeartRateAlert(records, patient);
 
     }
 
- private void checkIrregularHeartRate(List<PatientRecord> records, Patient patient) {
-    int windowSize = 5;
-    double thresholdMultiplier = 1.5;
-    
-    if (records.size() >= windowSize) {
-        for (int i = 0; i <= records.size() - windowSize; i++) {
+    private void checkIrregularHeartRate(List<PatientRecord> records, Patient patient) {
+        int windowSize = 5;
+        double thresholdMultiplier = 1.5;
+
+        if (records.size() >= windowSize) {
+            // slide a running sum instead of adding up every window again
             double windowSum = 0;
-            for (int j = i; j < i + windowSize ; j++) {
+            for (int j = 0; j < windowSize; j++) {
                 windowSum += records.get(j).getMeasurementValue();
             }
+            for (int i = 0; i + windowSize < records.size(); i++) {
+                double windowAvg = windowSum / windowSize;
+                double threshold = windowAvg * thresholdMultiplier;
 
-            double windowAvg = windowSum / windowSize;
-            double threshold = windowAvg * thresholdMultiplier;
-            
-            if (i + windowSize < records.size()) {
                 double nextPoint = records.get(i + windowSize).getMeasurementValue();
                 if (nextPoint > threshold) {
                     Alert alert = new Alert(String.valueOf(patient.getPatientID()), "Irregular Heart Rate Alert", records.get(i).getTimestamp());
-                    triggerAlert(alert);
+                    triggerAlert(alert, AlertCounters.HEART_RATE_IRREGULAR);
                 }
+                windowSum += nextPoint - records.get(i).getMeasurementValue();
             }
         }
     }
-}
-
-  
 
     private void criticalHeartRateAlert(List<PatientRecord> records, Patient patient) {
         for (PatientRecord record : records) {
             if (record.getMeasurementValue() < 50 || record.getMeasurementValue() > 100) {
                 Alert alert = new Alert(String.valueOf(patient.getPatientID()), "Critical Heart Rate Alert", record.getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.HEART_RATE_CRITICAL);
             }
         }
     }
 
     public List<PatientRecord> getRecordsByType(List<PatientRecord> records, String type) {
-        List<PatientRecord> filteredRecords = new ArrayList<PatientRecord>();
-        for (PatientRecord record : records) {
-            if (record.getRecordType().equals(type)) {
-                filteredRecords.add(record);
-            }
+        int code = RecordTypes.find(type);
+        if (code < 0) {
+            return new ArrayList<PatientRecord>(); // no record has ever had this type
         }
-        return filteredRecords;
+        return getRecordsByType(records, code);
+    }
+
+    /**
+     * Selects the records of one type, given by its {@link RecordTypes} code.
+     * Records read from the storage are already grouped by type, so this is a
+     * lookup rather than a scan.
+     *
+     * @param records the records to select from
+     * @param type the code of the record type
+     * @return the records of that type; may be read-only
+     */
+    public List<PatientRecord> getRecordsByType(List<PatientRecord> records, int type) {
+        return RecordTypes.select(records, type);
     }
 }
@@ -0,0 +1,209 @@
+package com.alerts.dispatch;
+
+import com.alerts.Alert;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Hands alerts from the evaluating threads to a set of {@link AlertSink}s
+ * without making the evaluating threads wait. Every sink has its own
+ * lock-free multi-producer queue, drained by its own dispatch thread in
+ * batches of up to {@value #MAX_BATCH} alerts.
+ *
+ * <p>Queues are bounded: when a sink falls {@code capacity} alerts behind,
+ * further alerts for that sink are dropped and counted rather than blocking
+ * the caller. The dispatcher is a {@code Consumer<Alert>}, so it can be passed
+ * to {@link com.alerts.AlertGenerator} and
+ * {@link com.alerts.streaming.StreamingAlertEngine} as their alert handler.
+ */
+public class AlertDispatcher implements Consumer<Alert> {
+
+    /** Default number of alerts a sink may fall behind before alerts are dropped. */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    /** Most alerts handed to a sink in one call. */
+    public static final int MAX_BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final List<SinkWorker> workers = new ArrayList<>();
+    private final LongAdder droppedAlerts = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    /**
+     * @param sinks the sinks every alert is delivered to
+     */
+    public AlertDispatcher(List<AlertSink> sinks) {
+        this(sinks, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param sinks the sinks every alert is delivered to
+     * @param capacity the number of alerts a sink may fall behind before
+     * alerts for it are dropped
+     */
+    public AlertDispatcher(List<AlertSink> sinks, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        for (AlertSink sink : sinks) {
+            workers.add(new SinkWorker(sink, capacity));
+        }
+        for (SinkWorker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Queues an alert for every sink and returns immediately.
+     *
+     * @param alert the alert to deliver
+     */
+    @Override
+    public void accept(Alert alert) {
+        for (SinkWorker worker : workers) {
+            worker.offer(alert);
+        }
+    }
+
+    /**
+     * Waits until every alert queued before the call has been handed to its
+     * sinks.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        for (SinkWorker worker : workers) {
+            worker.awaitProcessed(worker.accepted.get());
+        }
+    }
+
+    /**
+     * Delivers the queued alerts, stops the dispatch threads and closes the
+     * sinks. Alerts queued after the call are dropped.
+     */
+    public void close() {
+        for (SinkWorker worker : workers) {
+            worker.closed = true;
+            LockSupport.unpark(worker.thread);
+        }
+        for (SinkWorker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                worker.sink.close();
+            } catch (IOException e) {
+                System.out.println("Error closing alert sink: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the number of alerts not delivered to a sink because its queue
+     * was full, counted once per sink
+     */
+    public long getDroppedAlerts() {
+        return droppedAlerts.sum();
+    }
+
+    /**
+     * @return the number of batches a sink failed to deliver
+     */
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    /**
+     * Queue and dispatch thread of one sink.
+     */
+    private final class SinkWorker implements Runnable {
+
+        final AlertSink sink;
+        final Thread thread;
+        private final int capacity;
+        private final Queue<Alert> queue = new ConcurrentLinkedQueue<>();
+        // ConcurrentLinkedQueue.size() is linear, so the length is counted separately
+        private final AtomicInteger queued = new AtomicInteger();
+        final AtomicLong accepted = new AtomicLong();
+        private long processed; // guarded by this
+        private volatile boolean waiting;
+        volatile boolean closed;
+
+        SinkWorker(AlertSink sink, int capacity) {
+            this.sink = sink;
+            this.capacity = capacity;
+            this.thread = new Thread(this, "alert-sink-" + sink.getClass().getSimpleName());
+            thread.setDaemon(true);
+        }
+
+        void offer(Alert alert) {
+            if (closed || queued.incrementAndGet() > capacity) {
+                queued.decrementAndGet();
+                droppedAlerts.increment();
+                return;
+            }
+            accepted.incrementAndGet();
+            queue.offer(alert);
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Alert> batch = new ArrayList<>(MAX_BATCH);
+            List<Alert> view = Collections.unmodifiableList(batch);
+            while (true) {
+                Alert alert = queue.poll();
+                if (alert == null) {
+                    if (closed) {
+                        return;
+                    }
+                    // announce the wait before the last look, so offer() cannot miss it
+                    waiting = true;
+                    if (queue.isEmpty() && !closed) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    waiting = false;
+                    continue;
+                }
+                do {
+                    batch.add(alert);
+                } while (batch.size() < MAX_BATCH && (alert = queue.poll()) != null);
+                queued.addAndGet(-batch.size());
+                try {
+                    sink.send(view);
+                } catch (IOException | RuntimeException e) {
+                    failedBatches.increment();
+                    System.out.println("Error delivering " + batch.size() + " alerts to "
+                            + sink.getClass().getSimpleName() + ": " + e.getMessage());
+                }
+                markProcessed(batch.size());
+                batch.clear();
+            }
+        }
+
+        private synchronized void markProcessed(int count) {
+            processed += count;
+            notifyAll();
+        }
+
+        synchronized void awaitProcessed(long target) throws InterruptedException {
+            while (processed < target && thread.isAlive()) {
+                wait(IDLE_PARK_NANOS / 1_000_000);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.alerts.dispatch;
+
+import com.alerts.Alert;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the alerts delivered by an {@link AlertDispatcher}, such as
+ * the console, a file or a network stream. Every sink is served by its own
+ * dispatch thread, so a slow sink delays neither alert evaluation nor the
+ * other sinks.
+ */
+public interface AlertSink {
+
+    /**
+     * Delivers a batch of alerts. Called from a single thread at a time.
+     *
+     * @param alerts the alerts, in the order they were raised; the list is
+     * reused after the call returns and must not be kept
+     * @throws IOException if the alerts could not be delivered
+     */
+    void send(List<Alert> alerts) throws IOException;
+
+    /**
+     * Releases the resources held by the sink. The default implementation
+     * does nothing.
+     *
+     * @throws IOException if the sink could not be closed cleanly
+     */
+    default void close() throws IOException {
+    }
+}
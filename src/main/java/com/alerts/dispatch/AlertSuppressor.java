@@ -0,0 +1,208 @@
+package com.alerts.dispatch;
+
+import com.alerts.Alert;
+import com.alerts.decorator.RepeatedAlertDecorator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Filters repeated alerts before they reach an alert handler such as an
+ * {@link AlertDispatcher}. Alerts are keyed by patient and condition, and
+ * for every key:
+ * <ul>
+ * <li>an alert no newer than the newest one already seen is a re-evaluation
+ * of a reading that was already reported, and is dropped;</li>
+ * <li>a newer alert within the hold-off after the last forwarded one is
+ * counted as a repeat and dropped;</li>
+ * <li>the first newer alert after the hold-off is forwarded, wrapped in a
+ * {@link RepeatedAlertDecorator} carrying the number of repeats suppressed
+ * since the last forwarded alert, if there were any.</li>
+ * </ul>
+ * The hold-off is measured on alert timestamps, so replayed data is
+ * suppressed the same way as live data.
+ *
+ * <p>The cache holds at most {@code maxEntries} keys. It is split into
+ * {@value #SEGMENTS} segments locked separately, and each segment evicts its
+ * least recently used key when full; an evicted key starts over, so its next
+ * alert is forwarded.
+ */
+public class AlertSuppressor implements Consumer<Alert> {
+
+    /** Default time after a forwarded alert during which repeats are suppressed. */
+    public static final long DEFAULT_HOLD_OFF_MS = 5 * 60 * 1000;
+    /** Default number of patient and condition pairs remembered. */
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+    private static final int SEGMENTS = 16;
+
+    private final Consumer<Alert> downstream;
+    private final long holdOffMillis;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder repeats = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * Creates a suppressor with the default hold-off and size.
+     *
+     * @param downstream receives the alerts that are not suppressed
+     */
+    public AlertSuppressor(Consumer<Alert> downstream) {
+        this(downstream, DEFAULT_HOLD_OFF_MS, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param downstream receives the alerts that are not suppressed, on the
+     * thread that raised them
+     * @param holdOffMillis the time after a forwarded alert during which newer
+     * alerts for the same patient and condition are suppressed
+     * @param maxEntries the number of patient and condition pairs remembered
+     */
+    public AlertSuppressor(Consumer<Alert> downstream, long holdOffMillis, int maxEntries) {
+        if (holdOffMillis < 0) {
+            throw new IllegalArgumentException("Hold-off must not be negative: " + holdOffMillis);
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxEntries);
+        }
+        this.downstream = downstream;
+        this.holdOffMillis = holdOffMillis;
+        int perSegment = Math.max(1, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Forwards the alert unless it repeats a recent one.
+     *
+     * @param alert the raised alert
+     */
+    @Override
+    public void accept(Alert alert) {
+        Key key = new Key(alert.getPatientId(), alert.getCondition());
+        Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+        int suppressed;
+        synchronized (segment) {
+            State state = segment.get(key);
+            long timestamp = alert.getTimestamp();
+            if (state == null) {
+                segment.put(key, new State(timestamp));
+                suppressed = 0;
+            } else if (timestamp <= state.newest) {
+                duplicates.increment();
+                return;
+            } else if (timestamp - state.lastForwarded < holdOffMillis) {
+                state.newest = timestamp;
+                state.repeats++;
+                repeats.increment();
+                return;
+            } else {
+                suppressed = state.repeats;
+                state.newest = timestamp;
+                state.lastForwarded = timestamp;
+                state.repeats = 0;
+            }
+        }
+        forwarded.increment();
+        downstream.accept(suppressed == 0 ? alert : new RepeatedAlertDecorator(alert, suppressed));
+    }
+
+    /**
+     * @return the number of alerts passed on to the downstream handler
+     */
+    public long getForwardedAlerts() {
+        return forwarded.sum();
+    }
+
+    /**
+     * @return the number of newer alerts suppressed within a hold-off
+     */
+    public long getSuppressedRepeats() {
+        return repeats.sum();
+    }
+
+    /**
+     * @return the number of alerts dropped because a newer one for the same
+     * patient and condition had already been seen
+     */
+    public long getDroppedDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return the number of patient and condition pairs currently remembered
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private static final class Key {
+
+        private final String patientId;
+        private final String condition;
+        private final int hash;
+
+        Key(String patientId, String condition) {
+            this.patientId = patientId;
+            this.condition = condition;
+            this.hash = 31 * patientId.hashCode() + condition.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return patientId.equals(key.patientId) && condition.equals(key.condition);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * What the suppressor remembers of one patient and condition.
+     */
+    private static final class State {
+
+        long newest;
+        long lastForwarded;
+        int repeats;
+
+        State(long timestamp) {
+            this.newest = timestamp;
+            this.lastForwarded = timestamp;
+        }
+    }
+
+    /**
+     * Least recently used map of one share of the keys.
+     */
+    private static final class Segment extends LinkedHashMap<Key, State> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, State> eldest) {
+            return size() > capacity;
+        }
+    }
+}
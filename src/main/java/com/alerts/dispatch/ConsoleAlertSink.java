@@ -0,0 +1,38 @@
+package com.alerts.dispatch;
+
+import com.alerts.Alert;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Prints alerts as console lines, one write per batch.
+ */
+public class ConsoleAlertSink implements AlertSink {
+
+    private final PrintStream out;
+
+    /**
+     * Creates a sink that prints to {@code System.out} as it is when the sink
+     * is created.
+     */
+    public ConsoleAlertSink() {
+        this(System.out);
+    }
+
+    /**
+     * @param out the stream the alerts are printed to
+     */
+    public ConsoleAlertSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void send(List<Alert> alerts) {
+        StringBuilder lines = new StringBuilder(alerts.size() * 80);
+        for (Alert alert : alerts) {
+            lines.append(alert).append(System.lineSeparator());
+        }
+        out.print(lines);
+        out.flush();
+    }
+}
@@ -0,0 +1,47 @@
+package com.alerts.dispatch;
+
+import com.alerts.Alert;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends alerts to a text file, one line per alert. The file is opened once
+ * and flushed after every batch.
+ */
+public class FileAlertSink implements AlertSink {
+
+    private final BufferedWriter writer;
+
+    /**
+     * @param file the file to append to; created together with its parent
+     * directories if it does not exist
+     * @throws IOException if the file cannot be opened
+     */
+    public FileAlertSink(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void send(List<Alert> alerts) throws IOException {
+        for (Alert alert : alerts) {
+            writer.write(alert.toString());
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,26 @@
+package com.alerts.dispatch;
+
+import com.alerts.Alert;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps every alert it receives in memory, for tests and for inspecting the
+ * alerts of a run.
+ */
+public class InMemoryAlertSink implements AlertSink {
+
+    private final List<Alert> alerts = new ArrayList<>();
+
+    @Override
+    public synchronized void send(List<Alert> batch) {
+        alerts.addAll(batch);
+    }
+
+    /**
+     * @return a copy of the alerts received so far, in the order they arrived
+     */
+    public synchronized List<Alert> getAlerts() {
+        return new ArrayList<>(alerts);
+    }
+}
@@ -0,0 +1,49 @@
+package com.alerts.dispatch;
+
+import com.alerts.Alert;
+import com.cardio_generator.outputs.OutputStrategy;
+import java.util.List;
+
+/**
+ * Sends alerts through an {@link OutputStrategy}, such as a
+ * {@link com.cardio_generator.outputs.TcpOutputStrategy} or a
+ * {@link com.cardio_generator.outputs.WebSocketOutputStrategy}, so that the
+ * clients reading the generated samples also receive the alerts. Every alert
+ * becomes one output with the label {@value #LABEL} and the condition as its
+ * data.
+ */
+public class OutputStrategyAlertSink implements AlertSink {
+
+    /** Label of the outputs carrying alerts. */
+    public static final String LABEL = "Alert";
+
+    private final OutputStrategy output;
+
+    /**
+     * @param output the strategy the alerts are sent through; closed together
+     * with the sink
+     */
+    public OutputStrategyAlertSink(OutputStrategy output) {
+        this.output = output;
+    }
+
+    @Override
+    public void send(List<Alert> alerts) {
+        for (Alert alert : alerts) {
+            output.output(patientId(alert), alert.getTimestamp(), LABEL, alert.getCondition());
+        }
+    }
+
+    @Override
+    public void close() {
+        output.close();
+    }
+
+    private static int patientId(Alert alert) {
+        try {
+            return Integer.parseInt(alert.getPatientId());
+        } catch (NumberFormatException e) {
+            return -1; // the output formats only carry numeric ids
+        }
+    }
+}
@@ -5,12 +5,14 @@
 package com.alerts.strategy;
 
 import com.alerts.Alert;
+import com.alerts.AlertCounters;
 import static com.alerts.AlertGenerator.DAY_INTERVAL_MS;
 
 import com.alerts.AlertGenerator;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -49,17 +51,21 @@ public class BloodPressureStrategy extends AlertGenerator implements AlertStrate
         }
 
         //Filter out the systolic and diastolic blood pressures
-        List<PatientRecord> systolicRecords = getRecordsByType(records, "SystolicPressure");
-        List<PatientRecord> diastolicRecords = getRecordsByType(records, "DiastolicPressure");
+        List<PatientRecord> systolicRecords = getRecordsByType(records, RecordTypes.SYSTOLIC_PRESSURE);
+        List<PatientRecord> diastolicRecords = getRecordsByType(records, RecordTypes.DIASTOLIC_PRESSURE);
 
         //Call all blood pressure checks
         //Check for an increase/decrease in patients blood pressure accross 3 consecutive readings
         trendCheck(systolicRecords, patient, "Systolic Blood Pressure");
         trendCheck(diastolicRecords, patient, "Diastolic Blood Pressure");
 
-        //Check for a reading exceeding or dropping below a given threshold
-        criticalTresholdCheck(systolicRecords, patient, "Systolic Blood Pressure", 90, 180);
-        criticalTresholdCheck(diastolicRecords, patient, "Diastolic Blood Pressure", 60, 120);
+        //Check for a reading exceeding or dropping below a given threshold, unless the day's extremes rule it out
+        if (!dayWithinRange(patient, RecordTypes.SYSTOLIC_PRESSURE, startTime, 90, 180)) {
+            criticalTresholdCheck(systolicRecords, patient, "Systolic Blood Pressure", 90, 180);
+        }
+        if (!dayWithinRange(patient, RecordTypes.DIASTOLIC_PRESSURE, startTime, 60, 120)) {
+            criticalTresholdCheck(diastolicRecords, patient, "Diastolic Blood Pressure", 60, 120);
+        }
         
     }
 
@@ -84,11 +90,11 @@ public class BloodPressureStrategy extends AlertGenerator implements AlertStrate
             String patientID = Integer.toString(patient.getPatientID());
             if (decreasingTrend == true) {
                 Alert alert = new Alert(patientID, type + " Decreasing Trend Alert", records.get(records.size() - 1).getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.BLOOD_PRESSURE_DECREASING_TREND);
             }
             if (increasingTrend == true) {
                 Alert alert = new Alert(patientID, type + " Increasing Trend Alert", records.get(records.size() - 1).getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.BLOOD_PRESSURE_INCREASING_TREND);
             }
         }
     }
@@ -99,12 +105,12 @@ public class BloodPressureStrategy extends AlertGenerator implements AlertStrate
 
             if (record.getMeasurementValue() > upperThreshold) {
                 Alert alert = new Alert(String.valueOf(patient.getPatientID()), type + " Critical High Alert: " + type + " has exceeded " + upperThreshold + " mmHg", record.getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.BLOOD_PRESSURE_CRITICAL_HIGH);
             }
 
             if (record.getMeasurementValue() < lowerTreshold) {
                 Alert alert = new Alert(String.valueOf(patient.getPatientID()), type + " Critical Low Alert: " + type + " has dropped below " + lowerTreshold + " mmHg", record.getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.BLOOD_PRESSURE_CRITICAL_LOW);
             }
         }
 
@@ -5,10 +5,12 @@
 package com.alerts.strategy;
 
 import com.alerts.Alert;
+import com.alerts.AlertCounters;
 import com.alerts.AlertGenerator;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
 import java.util.List;
 
 /**
@@ -41,7 +43,7 @@ public class HeartRateStrategy extends AlertGenerator implements AlertStrategy {
             return;
         }
 
-        List<PatientRecord> ECGRecords = getRecordsByType(records, "ECG");
+        List<PatientRecord> ECGRecords = getRecordsByType(records, RecordTypes.ECG);
 
         checkIrregularHeartRate(ECGRecords, patient);
         criticalHeartRateAlert(records, patient);
@@ -53,22 +55,21 @@ public class HeartRateStrategy extends AlertGenerator implements AlertStrategy {
         double thresholdMultiplier = 1.5;
 
         if (records.size() >= windowSize) {
-            for (int i = 0; i <= records.size() - windowSize; i++) {
-                double windowSum = 0;
-                for (int j = i; j < i + windowSize; j++) {
-                    windowSum += records.get(j).getMeasurementValue();
-                }
-
+            // slide a running sum instead of adding up every window again
+            double windowSum = 0;
+            for (int j = 0; j < windowSize; j++) {
+                windowSum += records.get(j).getMeasurementValue();
+            }
+            for (int i = 0; i + windowSize < records.size(); i++) {
                 double windowAvg = windowSum / windowSize;
                 double threshold = windowAvg * thresholdMultiplier;
 
-                if (i + windowSize < records.size()) {
-                    double nextPoint = records.get(i + windowSize).getMeasurementValue();
-                    if (nextPoint > threshold) {
-                        Alert alert = new Alert(String.valueOf(patient.getPatientID()), "Irregular Heart Rate Alert", records.get(i).getTimestamp());
-                        triggerAlert(alert);
-                    }
+                double nextPoint = records.get(i + windowSize).getMeasurementValue();
+                if (nextPoint > threshold) {
+                    Alert alert = new Alert(String.valueOf(patient.getPatientID()), "Irregular Heart Rate Alert", records.get(i).getTimestamp());
+                    triggerAlert(alert, AlertCounters.HEART_RATE_IRREGULAR);
                 }
+                windowSum += nextPoint - records.get(i).getMeasurementValue();
             }
         }
     }
@@ -77,7 +78,7 @@ public class HeartRateStrategy extends AlertGenerator implements AlertStrategy {
         for (PatientRecord record : records) {
             if (record.getMeasurementValue() < 50 || record.getMeasurementValue() > 100) {
                 Alert alert = new Alert(String.valueOf(patient.getPatientID()), "Critical Heart Rate Alert", record.getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.HEART_RATE_CRITICAL);
             }
         }
     }
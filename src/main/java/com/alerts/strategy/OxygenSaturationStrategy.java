@@ -1,10 +1,12 @@
 package com.alerts.strategy;
 
 import com.alerts.Alert;
+import com.alerts.AlertCounters;
 import com.alerts.AlertGenerator;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -38,7 +40,7 @@ public class OxygenSaturationStrategy extends AlertGenerator implements AlertStr
             return;
         }
 
-        List<PatientRecord> saturationRecords = getRecordsByType(records, "Saturation");
+        List<PatientRecord> saturationRecords = getRecordsByType(records, RecordTypes.SATURATION);
 
         lowSaturationCheck(saturationRecords, patient);
         rapidDropCheck(saturationRecords, patient);
@@ -48,7 +50,7 @@ public class OxygenSaturationStrategy extends AlertGenerator implements AlertStr
         for (PatientRecord record : records) {
             if (record.getMeasurementValue() < 92) {
                 Alert alert = new Alert(String.valueOf(patient.getPatientID()), "Low Saturation Alert", record.getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.SATURATION_LOW);
             }
         }
     }
@@ -59,7 +61,7 @@ public class OxygenSaturationStrategy extends AlertGenerator implements AlertStr
             double dropPercentage = 100.0 * (records.get(i - 1).getMeasurementValue() - records.get(i).getMeasurementValue()) / records.get(i - 1).getMeasurementValue();
             if (dropPercentage >= 5) {
                 Alert alert = new Alert(String.valueOf(patient.getPatientID()), "Saturation Rapid Drop Alert", records.get(i).getTimestamp());
-                triggerAlert(alert);
+                triggerAlert(alert, AlertCounters.SATURATION_RAPID_DROP);
 
             }
         }
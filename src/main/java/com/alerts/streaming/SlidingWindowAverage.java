@@ -0,0 +1,50 @@
+package com.alerts.streaming;
+
+/**
+ * Average over the last {@code n} values, maintained with a ring buffer and a
+ * running sum so that every update is O(1).
+ */
+class SlidingWindowAverage {
+
+    private final double[] window;
+    private int next;
+    private int count;
+    private double sum;
+
+    /**
+     * @param size the number of values in the window
+     */
+    SlidingWindowAverage(int size) {
+        this.window = new double[size];
+    }
+
+    /**
+     * @return whether the window holds {@code size} values
+     */
+    boolean isFull() {
+        return count == window.length;
+    }
+
+    /**
+     * @return the average of the values currently in the window
+     */
+    double average() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Adds a value, evicting the oldest one when the window is full.
+     *
+     * @param value the value to add
+     */
+    void add(double value) {
+        if (count == window.length) {
+            sum -= window[next];
+        } else {
+            count++;
+        }
+        window[next] = value;
+        sum += value;
+        next = (next + 1) % window.length;
+    }
+}
@@ -0,0 +1,196 @@
+package com.alerts.streaming;
+
+import com.alerts.Alert;
+import com.alerts.AlertCounters;
+import com.alerts.AlertGenerator;
+import com.alerts.factory.AlertFactory;
+import com.alerts.factory.BloodOxygenAlertFactory;
+import com.alerts.factory.BloodPressureAlertFactory;
+import com.alerts.factory.ECGAlertFactory;
+import com.data_management.RecordTypes;
+import com.data_management.SampleListener;
+import com.metrics.Counter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Push-based counterpart of {@link com.alerts.AlertGenerator#evaluateData}.
+ * Registered as a {@link SampleListener} on a
+ * {@link com.data_management.DataStorage}, it evaluates every alert rule
+ * incrementally when a sample is stored, instead of re-reading time windows
+ * from the storage. Each rule keeps a small amount of per-patient state and
+ * costs O(1) per sample:
+ * <ul>
+ * <li>blood pressure trend: at least three readings in the day up to the
+ * newest one, every consecutive pair of which changes by more than 10 mmHg
+ * in the same direction;</li>
+ * <li>blood pressure, saturation and heart rate thresholds;</li>
+ * <li>saturation rapid drop: a drop of 5% or more between consecutive
+ * readings;</li>
+ * <li>irregular heart rate: a reading above 1.5 times the average of the
+ * previous five;</li>
+ * <li>hypotensive hypoxemia: a systolic reading below 90 mmHg and a
+ * saturation below 92% within 100 seconds of each other.</li>
+ * </ul>
+ * The rules are those of the batch strategies, with their windows measured
+ * back from the newest sample instead of from the current time.
+ */
+public class StreamingAlertEngine implements SampleListener {
+
+    private static final double TREND_STEP = 10;
+    private static final int TREND_READINGS = 3;
+    private static final long TREND_WINDOW_MS = AlertGenerator.DAY_INTERVAL_MS;
+    private static final int SYSTOLIC_LOW = 90;
+    private static final int SYSTOLIC_HIGH = 180;
+    private static final int DIASTOLIC_LOW = 60;
+    private static final int DIASTOLIC_HIGH = 120;
+    private static final double SATURATION_LOW = 92;
+    private static final double RAPID_DROP_PERCENT = 5;
+    private static final double HEART_RATE_LOW = 50;
+    private static final double HEART_RATE_HIGH = 100;
+    private static final int HEART_RATE_WINDOW = 5;
+    private static final double HEART_RATE_MULTIPLIER = 1.5;
+    private static final long HYPOXEMIA_WINDOW_MS = 100000;
+
+    private final Consumer<Alert> alertHandler;
+    private final Map<Integer, PatientState> states = new ConcurrentHashMap<>();
+    private final AlertFactory bloodPressureAlerts = new BloodPressureAlertFactory();
+    private final AlertFactory bloodOxygenAlerts = new BloodOxygenAlertFactory();
+    private final AlertFactory ecgAlerts = new ECGAlertFactory();
+
+    /**
+     * Constructs the engine.
+     *
+     * @param alertHandler receives every alert raised by the engine, on the
+     * thread that stored the sample
+     */
+    public StreamingAlertEngine(Consumer<Alert> alertHandler) {
+        this.alertHandler = alertHandler;
+    }
+
+    @Override
+    public void onSample(int patientId, String recordType, double measurementValue, long timestamp) {
+        int code = RecordTypes.find(recordType);
+        if (code >= 0) {
+            onSample(patientId, code, measurementValue, timestamp);
+        }
+    }
+
+    @Override
+    public void onSample(int patientId, int recordType, double measurementValue, long timestamp) {
+        PatientState state = states.get(patientId);
+        if (state == null) {
+            state = states.computeIfAbsent(patientId, id -> new PatientState(String.valueOf(id)));
+        }
+        // samples of one patient may arrive on several threads
+        synchronized (state) {
+            switch (recordType) {
+                case RecordTypes.SYSTOLIC_PRESSURE:
+                    onSystolic(state, measurementValue, timestamp);
+                    break;
+                case RecordTypes.DIASTOLIC_PRESSURE:
+                    onDiastolic(state, measurementValue, timestamp);
+                    break;
+                case RecordTypes.SATURATION:
+                    onSaturation(state, measurementValue, timestamp);
+                    break;
+                case RecordTypes.ECG:
+                    onHeartRate(state, measurementValue, timestamp);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void onSystolic(PatientState state, double value, long timestamp) {
+        bloodPressureChecks(state, state.systolicTrend, "Systolic Blood Pressure", SYSTOLIC_LOW, SYSTOLIC_HIGH, value, timestamp);
+        if (value < SYSTOLIC_LOW) {
+            state.lastLowSystolic = timestamp;
+            checkHypotensiveHypoxemia(state, timestamp);
+        }
+    }
+
+    private void onDiastolic(PatientState state, double value, long timestamp) {
+        bloodPressureChecks(state, state.diastolicTrend, "Diastolic Blood Pressure", DIASTOLIC_LOW, DIASTOLIC_HIGH, value, timestamp);
+    }
+
+    private void bloodPressureChecks(PatientState state, TrendOperator trend, String type, int lowerThreshold,
+            int upperThreshold, double value, long timestamp) {
+        int direction = trend.update(value, timestamp);
+        if (direction == TrendOperator.INCREASING) {
+            raise(bloodPressureAlerts, state, type + " Increasing Trend Alert", timestamp,
+                    AlertCounters.BLOOD_PRESSURE_INCREASING_TREND);
+        } else if (direction == TrendOperator.DECREASING) {
+            raise(bloodPressureAlerts, state, type + " Decreasing Trend Alert", timestamp,
+                    AlertCounters.BLOOD_PRESSURE_DECREASING_TREND);
+        }
+        if (value > upperThreshold) {
+            raise(bloodPressureAlerts, state, type + " Critical High Alert: " + type + " has exceeded " + upperThreshold + " mmHg", timestamp,
+                    AlertCounters.BLOOD_PRESSURE_CRITICAL_HIGH);
+        }
+        if (value < lowerThreshold) {
+            raise(bloodPressureAlerts, state, type + " Critical Low Alert: " + type + " has dropped below " + lowerThreshold + " mmHg", timestamp,
+                    AlertCounters.BLOOD_PRESSURE_CRITICAL_LOW);
+        }
+    }
+
+    private void onSaturation(PatientState state, double value, long timestamp) {
+        if (value < SATURATION_LOW) {
+            raise(bloodOxygenAlerts, state, "Low Saturation Alert", timestamp, AlertCounters.SATURATION_LOW);
+            state.lastLowSaturation = timestamp;
+            checkHypotensiveHypoxemia(state, timestamp);
+        }
+        if (state.hasSaturation) {
+            double dropPercentage = 100.0 * (state.lastSaturation - value) / state.lastSaturation;
+            if (dropPercentage >= RAPID_DROP_PERCENT) {
+                raise(bloodOxygenAlerts, state, "Saturation Rapid Drop Alert", timestamp, AlertCounters.SATURATION_RAPID_DROP);
+            }
+        }
+        state.hasSaturation = true;
+        state.lastSaturation = value;
+    }
+
+    private void checkHypotensiveHypoxemia(PatientState state, long timestamp) {
+        if (Math.abs(state.lastLowSystolic - state.lastLowSaturation) <= HYPOXEMIA_WINDOW_MS) {
+            raise(bloodOxygenAlerts, state, "Hypotensive Hypoxemia Alert", timestamp,
+                    AlertCounters.HYPOTENSIVE_HYPOXEMIA);
+        }
+    }
+
+    private void onHeartRate(PatientState state, double value, long timestamp) {
+        if (value < HEART_RATE_LOW || value > HEART_RATE_HIGH) {
+            raise(ecgAlerts, state, "Critical Heart Rate Alert", timestamp, AlertCounters.HEART_RATE_CRITICAL);
+        }
+        SlidingWindowAverage window = state.heartRateWindow;
+        if (window.isFull() && value > window.average() * HEART_RATE_MULTIPLIER) {
+            raise(ecgAlerts, state, "Irregular Heart Rate Alert", timestamp, AlertCounters.HEART_RATE_IRREGULAR);
+        }
+        window.add(value);
+    }
+
+    private void raise(AlertFactory factory, PatientState state, String condition, long timestamp, Counter fired) {
+        fired.increment();
+        alertHandler.accept(factory.createAlert(state.patientId, condition, timestamp));
+    }
+
+    /**
+     * Rule state of one patient.
+     */
+    private static class PatientState {
+
+        final String patientId;
+        final TrendOperator systolicTrend = new TrendOperator(TREND_STEP, TREND_READINGS, TREND_WINDOW_MS);
+        final TrendOperator diastolicTrend = new TrendOperator(TREND_STEP, TREND_READINGS, TREND_WINDOW_MS);
+        final SlidingWindowAverage heartRateWindow = new SlidingWindowAverage(HEART_RATE_WINDOW);
+        boolean hasSaturation;
+        double lastSaturation;
+        long lastLowSystolic = Long.MIN_VALUE / 2;
+        long lastLowSaturation = Long.MAX_VALUE / 2;
+
+        PatientState(String patientId) {
+            this.patientId = patientId;
+        }
+    }
+}
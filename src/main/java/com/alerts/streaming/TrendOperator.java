@@ -0,0 +1,83 @@
+package com.alerts.streaming;
+
+/**
+ * Decides whether the readings of a time window all change by more than a
+ * fixed step in the same direction, the trend rule of
+ * {@link com.alerts.strategy.BloodPressureStrategy}: the window ending at the
+ * newest reading must hold at least {@code readings} readings, and every
+ * consecutive pair in it must rise, or every pair fall, by more than
+ * {@code minStep}.
+ *
+ * <p>Every update is O(1). The operator keeps the times of the last
+ * {@code readings} readings and, for each direction, the time of the newest
+ * reading that the next one did not move far enough from. A trend holds when
+ * the oldest kept reading is in the window and the newest such break is not.
+ */
+class TrendOperator {
+
+    /** Every reading in the window rises by more than the step. */
+    static final int INCREASING = 1;
+    /** Every reading in the window falls by more than the step. */
+    static final int DECREASING = -1;
+    /** No trend over the window. */
+    static final int NONE = 0;
+
+    private final double minStep;
+    private final long windowMillis;
+    private final long[] times; // the times of the last readings, as a ring
+    private int next;
+    private int count;
+    private boolean hasPrevious;
+    private double previous;
+    private long increasingBreak = Long.MIN_VALUE;
+    private long decreasingBreak = Long.MIN_VALUE;
+
+    /**
+     * @param minStep      the change between two readings must exceed this value
+     * @param readings     the smallest number of readings that form a trend
+     * @param windowMillis the length of the window ending at the newest
+     *                     reading, in milliseconds
+     */
+    TrendOperator(double minStep, int readings, long windowMillis) {
+        this.minStep = minStep;
+        this.windowMillis = windowMillis;
+        this.times = new long[readings];
+    }
+
+    /**
+     * Adds a reading and reports whether the window ending at it holds a
+     * trend. Readings are expected in time order.
+     *
+     * @param value     the new reading
+     * @param timestamp the time of the reading, in milliseconds
+     * @return {@link #INCREASING}, {@link #DECREASING} or {@link #NONE}
+     */
+    int update(double value, long timestamp) {
+        if (hasPrevious) {
+            long previousTime = times[(next + times.length - 1) % times.length];
+            if (value - previous <= minStep) {
+                increasingBreak = previousTime;
+            }
+            if (previous - value <= minStep) {
+                decreasingBreak = previousTime;
+            }
+        }
+        hasPrevious = true;
+        previous = value;
+        times[next] = timestamp;
+        next = (next + 1) % times.length;
+        count = Math.min(count + 1, times.length);
+
+        long windowStart = timestamp - windowMillis;
+        if (count < times.length || times[next] < windowStart) {
+            return NONE;
+        }
+        if (increasingBreak < windowStart) {
+            return INCREASING;
+        }
+        if (decreasingBreak < windowStart) {
+            return DECREASING;
+        }
+        return NONE;
+    }
+}
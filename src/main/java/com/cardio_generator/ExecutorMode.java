@@ -0,0 +1,136 @@
+package com.cardio_generator;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Kind of threads used by the simulator for generator tasks and the TCP
+ * output's selector thread, selected with {@code --executor}.
+ *
+ * <p>Virtual threads need Java 21 or newer at run time. The build targets
+ * Java 11, so they are looked up reflectively; {@link #isAvailable()} tells
+ * whether the running JVM has them.
+ */
+public enum ExecutorMode {
+
+    /**
+     * Platform threads: a worker pool sized to the CPU count, patients handled
+     * in batches of {@value TickScheduler#BATCH_SIZE}.
+     */
+    PLATFORM(TickScheduler.BATCH_SIZE),
+
+    /**
+     * Virtual threads: one thread per task, and every patient is its own task,
+     * so a generator blocked on a slow output only holds up its own patient.
+     */
+    VIRTUAL(1);
+
+    private final int batchSize;
+
+    ExecutorMode(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param name {@code platform} or {@code virtual}, in any case
+     * @return the mode with that name
+     * @throws IllegalArgumentException if there is no such mode
+     */
+    public static ExecutorMode fromName(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return whether the running JVM supports this mode
+     */
+    public boolean isAvailable() {
+        return this == PLATFORM || VirtualThreads.OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return the number of patients the tick scheduler hands to one task
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Creates the pool that runs generator tasks: a fixed pool of daemon
+     * threads, one per processor, or a new virtual thread per task.
+     *
+     * @param namePrefix prefix of the thread names
+     * @return the new pool
+     */
+    public ExecutorService newWorkerPool(String namePrefix) {
+        if (this == PLATFORM) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), newThreadFactory(namePrefix));
+        }
+        return VirtualThreads.perTaskExecutor(newThreadFactory(namePrefix));
+    }
+
+    /**
+     * Creates a factory for long-lived threads such as socket servers.
+     * Platform threads are daemon threads.
+     *
+     * @param namePrefix prefix of the thread names, followed by a counter
+     * @return the new factory
+     */
+    public ThreadFactory newThreadFactory(String namePrefix) {
+        if (this == VIRTUAL) {
+            return VirtualThreads.factory(namePrefix);
+        }
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Reflective access to {@code Thread.ofVirtual()}.
+     */
+    private static final class VirtualThreads {
+
+        static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+        static final Method PER_TASK_EXECUTOR = lookup(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+        private static Method lookup(Class<?> type, String name, Class<?>... parameterTypes) {
+            try {
+                return type.getMethod(name, parameterTypes);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        static ThreadFactory factory(String namePrefix) {
+            if (OF_VIRTUAL == null) {
+                throw new IllegalStateException("Virtual threads need Java 21 or newer, running on "
+                        + System.getProperty("java.version"));
+            }
+            try {
+                // Thread.ofVirtual().name(namePrefix, 1).factory(), through the public Thread.Builder interface
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                Object builder = OF_VIRTUAL.invoke(null);
+                builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException
+                    | InvocationTargetException e) {
+                throw new IllegalStateException("Cannot create virtual threads", e);
+            }
+        }
+
+        static ExecutorService perTaskExecutor(ThreadFactory factory) {
+            try {
+                return (ExecutorService) PER_TASK_EXECUTOR.invoke(null, factory);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Cannot create a virtual thread executor", e);
+            }
+        }
+    }
+}
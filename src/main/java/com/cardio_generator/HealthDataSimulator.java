@@ -7,8 +7,6 @@ import com.cardio_generator.generators.AlertGenerator;
 
 
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 
@@ -17,12 +15,17 @@ import com.cardio_generator.generators.BloodPressureDataGenerator;
 import com.cardio_generator.generators.BloodSaturationDataGenerator;
 import com.cardio_generator.generators.BloodLevelsDataGenerator;
 import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
 import com.cardio_generator.outputs.ConsoleOutputStrategy;
 import com.cardio_generator.outputs.FileOutputStrategy;
 import com.cardio_generator.outputs.OutputStrategy;
 import com.cardio_generator.outputs.TcpOutputStrategy;
+import com.cardio_generator.outputs.TimedOutputStrategy;
 import com.cardio_generator.outputs.WebSocketOutputStrategy;
 import com.data_management.Patient;
+import com.metrics.MetricsHttpServer;
+import com.metrics.MetricsJmx;
+import com.metrics.MetricsRegistry;
 
 import java.util.Collections;
 import java.util.List;
@@ -32,6 +35,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import javax.management.JMException;
 
 /**
  * Provides functions to parse command-line prompts.
@@ -43,8 +48,12 @@ import java.util.ArrayList;
 public class HealthDataSimulator {
 
     private static int patientCount = 50; // Default number of patients
-    private static ScheduledExecutorService scheduler;
+    private static TickScheduler scheduler;
+    private static ExecutorMode executorMode = ExecutorMode.PLATFORM;
+    private static final long TICK_MILLIS = 100;
+    private static final int MAX_INITIAL_DELAY_TICKS = 5; // in the time unit of each task
     private static OutputStrategy outputStrategy = new ConsoleOutputStrategy(); // Default output strategy
+    private static int metricsPort = -1; // no metrics endpoint by default
     private static final Random random = new Random();
         private static HealthDataSimulator instance;
 
@@ -77,13 +86,21 @@ public class HealthDataSimulator {
      */
     public void simulateData(String[] args) throws IOException{
          parseArguments(args);
+        outputStrategy = new TimedOutputStrategy(outputStrategy);
+        exposeMetrics();
 
-        scheduler = Executors.newScheduledThreadPool(patientCount * 4);
+        scheduler = new TickScheduler(TICK_MILLIS, TimeUnit.MILLISECONDS, executorMode);
+        // stop generating and let the output deliver what it still buffers
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            scheduler.shutdownNow();
+            outputStrategy.close();
+        }));
 
         List<Integer> patientIds = initializePatientIds(patientCount);
         Collections.shuffle(patientIds); // Randomize the order of patient IDs
 
         scheduleTasksForPatients(patientIds);
+        scheduler.start();
     }
     
     
@@ -95,6 +112,12 @@ public class HealthDataSimulator {
      */
     
     private static void parseArguments(String[] args) throws IOException {
+        // the executor mode is needed before the output strategy is created
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--executor")) {
+                executorMode = parseExecutorMode(args[i + 1]);
+            }
+        }
         for (int i = 0; i < args.length; i++) {
             switch (args[i]) {
                 case "-h":
@@ -111,6 +134,18 @@ public class HealthDataSimulator {
                         }
                     }
                     break;
+                case "--executor":
+                    i++; // handled above
+                    break;
+                case "--metrics-port":
+                    if (i + 1 < args.length) {
+                        try {
+                            metricsPort = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Invalid port for metrics. Metrics are only available over JMX.");
+                        }
+                    }
+                    break;
                 case "--output":
                     if (i + 1 < args.length) {
                         String outputArg = args[++i];
@@ -123,6 +158,10 @@ public class HealthDataSimulator {
                                 Files.createDirectories(outputPath);
                             }
                             outputStrategy = new FileOutputStrategy(baseDirectory);
+                        } else if (outputArg.startsWith("binfile:")) {
+                            String baseDirectory = outputArg.substring(8);
+                            Files.createDirectories(Paths.get(baseDirectory));
+                            outputStrategy = new FileOutputStrategy(baseDirectory, true);
                         } else if (outputArg.startsWith("websocket:")) {
                             try {
                                 int port = Integer.parseInt(outputArg.substring(10));
@@ -137,7 +176,8 @@ public class HealthDataSimulator {
                             try {
                                 int port = Integer.parseInt(outputArg.substring(4));
                                 // Initialize your TCP socket output strategy here
-                                outputStrategy = new TcpOutputStrategy(port);
+                                outputStrategy = new TcpOutputStrategy(port,
+                                        executorMode.newThreadFactory("tcp-output-"));
                                 System.out.println("TCP socket output will be on port: " + port);
                             } catch (NumberFormatException e) {
                                 System.err.println("Invalid port for TCP output. Please specify a valid port number.");
@@ -155,15 +195,63 @@ public class HealthDataSimulator {
         }
     }
 
+    /**
+     * Parses the value of {@code --executor}, falling back to platform threads
+     * if the mode is unknown or not supported by the running JVM.
+     *
+     * @param name the name of the mode
+     * @return the mode to use
+     */
+    private static ExecutorMode parseExecutorMode(String name) {
+        ExecutorMode mode;
+        try {
+            mode = ExecutorMode.fromName(name);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown executor '" + name + "'. Using platform threads.");
+            return ExecutorMode.PLATFORM;
+        }
+        if (!mode.isAvailable()) {
+            System.err.println("Virtual threads need Java 21 or newer. Using platform threads.");
+            return ExecutorMode.PLATFORM;
+        }
+        return mode;
+    }
+
+    /**
+     * Registers the metrics with JMX and, if {@code --metrics-port} was given,
+     * serves them as text on that port.
+     */
+    private static void exposeMetrics() {
+        try {
+            MetricsJmx.register(MetricsRegistry.getDefault());
+        } catch (JMException e) {
+            System.err.println("Could not register metrics with JMX: " + e.getMessage());
+        }
+        if (metricsPort >= 0) {
+            try {
+                MetricsHttpServer server = new MetricsHttpServer(MetricsRegistry.getDefault(), metricsPort);
+                System.out.println("Metrics are served at http://localhost:" + server.getPort()
+                        + MetricsHttpServer.PATH);
+            } catch (IOException e) {
+                System.err.println("Could not serve metrics on port " + metricsPort + ": " + e.getMessage());
+            }
+        }
+    }
+
     private static void printHelp() {
         System.out.println("Usage: java HealthDataSimulator [options]");
         System.out.println("Options:");
         System.out.println("  -h                       Show help and exit.");
         System.out.println(
                 "  --patient-count <count>  Specify the number of patients to simulate data for (default: 50).");
+        System.out.println(
+                "  --executor <mode>        Run generators on 'platform' (default) or 'virtual' threads.");
+        System.out.println(
+                "  --metrics-port <port>    Serve metrics as text at http://localhost:<port>/metrics.");
         System.out.println("  --output <type>          Define the output method. Options are:");
         System.out.println("                             'console' for console output,");
         System.out.println("                             'file:<directory>' for file output,");
+        System.out.println("                             'binfile:<directory>' for compact binary file output,");
         System.out.println("                             'websocket:<port>' for WebSocket output,");
         System.out.println("                             'tcp:<port>' for TCP socket output.");
         System.out.println("Example:");
@@ -199,25 +287,38 @@ public class HealthDataSimulator {
         BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount);
         AlertGenerator alertGenerator = new AlertGenerator(patientCount);
 
-        for (int patientId : patientIds) {
-            scheduleTask(() -> ecgDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodSaturationDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodPressureDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.MINUTES);
-            scheduleTask(() -> bloodLevelsDataGenerator.generate(patientId, outputStrategy), 2, TimeUnit.MINUTES);
-            scheduleTask(() -> alertGenerator.generate(patientId, outputStrategy), 20, TimeUnit.SECONDS);
-        }
+        scheduleTask(ecgDataGenerator, patientIds, 1, TimeUnit.SECONDS);
+        scheduleTask(bloodSaturationDataGenerator, patientIds, 1, TimeUnit.SECONDS);
+        scheduleTask(bloodPressureDataGenerator, patientIds, 1, TimeUnit.MINUTES);
+        scheduleTask(bloodLevelsDataGenerator, patientIds, 2, TimeUnit.MINUTES);
+        scheduleTask(alertGenerator, patientIds, 20, TimeUnit.SECONDS);
     }
-    
+
     /**
-     * Schedules a task at a given rate.
-     * 
-     * @param task the task that needs to be scheduled
-     * @param period the interval between the tasks
+     * Schedules a generator for all patients at a given rate. Each patient
+     * gets a random initial delay of fewer than
+     * {@value #MAX_INITIAL_DELAY_TICKS} units of {@code timeUnit}, that is
+     * seconds or minutes depending on the generator, so the patients are
+     * spread over that many phases that the scheduler runs as batches.
+     *
+     * @param generator the generator that needs to be scheduled
+     * @param patientIds the patients to generate data for
+     * @param period the interval between the runs for one patient
      * @param timeUnit the time unit
      */
 
-    private static void scheduleTask(Runnable task, long period, TimeUnit timeUnit) {
-        scheduler.scheduleAtFixedRate(task, random.nextInt(5), period, timeUnit);
+    private static void scheduleTask(PatientDataGenerator generator, List<Integer> patientIds, long period,
+            TimeUnit timeUnit) {
+        int[][] phases = new int[MAX_INITIAL_DELAY_TICKS][patientIds.size()];
+        int[] phaseSizes = new int[MAX_INITIAL_DELAY_TICKS];
+        for (int patientId : patientIds) {
+            int delay = random.nextInt(MAX_INITIAL_DELAY_TICKS);
+            phases[delay][phaseSizes[delay]++] = patientId;
+        }
+        for (int delay = 0; delay < MAX_INITIAL_DELAY_TICKS; delay++) {
+            scheduler.scheduleAtFixedRate(patientId -> generator.generate(patientId, outputStrategy),
+                    Arrays.copyOf(phases[delay], phaseSizes[delay]), delay, period, timeUnit);
+        }
     }
     
     
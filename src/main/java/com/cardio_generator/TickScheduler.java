@@ -0,0 +1,258 @@
+package com.cardio_generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs periodic per-patient tasks from a hashed timing wheel instead of one
+ * timer entry and one thread per task.
+ *
+ * <p>A task is scheduled for a whole batch of patients at once; batches are
+ * split into groups of at most {@value #BATCH_SIZE} patients by default. A single ticker
+ * thread advances the wheel on absolute tick deadlines, so ticks do not drift,
+ * and hands every group that is due to a fixed worker pool, which calls the
+ * task once per patient of the group. The number of threads is therefore fixed
+ * by the pool size, and the timer cost of a tick is proportional to the number
+ * of due groups rather than the number of patients.
+ *
+ * <p>Like {@link java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate},
+ * a group never runs concurrently with itself: if a group is still running
+ * when it is due again, that run is skipped and counted by
+ * {@link #getSkippedRuns()}.
+ */
+public class TickScheduler {
+
+    /** Default largest number of patients handled by one worker task. */
+    public static final int BATCH_SIZE = 1024;
+    private static final int WHEEL_SIZE = 1024;
+
+    private final long tickNanos;
+    private final ExecutorService workers;
+    private final int batchSize;
+    private final List<Group>[] wheel;
+    private final Thread ticker;
+    private final LongAdder skippedRuns = new LongAdder();
+    private volatile boolean running;
+    private volatile long maxLatenessNanos;
+    private long currentTick;
+
+    /**
+     * Creates a scheduler with a worker pool of one platform thread per
+     * available processor.
+     *
+     * @param tick     the length of one tick
+     * @param tickUnit the unit of {@code tick}
+     */
+    public TickScheduler(long tick, TimeUnit tickUnit) {
+        this(tick, tickUnit, ExecutorMode.PLATFORM);
+    }
+
+    /**
+     * Creates a scheduler with the worker pool and batch size of the given
+     * mode.
+     *
+     * @param tick     the length of one tick
+     * @param tickUnit the unit of {@code tick}
+     * @param mode     the kind of threads that run the patient groups
+     */
+    public TickScheduler(long tick, TimeUnit tickUnit, ExecutorMode mode) {
+        this(tick, tickUnit, mode.newWorkerPool("tick-worker-"), mode.getBatchSize());
+    }
+
+    /**
+     * @param tick      the length of one tick
+     * @param tickUnit  the unit of {@code tick}
+     * @param workers   the pool that runs the due patient groups; it is shut
+     *                  down together with the scheduler
+     * @param batchSize the largest number of patients in one group
+     */
+    public TickScheduler(long tick, TimeUnit tickUnit, ExecutorService workers, int batchSize) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tick);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.tickNanos = tickUnit.toNanos(tick);
+        this.workers = workers;
+        this.batchSize = batchSize;
+        // generic arrays cannot be created; every slot is filled with a List<Group> below
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Group>[] slots = new List[WHEEL_SIZE];
+        this.wheel = slots;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        // not a daemon: the ticker keeps the simulator alive, as the old pool threads did
+        ticker = new Thread(this::tickLoop, "tick-scheduler");
+    }
+
+    /**
+     * Schedules a task to run for each of the given patients at a fixed rate.
+     * Delays and periods are rounded up to whole ticks.
+     *
+     * @param task         called with the ID of each patient
+     * @param patientIds   the patients to run the task for
+     * @param initialDelay the delay before the first run
+     * @param period       the interval between runs
+     * @param unit         the unit of {@code initialDelay} and {@code period}
+     */
+    public synchronized void scheduleAtFixedRate(IntConsumer task, int[] patientIds, long initialDelay, long period,
+            TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        long periodTicks = Math.max(1, toTicks(period, unit));
+        long firstTick = currentTick + Math.max(1, toTicks(initialDelay, unit));
+        for (int from = 0; from < patientIds.length; from += batchSize) {
+            int[] ids = Arrays.copyOfRange(patientIds, from, Math.min(patientIds.length, from + batchSize));
+            place(new Group(task, ids, periodTicks), firstTick);
+        }
+    }
+
+    /**
+     * Starts ticking. Runs due at tick {@code n} start {@code n} ticks after
+     * this call.
+     */
+    public void start() {
+        running = true;
+        ticker.start();
+    }
+
+    /**
+     * Stops ticking and shuts the worker pool down, interrupting running
+     * tasks.
+     */
+    public void shutdownNow() {
+        running = false;
+        ticker.interrupt();
+        workers.shutdownNow();
+    }
+
+    /**
+     * @return the number of group runs skipped because the previous run of
+     * the group had not finished
+     */
+    public long getSkippedRuns() {
+        return skippedRuns.sum();
+    }
+
+    /**
+     * @return the largest delay observed between a tick deadline and the
+     * moment the ticker dispatched that tick, in nanoseconds
+     */
+    public long getMaxLatenessNanos() {
+        return maxLatenessNanos;
+    }
+
+    private long toTicks(long duration, TimeUnit unit) {
+        long nanos = unit.toNanos(duration);
+        return (nanos + tickNanos - 1) / tickNanos;
+    }
+
+    // callers hold the monitor
+    private void place(Group group, long tick) {
+        group.rounds = (tick - currentTick - 1) / WHEEL_SIZE;
+        wheel[(int) (tick & (WHEEL_SIZE - 1))].add(group);
+    }
+
+    private void tickLoop() {
+        long start = System.nanoTime();
+        List<Group> due = new ArrayList<>();
+        while (running) {
+            long deadline;
+            synchronized (this) {
+                deadline = start + (currentTick + 1) * tickNanos;
+            }
+            long now;
+            while ((now = System.nanoTime()) < deadline) {
+                LockSupport.parkNanos(deadline - now);
+                if (!running) {
+                    return;
+                }
+            }
+            if (now - deadline > maxLatenessNanos) {
+                maxLatenessNanos = now - deadline;
+            }
+            advance(due);
+            for (Group group : due) {
+                dispatch(group);
+            }
+            due.clear();
+        }
+    }
+
+    /**
+     * Moves to the next tick and collects the groups due at it.
+     */
+    private synchronized void advance(List<Group> due) {
+        currentTick++;
+        List<Group> slot = wheel[(int) (currentTick & (WHEEL_SIZE - 1))];
+        int kept = 0;
+        for (int i = 0; i < slot.size(); i++) {
+            Group group = slot.get(i);
+            if (group.rounds > 0) {
+                group.rounds--;
+                slot.set(kept++, group);
+            } else {
+                due.add(group);
+            }
+        }
+        slot.subList(kept, slot.size()).clear();
+        for (Group group : due) {
+            place(group, currentTick + group.periodTicks);
+        }
+    }
+
+    private void dispatch(Group group) {
+        if (!group.running.compareAndSet(false, true)) {
+            skippedRuns.increment();
+            return;
+        }
+        try {
+            workers.execute(group);
+        } catch (RuntimeException e) {
+            group.running.set(false);
+            if (running) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * One task and up to a batch of patients that share a period and a
+     * phase.
+     */
+    private static class Group implements Runnable {
+
+        final IntConsumer task;
+        final int[] patientIds;
+        final long periodTicks;
+        final AtomicBoolean running = new AtomicBoolean();
+        long rounds;
+
+        Group(IntConsumer task, int[] patientIds, long periodTicks) {
+            this.task = task;
+            this.patientIds = patientIds;
+            this.periodTicks = periodTicks;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int patientId : patientIds) {
+                    task.accept(patientId);
+                }
+            } finally {
+                running.set(false);
+            }
+        }
+    }
+}
@@ -1,52 +1,387 @@
 package com.cardio_generator.outputs;
 
+import com.data_management.BinaryRecordFormat;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 /**
- *Class for writing patient data to files    
+ *Class for writing patient data to files
+ *
+ * <p>Every label file is opened once and kept open. {@link #output} only
+ * queues the sample on a bounded queue; a dedicated writer thread drains the
+ * queue in batches, formats the samples into per-file buffers and writes a
+ * buffer out when it fills up or at the latest every
+ * {@value #FLUSH_INTERVAL_MS} ms. When the queue is full, {@link #output}
+ * blocks until the writer catches up, or drops the sample if the writer
+ * thread has stopped. A sample that cannot be written is reported and
+ * skipped. {@link #close()} writes everything still queued and closes the
+ * files.
  * @author Jack
  */
 
 //filenames should be in UpperCamelCase (starting letter in uppercase)
 public class FileOutputStrategy implements OutputStrategy {
-    
+
+    /** Number of samples that may wait for the writer thread. */
+    public static final int QUEUE_CAPACITY = 64 * 1024;
+    /** Longest time a written sample may stay in a buffer. */
+    public static final long FLUSH_INTERVAL_MS = 100;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BATCH = 4096;
+
 //variable names should be in lowerCamelCase (starting letter in lowercase)
     private String baseDirectory;
+    private final boolean binary;
     public final ConcurrentHashMap<String, String> fileMap = new ConcurrentHashMap<>();
-    
+    private final BlockingQueue<Sample> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // only touched by the writer thread, keyed by the paths in fileMap
+    private final Map<String, LabelFile> files = new HashMap<>();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
     /**
-     * 
+     * Creates a strategy that writes one text line per sample.
+     *
      * @param baseDirectory directory where the outputs will be stored
      */
     public FileOutputStrategy(String baseDirectory) {
+        this(baseDirectory, false);
+    }
+
+    /**
+     * Creates a strategy that writes text lines or, in binary mode, fixed-width
+     * records in the {@link BinaryRecordFormat} layout. Samples whose data is
+     * not numeric, such as alert states, are not written in binary mode.
+     *
+     * @param baseDirectory directory where the outputs will be stored
+     * @param binary whether to write binary records instead of text lines
+     */
+    public FileOutputStrategy(String baseDirectory, boolean binary) {
 
         this.baseDirectory = baseDirectory;
+        this.binary = binary;
+        writerThread = new Thread(this::writeLoop, "file-output-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
     }
-    
+
     //see interface for description
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
+        if (closed) {
+            System.err.println("File output is closed, dropping sample for patient " + patientId);
+            return;
+        }
         try {
-            // Create the directory
-            Files.createDirectories(Paths.get(baseDirectory));
-        } catch (IOException e) {
-            System.err.println("Error creating base directory: " + e.getMessage());
+            if (!enqueue(new Sample(patientId, timestamp, label, data))) {
+                System.err.println("File output writer stopped, dropping sample for patient " + patientId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Blocks until every sample queued before the call has been written to
+     * its file.
+     */
+    public void flush() {
+        if (closed) {
             return;
         }
+        CountDownLatch written = new CountDownLatch(1);
+        try {
+            if (!enqueue(new Sample(written))) {
+                return;
+            }
+            while (!written.await(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                if (!writerThread.isAlive()) {
+                    return; // closed concurrently
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes every queued sample, then closes the files and stops the writer
+     * thread. Samples passed to {@link #output} afterwards are dropped.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        // no interrupt: it would close the file channel the writer is using;
+        // the writer notices within one flush interval
+        closed = true;
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a sample, waiting for space while the writer thread runs.
+     *
+     * @return whether the sample was queued
+     */
+    private boolean enqueue(Sample sample) throws InterruptedException {
+        while (!queue.offer(sample, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            if (!writerThread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeLoop() {
+        List<Sample> batch = new ArrayList<>(MAX_BATCH);
+        long lastFlush = System.nanoTime();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Sample first = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+            } catch (InterruptedException e) {
+                queue.drainTo(batch, MAX_BATCH);
+            }
+            for (Sample sample : batch) {
+                if (sample.written != null) {
+                    flushAll();
+                    lastFlush = System.nanoTime();
+                    sample.written.countDown();
+                } else {
+                    try {
+                        write(sample);
+                    } catch (RuntimeException e) {
+                        System.err.println("Error writing sample for patient " + sample.patientId + ": " + e);
+                    }
+                }
+            }
+            batch.clear();
+            if (System.nanoTime() - lastFlush >= TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS)) {
+                flushAll();
+                lastFlush = System.nanoTime();
+            }
+        }
+        for (LabelFile file : files.values()) {
+            file.close();
+        }
+        files.clear();
+        // release flush() callers that raced with close()
+        for (Sample sample; (sample = queue.poll()) != null; ) {
+            if (sample.written != null) {
+                sample.written.countDown();
+            }
+        }
+    }
+
+    private void write(Sample sample) {
         // Set the FilePath variable
         //variable names lowerCamelCase
-        String filePath = fileMap.computeIfAbsent(label, k -> Paths.get(baseDirectory, label + ".txt").toString());
-
-        // Write the data to the file
-        try (PrintWriter out = new PrintWriter(
-                Files.newBufferedWriter(Paths.get(filePath), StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
-            out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n", patientId, timestamp, label, data);
-        } catch (Exception e) {
+        String extension = binary ? BinaryRecordFormat.FILE_EXTENSION : ".txt";
+        String filePath = fileMap.computeIfAbsent(sample.label,
+                k -> Paths.get(baseDirectory, sample.label + extension).toString());
+        LabelFile file = files.get(filePath);
+        if (file == null) {
+            try {
+                file = binary ? new BinaryFile(Paths.get(filePath)) : new TextFile(Paths.get(filePath));
+            } catch (IOException e) {
+                System.err.println("Error opening file " + filePath + ": " + e.getMessage());
+                return;
+            }
+            files.put(filePath, file);
+        }
+        try {
+            file.write(sample);
+        } catch (IOException e) {
             System.err.println("Error writing to file " + filePath + ": " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private void flushAll() {
+        for (LabelFile file : files.values()) {
+            file.flush();
+        }
+    }
+
+    /**
+     * A sample waiting for the writer thread, or a flush marker.
+     */
+    private static final class Sample {
+
+        final int patientId;
+        final long timestamp;
+        final String label;
+        final String data;
+        final CountDownLatch written;
+
+        Sample(int patientId, long timestamp, String label, String data) {
+            this(patientId, timestamp, label, data, null);
+        }
+
+        Sample(CountDownLatch written) {
+            this(0, 0, null, null, written);
+        }
+
+        private Sample(int patientId, long timestamp, String label, String data, CountDownLatch written) {
+            this.patientId = patientId;
+            this.timestamp = timestamp;
+            this.label = label;
+            this.data = data;
+            this.written = written;
+        }
+    }
+
+    /**
+     * An open label file with its write buffer.
+     */
+    private abstract static class LabelFile {
+
+        final Path path;
+
+        LabelFile(Path path) throws IOException {
+            this.path = path;
+            // Create the directory; a relative path of a bare file name has none
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+        }
+
+        abstract void write(Sample sample) throws IOException;
+
+        abstract void flushBuffer() throws IOException;
+
+        abstract void closeFile() throws IOException;
+
+        void flush() {
+            try {
+                flushBuffer();
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + path + ": " + e.getMessage());
+            }
+        }
+
+        void close() {
+            flush();
+            try {
+                closeFile();
+            } catch (IOException e) {
+                System.err.println("Error closing file " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class TextFile extends LabelFile {
+
+        private final Writer out;
+
+        TextFile(Path path) throws IOException {
+            super(path);
+            out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND), StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        @Override
+        void write(Sample sample) throws IOException {
+            // Write the data to the file
+            out.write("Patient ID: ");
+            out.write(Integer.toString(sample.patientId));
+            out.write(", Timestamp: ");
+            out.write(Long.toString(sample.timestamp));
+            out.write(", Label: ");
+            out.write(String.valueOf(sample.label));
+            out.write(", Data: ");
+            out.write(String.valueOf(sample.data));
+            out.write(System.lineSeparator());
+        }
+
+        @Override
+        void flushBuffer() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        void closeFile() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class BinaryFile extends LabelFile {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        BinaryFile(Path path) throws IOException {
+            super(path);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            if (channel.size() == 0) {
+                BinaryRecordFormat.writeHeader(buffer);
+            }
+        }
+
+        /**
+         * Buffers one binary record; samples that cannot be written in binary
+         * form are skipped.
+         */
+        @Override
+        void write(Sample sample) throws IOException {
+            int labelId = BinaryRecordFormat.labelId(sample.label);
+            if (labelId < 0) {
+                return;
+            }
+            String data = sample.data;
+            if (data == null) {
+                return;
+            }
+            double value;
+            try {
+                value = Double.parseDouble(data.endsWith("%") ? data.substring(0, data.length() - 1) : data);
+            } catch (NumberFormatException e) {
+                return; // not a measurement
+            }
+            if (buffer.remaining() < BinaryRecordFormat.RECORD_SIZE) {
+                flushBuffer();
+            }
+            BinaryRecordFormat.writeRecord(buffer, sample.patientId, sample.timestamp, labelId, value);
+        }
+
+        @Override
+        void flushBuffer() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        void closeFile() throws IOException {
+            channel.close();
+        }
+    }
+}
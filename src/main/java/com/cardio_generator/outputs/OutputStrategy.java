@@ -17,4 +17,11 @@ public interface OutputStrategy {
      * @param data the data that is being output
      */
     void output(int patientId, long timestamp, String label, String data);
+
+    /**
+     * Releases the resources held by the strategy, delivering any output
+     * that is still buffered. The default implementation does nothing.
+     */
+    default void close() {
+    }
 }
@@ -0,0 +1,17 @@
+package com.cardio_generator.outputs;
+
+/**
+ * What a network output does with a new message when a client's buffer is
+ * full because the client reads slower than the simulator produces.
+ */
+public enum OverflowPolicy {
+
+    /** Discard the oldest message that has not started sending yet. */
+    DROP_OLDEST,
+
+    /** Discard the new message. */
+    DROP_NEWEST,
+
+    /** Disconnect the client. */
+    DISCONNECT
+}
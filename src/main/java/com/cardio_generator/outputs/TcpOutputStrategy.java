@@ -1,55 +1,458 @@
 package com.cardio_generator.outputs;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Class which is used for sending patient data via sockets
  * Patient data is formatted as a string containing the patient ID, timestamp, label, and data
- * 
+ *
+ * <p>A single selector thread serves any number of clients with non-blocking
+ * I/O. {@link #output} encodes each message once and appends the same frame to
+ * the bounded ring buffer of every client; the selector thread sends the
+ * buffered frames of a client with gathered writes whenever its socket can
+ * take more. A client that reads slower than the simulator produces fills its
+ * ring, and the {@link OverflowPolicy} decides what happens next. The
+ * generator thread calling {@link #output} never waits for a socket.
+ *
  * @author Jack
  */
 
 public class TcpOutputStrategy implements OutputStrategy {
 
-    private ServerSocket serverSocket;
-    private Socket clientSocket;
-    private PrintWriter out;
-    
+    /** Default number of frames buffered for one client. */
+    public static final int DEFAULT_CLIENT_CAPACITY = 8192;
+    /** Largest number of frames passed to one gathered write. */
+    private static final int MAX_GATHER = 64;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final OverflowPolicy overflowPolicy;
+    private final int clientCapacity;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final Queue<Client> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final LongAdder droppedMessages = new LongAdder();
+    private volatile boolean closed;
+
     /**
      * Constructs the TCP output strategy with a given port
-     * 
+     *
      * @param port the port on which the TCP server will listen for connections
      */
 
     public TcpOutputStrategy(int port) {
+        this(port, daemonThreads());
+    }
+
+    /**
+     * Constructs the TCP output strategy with a given port, dropping the newest
+     * messages of clients that fall behind.
+     *
+     * @param port the port on which the TCP server will listen for connections
+     * @param threads creates the selector thread
+     */
+    public TcpOutputStrategy(int port, ThreadFactory threads) {
+        this(port, threads, OverflowPolicy.DROP_NEWEST, DEFAULT_CLIENT_CAPACITY);
+    }
+
+    /**
+     * Constructs the TCP output strategy.
+     *
+     * @param port the port on which the TCP server will listen for connections,
+     * or 0 for any free port
+     * @param threads creates the selector thread
+     * @param overflowPolicy what to do when a client's buffer is full
+     * @param clientCapacity the number of frames buffered for one client
+     */
+    public TcpOutputStrategy(int port, ThreadFactory threads, OverflowPolicy overflowPolicy, int clientCapacity) {
+        if (clientCapacity <= 0) {
+            throw new IllegalArgumentException("Client capacity must be positive: " + clientCapacity);
+        }
+        this.overflowPolicy = overflowPolicy;
+        this.clientCapacity = clientCapacity;
+        ServerSocketChannel channel = null;
+        Selector openedSelector = null;
         try {
-            serverSocket = new ServerSocket(port);
-            System.out.println("TCP Server started on port " + port);
-
-            // Accept clients in a new thread to not block the main thread
-            Executors.newSingleThreadExecutor().submit(() -> {
-                try {
-                    clientSocket = serverSocket.accept();
-                    out = new PrintWriter(clientSocket.getOutputStream(), true);
-                    System.out.println("Client connected: " + clientSocket.getInetAddress());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
+            openedSelector = Selector.open();
+            channel = ServerSocketChannel.open();
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            channel.register(openedSelector, SelectionKey.OP_ACCEPT);
+            System.out.println("TCP Server started on port " + ((InetSocketAddress) channel.getLocalAddress()).getPort());
         } catch (IOException e) {
             e.printStackTrace();
+            closed = true;
+        }
+        this.serverChannel = channel;
+        this.selector = openedSelector;
+        if (!closed) {
+            // Serve clients in a new thread to not block the main thread
+            threads.newThread(this::selectLoop).start();
         }
     }
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        if (out != null) {
-            String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-            out.println(message);
+        if (clients.isEmpty()) {
+            return;
+        }
+        byte[] frame = (patientId + "," + timestamp + "," + label + "," + data + System.lineSeparator())
+                .getBytes(StandardCharsets.UTF_8);
+        long now = System.nanoTime();
+        for (Client client : clients) {
+            client.enqueue(frame, now);
+        }
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return serverChannel == null ? -1 : serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return the number of connected clients
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * @return the number of messages dropped for all clients, including
+     * clients that have disconnected
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    /**
+     * @return the current backlog and counters of every connected client
+     */
+    public List<ClientStats> getClientStats() {
+        List<ClientStats> stats = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Client client : clients) {
+            stats.add(client.stats(now));
+        }
+        return stats;
+    }
+
+    /**
+     * Stops accepting clients and disconnects the connected ones.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    private void selectLoop() {
+        try {
+            while (!closed) {
+                selector.select();
+                for (Client client; (client = pendingWrites.poll()) != null; ) {
+                    flush(client);
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        if (key.isReadable()) {
+                            discardInput(client);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(client);
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) {
+                e.printStackTrace();
+            }
+        } finally {
+            for (Client client : clients) {
+                disconnect(client);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        Client client = new Client(channel, channel.getRemoteAddress());
+        client.key = channel.register(selector, SelectionKey.OP_READ, client);
+        clients.add(client);
+        System.out.println("Client connected: " + client.address);
+    }
+
+    /**
+     * Clients do not send anything; reading only detects disconnects.
+     */
+    private void discardInput(Client client) {
+        ByteBuffer scratch = ByteBuffer.allocate(256);
+        try {
+            int read;
+            while ((read = client.channel.read(scratch)) > 0) {
+                scratch.clear();
+            }
+            if (read < 0) {
+                disconnect(client);
+            }
+        } catch (IOException e) {
+            disconnect(client);
+        }
+    }
+
+    /**
+     * Sends buffered frames until the client's ring is empty or its socket is
+     * full. Runs on the selector thread only.
+     */
+    private void flush(Client client) {
+        if (!client.key.isValid()) {
+            return;
+        }
+        try {
+            while (true) {
+                if (client.sendHead == client.sendCount && !client.stage()) {
+                    client.key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                long written = client.channel.write(client.sending, client.sendHead, client.sendCount - client.sendHead);
+                client.sentBytes.add(written);
+                while (client.sendHead < client.sendCount && !client.sending[client.sendHead].hasRemaining()) {
+                    client.sending[client.sendHead++] = null;
+                }
+                if (client.sendHead < client.sendCount) {
+                    // socket buffer full, continue when it drains
+                    client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            disconnect(client);
+        }
+    }
+
+    private void disconnect(Client client) {
+        if (clients.remove(client)) {
+            System.out.println("Client disconnected: " + client.address);
+        }
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "tcp-output-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A connected client: a ring of frames filled by {@link #output} and a
+     * batch of frames the selector thread is sending.
+     */
+    private class Client {
+
+        final SocketChannel channel;
+        final SocketAddress address;
+        SelectionKey key;
+
+        // ring, guarded by this
+        private final byte[][] frames = new byte[clientCapacity][];
+        private final long[] enqueuedAt = new long[clientCapacity];
+        private int head;
+        private int size;
+        private boolean flushScheduled;
+        private long oldestSendingEnqueuedAt;
+
+        // batch being sent, selector thread only
+        final ByteBuffer[] sending = new ByteBuffer[MAX_GATHER];
+        int sendHead;
+        int sendCount;
+
+        final LongAdder sentBytes = new LongAdder();
+        final LongAdder sentFrames = new LongAdder();
+        final LongAdder droppedFrames = new LongAdder();
+
+        Client(SocketChannel channel, SocketAddress address) {
+            this.channel = channel;
+            this.address = address;
+        }
+
+        void enqueue(byte[] frame, long now) {
+            boolean wakeUp = false;
+            boolean overflow = false;
+            synchronized (this) {
+                if (size == frames.length) {
+                    overflow = true;
+                    if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                        head = (head + 1) % frames.length;
+                        size--;
+                    }
+                }
+                if (!overflow || overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                    int tail = (head + size) % frames.length;
+                    frames[tail] = frame;
+                    enqueuedAt[tail] = now;
+                    size++;
+                }
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    wakeUp = true;
+                }
+            }
+            if (overflow) {
+                droppedFrames.increment();
+                droppedMessages.increment();
+                if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    disconnect(this);
+                    return;
+                }
+            }
+            if (wakeUp) {
+                pendingWrites.add(this);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Moves frames from the ring into the send batch.
+         *
+         * @return whether there is anything to send
+         */
+        synchronized boolean stage() {
+            int count = Math.min(size, MAX_GATHER);
+            if (count == 0) {
+                flushScheduled = false;
+                oldestSendingEnqueuedAt = 0;
+                return false;
+            }
+            oldestSendingEnqueuedAt = enqueuedAt[head];
+            for (int i = 0; i < count; i++) {
+                sending[i] = ByteBuffer.wrap(frames[head]);
+                frames[head] = null;
+                head = (head + 1) % frames.length;
+            }
+            size -= count;
+            sendHead = 0;
+            sendCount = count;
+            sentFrames.add(count);
+            return true;
+        }
+
+        synchronized ClientStats stats(long now) {
+            long oldest = oldestSendingEnqueuedAt != 0 ? oldestSendingEnqueuedAt : size > 0 ? enqueuedAt[head] : 0;
+            long lagNanos = oldest == 0 ? 0 : now - oldest;
+            return new ClientStats(String.valueOf(address), size, sentFrames.sum(), sentBytes.sum(),
+                    droppedFrames.sum(), TimeUnit.NANOSECONDS.toMillis(lagNanos));
+        }
+    }
+
+    /**
+     * Backlog and counters of one client at the time they were taken.
+     */
+    public static final class ClientStats {
+
+        private final String address;
+        private final int queuedFrames;
+        private final long sentFrames;
+        private final long sentBytes;
+        private final long droppedFrames;
+        private final long lagMillis;
+
+        ClientStats(String address, int queuedFrames, long sentFrames, long sentBytes, long droppedFrames,
+                long lagMillis) {
+            this.address = address;
+            this.queuedFrames = queuedFrames;
+            this.sentFrames = sentFrames;
+            this.sentBytes = sentBytes;
+            this.droppedFrames = droppedFrames;
+            this.lagMillis = lagMillis;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        /**
+         * @return the number of frames waiting in the client's ring
+         */
+        public int getQueuedFrames() {
+            return queuedFrames;
+        }
+
+        /**
+         * @return the number of frames handed to the socket, the last batch
+         * possibly only in part
+         */
+        public long getSentFrames() {
+            return sentFrames;
+        }
+
+        public long getSentBytes() {
+            return sentBytes;
+        }
+
+        public long getDroppedFrames() {
+            return droppedFrames;
+        }
+
+        /**
+         * @return the age of the oldest frame not yet fully sent, in
+         * milliseconds, or 0 if the client is caught up
+         */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d queued, %d sent (%d bytes), %d dropped, %d ms behind",
+                    address, queuedFrames, sentFrames, sentBytes, droppedFrames, lagMillis);
         }
     }
 }
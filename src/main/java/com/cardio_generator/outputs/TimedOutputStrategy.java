@@ -0,0 +1,36 @@
+package com.cardio_generator.outputs;
+
+import com.metrics.Histogram;
+import com.metrics.MetricsRegistry;
+
+/**
+ * Records the time every {@link OutputStrategy#output} call of another
+ * strategy takes, in the {@code output.<strategy>.nanos} histogram of the
+ * default {@link MetricsRegistry}, e.g. {@code output.FileOutputStrategy.nanos}.
+ */
+public class TimedOutputStrategy implements OutputStrategy {
+
+    private final OutputStrategy delegate;
+    private final Histogram writeNanos;
+
+    /**
+     * @param delegate the strategy whose writes are timed
+     */
+    public TimedOutputStrategy(OutputStrategy delegate) {
+        this.delegate = delegate;
+        this.writeNanos = MetricsRegistry.getDefault()
+                .histogram("output." + delegate.getClass().getSimpleName() + ".nanos");
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        long start = System.nanoTime();
+        delegate.output(patientId, timestamp, label, data);
+        writeNanos.recordSince(start);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -4,41 +4,141 @@ import org.java_websocket.WebSocket;
 import org.java_websocket.server.WebSocketServer;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-    
+/**
+ * Streams samples to every connected WebSocket client as
+ * {@code id,timestamp,label,data} lines.
+ *
+ * <p>Samples are coalesced: the lines produced within one batch window are
+ * joined with {@code '\n'} into a single text message, which is framed once
+ * and broadcast to all connections. A window of 0 sends every sample as its
+ * own message, still framed once for all connections.
+ */
 public class WebSocketOutputStrategy implements OutputStrategy {
 
-    private WebSocketServer server;
+    /** Default time samples are coalesced before they are broadcast. */
+    public static final long DEFAULT_BATCH_WINDOW_MS = 10;
+    /** A batch this long is broadcast without waiting for the window to end. */
+    private static final int MAX_BATCH_CHARS = 64 * 1024;
+
+    private final SimpleWebSocketServer server;
+    private final long batchWindowMillis;
+    private final ScheduledExecutorService flusher;
+    private final Object batchLock = new Object();
+    private StringBuilder batch = new StringBuilder();
 
   public WebSocketOutputStrategy(int port) {
-   
-    server = new SimpleWebSocketServer(new InetSocketAddress(port));
-    System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
-    server.start();
-}
+    this(port, DEFAULT_BATCH_WINDOW_MS);
+  }
+
+    /**
+     * @param port the port the WebSocket server listens on
+     * @param batchWindowMillis how long samples are coalesced into one
+     * message, or 0 to send each sample on its own
+     */
+    public WebSocketOutputStrategy(int port, long batchWindowMillis) {
+        if (batchWindowMillis < 0) {
+            throw new IllegalArgumentException("Batch window must not be negative: " + batchWindowMillis);
+        }
+        this.batchWindowMillis = batchWindowMillis;
+        server = new SimpleWebSocketServer(new InetSocketAddress(port));
+        System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
+        server.start();
+        if (batchWindowMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "websocket-batcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleAtFixedRate(this::flush, batchWindowMillis, batchWindowMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-        // Broadcast the message to all connected clients
-        for (WebSocket conn : server.getConnections()) {
-            conn.send(message);
+        if (server.openConnections.get() == 0) {
+            return;
+        }
+        String message = patientId + "," + timestamp + "," + label + "," + data;
+        if (batchWindowMillis == 0) {
+            server.broadcast(message);
+            return;
+        }
+        String full = null;
+        synchronized (batchLock) {
+            if (batch.length() > 0) {
+                batch.append('\n');
+            }
+            batch.append(message);
+            if (batch.length() >= MAX_BATCH_CHARS) {
+                full = takeBatch();
+            }
+        }
+        if (full != null) {
+            server.broadcast(full);
         }
     }
 
+    /**
+     * Broadcasts the samples coalesced so far.
+     */
+    public void flush() {
+        String pending;
+        synchronized (batchLock) {
+            pending = batch.length() == 0 ? null : takeBatch();
+        }
+        if (pending != null) {
+            server.broadcast(pending);
+        }
+    }
+
+    /**
+     * Sends the last batch and stops the server.
+     */
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        flush();
+        try {
+            server.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // callers hold batchLock
+    private String takeBatch() {
+        String text = batch.toString();
+        batch = new StringBuilder(Math.max(16, text.length()));
+        return text;
+    }
+
     private static class SimpleWebSocketServer extends WebSocketServer {
 
+        // getConnections() copies the connection set, too costly to check per sample
+        final AtomicInteger openConnections = new AtomicInteger();
+
         public SimpleWebSocketServer(InetSocketAddress address) {
             super(address);
         }
 
         @Override
         public void onOpen(WebSocket conn, org.java_websocket.handshake.ClientHandshake handshake) {
+            openConnections.incrementAndGet();
             System.out.println("New connection: " + conn.getRemoteSocketAddress());
         }
 
         @Override
         public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            openConnections.updateAndGet(count -> Math.max(0, count - 1));
             System.out.println("Closed connection: " + conn.getRemoteSocketAddress());
         }
 
@@ -0,0 +1,124 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of the binary sample files written by {@code FileOutputStrategy} in
+ * binary mode and read back by {@link FileDataReader}.
+ *
+ * <p>A file starts with a header:
+ * <pre>
+ * int    magic            0x43484D53 ("CHMS")
+ * short  version          1
+ * short  record size      22
+ * short  label count      n
+ * n x    (short length, UTF-8 bytes)   label dictionary, ids 0..n-1
+ * </pre>
+ * followed by fixed-width records:
+ * <pre>
+ * int    patient ID
+ * long   timestamp
+ * short  label dictionary id
+ * double measurement value
+ * </pre>
+ * All numbers are big-endian. The dictionary is stored in every file, so a
+ * reader never depends on the label table of the writer that produced it.
+ */
+public final class BinaryRecordFormat {
+
+    /** Extension of binary sample files. */
+    public static final String FILE_EXTENSION = ".bin";
+    public static final int MAGIC = 0x43484D53;
+    public static final short VERSION = 1;
+    public static final int RECORD_SIZE = 4 + 8 + 2 + 8;
+
+    /** Labels with a numeric value; their ids are their {@link RecordTypes} codes. */
+    private static final String[] LABELS = labels(RecordTypes.RED_BLOOD_CELLS + 1);
+
+    private BinaryRecordFormat() {
+    }
+
+    /**
+     * @param label a record type label
+     * @return the dictionary id of the label, or -1 if the label cannot be
+     * written in binary form
+     */
+    public static int labelId(String label) {
+        int code = RecordTypes.find(label);
+        return code < LABELS.length ? code : -1;
+    }
+
+    private static String[] labels(int count) {
+        String[] labels = new String[count];
+        for (int code = 0; code < count; code++) {
+            labels[code] = RecordTypes.label(code);
+        }
+        return labels;
+    }
+
+    /**
+     * @return the number of bytes taken by the header
+     */
+    public static int headerSize() {
+        int size = 4 + 2 + 2 + 2;
+        for (String label : LABELS) {
+            size += 2 + label.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the file header, including the label dictionary.
+     *
+     * @param buffer the buffer to write to, with at least
+     * {@link #headerSize()} bytes remaining
+     */
+    public static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) RECORD_SIZE);
+        buffer.putShort((short) LABELS.length);
+        for (String label : LABELS) {
+            byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * Writes one record.
+     */
+    public static void writeRecord(ByteBuffer buffer, int patientId, long timestamp, int labelId, double value) {
+        buffer.putInt(patientId);
+        buffer.putLong(timestamp);
+        buffer.putShort((short) labelId);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Reads and validates a file header.
+     *
+     * @param buffer the buffer positioned at the start of the file
+     * @return the label dictionary of the file, indexed by label id
+     * @throws IOException if the header is not a valid header of this format
+     */
+    public static String[] readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 10 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary sample file");
+        }
+        short version = buffer.getShort();
+        short recordSize = buffer.getShort();
+        if (version != VERSION || recordSize != RECORD_SIZE) {
+            throw new IOException("Unsupported binary sample file version " + version);
+        }
+        String[] labels = new String[buffer.getShort()];
+        for (int i = 0; i < labels.length; i++) {
+            byte[] bytes = new byte[buffer.getShort()];
+            buffer.get(bytes);
+            labels[i] = new String(bytes, StandardCharsets.UTF_8).intern();
+        }
+        return labels;
+    }
+}
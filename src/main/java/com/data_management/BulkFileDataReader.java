@@ -0,0 +1,309 @@
+package com.data_management;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulk-load counterpart of {@link FileDataReader} for large histories written
+ * by {@code FileOutputStrategy}. Every {@code .txt} file in the directory is
+ * memory-mapped and split into newline-aligned chunks that are parsed in
+ * parallel on a {@link ForkJoinPool} into one {@link SampleBatch} each. The
+ * chunks of one file are inserted into the storage in file order, so each series keeps receiving samples in
+ * timestamp order, while different files are inserted concurrently.
+ *
+ * <p>Lines are not echoed; instead the reader prints its progress about once
+ * per second and a summary when it is done, which is also available from
+ * {@link #getLastReport()}.
+ */
+public class BulkFileDataReader implements DataReader {
+
+    /** Default number of bytes parsed by one task. */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+    /** Longest line that may cross a chunk boundary. */
+    private static final int MAX_LINE_LENGTH = 4096;
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    private final String directoryPath;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private volatile Report lastReport;
+
+    /**
+     * Creates a reader that uses the common pool and the default chunk size.
+     *
+     * @param directoryPath the directory holding the {@code .txt} files
+     */
+    public BulkFileDataReader(String directoryPath) {
+        this(directoryPath, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param directoryPath the directory holding the {@code .txt} files
+     * @param pool          the pool that parses and inserts the chunks
+     * @param chunkSize     the number of bytes parsed by one task
+     */
+    public BulkFileDataReader(String directoryPath, ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.directoryPath = directoryPath;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Loads all {@code .txt} files of the directory into the storage and
+     * returns once every sample has been inserted.
+     *
+     * @param dataStorage the storage where the parsed data will be stored
+     * @throws IOException if the path is not a directory or a file cannot be
+     * read
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        File dir = new File(directoryPath);
+        if (!dir.isDirectory()) {
+            throw new IOException("The provided path is not a directory: " + directoryPath);
+        }
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".txt"));
+        if (files == null) {
+            throw new IOException("Failed to list files in directory: " + directoryPath);
+        }
+
+        long startTime = System.nanoTime();
+        Progress progress = new Progress();
+        long totalBytes = 0;
+        List<CompletableFuture<Void>> fileLoads = new ArrayList<>();
+        for (File file : files) {
+            long size = file.length();
+            totalBytes += size;
+            CompletableFuture<Void> inserted = CompletableFuture.completedFuture(null);
+            for (long start = 0; start < size; start += chunkSize) {
+                Chunk chunk = new Chunk(file, start, Math.min(size, start + chunkSize), size);
+                CompletableFuture<SampleBatch> parsed = CompletableFuture.supplyAsync(() -> chunk.parse(progress), pool);
+                // insert strictly after the previous chunk of the same file
+                inserted = inserted.thenCombineAsync(parsed, (previous, samples) -> {
+                    dataStorage.addPatientData(samples);
+                    progress.samples.add(samples.size());
+                    return null;
+                }, pool);
+            }
+            fileLoads.add(inserted);
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(fileLoads.toArray(new CompletableFuture<?>[0]));
+        awaitWithProgress(all, progress, totalBytes);
+
+        lastReport = new Report(files.length, totalBytes, progress.lines.sum(), progress.samples.sum(),
+                progress.errors.sum(), System.nanoTime() - startTime);
+        FileDataReader.PARSE_ERRORS.add(lastReport.getErrors());
+        System.out.println(lastReport);
+    }
+
+    /**
+     * @return the summary of the last completed load, or {@code null} if no
+     * load has completed yet
+     */
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    private static void awaitWithProgress(CompletableFuture<Void> all, Progress progress, long totalBytes)
+            throws IOException {
+        while (true) {
+            try {
+                all.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                long bytes = progress.bytes.get();
+                System.out.printf("Loaded %.1f of %.1f MB (%d%%), %d samples%n", bytes / 1e6, totalBytes / 1e6,
+                        totalBytes == 0 ? 100 : bytes * 100 / totalBytes, progress.samples.sum());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading " + totalBytes + " bytes", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedLoadException) {
+                    throw ((UncheckedLoadException) cause).getCause();
+                }
+                throw new IOException("Bulk load failed", cause);
+            }
+        }
+    }
+
+    /**
+     * Counters shared by all tasks of one load.
+     */
+    private static class Progress {
+
+        final AtomicLong bytes = new AtomicLong();
+        final LongAdder lines = new LongAdder();
+        final LongAdder samples = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    /**
+     * A byte range of a file. The chunk owns every line that starts inside
+     * the range, including a last line that ends past it.
+     */
+    private static class Chunk {
+
+        private final File file;
+        private final long start;
+        private final long end;
+        private final long fileSize;
+
+        Chunk(File file, long start, long end, long fileSize) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.fileSize = fileSize;
+        }
+
+        SampleBatch parse(Progress progress) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                // map one byte before the range to find the first line start, and
+                // enough bytes after it to finish the last line
+                long mapStart = start == 0 ? 0 : start - 1;
+                long mapEnd = Math.min(fileSize, end + MAX_LINE_LENGTH);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+                int rangeEnd = (int) (end - mapStart);
+                int limit = buffer.limit();
+
+                int position = 0;
+                if (start > 0) {
+                    while (position < limit && buffer.get(position) != '\n') {
+                        position++;
+                    }
+                    position++;
+                }
+
+                SampleBatch parsed = new SampleBatch((int) Math.min(end - start, Integer.MAX_VALUE) / 48 + 16);
+                SampleParser parser = new SampleParser();
+                while (position < rangeEnd && position < limit) {
+                    int lineEnd = position;
+                    while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                        lineEnd++;
+                    }
+                    int contentEnd = lineEnd;
+                    if (contentEnd > position && buffer.get(contentEnd - 1) == '\r') {
+                        contentEnd--;
+                    }
+                    if (contentEnd > position) {
+                        progress.lines.increment();
+                        if (lineEnd == limit && mapEnd < fileSize) {
+                            progress.errors.increment(); // longer than MAX_LINE_LENGTH
+                        } else if (parser.parse(buffer, position, contentEnd)) {
+                            parsed.add(parser);
+                        } else {
+                            progress.errors.increment();
+                        }
+                    }
+                    position = lineEnd + 1;
+                }
+                progress.bytes.addAndGet(end - start);
+                return parsed;
+            } catch (IOException e) {
+                throw new UncheckedLoadException(new IOException("Error reading file: " + file.getAbsolutePath(), e));
+            }
+        }
+    }
+
+    /**
+     * Carries an {@link IOException} out of a pool task.
+     */
+    private static class UncheckedLoadException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        UncheckedLoadException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Summary of one bulk load.
+     */
+    public static final class Report {
+
+        private final int files;
+        private final long bytes;
+        private final long lines;
+        private final long samples;
+        private final long errors;
+        private final long elapsedNanos;
+
+        Report(int files, long bytes, long lines, long samples, long errors, long elapsedNanos) {
+            this.files = files;
+            this.bytes = bytes;
+            this.lines = lines;
+            this.samples = samples;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        /**
+         * @return the number of lines that could not be parsed
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return the load rate in megabytes per second
+         */
+        public double getMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes / 1e6 / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * @return the number of samples stored per second
+         */
+        public double getSamplesPerSecond() {
+            return elapsedNanos == 0 ? 0 : samples / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Loaded %d files, %.1f MB, %d samples (%d unparsable lines) in %.2f s: %.1f MB/s, %.0f samples/s",
+                    files, bytes / 1e6, samples, errors, elapsedNanos / 1e9, getMegabytesPerSecond(), getSamplesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.data_management;
+
+/**
+ * A full chunk of a {@link TimeSeries} encoded in the way of Facebook's
+ * Gorilla time series store. Vital signs arrive at a steady cadence and
+ * change in small steps, so most samples shrink to a few bits:
+ *
+ * <ul>
+ * <li>Timestamps are stored as the difference between consecutive deltas.
+ * At a fixed cadence that is zero, written as a single {@code 0} bit; the
+ * few milliseconds of scheduling jitter take {@code 10} and 4 bits. Larger
+ * differences take {@code 110} and 7 bits, {@code 1110} and 12 bits, or
+ * {@code 1111} and the full 64 bits.</li>
+ * <li>Values are XORed with the previous value. An unchanged value is a
+ * single {@code 0} bit. Otherwise only the bits between the leading and
+ * trailing zeros of the XOR are written: after {@code 10} if they fit in the
+ * previous window, or after {@code 11}, 5 bits of leading zeros and 6 bits
+ * of length.</li>
+ * </ul>
+ *
+ * The first timestamp and value are written in full. Reading a sample
+ * decodes the whole chunk; each thread keeps the last few chunks it decoded,
+ * so scanning a chunk, or a few chunks side by side, decodes each chunk once.
+ */
+final class CompressedChunk extends SealedChunk {
+
+    /** Chunks that do not encode to at most half their raw size stay raw. */
+    private static final int MAX_WORDS = TimeSeries.CHUNK_SIZE;
+    /** Chunks kept decoded per thread, enough for the record types of a patient read side by side. */
+    private static final int DECODED_CHUNKS = 4;
+    private static final ThreadLocal<Decoded[]> DECODED = ThreadLocal.withInitial(() -> new Decoded[DECODED_CHUNKS]);
+
+    private final long[] words;
+    private final long lastTimestamp;
+
+    private CompressedChunk(long[] words, long lastTimestamp) {
+        this.words = words;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    /**
+     * Encodes a full chunk.
+     *
+     * @param timestamps the timestamp column of the chunk
+     * @param values the value column of the chunk
+     * @return the encoded chunk, or null if it would not be at most half the
+     * size of the arrays
+     */
+    static CompressedChunk encode(long[] timestamps, double[] values) {
+        BitWriter out = new BitWriter();
+        out.write(timestamps[0], 64);
+        long delta = 0;
+        for (int i = 1; i < TimeSeries.CHUNK_SIZE; i++) {
+            long next = timestamps[i] - timestamps[i - 1];
+            long deltaOfDelta = next - delta;
+            delta = next;
+            if (deltaOfDelta == 0) {
+                out.write(0b0, 1);
+            } else if (deltaOfDelta >= -7 && deltaOfDelta <= 8) {
+                out.write(0b10, 2);
+                out.write(deltaOfDelta + 7, 4);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                out.write(0b110, 3);
+                out.write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                out.write(0b1110, 4);
+                out.write(deltaOfDelta + 2047, 12);
+            } else {
+                out.write(0b1111, 4);
+                out.write(deltaOfDelta, 64);
+            }
+        }
+
+        long previous = Double.doubleToRawLongBits(values[0]);
+        out.write(previous, 64);
+        int windowLeading = -1;
+        int windowTrailing = 0;
+        for (int i = 1; i < TimeSeries.CHUNK_SIZE && !out.overflow; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.write(0b0, 1);
+                continue;
+            }
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (windowLeading >= 0 && leading >= windowLeading && trailing >= windowTrailing) {
+                out.write(0b10, 2);
+                out.write(xor >>> windowTrailing, 64 - windowLeading - windowTrailing);
+            } else {
+                int length = 64 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 5);
+                out.write(length - 1, 6);
+                out.write(xor >>> trailing, length);
+                windowLeading = leading;
+                windowTrailing = trailing;
+            }
+        }
+        if (out.overflow) {
+            return null;
+        }
+        return new CompressedChunk(out.toWords(), timestamps[TimeSeries.CHUNK_SIZE - 1]);
+    }
+
+    /**
+     * @return the number of bytes taken by the encoded samples
+     */
+    int encodedBytes() {
+        return words.length * 8;
+    }
+
+    @Override
+    long timestampAt(int index) {
+        return decode().timestamps[index];
+    }
+
+    @Override
+    double valueAt(int index) {
+        return decode().values[index];
+    }
+
+    @Override
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    @Override
+    long[] timestamps() {
+        return decode().timestamps.clone();
+    }
+
+    @Override
+    double[] values() {
+        return decode().values.clone();
+    }
+
+    /**
+     * @return the samples of the chunk, from the chunks recently decoded by
+     * this thread if possible
+     */
+    Decoded decode() {
+        Decoded[] recent = DECODED.get();
+        for (int i = 0; i < DECODED_CHUNKS && recent[i] != null; i++) {
+            if (recent[i].chunk == this) {
+                Decoded found = recent[i];
+                System.arraycopy(recent, 0, recent, 1, i); // most recent first
+                recent[0] = found;
+                return found;
+            }
+        }
+        long[] timestamps = new long[TimeSeries.CHUNK_SIZE];
+        double[] values = new double[TimeSeries.CHUNK_SIZE];
+        decode(timestamps, values);
+        Decoded decoded = new Decoded(this, timestamps, values);
+        System.arraycopy(recent, 0, recent, 1, DECODED_CHUNKS - 1);
+        recent[0] = decoded;
+        return decoded;
+    }
+
+    /**
+     * Decodes the chunk. Each step looks at the next 64 bits at once and
+     * tells the fields apart by their leading one bits.
+     */
+    private void decode(long[] timestamps, double[] values) {
+        long[] words = this.words;
+        long position = 64;
+        long timestamp = peek(words, 0);
+        timestamps[0] = timestamp;
+        long delta = 0;
+        for (int i = 1; i < TimeSeries.CHUNK_SIZE; i++) {
+            long next = peek(words, position);
+            if (next >= 0) {
+                position += 1;
+            } else {
+                switch (Long.numberOfLeadingZeros(~next)) {
+                    case 1:
+                        delta += (next << 2 >>> 60) - 7;
+                        position += 2 + 4;
+                        break;
+                    case 2:
+                        delta += (next << 3 >>> 57) - 63;
+                        position += 3 + 7;
+                        break;
+                    case 3:
+                        delta += (next << 4 >>> 52) - 2047;
+                        position += 4 + 12;
+                        break;
+                    default:
+                        delta += peek(words, position + 4);
+                        position += 4 + 64;
+                        break;
+                }
+            }
+            timestamp += delta;
+            timestamps[i] = timestamp;
+        }
+
+        long bits = peek(words, position);
+        position += 64;
+        values[0] = Double.longBitsToDouble(bits);
+        int windowLeading = 0;
+        int windowTrailing = 0;
+        for (int i = 1; i < TimeSeries.CHUNK_SIZE; i++) {
+            long next = peek(words, position);
+            if (next >= 0) {
+                position += 1;
+            } else {
+                if (next << 1 < 0) {
+                    windowLeading = (int) (next << 2 >>> 59);
+                    windowTrailing = 64 - windowLeading - (int) (next << 7 >>> 58) - 1;
+                    position += 2 + 5 + 6;
+                } else {
+                    position += 2;
+                }
+                int length = 64 - windowLeading - windowTrailing;
+                bits ^= (peek(words, position) >>> (64 - length)) << windowTrailing;
+                position += length;
+            }
+            values[i] = Double.longBitsToDouble(bits);
+        }
+    }
+
+    /**
+     * @return the 64 bits from {@code position} on; the words end with a
+     * spare zero word, so this never reads past them
+     */
+    private static long peek(long[] words, long position) {
+        int index = (int) (position >>> 6);
+        int used = (int) (position & 63);
+        // two shifts, as a shift by 64 would be a shift by 0
+        return words[index] << used | words[index + 1] >>> 1 >>> (63 - used);
+    }
+
+    /**
+     * The samples of a chunk as arrays. They are never modified, so a decoded
+     * chunk may be handed to other threads.
+     */
+    static final class Decoded {
+
+        final CompressedChunk chunk;
+        final long[] timestamps;
+        final double[] values;
+
+        Decoded(CompressedChunk chunk, long[] timestamps, double[] values) {
+            this.chunk = chunk;
+            this.timestamps = timestamps;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Appends bit fields, most significant bit first, giving up once
+     * {@value #MAX_WORDS} words are full.
+     */
+    private static final class BitWriter {
+
+        private final long[] words = new long[MAX_WORDS + 1];
+        private long position;
+        boolean overflow;
+
+        void write(long value, int count) {
+            int index = (int) (position >>> 6);
+            if (index >= MAX_WORDS) {
+                overflow = true;
+                return;
+            }
+            if (count < 64) {
+                value &= (1L << count) - 1;
+            }
+            int free = 64 - (int) (position & 63);
+            if (count <= free) {
+                words[index] |= value << (free - count);
+            } else {
+                words[index] |= value >>> (count - free);
+                words[index + 1] |= value << (64 - (count - free));
+            }
+            position += count;
+        }
+
+        long[] toWords() {
+            int length = (int) ((position + 63) >>> 6);
+            long[] used = new long[length + 1];
+            System.arraycopy(words, 0, used, 0, length);
+            return used;
+        }
+    }
+}
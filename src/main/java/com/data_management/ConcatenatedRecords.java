@@ -0,0 +1,72 @@
+package com.data_management;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only concatenation of record views, such as the per-type views of a
+ * patient or the rollups and raw samples of one series.
+ */
+class ConcatenatedRecords extends AbstractList<PatientRecord> implements RandomAccess {
+
+    private final List<List<PatientRecord>> parts;
+    private final int[] partTypes;
+    private final int size;
+
+    ConcatenatedRecords(List<List<PatientRecord>> parts) {
+        this(parts, null);
+    }
+
+    /**
+     * @param parts     the lists to concatenate
+     * @param partTypes the {@link RecordTypes} code of the records of each
+     *                  part, when every part holds a single type, or null
+     */
+    ConcatenatedRecords(List<List<PatientRecord>> parts, int[] partTypes) {
+        this.parts = parts;
+        this.partTypes = partTypes;
+        int total = 0;
+        for (List<PatientRecord> part : parts) {
+            total += part.size();
+        }
+        this.size = total;
+    }
+
+    @Override
+    public PatientRecord get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        for (List<PatientRecord> part : parts) {
+            if (index < part.size()) {
+                return part.get(index);
+            }
+            index -= part.size();
+        }
+        throw new IndexOutOfBoundsException("Index: " + index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param recordType a {@link RecordTypes} code
+     * @return the part holding the records of that type, an empty list if
+     * there is none, or null if the parts are not separated by type
+     */
+    List<PatientRecord> ofType(int recordType) {
+        if (partTypes == null) {
+            return null;
+        }
+        for (int i = 0; i < parts.size(); i++) {
+            if (partTypes[i] == recordType) {
+                return parts.get(i);
+            }
+        }
+        return Collections.emptyList();
+    }
+}
@@ -1,26 +1,73 @@
 package com.data_management;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import com.alerts.AlertEvaluationScheduler;
 import com.alerts.AlertGenerator;
+import com.alerts.dispatch.AlertDispatcher;
+import com.alerts.dispatch.AlertSuppressor;
+import com.alerts.dispatch.ConsoleAlertSink;
+import com.alerts.streaming.StreamingAlertEngine;
+import com.metrics.Histogram;
+import com.metrics.MetricsRegistry;
 
 /**
  * Manages storage and retrieval of patient data within a healthcare monitoring
  * system.
  * This class serves as a repository for all patient records, organized by
  * patient IDs.
+ * The storage is safe for concurrent use without a global lock: patients are
+ * kept in a {@link ConcurrentHashMap}, writes only contend when they target
+ * the same patient series, and readers never block writers.
  */
 public class DataStorage {
+    private static final Histogram GET_RECORDS_NANOS = MetricsRegistry.getDefault().histogram("storage.get_records.nanos");
+    private static final Histogram GET_RECORDS_SIZE = MetricsRegistry.getDefault().histogram("storage.get_records.records");
     private Map<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private final List<SampleListener> listeners = new CopyOnWriteArrayList<>();
+    private final RetentionPolicy retentionPolicy;
+    private final OffHeapArena arena; // null keeps all samples on the heap
+    private volatile WriteAheadLog log; // logs samples before they are stored; null if not persisted
 
     /**
      * Constructs a new instance of DataStorage, initializing the underlying storage
-     * structure.
+     * structure. Every record is kept.
      */
     public DataStorage() {
-        this.patientMap = new HashMap<>();
+        this(RetentionPolicy.keepAll());
+    }
+
+    /**
+     * Constructs a new instance of DataStorage that ages records out according
+     * to a retention policy, so memory per patient stays bounded.
+     *
+     * @param retentionPolicy how long records of each type are kept raw and
+     *                        as rollups
+     */
+    public DataStorage(RetentionPolicy retentionPolicy) {
+        this(retentionPolicy, null);
+    }
+
+    /**
+     * Constructs a new instance of DataStorage that keeps most samples outside
+     * the Java heap. Each series only keeps the samples it is currently
+     * appending, up to {@value TimeSeries#CHUNK_SIZE}, on the heap; all older
+     * samples are held in the arena, so heap size and garbage collection
+     * pauses do not grow with the stored history.
+     *
+     * @param retentionPolicy how long records of each type are kept raw and
+     *                        as rollups
+     * @param arena           where samples are kept, or null to keep them
+     *                        on the heap
+     */
+    public DataStorage(RetentionPolicy retentionPolicy, OffHeapArena arena) {
+        this.patientMap = new ConcurrentHashMap<>();
+        this.retentionPolicy = retentionPolicy;
+        this.arena = arena;
     }
 
     /**
@@ -35,14 +82,133 @@ public class DataStorage {
      *                         "BloodPressure"
      * @param timestamp        the time at which the measurement was taken, in
      *                         milliseconds since the Unix epoch
+     * @throws IllegalArgumentException if {@code recordType} is new and not
+     *                                  a valid label, see {@link RecordTypes}
      */
-    public synchronized void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
-        Patient patient = patientMap.get(patientId);
-        if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+    public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        addPatientData(patientId, measurementValue, RecordTypes.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds patient data whose record type is already resolved to its
+     * {@link RecordTypes} code.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordType       the code of the type of record
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @throws IllegalArgumentException if {@code recordType} is not an
+     *                                  assigned code
+     */
+    public void addPatientData(int patientId, double measurementValue, int recordType, long timestamp) {
+        RecordTypes.checkCode(recordType);
+        WriteAheadLog log = this.log;
+        int ticket = log != null ? log.append(patientId, recordType, measurementValue, timestamp) : 0;
+        try {
+            Patient patient = patientMap.get(patientId);
+            if (patient == null) {
+                patient = patientMap.computeIfAbsent(patientId, this::newPatient);
+            }
+            patient.addRecord(measurementValue, recordType, timestamp);
+        } finally {
+            if (log != null) {
+                log.stored(ticket, 1);
+            }
+        }
+        for (SampleListener listener : listeners) {
+            listener.onSample(patientId, recordType, measurementValue, timestamp);
+        }
+    }
+
+    /**
+     * Adds all samples of a batch. The batch is grouped by patient and each
+     * patient's samples by record type, so every series touched by the batch
+     * is looked up and locked once, however many of its samples the batch
+     * holds. Listeners are notified after the whole batch is stored, in batch
+     * order. The batch is not modified.
+     *
+     * @param batch the samples to add
+     */
+    public void addPatientData(SampleBatch batch) {
+        int size = batch.size;
+        if (size == 0) {
+            return;
+        }
+        WriteAheadLog log = this.log;
+        int ticket = log != null ? log.append(batch) : 0;
+        try {
+            store(batch);
+        } finally {
+            if (log != null) {
+                log.stored(ticket, size);
+            }
         }
-        patient.addRecord(measurementValue, recordType, timestamp);
+        if (!listeners.isEmpty()) {
+            for (int i = 0; i < size; i++) {
+                for (SampleListener listener : listeners) {
+                    listener.onSample(batch.patientIds[i], batch.recordTypes[i], batch.values[i], batch.timestamps[i]);
+                }
+            }
+        }
+    }
+
+    private void store(SampleBatch batch) {
+        int size = batch.size;
+        // sort (patient, position) keys; the position keeps batch order within a patient
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = ((long) (batch.patientIds[i] ^ Integer.MIN_VALUE) << 32) | i;
+        }
+        Arrays.sort(order);
+        int from = 0;
+        while (from < size) {
+            int patientId = batch.patientIds[(int) order[from]];
+            int to = from + 1;
+            while (to < size && batch.patientIds[(int) order[to]] == patientId) {
+                to++;
+            }
+            Patient patient = patientMap.get(patientId);
+            if (patient == null) {
+                patient = patientMap.computeIfAbsent(patientId, this::newPatient);
+            }
+            if (to - from == 1) {
+                int i = (int) order[from];
+                patient.addRecord(batch.values[i], batch.recordTypes[i], batch.timestamps[i]);
+            } else {
+                patient.addRecords(batch, order, from, to);
+            }
+            from = to;
+        }
+    }
+
+    /**
+     * Attaches a write-ahead log, which is given every sample before it is
+     * stored, or detaches it.
+     *
+     * @param log the log, or null to stop logging
+     */
+    void setLog(WriteAheadLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Registers a listener that is notified of every sample added to the
+     * storage, on the thread that adds it.
+     *
+     * @param listener the listener to register
+     */
+    public void addListener(SampleListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a previously registered listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(SampleListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -56,14 +222,166 @@ public class DataStorage {
      * @param endTime   the end of the time range, in milliseconds since the Unix
      *                  epoch
      * @return a list of PatientRecord objects that fall within the specified time
-     *         range
+     *         range; the list reflects a consistent snapshot of each series
+     */
+    public List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
+        long start = System.nanoTime();
+        Patient patient = patientMap.get(patientId);
+        List<PatientRecord> records = patient != null
+                ? patient.getRecords(startTime, endTime)
+                : new ArrayList<>(); // return an empty list if no patient is found
+        return recordQuery(records, start);
+    }
+
+    /**
+     * Retrieves the records of one type for a specific patient, filtered by a
+     * time range. The type is found by its code, without looking at the
+     * records of other types.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the {@link RecordTypes} code of the type of record
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return the matching records, ordered by timestamp
+     */
+    public List<PatientRecord> getRecords(int patientId, int recordType, long startTime, long endTime) {
+        long start = System.nanoTime();
+        Patient patient = patientMap.get(patientId);
+        List<PatientRecord> records = patient != null
+                ? patient.getRecords(recordType, startTime, endTime)
+                : new ArrayList<>();
+        return recordQuery(records, start);
+    }
+
+    private static List<PatientRecord> recordQuery(List<PatientRecord> records, long startNanos) {
+        GET_RECORDS_NANOS.recordSince(startNanos);
+        GET_RECORDS_SIZE.record(records.size());
+        return records;
+    }
+
+    /**
+     * Retrieves the rollups of one record type of a patient that start within
+     * a time range. Rollups hold the min, max, average and count of the
+     * records that have aged out of raw storage.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "ECG"
+     * @param resolution the width of the rollup buckets
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return the matching rollups, ordered by start time
      */
-    public synchronized List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
+    public List<Rollup> getRollups(int patientId, String recordType, Rollup.Resolution resolution,
+            long startTime, long endTime) {
         Patient patient = patientMap.get(patientId);
         if (patient != null) {
-            return patient.getRecords(startTime, endTime);
+            return patient.getRollups(recordType, resolution, startTime, endTime);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Retrieves the statistics (count, sum, mean, variance, min and max) of a
+     * window of the newest samples of one record type of a patient, e.g. the
+     * maximum systolic pressure over the last day or the mean ECG value over
+     * the last five samples. Windows end at the newest sample rather than at
+     * the current time. The first request for a window of a series reads its
+     * samples; afterwards the statistics are updated as samples are added,
+     * and a request takes constant time.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "SystolicPressure"
+     * @param window     the window of newest samples
+     * @return the statistics, or null if the patient has no samples of that
+     *         type
+     */
+    public WindowStatistics getWindowStatistics(int patientId, String recordType, RollingWindow window) {
+        return getWindowStatistics(patientId, RecordTypes.find(recordType), window);
+    }
+
+    /**
+     * Retrieves the statistics of a window of the newest samples of one
+     * record type, given by its {@link RecordTypes} code.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the code of the type of record
+     * @param window     the window of newest samples
+     * @return the statistics, or null if the patient has no samples of that
+     *         type
+     * @see #getWindowStatistics(int, String, RollingWindow)
+     */
+    public WindowStatistics getWindowStatistics(int patientId, int recordType, RollingWindow window) {
+        Patient patient = patientMap.get(patientId);
+        return patient != null ? patient.getWindowStatistics(recordType, window) : null;
+    }
+
+    /**
+     * Retrieves the newest sample of every record type of every patient, the
+     * current vitals of the whole ward, into a new batch.
+     *
+     * @return the newest samples
+     * @see #getLatestValues(SampleBatch)
+     */
+    public SampleBatch getLatestValues() {
+        return getLatestValues(new SampleBatch(patientMap.size() * 4));
+    }
+
+    /**
+     * Retrieves the newest sample of every record type of every patient into
+     * a batch, replacing its contents. Samples of one patient are next to
+     * each other, ordered by record type code; patients come in no particular
+     * order. Every series publishes its newest sample as part of each write,
+     * so this reads two values per series without locking or copying any
+     * records, and a reused batch allocates nothing once it has grown to the
+     * size of the ward. Samples of different series may be read at slightly
+     * different moments while data is being added.
+     *
+     * @param batch the batch to fill
+     * @return {@code batch}
+     */
+    public SampleBatch getLatestValues(SampleBatch batch) {
+        batch.clear();
+        for (Patient patient : patientMap.values()) {
+            patient.addLatestTo(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Counts the samples added to the storage so far, including samples that
+     * have since aged out. The count is kept by the series as part of every
+     * write, so it costs nothing on the ingestion path; reading it visits
+     * every patient.
+     *
+     * @return the number of samples added
+     */
+    public long getSampleCount() {
+        long count = 0;
+        for (Patient patient : patientMap.values()) {
+            count += patient.getDataVersion();
+        }
+        return count;
+    }
+
+    /**
+     * Publishes the metrics of this storage in a registry: the
+     * {@code storage.samples.ingested} and {@code storage.patients} gauges,
+     * and {@code storage.offheap.bytes} with an off-heap arena.
+     * Query latency and result sizes are recorded for all storages in the
+     * default registry.
+     *
+     * @param registry the registry to publish in
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.gauge("storage.samples.ingested", this::getSampleCount);
+        registry.gauge("storage.patients", () -> patientMap.size());
+        if (arena != null) {
+            registry.gauge("storage.offheap.bytes", arena::getUsedBytes);
         }
-        return new ArrayList<>(); // return an empty list if no patient is found
     }
 
     /**
@@ -75,6 +393,21 @@ public class DataStorage {
         return new ArrayList<>(patientMap.values());
     }
 
+    /**
+     * Returns a patient, adding it if it is not stored yet.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the stored patient
+     */
+    Patient patient(int patientId) {
+        Patient patient = patientMap.get(patientId);
+        return patient != null ? patient : patientMap.computeIfAbsent(patientId, this::newPatient);
+    }
+
+    private Patient newPatient(int patientId) {
+        return new Patient(patientId, retentionPolicy, arena);
+    }
+
     /**
      * The main method for the DataStorage class.
      * Initializes the system, reads data into storage, and continuously monitors
@@ -86,6 +419,21 @@ public class DataStorage {
         // DataReader is not defined in this scope, should be initialized appropriately.
         // DataReader reader = new SomeDataReaderImplementation("path/to/data");
         DataStorage storage = new DataStorage();
+        storage.registerMetrics(MetricsRegistry.getDefault());
+
+        // Deliver alerts on a separate thread, so that printing them never
+        // holds up evaluation
+        AlertDispatcher dispatcher = new AlertDispatcher(List.of(new ConsoleAlertSink()));
+
+        // Every pass re-evaluates the whole window, so report each reading once
+        // and hold back repeats of a condition for five minutes
+        AlertSuppressor suppressor = new AlertSuppressor(dispatcher);
+
+        // Initialize the AlertGenerator with the storage
+        AlertGenerator alertGenerator = new AlertGenerator(storage, suppressor);
+
+        // Evaluate incoming samples as they arrive
+        storage.addListener(new StreamingAlertEngine(suppressor));
 
         // Assuming the reader has been properly initialized and can read data into the
         // storage
@@ -100,12 +448,13 @@ public class DataStorage {
                     ", Timestamp: " + record.getTimestamp());
         }
 
-        // Initialize the AlertGenerator with the storage
-        AlertGenerator alertGenerator = new AlertGenerator(storage);
-
-        // Evaluate all patients' data to check for conditions that may trigger alerts
-        for (Patient patient : storage.getAllPatients()) {
-            alertGenerator.evaluateData(patient);
-        }
+        // Evaluate all patients' data to check for conditions that may trigger alerts,
+        // sharded across one worker per processor
+        AlertEvaluationScheduler scheduler = new AlertEvaluationScheduler(storage,
+                List.of(alertGenerator::evaluateData));
+        System.out.println(scheduler.runCycle());
+        scheduler.stop();
+        dispatcher.close();
+        System.out.print(MetricsRegistry.getDefault());
     }
 }
@@ -8,19 +8,25 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import com.metrics.Counter;
+import com.metrics.MetricsRegistry;
 
 /**
  *
  * @author Jack
  */
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
 
 public class FileDataReader implements DataReader {
 
+    private static final int BINARY_BUFFER_SIZE = 64 * 1024;
+    /** Number of samples handed to the storage at once. */
+    private static final int BATCH_SIZE = 1024;
+    /** Lines and records that could not be parsed, shared with {@link BulkFileDataReader}. */
+    static final Counter PARSE_ERRORS = MetricsRegistry.getDefault().counter("reader.file.parse_errors");
+
     private String directoryPath;
 
     public FileDataReader(String directoryPath) {
@@ -32,6 +38,9 @@ public class FileDataReader implements DataReader {
  * The files are expected to have lines in the format:
  * "Patient ID: ..., Timestamp: ..., Label: ..., Data:..."
  * If the measurement value contains a '%', it will be removed before parsing.
+ * Lines are parsed in place by a {@link SampleParser} and stored in batches.
+ * Binary files (.bin) in the {@link BinaryRecordFormat} layout are read as
+ * well; their records are streamed straight into the storage.
  *
  * @param dataStorage the storage where the parsed data will be stored
  * @throws IOException if an I/O error occurs while reading the files or if the specified path is not a directory
@@ -44,36 +53,105 @@ public class FileDataReader implements DataReader {
         }
 
         File[] files = dir.listFiles((d, name) -> name.endsWith(".txt"));
-        if (files == null) {
+        File[] binaryFiles = dir.listFiles((d, name) -> name.endsWith(BinaryRecordFormat.FILE_EXTENSION));
+        if (files == null || binaryFiles == null) {
             throw new IOException("Failed to list files in directory: " + directoryPath);
         }
 
+        SampleParser parser = new SampleParser();
+        SampleBatch batch = new SampleBatch(BATCH_SIZE);
         for (File file : files) {
             try (BufferedReader br = new BufferedReader(new FileReader(file))) {
                 String l;
                 while ((l = br.readLine()) != null) {
                     System.out.println(l);
 
-                    String[] tmp = l.split(", ");
-                    try {
-                        // File structure: Patient ID:..., Timestamp:..., Label(Type):..., Data(measurementValue):...
-                        int patientID = Integer.parseInt(tmp[0].split(": ")[1]);
-                        long timestamp = Long.parseLong(tmp[1].split(": ")[1]);
-                        String recordType = tmp[2].split(": ")[1];
-                        String measurementValueString = tmp[3].split(": ")[1];
-
-                        if (measurementValueString.contains("%")) {
-                            measurementValueString = measurementValueString.substring(0, measurementValueString.length() - 1);
+                    // File structure: Patient ID:..., Timestamp:..., Label(Type):..., Data(measurementValue):...
+                    if (parser.parse(l)) {
+                        batch.add(parser);
+                        if (batch.size() == BATCH_SIZE) {
+                            store(batch, dataStorage);
                         }
-                        double measurementValue = Double.parseDouble(measurementValueString);
-                        dataStorage.addPatientData(patientID, measurementValue, recordType, timestamp);
-                    } catch (NumberFormatException ex) {
-                        System.out.println("Error parsing line: " + ex.getMessage());
+                    } else {
+                        PARSE_ERRORS.increment();
+                        System.out.println("Error parsing line: " + l);
                     }
                 }
             } catch (IOException ex) {
                 System.out.println("Error reading file: " + file.getAbsolutePath());
             }
+            store(batch, dataStorage);
+        }
+
+        for (File file : binaryFiles) {
+            try {
+                readBinaryFile(file, dataStorage, batch);
+            } catch (IOException ex) {
+                System.out.println("Error reading file: " + file.getAbsolutePath() + " (" + ex.getMessage() + ")");
+            }
+        }
+    }
+
+    /**
+     * Streams the records of one binary sample file into the storage.
+     *
+     * @param file the file to read
+     * @param dataStorage the storage where the records will be stored
+     * @param batch an empty batch to collect the records in
+     * @throws IOException if the file cannot be read or has an invalid header
+     */
+    private static void readBinaryFile(File file, DataStorage dataStorage, SampleBatch batch) throws IOException {
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BINARY_BUFFER_SIZE);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // fill the first buffer so that the whole header is available
+            }
+            buffer.flip();
+            int[] recordTypes;
+            try {
+                String[] labels = BinaryRecordFormat.readHeader(buffer);
+                recordTypes = new int[labels.length];
+                for (int i = 0; i < labels.length; i++) {
+                    recordTypes[i] = RecordTypes.codeOf(labels[i]);
+                }
+            } catch (RuntimeException ex) {
+                throw new IOException("Invalid binary sample file header", ex);
+            }
+            while (true) {
+                while (buffer.remaining() >= BinaryRecordFormat.RECORD_SIZE) {
+                    int patientId = buffer.getInt();
+                    long timestamp = buffer.getLong();
+                    int labelId = buffer.getShort();
+                    double value = buffer.getDouble();
+                    if (labelId < 0 || labelId >= recordTypes.length) {
+                        PARSE_ERRORS.increment();
+                        throw new IOException("Unknown label id " + labelId + " in record " + records);
+                    }
+                    batch.add(patientId, value, recordTypes[labelId], timestamp);
+                    if (batch.size() == BATCH_SIZE) {
+                        store(batch, dataStorage);
+                    }
+                    records++;
+                }
+                buffer.compact();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if (read < 0) {
+                    break;
+                }
+            }
+            if (buffer.hasRemaining()) {
+                System.out.println("Ignoring truncated record at the end of " + file.getAbsolutePath());
+            }
+        } finally {
+            // keep the records read before an error, as the text reader does
+            store(batch, dataStorage);
         }
     }
+
+    private static void store(SampleBatch batch, DataStorage dataStorage) {
+        dataStorage.addPatientData(batch);
+        batch.clear();
+    }
 }
@@ -2,15 +2,40 @@ package com.data_management;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import com.metrics.Counter;
+import com.metrics.MetricsRegistry;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 
 /**
  * WebSocketClient that reads data and stores it in an instance of the DataStorage.
+ * Messages are parsed and stored on the socket read thread; for streams where
+ * storage contention would slow the socket down, use
+ * {@link WebSocketIngestionClient}.
  */
 public class MyWebSocketClient extends WebSocketClient implements DataReader {
 
+    static final Counter PARSE_ERRORS = MetricsRegistry.getDefault().counter("reader.websocket.parse_errors");
+    /** First delay before reconnecting after a lost connection. */
+    static final long INITIAL_RECONNECT_DELAY_MS = 100;
+    /** Longest delay between two reconnection attempts. */
+    static final long MAX_RECONNECT_DELAY_MS = 30_000;
+    // reconnecting from a callback would block the connection's own thread
+    private static final ScheduledExecutorService RECONNECTS = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "websocket-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private DataStorage dataStorage;
+    // only used on the socket read thread
+    private final SampleParser parser = new SampleParser();
+    private final SampleBatch batch = new SampleBatch();
+    private volatile long reconnectDelayMillis = INITIAL_RECONNECT_DELAY_MS;
+    private volatile boolean reconnectingAfterError;
 
     public MyWebSocketClient(URI serverUri, DataStorage ds) {
         super(serverUri);
@@ -30,36 +55,79 @@ public class MyWebSocketClient extends WebSocketClient implements DataReader {
     }
 
     /**
-     * Called when there is data incoming from the WebSocket.
+     * Called when there is data incoming from the WebSocket. Both the verbose
+     * "Patient ID: ..., Timestamp: ..." layout and the compact
+     * "id,timestamp,label,data" layout are accepted. A message may hold
+     * several samples, one per line, which are stored as one batch.
      *
      * @param message the incoming message data
      */
     @Override
     public void onMessage(String message) {
-        try {
-            String[] tmp = message.split(",");
-            if (tmp.length == 4) {
-                // File structure: Patient ID:..., Timestamp:..., Label(Type):..., Data(measurementValue):...
-                int patientID = Integer.parseInt(tmp[0].split(": ")[1]);
-                long timestamp = Long.parseLong(tmp[1].split(": ")[1]);
-                String recordType = tmp[2].split(": ")[1];
-                String measurementValueString = tmp[3].split(": ")[1];
-
-                if (measurementValueString.contains("%")) {
-                    measurementValueString = measurementValueString.substring(0, measurementValueString.length() - 1);
+        int lineEnd = message.indexOf('\n');
+        if (lineEnd < 0) {
+            // a single sample gains nothing from a batch
+            if (parseLine(message, 0, message.length(), parser)) {
+                try {
+                    dataStorage.addPatientData(parser.getPatientId(), parser.getMeasurementValue(),
+                            parser.getRecordType(), parser.getTimestamp());
+                } catch (Exception ex) {
+                    System.err.println("Error processing message: " + message);
+                    ex.printStackTrace();
                 }
-                double measurementValue = Double.parseDouble(measurementValueString);
-                dataStorage.addPatientData(patientID, measurementValue, recordType, timestamp);
-            } else {
-                System.err.println("Invalid format: " + message);
             }
-        } catch (IllegalArgumentException ex) {
-            System.err.println("Invalid data in message: " + message);
+            return;
+        }
+        parseLines(message, parser, batch);
+        try {
+            dataStorage.addPatientData(batch);
+        } catch (Exception ex) {
+            System.err.println("Error storing " + batch.size() + " samples");
             ex.printStackTrace();
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Parses every line of a message and adds the valid samples to a batch.
+     * Invalid lines are reported and counted as parse errors.
+     *
+     * @param message the message, one sample per line
+     * @param parser the parser to use
+     * @param batch the batch the samples are added to
+     */
+    static void parseLines(String message, SampleParser parser, SampleBatch batch) {
+        int start = 0;
+        while (start <= message.length()) {
+            int end = message.indexOf('\n', start);
+            if (end < 0) {
+                end = message.length();
+            }
+            if (end > start && parseLine(message, start, end, parser)) {
+                batch.add(parser);
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Parses one line of a message into {@code parser}.
+     *
+     * @return whether the line held a valid sample
+     */
+    private static boolean parseLine(String message, int start, int end, SampleParser parser) {
+        try {
+            if (parser.parse(message, start, end)) {
+                return true;
+            }
+            System.err.println("Invalid format: " + message.substring(start, end));
         } catch (Exception ex) {
-            System.err.println("Error processing message: " + message);
+            System.err.println("Error processing message: " + message.substring(start, end));
             ex.printStackTrace();
         }
+        PARSE_ERRORS.increment();
+        return false;
     }
 
     /**
@@ -69,11 +137,13 @@ public class MyWebSocketClient extends WebSocketClient implements DataReader {
      */
     @Override
     public void onOpen(ServerHandshake sh) {
+        reconnectDelayMillis = INITIAL_RECONNECT_DELAY_MS;
         System.out.println("Connected to WebSocket server.");
     }
 
     /**
-     * Called when WebSocket connection closes.
+     * Called when WebSocket connection closes. An unexpected closure is
+     * followed by a reconnection attempt, see {@link #onError}.
      *
      * @param code for closing
      * @param reason for closing
@@ -83,19 +153,17 @@ public class MyWebSocketClient extends WebSocketClient implements DataReader {
     public void onClose(int code, String reason, boolean remote) {
         System.out.println("WebSocket connection closed: " + reason + " (Code: " + code + ")");
         // Attempt to reconnect if the connection was closed unexpectedly
-        if (code != 1000) { // 1000 indicates a normal closure
-            System.out.println("Attempting to reconnect...");
-            try {
-                this.reconnectBlocking();
-            } catch (InterruptedException e) {
-                System.err.println("Reconnection attempt failed.");
-                e.printStackTrace();
-            }
+        if (code != 1000 && !reconnectingAfterError) { // 1000 indicates a normal closure
+            scheduleReconnect();
         }
+        reconnectingAfterError = false;
     }
 
     /**
-     * Called when an error occurs.
+     * Called when an error occurs. The client reconnects on a separate
+     * thread, waiting {@value #INITIAL_RECONNECT_DELAY_MS} ms before the first
+     * attempt and twice as long before each further one, up to
+     * {@value #MAX_RECONNECT_DELAY_MS} ms.
      *
      * @param ex the exception that occurred
      */
@@ -103,12 +171,22 @@ public class MyWebSocketClient extends WebSocketClient implements DataReader {
     public void onError(Exception ex) {
         System.err.println("WebSocket error: " + ex.getMessage());
         ex.printStackTrace();
-      
+        // an error is usually followed by a close, which must not reconnect a second time
+        reconnectingAfterError = true;
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        long delay = reconnectDelayMillis;
+        reconnectDelayMillis = Math.min(delay * 2, MAX_RECONNECT_DELAY_MS);
+        System.out.println("Attempting to reconnect in " + delay + " ms...");
+        RECONNECTS.schedule(() -> {
             try {
                 this.reconnectBlocking();
             } catch (InterruptedException e) {
                 System.err.println("Reconnection attempt failed.");
                 e.printStackTrace();
             }
+        }, delay, TimeUnit.MILLISECONDS);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,200 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Memory outside the Java heap for the samples of a {@link DataStorage}, so
+ * that the heap, and with it garbage collection pauses, stays small however
+ * much history is resident.
+ *
+ * <p>A series keeps the chunk it is appending to on the heap. Once a chunk is
+ * full it is copied into a slot of the arena, and the series only keeps a
+ * small handle to the slot. The arena is made of 64 MB blocks, allocated as
+ * they are needed up to {@code maxBytes}, either as direct buffers or as
+ * regions of a memory-mapped scratch file. Slots are never written after
+ * they are filled: readers may still see a slot through an older snapshot
+ * of its series. A slot is returned to the free list once its handle has
+ * been garbage collected, that is once no snapshot can read it any more.
+ * When the arena is full, chunks simply stay on the heap.
+ */
+public final class OffHeapArena {
+
+    static final int CHUNK_BYTES = TimeSeries.CHUNK_SIZE * (8 + 8);
+    private static final int BLOCK_CHUNKS = 4096; // 64 MB
+    private static final long BLOCK_BYTES = (long) BLOCK_CHUNKS * CHUNK_BYTES;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final long maxChunks;
+    private final FileChannel file; // null for direct buffers
+    private final List<ByteBuffer> blocks = new ArrayList<>(); // guarded by this
+    private int[] freeSlots = new int[64]; // guarded by this
+    private int freeCount; // guarded by this
+    private int slotCount; // guarded by this
+    private long usedChunks; // guarded by this
+
+    private OffHeapArena(long maxBytes, FileChannel file) {
+        if (maxBytes < CHUNK_BYTES) {
+            throw new IllegalArgumentException("An arena must hold at least " + CHUNK_BYTES + " bytes");
+        }
+        this.maxChunks = Math.min(maxBytes / CHUNK_BYTES, Integer.MAX_VALUE);
+        this.file = file;
+    }
+
+    /**
+     * Creates an arena of direct buffers. Direct memory is limited by
+     * {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap
+     * size.
+     *
+     * @param maxBytes the most memory the arena may take
+     * @return the arena
+     */
+    public static OffHeapArena direct(long maxBytes) {
+        return new OffHeapArena(maxBytes, null);
+    }
+
+    /**
+     * Creates an arena backed by a memory-mapped scratch file, so that the
+     * operating system can page samples out under memory pressure. The file
+     * is only scratch space: it is replaced if it exists, and deleted when
+     * the JVM exits.
+     *
+     * @param file the scratch file
+     * @param maxBytes the most the file may grow to
+     * @return the arena
+     * @throws IOException if the file cannot be created
+     */
+    public static OffHeapArena mapped(Path file, long maxBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        return new OffHeapArena(maxBytes, channel);
+    }
+
+    /**
+     * @return the bytes taken by the chunks held in the arena
+     */
+    public synchronized long getUsedBytes() {
+        return usedChunks * CHUNK_BYTES;
+    }
+
+    /**
+     * @return the bytes of the blocks allocated so far, in use or free
+     */
+    public synchronized long getAllocatedBytes() {
+        return blocks.size() * BLOCK_BYTES;
+    }
+
+    /**
+     * Copies a full chunk into a free slot.
+     *
+     * @param timestamps the timestamp column of the chunk
+     * @param values the value column of the chunk
+     * @return the handle of the slot, or null if the arena is full
+     */
+    Chunk store(long[] timestamps, double[] values) {
+        int slot;
+        ByteBuffer block;
+        synchronized (this) {
+            if (freeCount > 0) {
+                slot = freeSlots[--freeCount];
+            } else if (slotCount < maxChunks) {
+                slot = slotCount;
+                if (slot / BLOCK_CHUNKS == blocks.size() && !addBlock()) {
+                    return null;
+                }
+                slotCount++;
+            } else {
+                return null;
+            }
+            block = blocks.get(slot / BLOCK_CHUNKS);
+            usedChunks++;
+        }
+        int base = (slot % BLOCK_CHUNKS) * CHUNK_BYTES;
+        ByteBuffer target = block.duplicate().order(ByteOrder.nativeOrder());
+        target.position(base);
+        target.asLongBuffer().put(timestamps, 0, TimeSeries.CHUNK_SIZE);
+        target.position(base + CHUNK_BYTES / 2);
+        target.asDoubleBuffer().put(values, 0, TimeSeries.CHUNK_SIZE);
+        Chunk chunk = new Chunk(block, base);
+        CLEANER.register(chunk, () -> release(slot));
+        return chunk;
+    }
+
+    private boolean addBlock() {
+        ByteBuffer block;
+        try {
+            block = file == null ? ByteBuffer.allocateDirect((int) BLOCK_BYTES)
+                    : file.map(FileChannel.MapMode.READ_WRITE, blocks.size() * BLOCK_BYTES, BLOCK_BYTES);
+        } catch (IOException | OutOfMemoryError e) {
+            System.err.println("Off-heap arena cannot grow past " + getAllocatedBytes() + " bytes: " + e.getMessage());
+            return false;
+        }
+        blocks.add(block.order(ByteOrder.nativeOrder()));
+        return true;
+    }
+
+    private synchronized void release(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        usedChunks--;
+    }
+
+    /**
+     * Handle of one full chunk held in the arena. Reads never change the
+     * position of the shared block buffer, so any number of threads may read
+     * a chunk at once.
+     */
+    static final class Chunk extends SealedChunk {
+
+        private final ByteBuffer block;
+        private final int base;
+
+        Chunk(ByteBuffer block, int base) {
+            this.block = block;
+            this.base = base;
+        }
+
+        @Override
+        long timestampAt(int index) {
+            return block.getLong(base + (index << 3));
+        }
+
+        @Override
+        double valueAt(int index) {
+            return block.getDouble(base + CHUNK_BYTES / 2 + (index << 3));
+        }
+
+        @Override
+        long lastTimestamp() {
+            return timestampAt(TimeSeries.CHUNK_SIZE - 1);
+        }
+
+        @Override
+        long[] timestamps() {
+            long[] timestamps = new long[TimeSeries.CHUNK_SIZE];
+            ByteBuffer source = block.duplicate().order(ByteOrder.nativeOrder());
+            source.position(base);
+            source.asLongBuffer().get(timestamps);
+            return timestamps;
+        }
+
+        @Override
+        double[] values() {
+            double[] values = new double[TimeSeries.CHUNK_SIZE];
+            ByteBuffer source = block.duplicate().order(ByteOrder.nativeOrder());
+            source.position(base + CHUNK_BYTES / 2);
+            source.asDoubleBuffer().get(values);
+            return values;
+        }
+    }
+}
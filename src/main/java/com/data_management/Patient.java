@@ -1,31 +1,61 @@
 package com.data_management;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Represents a patient and manages their medical records. This class stores
  * patient-specific data, allowing for the addition and retrieval of medical
- * records based on specified criteria.
+ * records based on specified criteria. Records are stored column-wise in one
+ * {@link TimeSeries} per record type, held in an array indexed by the
+ * {@link RecordTypes} code of the type. Records may be added and read
+ * concurrently; each series serialises its own writers and readers see
+ * immutable snapshots.
  */
 public class Patient {
 
     private int patientId;
-    private List<PatientRecord> patientRecords;
-  
+    private volatile TimeSeries[] seriesByType; // indexed by record type code
+    private final RetentionPolicy retentionPolicy;
+    private final OffHeapArena arena; // null keeps all records on the heap
 
     /**
-     * Constructs a new Patient with a specified ID. Initializes an empty list
-     * of patient records.
+     * Constructs a new Patient with a specified ID. Initializes an empty set
+     * of record series.
      *
      * @param patientId the unique identifier for the patient
      */
     public Patient(int patientId) {
+        this(patientId, RetentionPolicy.keepAll());
+    }
+
+    /**
+     * Constructs a new Patient whose records are kept according to a
+     * retention policy.
+     *
+     * @param patientId the unique identifier for the patient
+     * @param retentionPolicy how long records of each type are kept
+     */
+    public Patient(int patientId, RetentionPolicy retentionPolicy) {
+        this(patientId, retentionPolicy, null);
+    }
+
+    /**
+     * Constructs a new Patient whose full record chunks are moved into an
+     * off-heap arena.
+     *
+     * @param patientId the unique identifier for the patient
+     * @param retentionPolicy how long records of each type are kept
+     * @param arena where full record chunks are kept, or null to keep them
+     * on the heap
+     */
+    Patient(int patientId, RetentionPolicy retentionPolicy, OffHeapArena arena) {
         this.patientId = patientId;
-        this.patientRecords = new ArrayList<>();
-       
+        this.seriesByType = new TimeSeries[0];
+        this.retentionPolicy = retentionPolicy;
+        this.arena = arena;
     }
 
     /**
@@ -39,14 +69,79 @@ public class Patient {
      * milliseconds since UNIX epoch
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        addRecord(measurementValue, RecordTypes.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds a new record whose record type is given by its code.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param recordType the {@link RecordTypes} code of the type of record
+     * @param timestamp the time at which the measurement was taken, in
+     * milliseconds since UNIX epoch
+     * @throws IllegalArgumentException if {@code recordType} is not an
+     * assigned code
+     */
+    public void addRecord(double measurementValue, int recordType, long timestamp) {
+        RecordTypes.checkCode(recordType);
+        series(recordType).add(timestamp, measurementValue);
+    }
+
+    /**
+     * Adds the samples of a batch that belong to this patient, taking each
+     * series lock once.
+     *
+     * @param batch the batch holding the samples
+     * @param order sorted keys whose low 32 bits are batch positions
+     * @param from the first key of this patient, inclusive
+     * @param to the last key of this patient, exclusive
+     */
+    void addRecords(SampleBatch batch, long[] order, int from, int to) {
+        // a patient has only a handful of record types, so a linear scan groups them
+        int[] types = new int[4];
+        int[] counts = new int[4];
+        int typeCount = 0;
+        int[] slots = new int[to - from];
+        for (int k = from; k < to; k++) {
+            int type = batch.recordTypes[(int) order[k]];
+            int slot = 0;
+            while (slot < typeCount && types[slot] != type) {
+                slot++;
+            }
+            if (slot == typeCount) {
+                if (typeCount == types.length) {
+                    types = Arrays.copyOf(types, typeCount * 2);
+                    counts = Arrays.copyOf(counts, typeCount * 2);
+                }
+                types[typeCount++] = type;
+            }
+            counts[slot]++;
+            slots[k - from] = slot;
+        }
+        for (int slot = 0; slot < typeCount; slot++) {
+            long[] timestamps = new long[counts[slot]];
+            double[] values = new double[counts[slot]];
+            int n = 0;
+            for (int k = from; k < to; k++) {
+                if (slots[k - from] == slot) {
+                    int i = (int) order[k];
+                    timestamps[n] = batch.timestamps[i];
+                    values[n] = batch.values[i];
+                    n++;
+                }
+            }
+            series(types[slot]).addAll(timestamps, values, n);
+        }
     }
 
     /**
      * Retrieves a list of PatientRecord objects for this patient that fall
      * within a specified time range. The method filters records based on the
-     * start and end times provided.
+     * start and end times provided. Records are grouped by record type and
+     * ordered by timestamp within each type. The returned list is a read-only
+     * view whose elements are created on access. Times whose raw records
+     * have been rolled up are represented by one record per rollup bucket
+     * holding the bucket average.
      *
      * @param startTime the start of the time range, in milliseconds since UNIX
      * epoch
@@ -55,15 +150,193 @@ public class Patient {
      * @return a list of PatientRecord objects that fall within the specified
      * time range
      */
- public List<PatientRecord> getRecords(long startTime, long endTime) {
-       return patientRecords.stream()
-                .filter(record -> record.getTimestamp() >= startTime && record.getTimestamp() <= endTime)
-                .collect(Collectors.toList());
-}
-  
-    
+    public List<PatientRecord> getRecords(long startTime, long endTime) {
+        TimeSeries[] all = seriesByType;
+        List<List<PatientRecord>> parts = new ArrayList<>(all.length);
+        int[] types = new int[all.length];
+        for (TimeSeries series : all) {
+            if (series == null) {
+                continue;
+            }
+            List<PatientRecord> part = series.getRecords(startTime, endTime);
+            if (!part.isEmpty()) {
+                types[parts.size()] = series.getRecordTypeCode();
+                parts.add(part);
+            }
+        }
+        if (parts.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return new ConcatenatedRecords(parts, types);
+    }
+
+    /**
+     * Retrieves the records of a single type that fall within a specified time
+     * range, ordered by timestamp.
+     *
+     * @param recordType the type of record, e.g., "ECG", "Saturation"
+     * @param startTime the start of the time range, in milliseconds since UNIX
+     * epoch
+     * @param endTime the end of the time range, in milliseconds since UNIX
+     * epoch
+     * @return a read-only list of the matching records
+     */
+    public List<PatientRecord> getRecords(String recordType, long startTime, long endTime) {
+        return getRecords(RecordTypes.find(recordType), startTime, endTime);
+    }
+
+    /**
+     * Retrieves the records of a single type, given by its code, that fall
+     * within a specified time range, ordered by timestamp.
+     *
+     * @param recordType the {@link RecordTypes} code of the type of record
+     * @param startTime the start of the time range, in milliseconds since UNIX
+     * epoch
+     * @param endTime the end of the time range, in milliseconds since UNIX
+     * epoch
+     * @return a read-only list of the matching records
+     */
+    public List<PatientRecord> getRecords(int recordType, long startTime, long endTime) {
+        TimeSeries series = findSeries(recordType);
+        if (series == null) {
+            return Collections.emptyList();
+        }
+        return series.getRecords(startTime, endTime);
+    }
+
+    /**
+     * Retrieves the rollups of a single type that start within a specified
+     * time range. Rollups only exist for record types whose retention rule
+     * ages raw records out.
+     *
+     * @param recordType the type of record, e.g., "ECG"
+     * @param resolution the width of the rollup buckets
+     * @param startTime the start of the time range, in milliseconds since UNIX
+     * epoch
+     * @param endTime the end of the time range, in milliseconds since UNIX
+     * epoch
+     * @return the matching rollups, ordered by start time
+     */
+    public List<Rollup> getRollups(String recordType, Rollup.Resolution resolution, long startTime, long endTime) {
+        TimeSeries series = findSeries(RecordTypes.find(recordType));
+        if (series == null) {
+            return Collections.emptyList();
+        }
+        return series.getRollups(resolution, startTime, endTime);
+    }
+
+    /**
+     * Retrieves the statistics of the newest records of a single type, such
+     * as the maximum over the last day. The first request for a window reads
+     * the records it holds; from then on every new record updates the
+     * statistics, and a request costs the same however many records the
+     * window holds.
+     *
+     * @param recordType the {@link RecordTypes} code of the type of record
+     * @param window the window of newest records
+     * @return the statistics, or null if the patient has no records of that
+     * type
+     */
+    public WindowStatistics getWindowStatistics(int recordType, RollingWindow window) {
+        TimeSeries series = findSeries(recordType);
+        return series != null ? series.getStatistics(window) : null;
+    }
+
+    /**
+     * Appends the newest record of each type to a batch. Each record is read
+     * from the state its series published on its latest write, so reading
+     * allocates nothing and never waits for writers.
+     *
+     * @param batch the batch to append to
+     */
+    void addLatestTo(SampleBatch batch) {
+        for (TimeSeries series : seriesByType) {
+            if (series != null) {
+                series.addLatestTo(batch);
+            }
+        }
+    }
+
+    /**
+     * Returns a number that changes whenever records are added to this
+     * patient, so that consumers such as alert evaluation can skip patients
+     * without new data. Reading it does not lock and costs one read per
+     * record type.
+     *
+     * @return the number of samples written to this patient's records so
+     * far, including samples that have since aged out
+     */
+    public long getDataVersion() {
+        long version = 0;
+        for (TimeSeries series : seriesByType) {
+            if (series != null) {
+                version += series.snapshot().version;
+            }
+        }
+        return version;
+    }
+
+    /**
+     * @param recordType the {@link RecordTypes} code of the type of record
+     * @param timestamp the time of the measurement
+     * @param measurementValue the measured value
+     * @return whether a raw record with exactly this time and value is stored
+     */
+    boolean hasRecord(int recordType, long timestamp, double measurementValue) {
+        TimeSeries series = findSeries(recordType);
+        return series != null && series.contains(timestamp, measurementValue);
+    }
+
+    /**
+     * @return the series of this patient, indexed by record type code; some
+     * elements may be null. The array must not be modified.
+     */
+    TimeSeries[] allSeries() {
+        return seriesByType;
+    }
+
+    /**
+     * Replaces the series of a record type with previously saved state.
+     *
+     * @param recordType the {@link RecordTypes} code of the type of record
+     * @param state the state of the series
+     */
+    synchronized void restoreSeries(int recordType, TimeSeries.Snapshot state) {
+        TimeSeries[] grown = Arrays.copyOf(seriesByType, Math.max(seriesByType.length, recordType + 1));
+        grown[recordType] = new TimeSeries(patientId, recordType,
+                retentionPolicy.getRule(RecordTypes.label(recordType)), arena, state);
+        seriesByType = grown;
+    }
+
+    private TimeSeries findSeries(int recordType) {
+        TimeSeries[] all = seriesByType;
+        return recordType >= 0 && recordType < all.length ? all[recordType] : null;
+    }
+
+    /**
+     * Returns the series of a record type, creating it if needed.
+     */
+    private TimeSeries series(int recordType) {
+        TimeSeries series = findSeries(recordType);
+        return series != null ? series : createSeries(recordType);
+    }
+
+    private synchronized TimeSeries createSeries(int recordType) {
+        TimeSeries[] all = seriesByType;
+        if (recordType < all.length && all[recordType] != null) {
+            return all[recordType];
+        }
+        // copy on write, so readers of the array never lock
+        TimeSeries[] grown = Arrays.copyOf(all, Math.max(all.length, recordType + 1));
+        TimeSeries series = new TimeSeries(patientId, recordType,
+                retentionPolicy.getRule(RecordTypes.label(recordType)), arena);
+        grown[recordType] = series;
+        seriesByType = grown;
+        return series;
+    }
+
     public int getPatientID(){
         return patientId;
     }
     
-}
+}
\ No newline at end of file
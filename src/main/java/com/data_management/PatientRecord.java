@@ -12,6 +12,7 @@ package com.data_management;
 public class PatientRecord {
     private int patientId;
     private String recordType; // Example: ECG, blood pressure, etc.
+    private int recordTypeCode; // code of recordType in RecordTypes
     private double measurementValue; // Example: heart rate
     private long timestamp;
 
@@ -21,14 +22,24 @@ public class PatientRecord {
      * @param patientId        the unique identifier for the patient
      * @param measurementValue the numerical value of the recorded measurement
      * @param recordType       the type of measurement (e.g., "ECG", "Blood
-     *                         Pressure")
+     *                         Pressure"); a label the storage has never seen
+     *                         is kept but not registered, and its code is -1
      * @param timestamp        the time at which the measurement was recorded, in
      *                         milliseconds since epoch
      */
     public PatientRecord(int patientId, double measurementValue, String recordType, long timestamp) {
+        this(patientId, measurementValue, recordType, recordType == null ? -1 : RecordTypes.find(recordType),
+                timestamp);
+    }
+
+    /**
+     * Constructs a record whose record type is already resolved to its code.
+     */
+    PatientRecord(int patientId, double measurementValue, String recordType, int recordTypeCode, long timestamp) {
         this.patientId = patientId;
         this.measurementValue = measurementValue;
         this.recordType = recordType;
+        this.recordTypeCode = recordTypeCode;
         this.timestamp = timestamp;
     }
 
@@ -67,4 +78,14 @@ public class PatientRecord {
     public String getRecordType() {
         return recordType;
     }
+
+    /**
+     * Returns the {@link RecordTypes} code of the record type, which is
+     * cheaper to compare than the label.
+     *
+     * @return the record type code
+     */
+    public int getRecordTypeCode() {
+        return recordTypeCode;
+    }
 }
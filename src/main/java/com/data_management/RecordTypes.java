@@ -0,0 +1,219 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry that maps record type labels such as "ECG" onto small integer
+ * codes. Labels are registered once, when data is ingested, and storage,
+ * filtering and alert dispatch then work on the codes: a patient keeps its
+ * series in an array indexed by code, and comparing types is an integer
+ * comparison.
+ *
+ * <p>The labels produced by the simulator have fixed codes, available as
+ * constants. Other labels get the next free code the first time they are
+ * seen. Codes are only meaningful within one process; files store labels.
+ *
+ * <p>Labels arrive from files and the network and stay registered for the
+ * life of the process, and every patient indexes its series by code, so the
+ * registry is kept small: labels must be short names of letters, digits,
+ * {@code _}, {@code -} and {@code .}, and at most {@value #MAX_TYPES} are
+ * registered. Parsers reject samples with other labels.
+ */
+public final class RecordTypes {
+
+    public static final int ECG = 0;
+    public static final int SATURATION = 1;
+    public static final int SYSTOLIC_PRESSURE = 2;
+    public static final int DIASTOLIC_PRESSURE = 3;
+    public static final int CHOLESTEROL = 4;
+    public static final int WHITE_BLOOD_CELLS = 5;
+    public static final int RED_BLOOD_CELLS = 6;
+    public static final int ALERT = 7;
+
+    /** The most labels the registry holds; codes fit in a {@code short}. */
+    public static final int MAX_TYPES = 256;
+    /** The longest label the registry accepts. */
+    public static final int MAX_LABEL_LENGTH = 64;
+
+    private static final String[] BUILT_IN_LABELS = {
+        "ECG", "Saturation", "SystolicPressure", "DiastolicPressure",
+        "Cholesterol", "WhiteBloodCells", "RedBloodCells", "Alert"
+    };
+
+    private static final Map<String, Integer> CODES = new ConcurrentHashMap<>();
+    private static volatile String[] labels = new String[0];
+
+    static {
+        for (String label : BUILT_IN_LABELS) {
+            register(label);
+        }
+    }
+
+    private RecordTypes() {
+    }
+
+    /**
+     * Returns the code of a label, registering the label if it is new.
+     *
+     * @param label the record type label, e.g., "ECG"
+     * @return the code of the label
+     * @throws IllegalArgumentException if the label is new and not a valid
+     * label
+     * @throws IllegalStateException if the registry is full
+     */
+    public static int codeOf(String label) {
+        Integer code = CODES.get(label);
+        return code != null ? code : register(label);
+    }
+
+    /**
+     * Returns the code of a label without registering it.
+     *
+     * @param label the record type label
+     * @return the code of the label, or -1 if it has never been registered
+     */
+    public static int find(String label) {
+        Integer code = CODES.get(label);
+        return code != null ? code : -1;
+    }
+
+    /**
+     * Returns the code of the label spelled by a range of characters, so
+     * that parsers can resolve labels without creating strings.
+     *
+     * @param text  the characters holding the label
+     * @param start the position of the first character, inclusive
+     * @param end   the position of the last character, exclusive
+     * @return the code of the label, or -1 if it has never been registered
+     */
+    public static int find(CharSequence text, int start, int end) {
+        String[] current = labels;
+        for (int code = 0; code < current.length; code++) {
+            if (regionMatches(text, start, end, current[code])) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Tells whether a range of characters may be registered as a label: one
+     * to {@value #MAX_LABEL_LENGTH} ASCII letters, digits, {@code _},
+     * {@code -} or {@code .}.
+     *
+     * @param text  the characters holding the label
+     * @param start the position of the first character, inclusive
+     * @param end   the position of the last character, exclusive
+     * @return whether the label is valid
+     */
+    public static boolean isValidLabel(CharSequence text, int start, int end) {
+        if (end <= start || end - start > MAX_LABEL_LENGTH) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-'
+                    || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that a code has been assigned, so that a bad code is reported
+     * where it enters the storage rather than deep inside it.
+     *
+     * @param code the code to check
+     * @throws IllegalArgumentException if the code has not been assigned
+     */
+    static void checkCode(int code) {
+        if (code < 0 || code >= labels.length) {
+            throw new IllegalArgumentException("Unknown record type code: " + code);
+        }
+    }
+
+    /**
+     * @param code a code returned by this registry
+     * @return the label of the code
+     * @throws IllegalArgumentException if the code has not been assigned
+     */
+    public static String label(int code) {
+        String[] current = labels;
+        if (code < 0 || code >= current.length) {
+            throw new IllegalArgumentException("Unknown record type code: " + code);
+        }
+        return current[code];
+    }
+
+    /**
+     * @return the number of registered labels; codes are {@code 0} to
+     * {@code count() - 1}
+     */
+    public static int count() {
+        return labels.length;
+    }
+
+    /**
+     * Selects the records of one type. Lists returned by
+     * {@link DataStorage#getRecords} keep each type in its own part, so the
+     * matching part is returned without looking at the records; other lists
+     * are scanned, comparing codes.
+     *
+     * @param records    the records to select from
+     * @param recordType the code of the type to select
+     * @return the records of that type, in their original order; may be a
+     * read-only view
+     */
+    public static List<PatientRecord> select(List<PatientRecord> records, int recordType) {
+        if (records instanceof ConcatenatedRecords) {
+            List<PatientRecord> part = ((ConcatenatedRecords) records).ofType(recordType);
+            if (part != null) {
+                return part;
+            }
+        }
+        List<PatientRecord> selected = new ArrayList<>();
+        for (PatientRecord record : records) {
+            if (record.getRecordTypeCode() == recordType) {
+                selected.add(record);
+            }
+        }
+        return selected;
+    }
+
+    private static synchronized int register(String label) {
+        Integer existing = CODES.get(label);
+        if (existing != null) {
+            return existing;
+        }
+        if (label == null || !isValidLabel(label, 0, label.length())) {
+            throw new IllegalArgumentException("Invalid record type label: " + label);
+        }
+        String[] current = labels;
+        if (current.length == MAX_TYPES) {
+            throw new IllegalStateException("Too many record types, cannot register " + label);
+        }
+        String[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = label;
+        // publish the label before the code, so that every visible code has a label
+        labels = grown;
+        CODES.put(label, current.length);
+        return current.length;
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, int end, String label) {
+        if (end - start != label.length()) {
+            return false;
+        }
+        for (int i = 0; i < label.length(); i++) {
+            if (text.charAt(start + i) != label.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,132 @@
+package com.data_management;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides how long {@link DataStorage} keeps the samples of each record type.
+ * Samples older than the raw horizon of their type are rolled into
+ * {@link Rollup.Resolution#MINUTE} and {@link Rollup.Resolution#HOUR} rollups,
+ * which are themselves dropped after their own horizons.
+ *
+ * <p>Horizons are measured back from the newest sample of each series rather
+ * than from the wall clock, so replayed and live data age the same way.
+ * Rules are looked up when a patient's series for a type is created; changing
+ * the policy afterwards only affects new series.
+ *
+ * <pre>
+ * RetentionPolicy policy = new RetentionPolicy(RetentionPolicy.Rule.KEEP_ALL)
+ *         .retain("ECG", new RetentionPolicy.Rule(HOURS.toMillis(1), 100_000, DAYS.toMillis(1), DAYS.toMillis(30)))
+ *         .retain("Cholesterol", new RetentionPolicy.Rule(DAYS.toMillis(30), Integer.MAX_VALUE,
+ *                 RetentionPolicy.FOREVER, RetentionPolicy.FOREVER));
+ * </pre>
+ */
+public class RetentionPolicy {
+
+    /** Horizon of data that is never dropped. */
+    public static final long FOREVER = Long.MAX_VALUE;
+
+    private final Rule defaultRule;
+    private final Map<String, Rule> rules = new ConcurrentHashMap<>();
+
+    /**
+     * @return a policy that keeps every raw sample, the behaviour of a
+     * {@link DataStorage} created without a policy
+     */
+    public static RetentionPolicy keepAll() {
+        return new RetentionPolicy(Rule.KEEP_ALL);
+    }
+
+    /**
+     * @param defaultRule the rule for record types without a rule of their own
+     */
+    public RetentionPolicy(Rule defaultRule) {
+        this.defaultRule = defaultRule;
+    }
+
+    /**
+     * Sets the rule for one record type.
+     *
+     * @param recordType the type of record, e.g., "ECG"
+     * @param rule       how long to keep its samples
+     * @return this policy
+     */
+    public RetentionPolicy retain(String recordType, Rule rule) {
+        rules.put(recordType, rule);
+        return this;
+    }
+
+    /**
+     * @param recordType the type of record
+     * @return the rule for that type, or the default rule
+     */
+    public Rule getRule(String recordType) {
+        return rules.getOrDefault(recordType, defaultRule);
+    }
+
+    /**
+     * Retention of one record type. Raw samples are rolled up in whole
+     * minutes and minute rollups are dropped in whole hours, so a bucket never
+     * overlaps the finer data that is still kept.
+     */
+    public static class Rule {
+
+        /** Keeps every raw sample. */
+        public static final Rule KEEP_ALL = new Rule(FOREVER, Integer.MAX_VALUE, FOREVER, FOREVER);
+
+        private final long rawMillis;
+        private final int maxRawSamples;
+        private final long minuteRollupMillis;
+        private final long hourRollupMillis;
+
+        /**
+         * @param rawMillis          how long raw samples are kept
+         * @param maxRawSamples      how many raw samples are kept at most;
+         *                           since whole minutes are rolled up at a
+         *                           time, up to one more minute of samples
+         *                           may remain
+         * @param minuteRollupMillis how long minute rollups are kept
+         * @param hourRollupMillis   how long hour rollups are kept
+         * @throws IllegalArgumentException if a horizon is negative, the
+         * sample limit is below one, or a coarser horizon is shorter than a
+         * finer one
+         */
+        public Rule(long rawMillis, int maxRawSamples, long minuteRollupMillis, long hourRollupMillis) {
+            if (rawMillis < 0 || maxRawSamples < 1) {
+                throw new IllegalArgumentException("Invalid raw retention: " + rawMillis + " ms, "
+                        + maxRawSamples + " samples");
+            }
+            if (minuteRollupMillis < rawMillis || hourRollupMillis < minuteRollupMillis) {
+                throw new IllegalArgumentException("Rollups must be kept at least as long as finer data: raw "
+                        + rawMillis + " ms, minutes " + minuteRollupMillis + " ms, hours " + hourRollupMillis + " ms");
+            }
+            this.rawMillis = rawMillis;
+            this.maxRawSamples = maxRawSamples;
+            this.minuteRollupMillis = minuteRollupMillis;
+            this.hourRollupMillis = hourRollupMillis;
+        }
+
+        public long getRawMillis() {
+            return rawMillis;
+        }
+
+        public int getMaxRawSamples() {
+            return maxRawSamples;
+        }
+
+        public long getMinuteRollupMillis() {
+            return minuteRollupMillis;
+        }
+
+        public long getHourRollupMillis() {
+            return hourRollupMillis;
+        }
+
+        /**
+         * @return whether raw samples are never rolled up
+         */
+        boolean keepsAllRaw() {
+            return rawMillis == FOREVER && maxRawSamples == Integer.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.data_management;
+
+/**
+ * Keeps the {@link WindowStatistics} of one {@link RollingWindow} of a
+ * {@link TimeSeries} up to date as samples are written, so that reading them
+ * costs the same however many samples the window holds.
+ *
+ * <p>The window is a range of positions in the series. Appending a sample
+ * adds it to a running sum, to Welford's running mean and sum of squared
+ * deviations, and to two monotonic deques of positions whose values only
+ * decrease (for the maximum) or increase (for the minimum) from front to
+ * back. A sample leaving the window is read back from the series and taken
+ * out of the sum and the running moments; the deques drop positions that are
+ * no longer in the window from their front. Each sample is thus added and
+ * removed once, and the window's samples are never copied.
+ *
+ * <p>A sample inserted before the newest one changes positions inside the
+ * window, so the statistics are then computed again from the window's
+ * samples. Only the writer of the series calls {@link #update}; readers see
+ * the immutable statistics published by the latest write.
+ */
+final class RollingStatistics {
+
+    private final RollingWindow window;
+    private final TimeSeries.Cursor cursor = new TimeSeries.Cursor();
+    private final MonotonicDeque min = new MonotonicDeque(false);
+    private final MonotonicDeque max = new MonotonicDeque(true);
+    /** Samples rolled up since tracking began; a position is this plus a snapshot index. */
+    private long base;
+    private long start; // position of the oldest sample in the window
+    private long end; // position after the newest sample
+    private double sum;
+    private double mean;
+    private double squaredDeviations;
+    private volatile WindowStatistics current;
+
+    /**
+     * @param window the window to keep statistics of
+     * @param snapshot the current state of the series
+     */
+    RollingStatistics(RollingWindow window, TimeSeries.Snapshot snapshot) {
+        this.window = window;
+        update(snapshot, -1, snapshot);
+    }
+
+    RollingWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * @return the statistics as of the latest write
+     */
+    WindowStatistics current() {
+        return current;
+    }
+
+    /**
+     * Takes a write into account and publishes the new statistics.
+     *
+     * @param written the series after the write, before retention
+     * @param appendedFrom the index of the first sample the write appended,
+     * or -1 if it inserted samples before the newest one
+     * @param next the series after retention; it holds the samples of
+     * {@code written} from {@code written.size - next.size} on
+     */
+    void update(TimeSeries.Snapshot written, int appendedFrom, TimeSeries.Snapshot next) {
+        if (appendedFrom < 0) {
+            rebuild(written);
+        } else {
+            for (int i = appendedFrom; i < written.size; i++) {
+                add(written, i);
+            }
+            evictOutside(written);
+        }
+        // samples rolled up by retention are gone from the series, so they leave the window now
+        int rolled = written.size - next.size;
+        while (start < base + rolled) {
+            removeOldest(written);
+        }
+        base += rolled;
+        publish(next);
+    }
+
+    private void rebuild(TimeSeries.Snapshot snapshot) {
+        min.clear();
+        max.clear();
+        sum = 0;
+        mean = 0;
+        squaredDeviations = 0;
+        int from;
+        if (snapshot.size == 0) {
+            from = 0;
+        } else if (window.isTimed()) {
+            from = snapshot.lowerBound(cutoff(snapshot));
+        } else {
+            from = Math.max(snapshot.size - window.getSamples(), 0);
+        }
+        start = base + from;
+        end = start;
+        for (int i = from; i < snapshot.size; i++) {
+            add(snapshot, i);
+        }
+    }
+
+    private void evictOutside(TimeSeries.Snapshot snapshot) {
+        if (window.isTimed()) {
+            long cutoff = cutoff(snapshot);
+            while (start < end && cursor.timestampAt(snapshot, (int) (start - base)) < cutoff) {
+                removeOldest(snapshot);
+            }
+        } else {
+            while (end - start > window.getSamples()) {
+                removeOldest(snapshot);
+            }
+        }
+    }
+
+    /**
+     * @return the oldest time in the window, which ends at the newest sample
+     */
+    private long cutoff(TimeSeries.Snapshot snapshot) {
+        long newest = snapshot.timestampAt(snapshot.size - 1);
+        return newest < Long.MIN_VALUE + window.getMillis() ? Long.MIN_VALUE : newest - window.getMillis();
+    }
+
+    private void add(TimeSeries.Snapshot snapshot, int index) {
+        double value = cursor.valueAt(snapshot, index);
+        long count = end - start + 1;
+        double delta = value - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (value - mean);
+        sum += value;
+        min.push(end, value);
+        max.push(end, value);
+        end++;
+    }
+
+    private void removeOldest(TimeSeries.Snapshot snapshot) {
+        double value = cursor.valueAt(snapshot, (int) (start - base));
+        start++;
+        long count = end - start;
+        if (count == 0) {
+            // start again from exact zeros rather than carry rounding errors
+            sum = 0;
+            mean = 0;
+            squaredDeviations = 0;
+        } else {
+            double previousMean = mean;
+            mean -= (value - mean) / count;
+            squaredDeviations -= (value - previousMean) * (value - mean);
+            sum -= value;
+        }
+        min.evictBefore(start);
+        max.evictBefore(start);
+    }
+
+    private void publish(TimeSeries.Snapshot next) {
+        long count = end - start;
+        if (count == 0) {
+            current = new WindowStatistics(0, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Long.MIN_VALUE,
+                    Long.MIN_VALUE, next.rawFrom == Long.MIN_VALUE);
+            return;
+        }
+        boolean complete = window.isTimed() ? next.rawFrom <= cutoff(next)
+                : count == window.getSamples() || next.rawFrom == Long.MIN_VALUE;
+        current = new WindowStatistics(count, sum, mean, Math.max(squaredDeviations / count, 0), min.first(),
+                max.first(), cursor.timestampAt(next, (int) (start - base)), next.timestampAt(next.size - 1),
+                complete);
+    }
+
+    /**
+     * Positions and values of the window's samples that may still become its
+     * extreme: each is larger (or smaller) than every sample after it.
+     */
+    private static final class MonotonicDeque {
+
+        private final boolean keepsMax;
+        private long[] positions = new long[16];
+        private double[] values = new double[16];
+        private int head;
+        private int size;
+
+        MonotonicDeque(boolean keepsMax) {
+            this.keepsMax = keepsMax;
+        }
+
+        void push(long position, double value) {
+            int mask = positions.length - 1;
+            // a sample that is not above (or below) the new one can no longer be the extreme
+            while (size > 0 && (keepsMax ? values[(head + size - 1) & mask] <= value
+                    : values[(head + size - 1) & mask] >= value)) {
+                size--;
+            }
+            if (size == positions.length) {
+                grow();
+                mask = positions.length - 1;
+            }
+            int tail = (head + size) & mask;
+            positions[tail] = position;
+            values[tail] = value;
+            size++;
+        }
+
+        void evictBefore(long position) {
+            while (size > 0 && positions[head] < position) {
+                head = (head + 1) & (positions.length - 1);
+                size--;
+            }
+        }
+
+        double first() {
+            return size == 0 ? Double.NaN : values[head];
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        private void grow() {
+            long[] grownPositions = new long[positions.length * 2];
+            double[] grownValues = new double[values.length * 2];
+            for (int i = 0; i < size; i++) {
+                grownPositions[i] = positions[(head + i) & (positions.length - 1)];
+                grownValues[i] = values[(head + i) & (values.length - 1)];
+            }
+            positions = grownPositions;
+            values = grownValues;
+            head = 0;
+        }
+    }
+}
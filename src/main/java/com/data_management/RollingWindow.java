@@ -0,0 +1,86 @@
+package com.data_management;
+
+/**
+ * A window over the newest samples of a series, either a number of samples
+ * or a span of time, for which {@link DataStorage#getWindowStatistics}
+ * maintains {@link WindowStatistics}. Like retention horizons, a time window
+ * is measured back from the newest sample of the series rather than from the
+ * wall clock: {@code lastMillis(DAY)} holds the samples with
+ * {@code newest - DAY <= timestamp <= newest}.
+ *
+ * <p>Windows are values: two equal windows share the statistics kept for
+ * them.
+ */
+public final class RollingWindow {
+
+    private final int samples; // 0 for a time window
+    private final long millis; // 0 for a sample window
+
+    private RollingWindow(int samples, long millis) {
+        this.samples = samples;
+        this.millis = millis;
+    }
+
+    /**
+     * @param count the number of samples in the window
+     * @return a window over the newest {@code count} samples
+     * @throws IllegalArgumentException if {@code count} is below one
+     */
+    public static RollingWindow lastSamples(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("A window must hold at least one sample: " + count);
+        }
+        return new RollingWindow(count, 0);
+    }
+
+    /**
+     * @param millis the span of the window, in milliseconds
+     * @return a window over the samples at most {@code millis} older than the
+     * newest sample
+     * @throws IllegalArgumentException if {@code millis} is negative
+     */
+    public static RollingWindow lastMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("A window cannot span a negative time: " + millis + " ms");
+        }
+        return new RollingWindow(0, millis);
+    }
+
+    /**
+     * @return the number of samples in the window, or 0 for a time window
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return the span of the window in milliseconds, or 0 for a sample
+     * window
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * @return whether the window spans a time rather than a number of samples
+     */
+    boolean isTimed() {
+        return samples == 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RollingWindow && ((RollingWindow) other).samples == samples
+                && ((RollingWindow) other).millis == millis;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * samples + Long.hashCode(millis);
+    }
+
+    @Override
+    public String toString() {
+        return isTimed() ? "last " + millis + " ms" : "last " + samples + " samples";
+    }
+}
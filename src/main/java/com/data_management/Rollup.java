@@ -0,0 +1,105 @@
+package com.data_management;
+
+/**
+ * Summary of the samples of one record type of one patient that fell into a
+ * fixed time bucket. Rollups replace raw samples once they are older than the
+ * raw horizon of their {@link RetentionPolicy}.
+ */
+public class Rollup {
+
+    /**
+     * Width of a rollup bucket. Buckets start at multiples of the width since
+     * the Unix epoch.
+     */
+    public enum Resolution {
+        MINUTE(60_000L),
+        HOUR(3_600_000L);
+
+        private final long millis;
+
+        Resolution(long millis) {
+            this.millis = millis;
+        }
+
+        /**
+         * @return the width of a bucket, in milliseconds
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @param timestamp a time in milliseconds since the Unix epoch
+         * @return the start of the bucket holding that time
+         */
+        public long bucketStart(long timestamp) {
+            return Math.floorDiv(timestamp, millis) * millis;
+        }
+    }
+
+    private final int patientId;
+    private final String recordType;
+    private final Resolution resolution;
+    private final long startTime;
+    private final double min;
+    private final double max;
+    private final double sum;
+    private final long count;
+
+    /**
+     * @param patientId  the patient the samples belong to
+     * @param recordType the type of record summarised
+     * @param resolution the width of the bucket
+     * @param startTime  the start of the bucket, in milliseconds since epoch
+     * @param min        the smallest value in the bucket
+     * @param max        the largest value in the bucket
+     * @param sum        the sum of the values in the bucket
+     * @param count      the number of samples in the bucket
+     */
+    public Rollup(int patientId, String recordType, Resolution resolution, long startTime,
+            double min, double max, double sum, long count) {
+        this.patientId = patientId;
+        this.recordType = recordType;
+        this.resolution = resolution;
+        this.startTime = startTime;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.count = count;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public String getRecordType() {
+        return recordType;
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @return the start of the bucket, in milliseconds since epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getAverage() {
+        return sum / count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,196 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, columnar list of {@link Rollup} buckets of one resolution,
+ * sorted by bucket start. Every change returns a new instance, so a series
+ * can publish its rollups in the same snapshot as its raw samples.
+ */
+final class RollupSeries {
+
+    private static final long[] NO_LONGS = new long[0];
+    private static final double[] NO_DOUBLES = new double[0];
+
+    final Rollup.Resolution resolution;
+    private final long[] starts;
+    private final double[] mins;
+    private final double[] maxs;
+    private final double[] sums;
+    private final long[] counts;
+
+    /**
+     * Creates an empty list of buckets.
+     */
+    RollupSeries(Rollup.Resolution resolution) {
+        this(resolution, NO_LONGS, NO_DOUBLES, NO_DOUBLES, NO_DOUBLES, NO_LONGS);
+    }
+
+    /**
+     * Creates buckets from their columns, which must be sorted by start, of
+     * equal length and not modified afterwards.
+     */
+    RollupSeries(Rollup.Resolution resolution, long[] starts, double[] mins, double[] maxs,
+            double[] sums, long[] counts) {
+        this.resolution = resolution;
+        this.starts = starts;
+        this.mins = mins;
+        this.maxs = maxs;
+        this.sums = sums;
+        this.counts = counts;
+    }
+
+    int size() {
+        return starts.length;
+    }
+
+    long startAt(int index) {
+        return starts[index];
+    }
+
+    double averageAt(int index) {
+        return sums[index] / counts[index];
+    }
+
+    double minAt(int index) {
+        return mins[index];
+    }
+
+    double maxAt(int index) {
+        return maxs[index];
+    }
+
+    double sumAt(int index) {
+        return sums[index];
+    }
+
+    long countAt(int index) {
+        return counts[index];
+    }
+
+    Rollup get(int patientId, String recordType, int index) {
+        return new Rollup(patientId, recordType, resolution, starts[index], mins[index], maxs[index],
+                sums[index], counts[index]);
+    }
+
+    /**
+     * Folds the first {@code count} samples of a snapshot into the buckets.
+     *
+     * @param samples the snapshot holding the samples, sorted by timestamp
+     * @param count   the number of leading samples to fold in
+     * @return the buckets with the samples added
+     */
+    RollupSeries add(TimeSeries.Snapshot samples, int count) {
+        if (count == 0) {
+            return this;
+        }
+        // summarise the samples into new buckets first; they arrive in order
+        long[] newStarts = new long[count];
+        double[] newMins = new double[count];
+        double[] newMaxs = new double[count];
+        double[] newSums = new double[count];
+        long[] newCounts = new long[count];
+        int buckets = -1;
+        for (int i = 0; i < count; i++) {
+            long start = resolution.bucketStart(samples.timestampAt(i));
+            double value = samples.valueAt(i);
+            if (buckets < 0 || newStarts[buckets] != start) {
+                buckets++;
+                newStarts[buckets] = start;
+                newMins[buckets] = value;
+                newMaxs[buckets] = value;
+            } else {
+                newMins[buckets] = Math.min(newMins[buckets], value);
+                newMaxs[buckets] = Math.max(newMaxs[buckets], value);
+            }
+            newSums[buckets] += value;
+            newCounts[buckets]++;
+        }
+        buckets++;
+
+        // then merge them with the existing buckets
+        int capacity = starts.length + buckets;
+        long[] mergedStarts = new long[capacity];
+        double[] mergedMins = new double[capacity];
+        double[] mergedMaxs = new double[capacity];
+        double[] mergedSums = new double[capacity];
+        long[] mergedCounts = new long[capacity];
+        int old = 0;
+        int added = 0;
+        int merged = 0;
+        while (old < starts.length || added < buckets) {
+            if (added == buckets || (old < starts.length && starts[old] < newStarts[added])) {
+                mergedStarts[merged] = starts[old];
+                mergedMins[merged] = mins[old];
+                mergedMaxs[merged] = maxs[old];
+                mergedSums[merged] = sums[old];
+                mergedCounts[merged] = counts[old++];
+            } else if (old == starts.length || newStarts[added] < starts[old]) {
+                mergedStarts[merged] = newStarts[added];
+                mergedMins[merged] = newMins[added];
+                mergedMaxs[merged] = newMaxs[added];
+                mergedSums[merged] = newSums[added];
+                mergedCounts[merged] = newCounts[added++];
+            } else {
+                mergedStarts[merged] = starts[old];
+                mergedMins[merged] = Math.min(mins[old], newMins[added]);
+                mergedMaxs[merged] = Math.max(maxs[old], newMaxs[added]);
+                mergedSums[merged] = sums[old] + newSums[added];
+                mergedCounts[merged] = counts[old++] + newCounts[added++];
+            }
+            merged++;
+        }
+        return new RollupSeries(resolution, Arrays.copyOf(mergedStarts, merged), Arrays.copyOf(mergedMins, merged),
+                Arrays.copyOf(mergedMaxs, merged), Arrays.copyOf(mergedSums, merged),
+                Arrays.copyOf(mergedCounts, merged));
+    }
+
+    /**
+     * @param cutoff the start of the oldest bucket to keep
+     * @return the buckets starting at or after {@code cutoff}
+     */
+    RollupSeries dropBefore(long cutoff) {
+        int from = lowerBound(cutoff);
+        if (from == 0) {
+            return this;
+        }
+        int to = starts.length;
+        return new RollupSeries(resolution, Arrays.copyOfRange(starts, from, to), Arrays.copyOfRange(mins, from, to),
+                Arrays.copyOfRange(maxs, from, to), Arrays.copyOfRange(sums, from, to),
+                Arrays.copyOfRange(counts, from, to));
+    }
+
+    /**
+     * Finds the first bucket starting at or after the given time.
+     */
+    int lowerBound(long time) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first bucket starting after the given time.
+     */
+    int upperBound(long time) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
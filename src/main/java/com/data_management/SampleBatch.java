@@ -0,0 +1,137 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * A reusable batch of samples for {@link DataStorage#addPatientData(SampleBatch)},
+ * stored in primitive columns so that filling a batch allocates nothing once
+ * it has grown to its working size. Record types are held as
+ * {@link RecordTypes} codes. {@link DataStorage#getLatestValues(SampleBatch)}
+ * fills a batch the same way with the newest samples of the storage.
+ *
+ * <p>A batch is not thread-safe; it is meant to be filled by one reader,
+ * handed to the storage and then cleared for the next round.
+ */
+public final class SampleBatch {
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    int size;
+    int[] patientIds;
+    double[] values;
+    int[] recordTypes;
+    long[] timestamps;
+
+    /**
+     * Creates an empty batch with room for 256 samples.
+     */
+    public SampleBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of samples the batch holds before it grows
+     */
+    public SampleBatch(int capacity) {
+        capacity = Math.max(1, capacity);
+        patientIds = new int[capacity];
+        values = new double[capacity];
+        recordTypes = new int[capacity];
+        timestamps = new long[capacity];
+    }
+
+    /**
+     * Appends a sample to the batch.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordType       the type of record, e.g., "ECG"
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     */
+    public void add(int patientId, double measurementValue, String recordType, long timestamp) {
+        add(patientId, measurementValue, RecordTypes.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Appends a sample whose record type is already resolved to its code.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordType       the {@link RecordTypes} code of the record type
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     * @throws IllegalArgumentException if {@code recordType} is not an
+     *                                  assigned code
+     */
+    public void add(int patientId, double measurementValue, int recordType, long timestamp) {
+        RecordTypes.checkCode(recordType);
+        if (size == patientIds.length) {
+            int capacity = size * 2;
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            values = Arrays.copyOf(values, capacity);
+            recordTypes = Arrays.copyOf(recordTypes, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+        }
+        patientIds[size] = patientId;
+        values[size] = measurementValue;
+        recordTypes[size] = recordType;
+        timestamps[size] = timestamp;
+        size++;
+    }
+
+    /**
+     * Appends the sample last parsed by a {@link SampleParser}.
+     *
+     * @param parser a parser whose last {@code parse} call succeeded
+     */
+    public void add(SampleParser parser) {
+        add(parser.getPatientId(), parser.getMeasurementValue(), parser.getRecordTypeCode(), parser.getTimestamp());
+    }
+
+    /**
+     * Empties the batch, keeping its capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getPatientId(int index) {
+        checkIndex(index);
+        return patientIds[index];
+    }
+
+    public double getMeasurementValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    public String getRecordType(int index) {
+        checkIndex(index);
+        return RecordTypes.label(recordTypes[index]);
+    }
+
+    public int getRecordTypeCode(int index) {
+        checkIndex(index);
+        return recordTypes[index];
+    }
+
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.data_management;
+
+/**
+ * Receives every sample as soon as it has been stored by {@link DataStorage}.
+ * Listeners are called on the ingesting thread, so implementations should do
+ * a small, bounded amount of work per sample.
+ */
+public interface SampleListener {
+
+    /**
+     * Called after a sample has been added to the storage.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordType       the type of record, e.g., "ECG", "Saturation"
+     * @param measurementValue the measured value
+     * @param timestamp        the time of the measurement, in milliseconds
+     *                         since the Unix epoch
+     */
+    void onSample(int patientId, String recordType, double measurementValue, long timestamp);
+
+    /**
+     * Called after a sample has been added to the storage, with the record
+     * type as its {@link RecordTypes} code. The storage calls this method;
+     * the default implementation resolves the label and calls
+     * {@link #onSample(int, String, double, long)}, so listeners that
+     * dispatch on the type should override it.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordType       the code of the type of record
+     * @param measurementValue the measured value
+     * @param timestamp        the time of the measurement, in milliseconds
+     *                         since the Unix epoch
+     */
+    default void onSample(int patientId, int recordType, double measurementValue, long timestamp) {
+        onSample(patientId, RecordTypes.label(recordType), measurementValue, timestamp);
+    }
+}
@@ -0,0 +1,441 @@
+package com.data_management;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Parses one sample line in place, without creating intermediate strings or
+ * arrays. Two layouts are accepted:
+ * <ul>
+ * <li>{@code Patient ID: 1, Timestamp: 1716683934356, Label: ECG, Data: 0.19}
+ * as written by the file and console output strategies;</li>
+ * <li>{@code 1,1716683934356,ECG,0.19} as written by the TCP and WebSocket
+ * output strategies.</li>
+ * </ul>
+ * A trailing {@code %} on the value is ignored. Record type labels are
+ * resolved through {@link RecordTypes} to their code and shared label, so
+ * steady-state parsing allocates nothing. After a successful {@link #parse} the fields are available through
+ * the getters until the next call.
+ *
+ * <p>Instances are not thread-safe; use one parser per reading thread.
+ */
+public final class SampleParser {
+
+    private final ByteSequence bytes = new ByteSequence();
+    private final int[] fieldStart = new int[4];
+    private final int[] fieldEnd = new int[4];
+
+    private int patientId;
+    private long timestamp;
+    private int recordTypeCode;
+    private String recordType;
+    private double measurementValue;
+
+    /**
+     * Parses a complete line.
+     *
+     * @param line the line, without its line terminator
+     * @return {@code true} if the line held a valid sample
+     */
+    public boolean parse(CharSequence line) {
+        return parse(line, 0, line.length());
+    }
+
+    /**
+     * Parses the US-ASCII line stored in {@code buffer} between the absolute
+     * positions {@code start} (inclusive) and {@code end} (exclusive). The
+     * buffer's position and limit are not changed.
+     *
+     * @param buffer the buffer holding the line
+     * @param start  the position of the first byte of the line
+     * @param end    the position just past the last byte of the line
+     * @return {@code true} if the line held a valid sample
+     */
+    public boolean parse(ByteBuffer buffer, int start, int end) {
+        bytes.wrap(buffer);
+        return parse(bytes, start, end);
+    }
+
+    /**
+     * Parses the part of {@code line} between {@code start} (inclusive) and
+     * {@code end} (exclusive).
+     *
+     * @return {@code true} if the range held a valid sample
+     */
+    public boolean parse(CharSequence line, int start, int end) {
+        // split into exactly four comma separated fields
+        int field = 0;
+        int begin = start;
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == ',') {
+                if (field == 3) {
+                    return false;
+                }
+                fieldStart[field] = begin;
+                fieldEnd[field] = i;
+                field++;
+                begin = i + 1;
+            }
+        }
+        if (field != 3) {
+            return false;
+        }
+        fieldStart[3] = begin;
+        fieldEnd[3] = end;
+
+        // drop "Name:" prefixes and surrounding blanks
+        for (int f = 0; f < 4; f++) {
+            int s = fieldStart[f];
+            int e = fieldEnd[f];
+            for (int i = s; i < e; i++) {
+                if (line.charAt(i) == ':') {
+                    s = i + 1;
+                }
+            }
+            while (s < e && line.charAt(s) <= ' ') {
+                s++;
+            }
+            while (e > s && line.charAt(e - 1) <= ' ') {
+                e--;
+            }
+            if (s == e) {
+                return false;
+            }
+            fieldStart[f] = s;
+            fieldEnd[f] = e;
+        }
+
+        long id = parseLong(line, fieldStart[0], fieldEnd[0]);
+        if (id == Long.MIN_VALUE || id > Integer.MAX_VALUE || id < Integer.MIN_VALUE) {
+            return false;
+        }
+        long time = parseLong(line, fieldStart[1], fieldEnd[1]);
+        if (time == Long.MIN_VALUE) {
+            return false;
+        }
+        int valueEnd = fieldEnd[3];
+        if (line.charAt(valueEnd - 1) == '%') {
+            valueEnd--;
+        }
+        double value = parseDouble(line, fieldStart[3], valueEnd);
+        if (Double.isNaN(value)) {
+            return false;
+        }
+        int code = recordTypeCode(line, fieldStart[2], fieldEnd[2]);
+        if (code < 0) {
+            return false;
+        }
+
+        patientId = (int) id;
+        timestamp = time;
+        recordTypeCode = code;
+        recordType = RecordTypes.label(code);
+        measurementValue = value;
+        return true;
+    }
+
+    /**
+     * @return the patient ID of the last parsed sample
+     */
+    public int getPatientId() {
+        return patientId;
+    }
+
+    /**
+     * @return the timestamp of the last parsed sample
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the record type of the last parsed sample
+     */
+    public String getRecordType() {
+        return recordType;
+    }
+
+    /**
+     * @return the {@link RecordTypes} code of the record type of the last
+     * parsed sample
+     */
+    public int getRecordTypeCode() {
+        return recordTypeCode;
+    }
+
+    /**
+     * @return the measurement value of the last parsed sample
+     */
+    public double getMeasurementValue() {
+        return measurementValue;
+    }
+
+    /**
+     * @return the code of the label, registering new valid labels, or -1 if
+     * the label is invalid or the registry is full
+     */
+    private static int recordTypeCode(CharSequence line, int start, int end) {
+        int code = RecordTypes.find(line, start, end);
+        if (code >= 0) {
+            return code;
+        }
+        if (!RecordTypes.isValidLabel(line, start, end)) {
+            return -1;
+        }
+        try {
+            return RecordTypes.codeOf(line.subSequence(start, end).toString());
+        } catch (IllegalStateException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a signed decimal integer.
+     *
+     * @return the value, or {@link Long#MIN_VALUE} if the text is not a valid
+     * integer
+     */
+    static long parseLong(CharSequence s, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (s.charAt(i) == '-' || s.charAt(i) == '+') {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            return Long.MIN_VALUE;
+        }
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * Parses a decimal floating point number such as {@code 98.0},
+     * {@code -0.25} or {@code 1.5E-4}. The result is correctly rounded, as
+     * with {@link Double#parseDouble}.
+     *
+     * @return the value, or {@link Double#NaN} if the text is not a valid
+     * number
+     */
+    static double parseDouble(CharSequence s, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0; // significant digits in the mantissa
+        int exponent = 0;
+        boolean anyDigit = false;
+        boolean truncated = false;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                anyDigit = true;
+                if (digits < 19) {
+                    if (mantissa != 0 || c != '0') {
+                        mantissa = mantissa * 10 + (c - '0');
+                        digits = mantissa == 0 ? 0 : digits + 1;
+                    }
+                    if (fraction) {
+                        exponent--;
+                    }
+                } else {
+                    truncated |= c != '0';
+                    if (!fraction) {
+                        exponent++;
+                    }
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (!anyDigit) {
+            return fallback(s, start, end);
+        }
+        if (i < end) {
+            char c = s.charAt(i);
+            if (c != 'e' && c != 'E' || i + 1 == end) {
+                return Double.NaN;
+            }
+            long exp = parseLong(s, i + 1, end);
+            if (exp == Long.MIN_VALUE) {
+                return Double.NaN;
+            }
+            if (exp > 10000 || exp < -10000) {
+                return fallback(s, start, end);
+            }
+            exponent += (int) exp;
+        }
+        if (truncated) {
+            return fallback(s, start, end);
+        }
+        double value = toDouble(mantissa, exponent);
+        if (Double.isNaN(value)) {
+            return fallback(s, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double fallback(CharSequence s, int start, int end) {
+        try {
+            return Double.parseDouble(s.subSequence(start, end).toString());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // ---- decimal to binary conversion -------------------------------------
+
+    private static final double[] EXACT_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int SMALLEST_POWER = -342;
+    private static final int LARGEST_POWER = 308;
+    private static final long[] POWERS_OF_FIVE = powersOfFive();
+
+    /**
+     * Converts {@code mantissa * 10^exponent} to the nearest double. Uses the
+     * exact fast path when both factors are exactly representable, and the
+     * Eisel-Lemire algorithm otherwise.
+     *
+     * @return the value, or {@link Double#NaN} when the result needs the slow
+     * path (subnormal numbers)
+     */
+    private static double toDouble(long mantissa, int exponent) {
+        if (mantissa == 0 || exponent < SMALLEST_POWER) {
+            return 0.0;
+        }
+        if (exponent > LARGEST_POWER) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // the mantissa holds up to 19 digits and is treated as unsigned
+        if (Long.compareUnsigned(mantissa, 1L << 53) <= 0 && exponent >= -22 && exponent <= 22) {
+            return exponent < 0 ? mantissa / EXACT_POWERS_OF_TEN[-exponent]
+                    : mantissa * EXACT_POWERS_OF_TEN[exponent];
+        }
+
+        int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+        long w = mantissa << leadingZeros;
+        int index = 2 * (exponent - SMALLEST_POWER);
+        long high = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index]);
+        long low = w * POWERS_OF_FIVE[index];
+        if ((high & 0x1FF) == 0x1FF) {
+            long secondHigh = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index + 1]);
+            low += secondHigh;
+            if (Long.compareUnsigned(secondHigh, low) > 0) {
+                high++;
+            }
+        }
+
+        int upperBit = (int) (high >>> 63);
+        long bits = high >>> (upperBit + 9);
+        int power2 = (((152170 + 65536) * exponent) >> 16) + 63 + upperBit - leadingZeros + 1023;
+        if (power2 <= 0) {
+            return Double.NaN;
+        }
+        // exactly halfway between two doubles: round to even
+        if ((low == 0 || low == 1) && exponent >= -4 && exponent <= 23 && (bits & 3) == 1
+                && (bits << (upperBit + 9)) == high) {
+            bits &= ~1L;
+        }
+        bits += bits & 1;
+        bits >>>= 1;
+        if (bits >= (2L << 52)) {
+            bits = 1L << 52;
+            power2++;
+        }
+        bits &= ~(1L << 52);
+        if (power2 >= 0x7FF) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Double.longBitsToDouble(bits | ((long) power2 << 52));
+    }
+
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    /**
+     * Builds the 128-bit truncated approximations of {@code 5^q} used by the
+     * Eisel-Lemire algorithm, two longs (high, low) per power.
+     */
+    private static long[] powersOfFive() {
+        long[] table = new long[2 * (LARGEST_POWER - SMALLEST_POWER + 1)];
+        BigInteger twoTo128 = BigInteger.ONE.shiftLeft(128);
+        BigInteger twoTo127 = BigInteger.ONE.shiftLeft(127);
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int q = SMALLEST_POWER; q <= LARGEST_POWER; q++) {
+            BigInteger c;
+            if (q < 0) {
+                BigInteger power5 = BigInteger.valueOf(5).pow(-q);
+                int z = power5.subtract(BigInteger.ONE).bitLength(); // smallest z with 2^z >= 5^-q
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+                while (c.compareTo(twoTo128) >= 0) {
+                    c = c.shiftRight(1);
+                }
+            } else {
+                c = BigInteger.valueOf(5).pow(q);
+                while (c.compareTo(twoTo127) < 0) {
+                    c = c.shiftLeft(1);
+                }
+                while (c.compareTo(twoTo128) >= 0) {
+                    c = c.shiftRight(1);
+                }
+            }
+            int index = 2 * (q - SMALLEST_POWER);
+            table[index] = c.shiftRight(64).longValue();
+            table[index + 1] = c.and(mask).longValue();
+        }
+        return table;
+    }
+
+    /**
+     * Reusable {@link CharSequence} view of US-ASCII bytes in a buffer.
+     */
+    private static final class ByteSequence implements CharSequence {
+
+        private ByteBuffer buffer;
+
+        void wrap(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xFF);
+        }
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder builder = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                builder.append(charAt(i));
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
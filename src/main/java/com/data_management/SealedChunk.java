@@ -0,0 +1,39 @@
+package com.data_management;
+
+/**
+ * A full chunk of a {@link TimeSeries} that has been moved out of its
+ * {@code long[]} and {@code double[]} arrays, into an {@link OffHeapArena}
+ * or into a {@link CompressedChunk}. Sealed chunks hold
+ * {@value TimeSeries#CHUNK_SIZE} samples and are never modified; a write
+ * that needs to change one copies it back into arrays.
+ */
+abstract class SealedChunk {
+
+    /**
+     * @param index the position of the sample within the chunk
+     * @return the timestamp of the sample
+     */
+    abstract long timestampAt(int index);
+
+    /**
+     * @param index the position of the sample within the chunk
+     * @return the value of the sample
+     */
+    abstract double valueAt(int index);
+
+    /**
+     * @return the timestamp of the last sample, read without decoding the
+     * chunk, so that searches only decode the chunk they land in
+     */
+    abstract long lastTimestamp();
+
+    /**
+     * @return a new array holding the timestamp column
+     */
+    abstract long[] timestamps();
+
+    /**
+     * @return a new array holding the value column
+     */
+    abstract double[] values();
+}
@@ -0,0 +1,231 @@
+package com.data_management;
+
+import com.metrics.Histogram;
+import com.metrics.MetricsRegistry;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a {@link DataStorage} on disk, so that a restart does not have to
+ * re-read every source file or lose the samples received over the network.
+ *
+ * <p>Every sample is appended to a {@link WriteAheadLog}. A checkpoint starts
+ * a new log segment, writes the columns of every series to a compact
+ * snapshot file ({@code snapshot-<segment>.snap}) and then deletes the older
+ * snapshots and the log segments the new snapshot covers. Ingestion goes on
+ * while the snapshot is written.
+ *
+ * <p>Opening a directory restores the latest snapshot and replays only the
+ * log segments written since it was started. Segments written while the
+ * snapshot was being written may hold samples that the snapshot already
+ * has; such samples are recognised by their time and value and replayed
+ * once.
+ */
+public class StoragePersistence implements Closeable {
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Histogram CHECKPOINT_NANOS = MetricsRegistry.getDefault().histogram("storage.checkpoint.nanos");
+
+    private final Path directory;
+    private final DataStorage storage;
+    private final WriteAheadLog log;
+    private final long restoredSamples;
+    private final long replayedSamples;
+    private final long recoveryMillis;
+    private ScheduledExecutorService checkpoints; // guarded by this
+
+    private StoragePersistence(Path directory, DataStorage storage, WriteAheadLog log, long restoredSamples,
+            long replayedSamples, long recoveryMillis) {
+        this.directory = directory;
+        this.storage = storage;
+        this.log = log;
+        this.restoredSamples = restoredSamples;
+        this.replayedSamples = replayedSamples;
+        this.recoveryMillis = recoveryMillis;
+    }
+
+    /**
+     * Opens a directory with the default log segment size and commit
+     * interval.
+     *
+     * @see #open(Path, DataStorage, long, long)
+     */
+    public static StoragePersistence open(Path directory, DataStorage storage) throws IOException {
+        return open(directory, storage, WriteAheadLog.DEFAULT_SEGMENT_BYTES, WriteAheadLog.DEFAULT_COMMIT_INTERVAL_MS);
+    }
+
+    /**
+     * Restores the samples kept in a directory into a storage and logs every
+     * sample added afterwards. Replayed samples are passed to the listeners
+     * already registered on the storage, so register listeners that should
+     * only see new samples after opening.
+     *
+     * @param directory the directory holding the snapshot and the log; created
+     * if missing
+     * @param storage the storage to restore into and log, normally empty
+     * @param segmentBytes the size at which a new log segment is started
+     * @param commitIntervalMillis the time between two group commits of the
+     * log
+     * @return the opened persistence
+     * @throws IOException if the directory cannot be read or written
+     */
+    public static StoragePersistence open(Path directory, DataStorage storage, long segmentBytes,
+            long commitIntervalMillis) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        deleteFiles(directory, "*" + TEMP_SUFFIX); // left behind by a checkpoint that did not finish
+        List<Path> snapshots = snapshots(directory);
+        long replayFrom = 0;
+        long dedupeThrough = -1;
+        long restored = 0;
+        if (!snapshots.isEmpty()) {
+            StorageSnapshot.Header header = StorageSnapshot.read(snapshots.get(snapshots.size() - 1), storage);
+            replayFrom = header.replayFrom;
+            dedupeThrough = header.dedupeThrough;
+            restored = header.samples;
+        }
+        long replayed = WriteAheadLog.replay(directory, replayFrom, dedupeThrough, storage);
+        // numbered at or after replayFrom even if its segments are gone, so the next open replays it
+        WriteAheadLog log = new WriteAheadLog(directory, segmentBytes, commitIntervalMillis, replayFrom);
+        storage.setLog(log);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println("Restored " + restored + " samples and replayed " + replayed + " from " + directory
+                + " in " + millis + " ms");
+        return new StoragePersistence(directory, storage, log, restored, replayed, millis);
+    }
+
+    /**
+     * Writes a snapshot of the storage and deletes the files it makes
+     * obsolete. Only one checkpoint runs at a time.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void checkpoint() throws IOException {
+        long start = System.nanoTime();
+        long replayFrom = log.roll();
+        Path snapshot = directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, replayFrom, SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(snapshot.getFileName() + TEMP_SUFFIX);
+        StorageSnapshot.write(storage, temp, log, replayFrom);
+        Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        for (Path old : snapshots(directory)) {
+            if (!old.equals(snapshot)) {
+                Files.deleteIfExists(old);
+            }
+        }
+        log.deleteSegmentsBefore(replayFrom);
+        CHECKPOINT_NANOS.recordSince(start);
+    }
+
+    /**
+     * Writes a checkpoint at a fixed rate on a background thread. Failures
+     * are reported and the next checkpoint is still attempted.
+     *
+     * @param period the time between two checkpoints
+     * @param unit the unit of {@code period}
+     */
+    public synchronized void startCheckpoints(long period, TimeUnit unit) {
+        if (checkpoints != null) {
+            throw new IllegalStateException("Checkpoints already started");
+        }
+        checkpoints = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpoints.scheduleAtFixedRate(() -> {
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Checkpoint of " + directory + " failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops logging and commits the samples logged so far. The samples are
+     * recovered from the log on the next open; call {@link #checkpoint()}
+     * first to make that faster.
+     *
+     * @throws IOException if the log could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = checkpoints;
+            checkpoints = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        storage.setLog(null);
+        log.close();
+    }
+
+    /**
+     * @return the write-ahead log; call {@link WriteAheadLog#sync()} to wait
+     * until the samples stored so far are durable
+     */
+    public WriteAheadLog getLog() {
+        return log;
+    }
+
+    /**
+     * @return the number of raw samples restored from the snapshot on open
+     */
+    public long getRestoredSamples() {
+        return restoredSamples;
+    }
+
+    /**
+     * @return the number of samples replayed from the log on open
+     */
+    public long getReplayedSamples() {
+        return replayedSamples;
+    }
+
+    /**
+     * @return the time taken to open, in milliseconds
+     */
+    public long getRecoveryMillis() {
+        return recoveryMillis;
+    }
+
+    private static List<Path> snapshots(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : files) {
+                snapshots.add(file);
+            }
+        }
+        Collections.sort(snapshots); // fixed-width numbers sort by name
+        return snapshots;
+    }
+
+    private static void deleteFiles(Path directory, String glob) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact file holding the columns of every series of a {@link DataStorage},
+ * written by {@link StoragePersistence} at every checkpoint. The file starts
+ * with a header:
+ * <pre>
+ * int    magic            0x43534E50 ("CSNP")
+ * short  version          1
+ * short  label count      n
+ * n x    (short length, UTF-8 bytes)   record type labels, codes 0..n-1
+ * long   first write-ahead log segment not covered by the snapshot
+ * long   last write-ahead log segment that may be partly covered
+ * int    series count
+ * </pre>
+ * followed by the series:
+ * <pre>
+ * int    patient ID
+ * short  record type code
+ * long   version, rawFrom, minutesFrom
+ * int    sample count, then the timestamp column and the value column
+ * 2 x    (int bucket count, then the start, min, max, sum and count columns)
+ *        minute rollups, then hour rollups
+ * </pre>
+ * and ends with the magic number again. All numbers are big-endian. Columns
+ * are written and read in bulk, and the file is read through memory-mapped
+ * windows, so loading costs little more than copying the columns into the
+ * chunk arrays of the restored series.
+ */
+final class StorageSnapshot {
+
+    static final int MAGIC = 0x43534E50;
+    static final short VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final long WINDOW_BYTES = 64L << 20;
+    /** Room reserved for the label table when reading. */
+    private static final int LABELS_BYTES = 1 << 20;
+
+    private StorageSnapshot() {
+    }
+
+    /**
+     * Log segments a snapshot depends on, as read from its header.
+     */
+    static final class Header {
+
+        /** Samples of older segments are all held by the snapshot. */
+        final long replayFrom;
+        /** Samples of segments up to this one may be held by the snapshot. */
+        final long dedupeThrough;
+        /** Number of samples restored. */
+        long samples;
+
+        Header(long replayFrom, long dedupeThrough) {
+            this.replayFrom = replayFrom;
+            this.dedupeThrough = dedupeThrough;
+        }
+    }
+
+    /**
+     * Writes every series of a storage. Series are read one by one from their
+     * current snapshots while ingestion continues, and the file is forced to
+     * disk before returning.
+     *
+     * @param storage the storage to write
+     * @param file the file to write, replaced if it exists
+     * @param log the log whose segment numbers are recorded; every sample
+     * logged before {@code replayFrom} must already be in the storage
+     * @param replayFrom the first log segment whose samples may be missing
+     * @throws IOException if the file cannot be written
+     */
+    static void write(DataStorage storage, Path file, WriteAheadLog log, long replayFrom) throws IOException {
+        String[] labels = new String[RecordTypes.count()];
+        for (int code = 0; code < labels.length; code++) {
+            labels[code] = RecordTypes.label(code);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.buffer.putInt(MAGIC).putShort(VERSION);
+            WriteAheadLog.writeLabels(out.buffer, labels);
+            long segmentsPosition = out.position();
+            out.buffer.putLong(replayFrom).putLong(Long.MAX_VALUE).putInt(0); // patched below
+            int seriesCount = 0;
+            for (Patient patient : storage.getAllPatients()) {
+                for (TimeSeries series : patient.allSeries()) {
+                    // types registered since the header was written are left to the log
+                    if (series != null && series.getRecordTypeCode() < labels.length) {
+                        writeSeries(out, patient.getPatientID(), series.getRecordTypeCode(), series.snapshot());
+                        seriesCount++;
+                    }
+                }
+            }
+            out.ensure(4);
+            out.buffer.putInt(MAGIC);
+            out.flush();
+            // samples are logged before they are stored, so every sample the series held is logged by now; once
+            // the log has written them, samples in later segments were stored after every series was written
+            log.sync();
+            ByteBuffer patch = ByteBuffer.allocate(20);
+            patch.putLong(replayFrom).putLong(log.getSegment()).putInt(seriesCount).flip();
+            while (patch.hasRemaining()) {
+                channel.write(patch, segmentsPosition + patch.position());
+            }
+            channel.force(true);
+        }
+    }
+
+    private static void writeSeries(Output out, int patientId, int code, TimeSeries.Snapshot series)
+            throws IOException {
+        out.ensure(4 + 2 + 8 * 3 + 4);
+        out.buffer.putInt(patientId).putShort((short) code);
+        out.buffer.putLong(series.version).putLong(series.rawFrom).putLong(series.minutesFrom);
+        int size = series.size;
+        out.buffer.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.ensure(8);
+            out.buffer.putLong(series.timestampAt(i));
+        }
+        for (int i = 0; i < size; i++) {
+            out.ensure(8);
+            out.buffer.putDouble(series.valueAt(i));
+        }
+        writeRollups(out, series.minutes);
+        writeRollups(out, series.hours);
+    }
+
+    private static void writeRollups(Output out, RollupSeries rollups) throws IOException {
+        int size = rollups.size();
+        out.ensure(4);
+        out.buffer.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.ensure(8);
+            out.buffer.putLong(rollups.startAt(i));
+        }
+        for (int i = 0; i < size; i++) {
+            out.ensure(8);
+            out.buffer.putDouble(rollups.minAt(i));
+        }
+        for (int i = 0; i < size; i++) {
+            out.ensure(8);
+            out.buffer.putDouble(rollups.maxAt(i));
+        }
+        for (int i = 0; i < size; i++) {
+            out.ensure(8);
+            out.buffer.putDouble(rollups.sumAt(i));
+        }
+        for (int i = 0; i < size; i++) {
+            out.ensure(8);
+            out.buffer.putLong(rollups.countAt(i));
+        }
+    }
+
+    /**
+     * Restores every series of a snapshot into a storage, replacing series
+     * the storage already holds for the same patient and record type.
+     * Listeners are not notified.
+     *
+     * @param file the snapshot to read
+     * @param storage the storage to restore into
+     * @return the header of the snapshot
+     * @throws IOException if the file cannot be read or is not a complete
+     * snapshot
+     */
+    static Header read(Path file, DataStorage storage) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            in.ensure(8);
+            if (in.buffer.getInt() != MAGIC || in.buffer.getShort() != VERSION) {
+                throw new IOException("Not a storage snapshot: " + file);
+            }
+            in.ensureAvailable(LABELS_BYTES);
+            int[] codes = WriteAheadLog.readLabels(in.buffer);
+            in.ensure(20);
+            Header header = new Header(in.buffer.getLong(), in.buffer.getLong());
+            int seriesCount = in.buffer.getInt();
+            for (int s = 0; s < seriesCount; s++) {
+                in.ensure(4 + 2 + 8 * 3 + 4);
+                int patientId = in.buffer.getInt();
+                int code = codes[in.buffer.getShort()];
+                long version = in.buffer.getLong();
+                long rawFrom = in.buffer.getLong();
+                long minutesFrom = in.buffer.getLong();
+                int size = in.buffer.getInt();
+                int chunks = (size + TimeSeries.CHUNK_SIZE - 1) >>> TimeSeries.CHUNK_SHIFT;
+                long[][] timestamps = new long[Math.max(chunks, 1)][];
+                double[][] values = new double[Math.max(chunks, 1)][];
+                for (int c = 0; c < chunks; c++) {
+                    int length = Math.min(size - (c << TimeSeries.CHUNK_SHIFT), TimeSeries.CHUNK_SIZE);
+                    timestamps[c] = new long[TimeSeries.chunkCapacity(length)];
+                    in.readLongs(timestamps[c], length);
+                }
+                for (int c = 0; c < chunks; c++) {
+                    int length = Math.min(size - (c << TimeSeries.CHUNK_SHIFT), TimeSeries.CHUNK_SIZE);
+                    values[c] = new double[TimeSeries.chunkCapacity(length)];
+                    in.readDoubles(values[c], length);
+                }
+                RollupSeries minutes = readRollups(in, Rollup.Resolution.MINUTE);
+                RollupSeries hours = readRollups(in, Rollup.Resolution.HOUR);
+                storage.patient(patientId).restoreSeries(code, new TimeSeries.Snapshot(timestamps, values, null, 0, 0,
+                        size, minutes, hours, rawFrom, minutesFrom, version));
+                header.samples += size;
+            }
+            in.ensure(4);
+            if (in.buffer.getInt() != MAGIC) {
+                throw new IOException("Truncated storage snapshot: " + file);
+            }
+            return header;
+        }
+    }
+
+    private static RollupSeries readRollups(Input in, Rollup.Resolution resolution) throws IOException {
+        in.ensure(4);
+        int size = in.buffer.getInt();
+        if (size == 0) {
+            return new RollupSeries(resolution);
+        }
+        long[] starts = new long[size];
+        double[] mins = new double[size];
+        double[] maxs = new double[size];
+        double[] sums = new double[size];
+        long[] counts = new long[size];
+        in.readLongs(starts, size);
+        in.readDoubles(mins, size);
+        in.readDoubles(maxs, size);
+        in.readDoubles(sums, size);
+        in.readLongs(counts, size);
+        return new RollupSeries(resolution, starts, mins, maxs, sums, counts);
+    }
+
+    /**
+     * Buffered channel writer that tracks the file position.
+     */
+    private static final class Output {
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final FileChannel channel;
+        private long written;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() {
+            return written + buffer.position();
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads a file through a memory-mapped window that moves forward as it
+     * is consumed.
+     */
+    private static final class Input {
+
+        ByteBuffer buffer;
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+
+        Input(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, size - position));
+        }
+
+        /**
+         * Makes sure at least {@code bytes} bytes can be read from the buffer.
+         */
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            long position = windowStart + buffer.position();
+            if (size - position < bytes) {
+                throw new IOException("Truncated storage snapshot");
+            }
+            map(position);
+        }
+
+        /**
+         * Makes sure {@code bytes} bytes, or the rest of the file if it is
+         * shorter, can be read from the buffer.
+         */
+        void ensureAvailable(int bytes) throws IOException {
+            ensure((int) Math.min(bytes, size - windowStart - buffer.position()));
+        }
+
+        void readLongs(long[] target, int length) throws IOException {
+            int done = 0;
+            while (done < length) {
+                ensure(8);
+                int count = Math.min(length - done, buffer.remaining() / 8);
+                buffer.asLongBuffer().get(target, done, count);
+                buffer.position(buffer.position() + count * 8);
+                done += count;
+            }
+        }
+
+        void readDoubles(double[] target, int length) throws IOException {
+            int done = 0;
+            while (done < length) {
+                ensure(8);
+                int count = Math.min(length - done, buffer.remaining() / 8);
+                buffer.asDoubleBuffer().get(target, done, count);
+                buffer.position(buffer.position() + count * 8);
+                done += count;
+            }
+        }
+    }
+}
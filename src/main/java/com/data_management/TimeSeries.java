@@ -0,0 +1,844 @@
+package com.data_management;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Columnar storage for all samples of one record type of one patient.
+ * Timestamps and measurement values are kept in primitive {@code long[]} and
+ * {@code double[]} columns that grow in fixed-size chunks, so appending only
+ * ever copies the partly filled last chunk. A new chunk starts small and
+ * doubles up to the full chunk size, so that series with few samples stay
+ * small. The series is kept sorted by timestamp, which lets
+ * range queries locate their bounds with a binary search.
+ *
+ * <p>Writers are serialised per series, while readers never lock: every
+ * mutation publishes an immutable {@link Snapshot} through a volatile field.
+ * Samples visible in a snapshot are never modified afterwards, because
+ * appends only write past the published size and late samples are inserted
+ * into copies of the affected chunks.
+ *
+ * <p>When the series has a {@link RetentionPolicy.Rule}, samples older than
+ * its raw horizon are folded into minute and hour {@link RollupSeries} as
+ * part of the write that ages them out, and the chunks they occupied are
+ * released. The snapshot records where raw data starts, so range queries
+ * serve older times from the rollups.
+ *
+ * <p>Every chunk except the one being appended to is sealed once it is full:
+ * encoded as a {@link CompressedChunk}, or moved into the
+ * {@link OffHeapArena} if the storage has one, and the snapshot keeps the
+ * sealed chunk instead of the arrays. Chunks that do not compress to half
+ * their size, such as ECG waveforms, stay as arrays. A late sample that
+ * falls into a sealed chunk brings the chunk back into arrays for the
+ * write; it is sealed again by the same write.
+ *
+ * <p>Statistics over {@link RollingWindow}s of the newest samples are kept
+ * by {@link RollingStatistics}, which every write updates once a window has
+ * been asked for.
+ */
+class TimeSeries {
+
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // samples per chunk
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    /** Capacity of a new chunk; chunks double as they fill, up to CHUNK_SIZE. */
+    private static final int MIN_CHUNK_CAPACITY = 16;
+    private static final RollingStatistics[] NO_WINDOWS = {};
+
+    private final int patientId;
+    private final int recordTypeCode;
+    private final String recordType;
+    private final RetentionPolicy.Rule retention;
+    private final OffHeapArena arena; // null compresses full chunks on the heap
+    private volatile Snapshot snapshot;
+    private volatile RollingStatistics[] windows = NO_WINDOWS; // written under the lock
+
+    /**
+     * Creates an empty series that keeps every sample.
+     *
+     * @param patientId      the patient the samples belong to
+     * @param recordTypeCode the {@link RecordTypes} code of the type of record
+     *                       stored in this series
+     */
+    TimeSeries(int patientId, int recordTypeCode) {
+        this(patientId, recordTypeCode, RetentionPolicy.Rule.KEEP_ALL);
+    }
+
+    /**
+     * Creates an empty series.
+     *
+     * @param patientId      the patient the samples belong to
+     * @param recordTypeCode the {@link RecordTypes} code of the type of record
+     *                       stored in this series
+     * @param retention      how long samples are kept
+     */
+    TimeSeries(int patientId, int recordTypeCode, RetentionPolicy.Rule retention) {
+        this(patientId, recordTypeCode, retention, null);
+    }
+
+    /**
+     * Creates an empty series.
+     *
+     * @param patientId      the patient the samples belong to
+     * @param recordTypeCode the {@link RecordTypes} code of the type of record
+     *                       stored in this series
+     * @param retention      how long samples are kept
+     * @param arena          where full chunks are moved, or null to
+     *                       compress them on the heap
+     */
+    TimeSeries(int patientId, int recordTypeCode, RetentionPolicy.Rule retention, OffHeapArena arena) {
+        this.patientId = patientId;
+        this.recordTypeCode = recordTypeCode;
+        this.recordType = RecordTypes.label(recordTypeCode);
+        this.retention = retention;
+        this.arena = arena;
+        this.snapshot = new Snapshot(new long[1][], new double[1][], null, 0, 0, 0,
+                new RollupSeries(Rollup.Resolution.MINUTE), new RollupSeries(Rollup.Resolution.HOUR),
+                Long.MIN_VALUE, Long.MIN_VALUE, 0);
+    }
+
+    /**
+     * Creates a series holding previously saved state, such as a series read
+     * back from a storage snapshot.
+     *
+     * @param patientId      the patient the samples belong to
+     * @param recordTypeCode the {@link RecordTypes} code of the type of record
+     *                       stored in this series
+     * @param retention      how long samples are kept
+     * @param arena          where full chunks are moved, or null to
+     *                       compress them on the heap
+     * @param restored       the state of the series
+     */
+    TimeSeries(int patientId, int recordTypeCode, RetentionPolicy.Rule retention, OffHeapArena arena,
+            Snapshot restored) {
+        this.patientId = patientId;
+        this.recordTypeCode = recordTypeCode;
+        this.recordType = RecordTypes.label(recordTypeCode);
+        this.retention = retention;
+        this.arena = arena;
+        this.snapshot = seal(restored, 0);
+    }
+
+    /**
+     * Adds a sample to the series. Samples normally arrive in timestamp order
+     * and are simply appended; a late sample is shifted back into place so
+     * the series stays sorted. Samples with equal timestamps keep their
+     * insertion order.
+     *
+     * @param timestamp the time of the measurement, in milliseconds since epoch
+     * @param value     the measured value
+     */
+    synchronized void add(long timestamp, double value) {
+        Snapshot current = snapshot;
+        int offset = current.offset;
+        int size = current.size;
+        long[][] timestamps = current.timestampChunks;
+        double[][] values = current.valueChunks;
+
+        // positions in the chunk arrays are offset by the samples already rolled up
+        int end = offset + size;
+        int index = end;
+        if (size > 0 && current.timestampAt(size - 1) > timestamp) {
+            index = offset + current.upperBound(timestamp);
+            current = current.unseal(index >>> CHUNK_SHIFT, (end - 1) >>> CHUNK_SHIFT);
+            // copy every chunk touched by the shift so published data stays untouched
+            timestamps = current.timestampChunks.clone();
+            values = current.valueChunks.clone();
+            for (int chunk = index >>> CHUNK_SHIFT; chunk <= (end - 1) >>> CHUNK_SHIFT; chunk++) {
+                timestamps[chunk] = timestamps[chunk].clone();
+                values[chunk] = values[chunk].clone();
+            }
+        }
+
+        int tail = end >>> CHUNK_SHIFT;
+        if (tail >= timestamps.length) {
+            long[][] grownTimestamps = new long[timestamps.length * 2][];
+            double[][] grownValues = new double[values.length * 2][];
+            System.arraycopy(timestamps, 0, grownTimestamps, 0, timestamps.length);
+            System.arraycopy(values, 0, grownValues, 0, values.length);
+            timestamps = grownTimestamps;
+            values = grownValues;
+        }
+        int needed = (end & CHUNK_MASK) + 1;
+        if (timestamps[tail] == null) {
+            timestamps[tail] = new long[chunkCapacity(needed)];
+            values[tail] = new double[chunkCapacity(needed)];
+        } else if (timestamps[tail].length < needed) {
+            if (timestamps == current.timestampChunks) {
+                // published snapshots still read the old chunk
+                timestamps = timestamps.clone();
+                values = values.clone();
+            }
+            timestamps[tail] = Arrays.copyOf(timestamps[tail], chunkCapacity(needed));
+            values[tail] = Arrays.copyOf(values[tail], chunkCapacity(needed));
+        }
+
+        for (int i = end; i > index; i--) {
+            timestamps[i >>> CHUNK_SHIFT][i & CHUNK_MASK] = timestamps[(i - 1) >>> CHUNK_SHIFT][(i - 1) & CHUNK_MASK];
+            values[i >>> CHUNK_SHIFT][i & CHUNK_MASK] = values[(i - 1) >>> CHUNK_SHIFT][(i - 1) & CHUNK_MASK];
+        }
+        timestamps[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = timestamp;
+        values[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = value;
+
+        publish(seal(current.withSamples(timestamps, values, offset, size + 1, 1), index >>> CHUNK_SHIFT),
+                index == end ? size : -1);
+    }
+
+    /**
+     * Adds several samples under one lock and publishes one snapshot. The
+     * samples are merged into place like {@link #add}, so the result is the
+     * same as adding them one by one in the given order.
+     *
+     * @param timestamps the times of the measurements; reordered if unsorted
+     * @param values     the measured values; reordered with the timestamps
+     * @param count      the number of samples to take from the arrays
+     */
+    synchronized void addAll(long[] timestamps, double[] values, int count) {
+        if (count == 0) {
+            return;
+        }
+        sortByTimestamp(timestamps, values, count);
+        Snapshot current = snapshot;
+        int offset = current.offset;
+        int size = current.size;
+        int newSize = size + count;
+        long[][] timestampChunks = current.timestampChunks;
+        double[][] valueChunks = current.valueChunks;
+
+        int index = size;
+        long[] tailTimestamps = null;
+        double[] tailValues = null;
+        if (size > 0 && current.timestampAt(size - 1) > timestamps[0]) {
+            index = current.upperBound(timestamps[0]);
+            current = current.unseal((offset + index) >>> CHUNK_SHIFT, (offset + size - 1) >>> CHUNK_SHIFT);
+            // keep the samples that the merge will overwrite, and copy their chunks
+            tailTimestamps = new long[size - index];
+            tailValues = new double[size - index];
+            for (int i = index; i < size; i++) {
+                tailTimestamps[i - index] = current.timestampAt(i);
+                tailValues[i - index] = current.valueAt(i);
+            }
+            timestampChunks = current.timestampChunks.clone();
+            valueChunks = current.valueChunks.clone();
+            for (int chunk = (offset + index) >>> CHUNK_SHIFT; chunk <= (offset + size - 1) >>> CHUNK_SHIFT; chunk++) {
+                timestampChunks[chunk] = timestampChunks[chunk].clone();
+                valueChunks[chunk] = valueChunks[chunk].clone();
+            }
+        }
+
+        int lastChunk = (offset + newSize - 1) >>> CHUNK_SHIFT;
+        if (lastChunk >= timestampChunks.length) {
+            int length = timestampChunks.length;
+            while (lastChunk >= length) {
+                length *= 2;
+            }
+            timestampChunks = Arrays.copyOf(timestampChunks, length);
+            valueChunks = Arrays.copyOf(valueChunks, length);
+        }
+        for (int chunk = (offset + size) >>> CHUNK_SHIFT; chunk <= lastChunk; chunk++) {
+            int needed = chunk < lastChunk ? CHUNK_SIZE : ((offset + newSize - 1) & CHUNK_MASK) + 1;
+            if (timestampChunks[chunk] == null) {
+                timestampChunks[chunk] = new long[chunkCapacity(needed)];
+                valueChunks[chunk] = new double[chunkCapacity(needed)];
+            } else if (timestampChunks[chunk].length < needed) {
+                if (timestampChunks == current.timestampChunks) {
+                    // published snapshots still read the old chunk
+                    timestampChunks = timestampChunks.clone();
+                    valueChunks = valueChunks.clone();
+                }
+                timestampChunks[chunk] = Arrays.copyOf(timestampChunks[chunk], chunkCapacity(needed));
+                valueChunks[chunk] = Arrays.copyOf(valueChunks[chunk], chunkCapacity(needed));
+            }
+        }
+
+        int tailLength = size - index;
+        int tail = 0;
+        int added = 0;
+        for (int i = offset + index; i < offset + newSize; i++) {
+            long timestamp;
+            double value;
+            // on equal timestamps the stored sample comes first, as with add()
+            if (added == count || (tail < tailLength && tailTimestamps[tail] <= timestamps[added])) {
+                timestamp = tailTimestamps[tail];
+                value = tailValues[tail++];
+            } else {
+                timestamp = timestamps[added];
+                value = values[added++];
+            }
+            timestampChunks[i >>> CHUNK_SHIFT][i & CHUNK_MASK] = timestamp;
+            valueChunks[i >>> CHUNK_SHIFT][i & CHUNK_MASK] = value;
+        }
+
+        publish(seal(current.withSamples(timestampChunks, valueChunks, offset, newSize, count),
+                (offset + index) >>> CHUNK_SHIFT), index == size ? size : -1);
+    }
+
+    /**
+     * Applies retention to the result of a write, brings the rolling
+     * statistics up to date and publishes the new snapshot.
+     *
+     * @param written      the series after the write
+     * @param appendedFrom the index of the first sample the write appended,
+     *                     or -1 if it inserted samples before the newest one
+     */
+    private void publish(Snapshot written, int appendedFrom) {
+        Snapshot next = applyRetention(written);
+        for (RollingStatistics statistics : windows) {
+            statistics.update(written, appendedFrom, next);
+        }
+        snapshot = next;
+    }
+
+    /**
+     * Rolls up the samples that the retention rule no longer keeps raw and
+     * drops expired rollups, measuring the horizons back from the newest
+     * sample. Raw samples are rolled up to a minute boundary and minute
+     * rollups dropped to an hour boundary, so this does work about once per
+     * minute of data and otherwise only compares a few timestamps.
+     */
+    private Snapshot applyRetention(Snapshot next) {
+        if (retention.keepsAllRaw() || next.size == 0) {
+            return next;
+        }
+        long newest = next.timestampAt(next.size - 1);
+        long rawCutoff = cutoff(newest, retention.getRawMillis(), Rollup.Resolution.MINUTE);
+        if (next.size > retention.getMaxRawSamples()) {
+            long countCutoff = Rollup.Resolution.MINUTE.bucketStart(
+                    next.timestampAt(next.size - retention.getMaxRawSamples()));
+            rawCutoff = Math.max(rawCutoff, countCutoff);
+        }
+        long minuteCutoff = cutoff(newest, retention.getMinuteRollupMillis(), Rollup.Resolution.HOUR);
+        long hourCutoff = cutoff(newest, retention.getHourRollupMillis(), Rollup.Resolution.HOUR);
+
+        boolean rollRaw = next.timestampAt(0) < rawCutoff;
+        boolean dropMinutes = next.minutes.size() > 0 && next.minutes.startAt(0) < minuteCutoff;
+        boolean dropHours = next.hours.size() > 0 && next.hours.startAt(0) < hourCutoff;
+        if (!rollRaw && !dropMinutes && !dropHours) {
+            return next;
+        }
+
+        int rolled = rollRaw ? next.lowerBound(rawCutoff) : 0;
+        RollupSeries minutes = next.minutes.add(next, rolled).dropBefore(minuteCutoff);
+        RollupSeries hours = next.hours.add(next, rolled).dropBefore(hourCutoff);
+
+        // release the chunks that only held rolled-up samples
+        int offset = next.offset + rolled;
+        int droppedChunks = offset >>> CHUNK_SHIFT;
+        long[][] timestampChunks = next.timestampChunks;
+        double[][] valueChunks = next.valueChunks;
+        SealedChunk[] sealed = next.sealed;
+        int closedChunks = next.closedChunks;
+        if (droppedChunks > 0) {
+            int length = Math.max(timestampChunks.length - droppedChunks, 1);
+            timestampChunks = Arrays.copyOfRange(timestampChunks, droppedChunks, droppedChunks + length);
+            valueChunks = Arrays.copyOfRange(valueChunks, droppedChunks, droppedChunks + length);
+            // dropped handles free their arena slots once no snapshot reads them
+            sealed = sealed == null || droppedChunks >= sealed.length ? null
+                    : Arrays.copyOfRange(sealed, droppedChunks, sealed.length);
+            closedChunks = Math.max(closedChunks - droppedChunks, 0);
+            offset &= CHUNK_MASK;
+        }
+        return new Snapshot(timestampChunks, valueChunks, sealed, closedChunks, offset, next.size - rolled, minutes,
+                hours,
+                Math.max(next.rawFrom, rawCutoff), Math.max(next.minutesFrom, minuteCutoff), next.version);
+    }
+
+    /**
+     * Seals the full chunks from {@code fromChunk} on, and those filled since
+     * the last call, up to the chunk that holds the newest sample. Appends
+     * only ever fill the chunk before the newest one, so this normally looks
+     * at one chunk, once. Chunks stay as arrays if they do not compress or
+     * the arena is full; a full arena is tried again on the next write.
+     */
+    private Snapshot seal(Snapshot next, int fromChunk) {
+        int newestChunk = (next.offset + next.size - 1) >>> CHUNK_SHIFT;
+        if (next.size == 0 || next.closedChunks >= newestChunk && fromChunk >= newestChunk) {
+            return next;
+        }
+        long[][] timestampChunks = next.timestampChunks;
+        double[][] valueChunks = next.valueChunks;
+        SealedChunk[] sealed = next.sealed;
+        boolean copied = false;
+        int chunk = Math.min(fromChunk, next.closedChunks);
+        for (; chunk < newestChunk; chunk++) {
+            if (timestampChunks[chunk] == null) {
+                continue; // already sealed
+            }
+            SealedChunk stored;
+            if (arena != null) {
+                stored = arena.store(timestampChunks[chunk], valueChunks[chunk]);
+                if (stored == null) {
+                    break;
+                }
+            } else {
+                stored = CompressedChunk.encode(timestampChunks[chunk], valueChunks[chunk]);
+                if (stored == null) {
+                    continue;
+                }
+            }
+            if (!copied) {
+                // published snapshots share the chunk arrays
+                timestampChunks = timestampChunks.clone();
+                valueChunks = valueChunks.clone();
+                sealed = sealed == null ? new SealedChunk[timestampChunks.length]
+                        : Arrays.copyOf(sealed, timestampChunks.length);
+                copied = true;
+            }
+            sealed[chunk] = stored;
+            timestampChunks[chunk] = null;
+            valueChunks[chunk] = null;
+        }
+        return new Snapshot(timestampChunks, valueChunks, sealed, chunk, next.offset, next.size, next.minutes,
+                next.hours, next.rawFrom, next.minutesFrom, next.version);
+    }
+
+    /**
+     * @return the start of the bucket holding {@code newest - horizon}, or
+     * {@link Long#MIN_VALUE} if the horizon reaches back past it
+     */
+    private static long cutoff(long newest, long horizon, Rollup.Resolution boundary) {
+        long oldest = newest - horizon;
+        if (horizon == RetentionPolicy.FOREVER || oldest > newest) { // no cutoff, or before any long time
+            return Long.MIN_VALUE;
+        }
+        return boundary.bucketStart(oldest);
+    }
+
+    /**
+     * @return the power-of-two capacity, between {@value #MIN_CHUNK_CAPACITY}
+     * and {@link #CHUNK_SIZE}, of a chunk that must hold {@code needed} samples
+     */
+    static int chunkCapacity(int needed) {
+        int capacity = MIN_CHUNK_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Stable sort of the first {@code count} samples by timestamp, skipped
+     * when they are already in order.
+     */
+    private static void sortByTimestamp(long[] timestamps, double[] values, int count) {
+        boolean sorted = true;
+        for (int i = 1; i < count && sorted; i++) {
+            sorted = timestamps[i - 1] <= timestamps[i];
+        }
+        if (sorted) {
+            return;
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(timestamps[a], timestamps[b]));
+        long[] sortedTimestamps = new long[count];
+        double[] sortedValues = new double[count];
+        for (int i = 0; i < count; i++) {
+            sortedTimestamps[i] = timestamps[order[i]];
+            sortedValues[i] = values[order[i]];
+        }
+        System.arraycopy(sortedTimestamps, 0, timestamps, 0, count);
+        System.arraycopy(sortedValues, 0, values, 0, count);
+    }
+
+    /**
+     * Returns the samples with {@code startTime <= timestamp <= endTime}.
+     * The returned list is a read-only view of the current snapshot;
+     * {@link PatientRecord} objects are only created when elements are
+     * accessed, and later writes never change its contents.
+     *
+     * <p>Times that have been rolled up are served from the finest rollups
+     * still kept, one record per bucket holding the bucket average at the
+     * bucket start time. They come before the raw samples.
+     *
+     * @param startTime the start of the time range, inclusive
+     * @param endTime   the end of the time range, inclusive
+     * @return a view of the matching samples, in timestamp order
+     */
+    List<PatientRecord> getRecords(long startTime, long endTime) {
+        if (startTime > endTime) {
+            return Collections.emptyList();
+        }
+        Snapshot current = snapshot;
+        int from = current.lowerBound(startTime);
+        int to = current.upperBound(endTime);
+        List<PatientRecord> raw = from < to ? new RecordView(current, from, to) : Collections.emptyList();
+        if (startTime >= current.rawFrom) {
+            return raw;
+        }
+
+        // hour buckets for times whose minute rollups are gone, minute buckets after that
+        List<PatientRecord> rolledUp = new ArrayList<>();
+        if (startTime < current.minutesFrom) {
+            addAverages(current.hours, startTime, Math.min(endTime, current.minutesFrom - 1), rolledUp);
+        }
+        addAverages(current.minutes, startTime, endTime, rolledUp);
+        if (rolledUp.isEmpty()) {
+            return raw;
+        }
+        if (raw.isEmpty()) {
+            return Collections.unmodifiableList(rolledUp);
+        }
+        return new ConcatenatedRecords(Arrays.asList(Collections.unmodifiableList(rolledUp), raw));
+    }
+
+    private void addAverages(RollupSeries rollups, long startTime, long endTime, List<PatientRecord> records) {
+        for (int i = rollups.lowerBound(startTime), to = rollups.upperBound(endTime); i < to; i++) {
+            records.add(new PatientRecord(patientId, rollups.averageAt(i), recordType, recordTypeCode, rollups.startAt(i)));
+        }
+    }
+
+    /**
+     * Returns the rollup buckets of one resolution that start within a time
+     * range.
+     *
+     * @param resolution the width of the buckets
+     * @param startTime  the start of the time range, inclusive
+     * @param endTime    the end of the time range, inclusive
+     * @return the matching buckets, in time order
+     */
+    List<Rollup> getRollups(Rollup.Resolution resolution, long startTime, long endTime) {
+        Snapshot current = snapshot;
+        RollupSeries rollups = resolution == Rollup.Resolution.MINUTE ? current.minutes : current.hours;
+        int from = rollups.lowerBound(startTime);
+        int to = rollups.upperBound(endTime);
+        List<Rollup> result = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            result.add(rollups.get(patientId, recordType, i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the statistics of a window of the newest samples. The first
+     * call for a window computes them from the stored samples; from then on
+     * every write keeps them up to date and this is a lookup.
+     *
+     * @param window the window
+     * @return the statistics as of the latest write
+     */
+    WindowStatistics getStatistics(RollingWindow window) {
+        for (RollingStatistics statistics : windows) {
+            if (statistics.getWindow().equals(window)) {
+                return statistics.current();
+            }
+        }
+        return track(window);
+    }
+
+    private synchronized WindowStatistics track(RollingWindow window) {
+        RollingStatistics[] all = windows;
+        for (RollingStatistics statistics : all) {
+            if (statistics.getWindow().equals(window)) {
+                return statistics.current();
+            }
+        }
+        RollingStatistics added = new RollingStatistics(window, snapshot);
+        RollingStatistics[] grown = Arrays.copyOf(all, all.length + 1);
+        grown[all.length] = added;
+        windows = grown;
+        return added.current();
+    }
+
+    /**
+     * @param timestamp the time of the measurement
+     * @param value     the measured value
+     * @return whether a raw sample with exactly this time and value is stored
+     */
+    boolean contains(long timestamp, double value) {
+        Snapshot current = snapshot;
+        long bits = Double.doubleToLongBits(value);
+        for (int i = current.lowerBound(timestamp); i < current.size && current.timestampAt(i) == timestamp; i++) {
+            if (Double.doubleToLongBits(current.valueAt(i)) == bits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends the newest sample of the series to a batch. The newest sample
+     * always lies in the chunk being appended to, which is never sealed, so
+     * this reads one element of each column of the current snapshot.
+     *
+     * @param batch the batch to append to
+     * @return false if the series holds no samples
+     */
+    boolean addLatestTo(SampleBatch batch) {
+        Snapshot current = snapshot;
+        if (current.size == 0) {
+            return false;
+        }
+        batch.add(patientId, current.valueAt(current.size - 1), recordTypeCode, current.timestampAt(current.size - 1));
+        return true;
+    }
+
+    /**
+     * @return the current immutable state of the series
+     */
+    Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return the number of samples in the series
+     */
+    int size() {
+        return snapshot.size;
+    }
+
+    /**
+     * @return the record type stored in this series
+     */
+    String getRecordType() {
+        return recordType;
+    }
+
+    /**
+     * @return the {@link RecordTypes} code of the record type stored in this
+     * series
+     */
+    int getRecordTypeCode() {
+        return recordTypeCode;
+    }
+
+    /**
+     * Immutable view of the series at one point in time. The chunk arrays may
+     * be shared with earlier and later snapshots, but the {@code size}
+     * samples from position {@code offset} on are never written again. A
+     * chunk whose arrays are null is sealed, at the same position of
+     * {@code sealed}.
+     */
+    static final class Snapshot {
+
+        private final long[][] timestampChunks;
+        private final double[][] valueChunks;
+        private final SealedChunk[] sealed; // null if no chunk is sealed
+        /** Chunks before this one have been sealed or have been tried. */
+        private final int closedChunks;
+        private final int offset;
+        final int size;
+        final RollupSeries minutes;
+        final RollupSeries hours;
+        /** Times before this are only kept in rollups. */
+        final long rawFrom;
+        /** Times before this are only kept in hour rollups. */
+        final long minutesFrom;
+        /** Number of samples written before and including this snapshot, including aged-out ones. */
+        final long version;
+
+        Snapshot(long[][] timestampChunks, double[][] valueChunks, SealedChunk[] sealed, int closedChunks, int offset,
+                int size, RollupSeries minutes, RollupSeries hours, long rawFrom, long minutesFrom, long version) {
+            this.timestampChunks = timestampChunks;
+            this.valueChunks = valueChunks;
+            this.sealed = sealed;
+            this.closedChunks = closedChunks;
+            this.offset = offset;
+            this.size = size;
+            this.minutes = minutes;
+            this.hours = hours;
+            this.rawFrom = rawFrom;
+            this.minutesFrom = minutesFrom;
+            this.version = version;
+        }
+
+        /**
+         * @return the snapshot that follows this one after a write of
+         * {@code written} samples
+         */
+        Snapshot withSamples(long[][] timestampChunks, double[][] valueChunks, int offset, int size, int written) {
+            return new Snapshot(timestampChunks, valueChunks, sealed, closedChunks, offset, size, minutes, hours,
+                    rawFrom, minutesFrom, version + written);
+        }
+
+        /**
+         * @return this snapshot with the chunks from {@code fromChunk} to
+         * {@code toChunk}, inclusive, copied back onto the heap, so that a
+         * write can copy and modify them
+         */
+        Snapshot unseal(int fromChunk, int toChunk) {
+            if (sealed == null) {
+                return this;
+            }
+            long[][] timestamps = timestampChunks;
+            double[][] values = valueChunks;
+            SealedChunk[] stillSealed = sealed;
+            for (int chunk = fromChunk; chunk <= toChunk && chunk < sealed.length; chunk++) {
+                if (sealed[chunk] == null) {
+                    continue;
+                }
+                if (stillSealed == sealed) {
+                    timestamps = timestamps.clone();
+                    values = values.clone();
+                    stillSealed = sealed.clone();
+                }
+                timestamps[chunk] = sealed[chunk].timestamps();
+                values[chunk] = sealed[chunk].values();
+                stillSealed[chunk] = null;
+            }
+            if (stillSealed == sealed) {
+                return this;
+            }
+            return new Snapshot(timestamps, values, stillSealed, closedChunks, offset, size, minutes, hours, rawFrom,
+                    minutesFrom, version);
+        }
+
+        long timestampAt(int index) {
+            index += offset;
+            long[] chunk = timestampChunks[index >>> CHUNK_SHIFT];
+            return chunk != null ? chunk[index & CHUNK_MASK]
+                    : sealed[index >>> CHUNK_SHIFT].timestampAt(index & CHUNK_MASK);
+        }
+
+        double valueAt(int index) {
+            index += offset;
+            double[] chunk = valueChunks[index >>> CHUNK_SHIFT];
+            return chunk != null ? chunk[index & CHUNK_MASK]
+                    : sealed[index >>> CHUNK_SHIFT].valueAt(index & CHUNK_MASK);
+        }
+
+        /**
+         * @return the sealed chunk holding the sample, or null if the chunk
+         * is kept as arrays
+         */
+        SealedChunk sealedAt(int index) {
+            index += offset;
+            return timestampChunks[index >>> CHUNK_SHIFT] != null ? null : sealed[index >>> CHUNK_SHIFT];
+        }
+
+        /**
+         * @return the position of the sample within its chunk
+         */
+        int positionInChunk(int index) {
+            return (index + offset) & CHUNK_MASK;
+        }
+
+        /**
+         * Finds the first index whose timestamp is greater than or equal to
+         * the given time.
+         */
+        int lowerBound(long time) {
+            return search(time, false);
+        }
+
+        /**
+         * Finds the first index whose timestamp is strictly greater than the
+         * given time.
+         */
+        int upperBound(long time) {
+            return search(time, true);
+        }
+
+        /**
+         * Binary search over the last timestamp of each chunk, then within
+         * the one chunk that holds the bound, so that a search decodes at
+         * most one compressed chunk.
+         */
+        private int search(long time, boolean strict) {
+            if (size == 0) {
+                return 0;
+            }
+            int low = offset >>> CHUNK_SHIFT;
+            int high = (offset + size - 1) >>> CHUNK_SHIFT;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                long last = timestampChunks[mid] != null ? timestampChunks[mid][CHUNK_MASK]
+                        : sealed[mid].lastTimestamp();
+                if (strict ? last <= time : last < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            int from = Math.max(low << CHUNK_SHIFT, offset) - offset;
+            int to = Math.min((low + 1) << CHUNK_SHIFT, offset + size) - offset;
+            while (from < to) {
+                int mid = (from + to) >>> 1;
+                long timestamp = timestampAt(mid);
+                if (strict ? timestamp <= time : timestamp < time) {
+                    from = mid + 1;
+                } else {
+                    to = mid;
+                }
+            }
+            return from;
+        }
+    }
+
+    /**
+     * Reads the samples of snapshots, keeping the compressed chunk it read
+     * last decoded, so that reading through a chunk decodes it once. Decoded
+     * chunks are immutable, so a cursor may be shared between threads.
+     */
+    static final class Cursor {
+
+        private CompressedChunk.Decoded decoded;
+
+        long timestampAt(Snapshot snapshot, int index) {
+            CompressedChunk.Decoded chunk = decodedAt(snapshot, index);
+            return chunk != null ? chunk.timestamps[snapshot.positionInChunk(index)] : snapshot.timestampAt(index);
+        }
+
+        double valueAt(Snapshot snapshot, int index) {
+            CompressedChunk.Decoded chunk = decodedAt(snapshot, index);
+            return chunk != null ? chunk.values[snapshot.positionInChunk(index)] : snapshot.valueAt(index);
+        }
+
+        /**
+         * @return the decoded chunk holding the sample, or null if its chunk
+         * is not compressed
+         */
+        private CompressedChunk.Decoded decodedAt(Snapshot snapshot, int index) {
+            SealedChunk sealed = snapshot.sealedAt(index);
+            if (!(sealed instanceof CompressedChunk)) {
+                return null;
+            }
+            CompressedChunk.Decoded chunk = decoded;
+            if (chunk == null || chunk.chunk != sealed) {
+                chunk = ((CompressedChunk) sealed).decode();
+                decoded = chunk;
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Read-only list over a contiguous index range of a snapshot which
+     * materialises {@link PatientRecord} objects on access, reading through a
+     * {@link Cursor} so that a scan decodes each compressed chunk once.
+     */
+    private class RecordView extends AbstractList<PatientRecord> implements RandomAccess {
+
+        private final Snapshot snapshot;
+        private final int from;
+        private final int to;
+        private final Cursor cursor = new Cursor();
+
+        RecordView(Snapshot snapshot, int from, int to) {
+            this.snapshot = snapshot;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public PatientRecord get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            int i = from + index;
+            return new PatientRecord(patientId, cursor.valueAt(snapshot, i), recordType, recordTypeCode,
+                    cursor.timestampAt(snapshot, i));
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
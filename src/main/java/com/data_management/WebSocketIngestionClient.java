@@ -0,0 +1,450 @@
+package com.data_management;
+
+import com.metrics.Counter;
+import com.metrics.MetricsRegistry;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+/**
+ * Reads samples from a WebSocket server into a {@link DataStorage}, keeping
+ * the socket read thread free of parsing and storage work.
+ *
+ * <p>The read thread only puts every received message on a bounded queue.
+ * Worker threads take messages from the queue, parse them into a
+ * {@link SampleBatch} and store the batch. When the workers fall
+ * {@code queueCapacity} messages behind, the read thread waits, which slows
+ * the server down through TCP flow control instead of dropping samples.
+ * Messages are stored concurrently, so samples may reach the storage out of
+ * order, which the storage accepts.
+ *
+ * <p>A lost connection is re-established on a separate scheduler thread,
+ * waiting {@code initialBackoffMillis} before the first attempt and twice as
+ * long before each further one, up to {@code maxBackoffMillis}. The
+ * protocol carries no sequence numbers, so the client keeps the newest
+ * sample timestamp it has stored from every connection instead. The first
+ * message stored from a reconnected connection is compared against the
+ * newest sample of the earlier connections, once all of their queued
+ * messages are stored: if its oldest sample is more than
+ * {@value #GAP_THRESHOLD_MS} ms newer, the samples in between were missed
+ * and a {@link Gap} is recorded.
+ */
+public class WebSocketIngestionClient implements DataReader {
+
+    /** Default number of messages that may wait for the workers. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    /** Default delay before the first reconnection attempt. */
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 100;
+    /** Default longest delay between two reconnection attempts. */
+    public static final long DEFAULT_MAX_BACKOFF_MS = 30_000;
+    /** Smallest jump in sample time after a reconnect that counts as a gap. */
+    public static final long GAP_THRESHOLD_MS = 1000;
+    private static final int MAX_RECORDED_GAPS = 1000;
+
+    private static final Counter MESSAGES = MetricsRegistry.getDefault().counter("reader.websocket.messages");
+    private static final Counter RECONNECTS = MetricsRegistry.getDefault().counter("reader.websocket.reconnects");
+    private static final Counter GAPS = MetricsRegistry.getDefault().counter("reader.websocket.gaps");
+
+    private final URI serverUri;
+    private final int workerCount;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final BlockingQueue<Message> queue;
+    private final ScheduledExecutorService reconnects;
+    private final List<Thread> workers = new ArrayList<>();
+    private final List<Gap> gaps = new ArrayList<>(); // guarded by itself
+    private DataStorage dataStorage;
+    private Connection connection; // guarded by this
+    private int epoch; // guarded by this
+    private long backoffMillis; // guarded by this
+    private volatile boolean closed;
+    private volatile boolean drained; // no more messages will be queued
+
+    private final AtomicLong watermark = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger checkedEpoch = new AtomicInteger(1);
+    // connections whose messages are not yet folded into settledWatermark, oldest first
+    private final Deque<Epoch> unsettled = new ArrayDeque<>(); // guarded by itself
+    private long settledWatermark = Long.MIN_VALUE; // guarded by unsettled
+
+    /**
+     * Creates a client with one worker per processor and the default queue
+     * and backoff.
+     *
+     * @param serverUri the address of the WebSocket server
+     */
+    public WebSocketIngestionClient(URI serverUri) {
+        this(serverUri, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY,
+                DEFAULT_INITIAL_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS);
+    }
+
+    /**
+     * @param serverUri the address of the WebSocket server
+     * @param workerCount the number of threads parsing and storing messages
+     * @param queueCapacity the number of messages that may wait for the
+     * workers before the read thread waits
+     * @param initialBackoffMillis the delay before the first reconnection
+     * attempt
+     * @param maxBackoffMillis the longest delay between two reconnection
+     * attempts
+     */
+    public WebSocketIngestionClient(URI serverUri, int workerCount, int queueCapacity, long initialBackoffMillis,
+            long maxBackoffMillis) {
+        if (workerCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Worker count and queue capacity must be positive");
+        }
+        if (initialBackoffMillis < 1 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Invalid backoff: " + initialBackoffMillis + " to " + maxBackoffMillis);
+        }
+        this.serverUri = serverUri;
+        this.workerCount = workerCount;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.backoffMillis = initialBackoffMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.reconnects = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "websocket-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the workers and connects to the server. Returns at once; samples
+     * are stored as they arrive until {@link #close()} is called.
+     *
+     * @param dataStorage the storage where the samples are stored
+     * @throws IllegalStateException if the client has already been started
+     */
+    @Override
+    public synchronized void readData(DataStorage dataStorage) {
+        if (this.dataStorage != null) {
+            throw new IllegalStateException("WebSocket ingestion client already started");
+        }
+        this.dataStorage = dataStorage;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "websocket-ingest-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        reconnects.execute(this::connect);
+    }
+
+    /**
+     * Disconnects from the server, stops reconnecting and waits until the
+     * messages already received are stored.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+        }
+        reconnects.shutdownNow();
+        // no connection is opened after this
+        reconnects.awaitTermination(10, TimeUnit.SECONDS);
+        Connection current;
+        synchronized (this) {
+            current = connection;
+        }
+        if (current != null) {
+            current.closeBlocking();
+        }
+        drained = true;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * @return whether the client is connected to the server
+     */
+    public synchronized boolean isConnected() {
+        return connection != null && connection.isOpen();
+    }
+
+    /**
+     * @return the number of connections opened or attempted after the first
+     */
+    public synchronized int getReconnects() {
+        return Math.max(0, epoch - 1);
+    }
+
+    /**
+     * @return the newest sample timestamp stored, or {@link Long#MIN_VALUE}
+     * if none has been stored yet
+     */
+    public long getWatermark() {
+        return watermark.get();
+    }
+
+    /**
+     * @return the gaps detected after reconnects, oldest first; only the
+     * last {@value #MAX_RECORDED_GAPS} are kept
+     */
+    public List<Gap> getGaps() {
+        synchronized (gaps) {
+            return new ArrayList<>(gaps);
+        }
+    }
+
+    private void connect() {
+        Connection next;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (epoch > 0) {
+                RECONNECTS.increment();
+            }
+            next = new Connection(++epoch);
+            connection = next;
+        }
+        next.connect();
+    }
+
+    /**
+     * Called on the read thread of a connection that has closed or failed to
+     * open.
+     */
+    private void connectionLost(Connection lost) {
+        long delay;
+        synchronized (this) {
+            if (closed || lost != connection) {
+                return; // closed on purpose, or a newer connection already exists
+            }
+            delay = backoffMillis;
+            backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+        }
+        System.out.println("WebSocket connection to " + serverUri + " lost, reconnecting in " + delay + " ms");
+        reconnects.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void work() {
+        SampleParser parser = new SampleParser();
+        SampleBatch batch = new SampleBatch();
+        while (true) {
+            Message message;
+            try {
+                message = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (message == null) {
+                if (drained && queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                store(message, parser, batch);
+            } finally {
+                // waiters only wait for connections older than the checked one
+                if (message.epoch.unstored.decrementAndGet() == 0 && message.epoch.number < checkedEpoch.get()) {
+                    synchronized (unsettled) {
+                        unsettled.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    private void store(Message message, SampleParser parser, SampleBatch batch) {
+        MyWebSocketClient.parseLines(message.text, parser, batch);
+        if (batch.size() == 0) {
+            return;
+        }
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (int i = 0; i < batch.size(); i++) {
+            oldest = Math.min(oldest, batch.timestamps[i]);
+            newest = Math.max(newest, batch.timestamps[i]);
+        }
+        checkForGap(message.epoch.number, oldest);
+        try {
+            dataStorage.addPatientData(batch);
+        } catch (RuntimeException ex) {
+            System.err.println("Error storing " + batch.size() + " samples");
+            ex.printStackTrace();
+        } finally {
+            batch.clear();
+        }
+        message.epoch.newest.accumulateAndGet(newest, Math::max);
+        watermark.accumulateAndGet(newest, Math::max);
+    }
+
+    /**
+     * Compares the first stored message of every reconnected connection
+     * against the newest sample stored from the earlier connections.
+     */
+    private void checkForGap(int messageEpoch, long oldest) {
+        int checked = checkedEpoch.get();
+        if (messageEpoch <= checked || !checkedEpoch.compareAndSet(checked, messageEpoch)) {
+            return;
+        }
+        long before = newestBefore(messageEpoch);
+        if (before != Long.MIN_VALUE && oldest - before > GAP_THRESHOLD_MS) {
+            Gap gap = new Gap(before, oldest);
+            GAPS.increment();
+            System.out.println("Missed " + gap.getMillis() + " ms of samples while disconnected from " + serverUri);
+            synchronized (gaps) {
+                if (gaps.size() == MAX_RECORDED_GAPS) {
+                    gaps.remove(0);
+                }
+                gaps.add(gap);
+            }
+        }
+    }
+
+    /**
+     * Waits until every message of the connections before {@code epoch} is
+     * stored. The queue hands out messages in arrival order, so once a
+     * message of {@code epoch} is taken, the older ones are all taken and at
+     * most one per worker is still being stored.
+     *
+     * @return the newest sample timestamp stored from those connections, or
+     * {@link Long#MIN_VALUE} if none was stored
+     */
+    private long newestBefore(int epoch) {
+        synchronized (unsettled) {
+            for (Epoch older = unsettled.peekFirst(); older != null && older.number < epoch;
+                    older = unsettled.peekFirst()) {
+                while (older.unstored.get() > 0) {
+                    try {
+                        unsettled.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return settledWatermark;
+                    }
+                }
+                settledWatermark = Math.max(settledWatermark, older.newest.get());
+                unsettled.removeFirst();
+            }
+            return settledWatermark;
+        }
+    }
+
+    /**
+     * The messages of one connection that are queued or being stored, and
+     * the newest sample timestamp stored from it.
+     */
+    private static final class Epoch {
+
+        final int number;
+        final AtomicInteger unstored = new AtomicInteger();
+        final AtomicLong newest = new AtomicLong(Long.MIN_VALUE);
+
+        Epoch(int number) {
+            this.number = number;
+        }
+    }
+
+    /**
+     * A raw message and the connection it arrived on.
+     */
+    private static final class Message {
+
+        final Epoch epoch;
+        final String text;
+
+        Message(Epoch epoch, String text) {
+            this.epoch = epoch;
+            this.text = text;
+        }
+    }
+
+    /**
+     * One attempt to connect, numbered by {@code epoch}.
+     */
+    private final class Connection extends WebSocketClient {
+
+        private final Epoch epoch;
+
+        Connection(int epoch) {
+            super(serverUri);
+            this.epoch = new Epoch(epoch);
+            synchronized (unsettled) {
+                unsettled.addLast(this.epoch);
+            }
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+            synchronized (WebSocketIngestionClient.this) {
+                backoffMillis = initialBackoffMillis;
+            }
+            System.out.println("Connected to WebSocket server " + serverUri);
+        }
+
+        @Override
+        public void onMessage(String text) {
+            MESSAGES.increment();
+            epoch.unstored.incrementAndGet();
+            try {
+                queue.put(new Message(epoch, text));
+            } catch (InterruptedException e) {
+                epoch.unstored.decrementAndGet();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            connectionLost(this);
+        }
+
+        @Override
+        public void onError(Exception ex) {
+            // followed by onClose, which reconnects
+            System.err.println("WebSocket error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Samples missed while the client was disconnected.
+     */
+    public static final class Gap {
+
+        private final long lastBefore;
+        private final long firstAfter;
+
+        Gap(long lastBefore, long firstAfter) {
+            this.lastBefore = lastBefore;
+            this.firstAfter = firstAfter;
+        }
+
+        /**
+         * @return the newest sample timestamp stored from the connections
+         * before the reconnect
+         */
+        public long getLastBefore() {
+            return lastBefore;
+        }
+
+        /**
+         * @return the oldest sample timestamp of the first message after the
+         * reconnect
+         */
+        public long getFirstAfter() {
+            return firstAfter;
+        }
+
+        /**
+         * @return the length of the gap, in milliseconds
+         */
+        public long getMillis() {
+            return firstAfter - lastBefore;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.data_management;
+
+/**
+ * Summary of the raw samples of one series that fall into a
+ * {@link RollingWindow}, as of the latest write to the series. Instances are
+ * immutable.
+ */
+public class WindowStatistics {
+
+    private final long count;
+    private final double sum;
+    private final double mean;
+    private final double variance;
+    private final double min;
+    private final double max;
+    private final long startTime;
+    private final long endTime;
+    private final boolean complete;
+
+    /**
+     * @param count     the number of samples in the window
+     * @param sum       the sum of their values
+     * @param mean      the mean of their values
+     * @param variance  the population variance of their values
+     * @param min       the smallest value
+     * @param max       the largest value
+     * @param startTime the timestamp of the oldest sample
+     * @param endTime   the timestamp of the newest sample
+     * @param complete  whether every sample of the window is still kept raw
+     */
+    WindowStatistics(long count, double sum, double mean, double variance, double min, double max, long startTime,
+            long endTime, boolean complete) {
+        this.count = count;
+        this.sum = sum;
+        this.mean = mean;
+        this.variance = variance;
+        this.min = min;
+        this.max = max;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.complete = complete;
+    }
+
+    /**
+     * @return the number of samples in the window
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the mean of the values, or NaN for an empty window
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return the population variance of the values, or NaN for an empty
+     * window
+     */
+    public double getVariance() {
+        return variance;
+    }
+
+    /**
+     * @return the population standard deviation of the values, or NaN for an
+     * empty window
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(variance);
+    }
+
+    /**
+     * @return the smallest value, or NaN for an empty window
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest value, or NaN for an empty window
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return the timestamp of the oldest sample in the window, in
+     * milliseconds since epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the timestamp of the newest sample of the series, in
+     * milliseconds since epoch
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return false if the {@link RetentionPolicy} has already rolled up part
+     * of the window, in which case the statistics only cover the samples
+     * still kept raw
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,663 @@
+package com.data_management;
+
+import com.metrics.Histogram;
+import com.metrics.MetricsRegistry;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of every sample added to a {@link DataStorage}, so that
+ * samples stored since the last snapshot survive a restart.
+ * {@link StoragePersistence} attaches the log to the storage after recovery,
+ * and the storage then logs every sample before storing it. The log can also
+ * be registered as a plain {@link SampleListener} when no snapshots are
+ * taken.
+ *
+ * <p>The log is a sequence of numbered segment files
+ * ({@code wal-<number>.log}). A segment starts with a header:
+ * <pre>
+ * int    magic            0x4357414C ("CWAL")
+ * short  version          1
+ * short  record size      22
+ * short  label count      n
+ * n x    (short length, UTF-8 bytes)   record type labels, codes 0..n-1
+ * </pre>
+ * followed by frames of {@link BinaryRecordFormat} records:
+ * <pre>
+ * int    payload length   a multiple of 22
+ * int    CRC-32C of the payload
+ * payload
+ * </pre>
+ * All numbers are big-endian. A frame whose length or checksum does not
+ * match, such as one torn by a crash, ends the segment. A segment is only
+ * moved into place once its header is on disk; a segment that ends within
+ * its header, left by a crash of an older version, holds no samples and is
+ * skipped.
+ *
+ * <p>Ingesting threads only copy the sample into an in-memory buffer. A
+ * writer thread group-commits the buffer every {@code commitIntervalMillis}
+ * milliseconds: one write and one {@code fsync} for all samples that arrived
+ * in the interval, while the next interval's samples go to a second buffer.
+ * A sample is therefore durable at most one interval after it was stored;
+ * {@link #sync()} waits until everything stored so far is. When both buffers
+ * are full, ingesting threads wait for the disk. The writer starts a new
+ * segment once the current one reaches {@code segmentBytes}, or when a sample
+ * has a record type registered after the segment header was written.
+ *
+ * <p>The log counts the samples it has appended that the storage has not
+ * stored yet, separately for the samples before and after the latest
+ * {@link #roll()}. A roll waits until every sample appended before it is
+ * stored, so that a snapshot started after the roll holds every sample of
+ * the older segments.
+ */
+public class WriteAheadLog implements SampleListener, Closeable {
+
+    /** Default size at which a new segment is started. */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    /** Default time between two group commits. */
+    public static final long DEFAULT_COMMIT_INTERVAL_MS = 10;
+    public static final int MAGIC = 0x4357414C;
+    public static final short VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int FRAME_HEADER_BYTES = 8;
+    private static final int REPLAY_BATCH = 64 * 1024;
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Histogram COMMIT_NANOS = MetricsRegistry.getDefault().histogram("storage.wal.commit.nanos");
+    private static final Histogram COMMIT_SAMPLES = MetricsRegistry.getDefault().histogram("storage.wal.commit.samples");
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long commitIntervalMillis;
+    private final Thread writer;
+
+    // guarded by this
+    private ByteBuffer active = ByteBuffer.allocate(BUFFER_BYTES);
+    private int activeMaxCode = -1;
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_BYTES); // null while the writer uses it
+    private long appended;
+    private long durable;
+    private boolean flushRequested;
+    private int rollsRequested;
+    private int rollsCompleted;
+    private long rolledSegment;
+    private int epoch; // index into unstored of the samples appended since the latest roll
+    private LongAdder rolledUnstored; // the samples appended before the latest roll that are not stored yet
+    private boolean closed;
+    private IOException failure;
+
+    // only used by the writer thread after construction
+    private FileChannel channel;
+    private long segmentSize;
+    private int segmentLabels;
+    private final CRC32C crc = new CRC32C();
+    private volatile long segment;
+
+    /** Samples appended but not stored yet, before and after the latest roll; see {@link #epoch}. */
+    private final LongAdder[] unstored = {new LongAdder(), new LongAdder()};
+
+    /**
+     * Opens a log with the default segment size and commit interval.
+     *
+     * @param directory the directory holding the segments
+     * @throws IOException if the first segment cannot be created
+     */
+    public WriteAheadLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_COMMIT_INTERVAL_MS);
+    }
+
+    /**
+     * Opens a log that appends to a new segment, numbered after the
+     * segments already in the directory, which are left untouched.
+     *
+     * @param directory the directory holding the segments
+     * @param segmentBytes the size at which a new segment is started
+     * @param commitIntervalMillis the time between two group commits
+     * @throws IOException if the first segment cannot be created
+     */
+    public WriteAheadLog(Path directory, long segmentBytes, long commitIntervalMillis) throws IOException {
+        this(directory, segmentBytes, commitIntervalMillis, 0);
+    }
+
+    /**
+     * @param firstSegment the lowest number the first segment may have
+     */
+    WriteAheadLog(Path directory, long segmentBytes, long commitIntervalMillis, long firstSegment)
+            throws IOException {
+        if (segmentBytes < 1 || commitIntervalMillis < 1) {
+            throw new IllegalArgumentException("Segment size and commit interval must be positive");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.commitIntervalMillis = commitIntervalMillis;
+        Files.createDirectories(directory);
+        List<Long> existing = segments(directory);
+        openSegment(Math.max(firstSegment, existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1));
+        this.writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Appends a sample to the log buffer.
+     *
+     * @throws UncheckedIOException if the log can no longer be written
+     * @throws IllegalStateException if the log has been closed
+     */
+    @Override
+    public void onSample(int patientId, int recordType, double measurementValue, long timestamp) {
+        synchronized (this) {
+            appendRecord(patientId, recordType, measurementValue, timestamp);
+        }
+    }
+
+    /**
+     * Appends a sample that is about to be stored. Every call must be
+     * followed by {@link #stored(int, int)} with the returned ticket once the
+     * sample is in the storage, or could not be stored.
+     *
+     * @return the ticket of the sample
+     * @throws UncheckedIOException if the log can no longer be written
+     * @throws IllegalStateException if the log has been closed
+     */
+    synchronized int append(int patientId, int recordType, double measurementValue, long timestamp) {
+        appendRecord(patientId, recordType, measurementValue, timestamp);
+        unstored[epoch].increment();
+        return epoch;
+    }
+
+    /**
+     * Appends the samples of a batch that is about to be stored, under one
+     * lock. Every call must be followed by {@link #stored(int, int)} with the
+     * returned ticket and the size of the batch.
+     *
+     * @return the ticket of the samples
+     * @throws UncheckedIOException if the log can no longer be written
+     * @throws IllegalStateException if the log has been closed
+     */
+    synchronized int append(SampleBatch batch) {
+        // counted under the epoch of the first sample: a roll during the batch then also waits for the later ones
+        int ticket = epoch;
+        unstored[ticket].add(batch.size);
+        try {
+            for (int i = 0; i < batch.size; i++) {
+                appendRecord(batch.patientIds[i], batch.recordTypes[i], batch.values[i], batch.timestamps[i]);
+            }
+        } catch (RuntimeException e) {
+            unstored[ticket].add(-batch.size);
+            throw e;
+        }
+        return ticket;
+    }
+
+    /**
+     * Records that samples appended with {@link #append} are stored.
+     *
+     * @param ticket the ticket returned by {@code append}
+     * @param count the number of samples appended with it
+     */
+    void stored(int ticket, int count) {
+        unstored[ticket].add(-count);
+    }
+
+    private void appendRecord(int patientId, int recordType, double measurementValue, long timestamp) {
+        while (active.remaining() < BinaryRecordFormat.RECORD_SIZE) {
+            checkOpen();
+            requestFlush();
+            awaitWriter();
+        }
+        checkOpen();
+        BinaryRecordFormat.writeRecord(active, patientId, timestamp, recordType, measurementValue);
+        if (recordType > activeMaxCode) {
+            activeMaxCode = recordType;
+        }
+        appended++;
+    }
+
+    @Override
+    public void onSample(int patientId, String recordType, double measurementValue, long timestamp) {
+        onSample(patientId, RecordTypes.codeOf(recordType), measurementValue, timestamp);
+    }
+
+    /**
+     * Waits until every sample appended so far is on disk.
+     *
+     * @throws IOException if the log could not be written
+     */
+    public synchronized void sync() throws IOException {
+        long target = appended;
+        while (durable < target && failure == null) {
+            requestFlush();
+            awaitWriter();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Commits the samples appended so far and starts a new segment, so that
+     * every sample appended before this call is in an older segment. Returns
+     * once the samples appended to the older segments through
+     * {@link #append} are stored.
+     *
+     * @return the number of the new segment
+     * @throws IOException if the log could not be written
+     */
+    public long roll() throws IOException {
+        long rolled;
+        LongAdder pending;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Write-ahead log closed");
+            }
+            int target = ++rollsRequested;
+            notifyAll();
+            while (rollsCompleted < target && failure == null) {
+                awaitWriter();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            rolled = rolledSegment;
+            pending = rolledUnstored;
+        }
+        // ingesting threads store a sample right after appending it, so this is a short wait
+        while (pending.sum() > 0) {
+            Thread.yield();
+        }
+        return rolled;
+    }
+
+    /**
+     * @return the number of the segment being written
+     */
+    public long getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return the number of samples appended so far
+     */
+    public synchronized long getAppendedSamples() {
+        return appended;
+    }
+
+    /**
+     * Deletes the segments older than a given one, once their samples are
+     * covered by a snapshot.
+     *
+     * @param oldestKept the number of the oldest segment to keep
+     * @throws IOException if a segment cannot be deleted
+     */
+    public void deleteSegmentsBefore(long oldestKept) throws IOException {
+        for (long number : segments(directory)) {
+            if (number < oldestKept) {
+                Files.deleteIfExists(segmentPath(directory, number));
+            }
+        }
+    }
+
+    /**
+     * Commits the samples appended so far and stops the writer. Samples
+     * appended afterwards are rejected.
+     *
+     * @throws IOException if the log could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the write-ahead log", e);
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log closed");
+        }
+    }
+
+    /**
+     * Wakes the writer for an early commit. Only the first request notifies;
+     * waiters that notified again on every wake-up would keep waking each
+     * other and starve the writer of the lock.
+     */
+    private void requestFlush() {
+        if (!flushRequested) {
+            flushRequested = true;
+            notifyAll();
+        }
+    }
+
+    private void awaitWriter() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-ahead log", e);
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                ByteBuffer payload = null;
+                int maxCode;
+                long upTo;
+                int rolls;
+                boolean last;
+                synchronized (this) {
+                    if (!closed && !flushRequested && rollsRequested == rollsCompleted) {
+                        wait(commitIntervalMillis);
+                    }
+                    if (active.position() > 0) {
+                        payload = active;
+                        active = spare;
+                        spare = null;
+                    }
+                    maxCode = activeMaxCode;
+                    activeMaxCode = -1;
+                    upTo = appended;
+                    rolls = rollsRequested;
+                    if (rolls != rollsCompleted) {
+                        // the samples appended so far go to the segments before the roll
+                        rolledUnstored = unstored[epoch];
+                        epoch ^= 1;
+                    }
+                    last = closed;
+                    flushRequested = false;
+                    notifyAll(); // appenders waiting for a free buffer
+                }
+                if (payload != null) {
+                    if (maxCode >= segmentLabels || segmentSize >= segmentBytes) {
+                        openSegment(segment + 1);
+                    }
+                    commit(payload);
+                    payload.clear();
+                }
+                if (rolls != rollsCompleted) { // only the writer changes rollsCompleted
+                    openSegment(segment + 1);
+                }
+                synchronized (this) {
+                    if (payload != null) {
+                        spare = payload;
+                    }
+                    durable = upTo;
+                    if (rolls != rollsCompleted) {
+                        rolledSegment = segment;
+                        rollsCompleted = rolls;
+                    }
+                    notifyAll();
+                }
+                if (last) {
+                    channel.close();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                failure = new IOException("Write-ahead log writer interrupted", e);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes one frame holding the buffered records and forces it to disk.
+     */
+    private void commit(ByteBuffer payload) throws IOException {
+        long start = System.nanoTime();
+        payload.flip();
+        crc.reset();
+        crc.update(payload.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+        header.putInt(payload.remaining()).putInt((int) crc.getValue()).flip();
+        int samples = payload.remaining() / BinaryRecordFormat.RECORD_SIZE;
+        ByteBuffer[] frame = {header, payload};
+        while (payload.hasRemaining()) {
+            segmentSize += channel.write(frame);
+        }
+        channel.force(false);
+        COMMIT_NANOS.recordSince(start);
+        COMMIT_SAMPLES.record(samples);
+    }
+
+    private void openSegment(long number) throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+        String[] labels = new String[RecordTypes.count()];
+        for (int code = 0; code < labels.length; code++) {
+            labels[code] = RecordTypes.label(code);
+        }
+        ByteBuffer header = ByteBuffer.allocate(4 + 2 + 2 + labelsSize(labels));
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) BinaryRecordFormat.RECORD_SIZE);
+        writeLabels(header, labels);
+        header.flip();
+        // a crash must not leave a segment without a complete header
+        Path path = segmentPath(directory, number);
+        Path temp = directory.resolve(path.getFileName() + TEMP_SUFFIX);
+        try (FileChannel headerChannel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                headerChannel.write(header);
+            }
+            headerChannel.force(false);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel next = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        channel = next;
+        segmentSize = header.limit();
+        segmentLabels = labels.length;
+        segment = number;
+    }
+
+    /**
+     * Adds the samples of the log segments from {@code fromSegment} on to a
+     * storage, notifying its listeners.
+     *
+     * <p>Samples of segments up to {@code dedupeThrough} may already be held
+     * by a snapshot that was being written while they were logged; those
+     * samples are skipped if the storage holds a raw sample with the same
+     * patient, type, time and value.
+     *
+     * @param directory the directory holding the segments
+     * @param fromSegment the number of the first segment to replay
+     * @param dedupeThrough the number of the last segment whose samples may
+     * already be stored
+     * @param storage the storage to add the samples to
+     * @return the number of samples added
+     * @throws IOException if a segment cannot be read or has an invalid header
+     */
+    public static long replay(Path directory, long fromSegment, long dedupeThrough, DataStorage storage)
+            throws IOException {
+        long replayed = 0;
+        SampleBatch batch = new SampleBatch(REPLAY_BATCH);
+        CRC32C crc = new CRC32C();
+        for (long number : segments(directory)) {
+            if (number < fromSegment) {
+                continue;
+            }
+            boolean dedupe = number <= dedupeThrough;
+            try (FileChannel channel = FileChannel.open(segmentPath(directory, number), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                boolean complete = buffer.remaining() >= 10;
+                if (complete && (buffer.getInt() != MAGIC || buffer.getShort() != VERSION
+                        || buffer.getShort() != BinaryRecordFormat.RECORD_SIZE)) {
+                    throw new IOException("Not a write-ahead log segment: " + segmentPath(directory, number));
+                }
+                if (!complete || !hasLabels(buffer)) {
+                    // the header is forced before any frame, so the segment holds no samples
+                    System.err.println("Ignoring " + segmentPath(directory, number) + " with an incomplete header");
+                    continue;
+                }
+                int[] codes = readLabels(buffer);
+                while (buffer.remaining() >= FRAME_HEADER_BYTES) {
+                    int length = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    if (length <= 0 || length % BinaryRecordFormat.RECORD_SIZE != 0 || length > buffer.remaining()) {
+                        break;
+                    }
+                    ByteBuffer payload = buffer.slice();
+                    payload.limit(length);
+                    crc.reset();
+                    crc.update(payload.duplicate());
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    buffer.position(buffer.position() + length);
+                    while (payload.hasRemaining()) {
+                        int patientId = payload.getInt();
+                        long timestamp = payload.getLong();
+                        int code = codes[payload.getShort()];
+                        double value = payload.getDouble();
+                        if (dedupe && storage.patient(patientId).hasRecord(code, timestamp, value)) {
+                            continue;
+                        }
+                        batch.add(patientId, value, code, timestamp);
+                        if (batch.size() == REPLAY_BATCH) {
+                            storage.addPatientData(batch);
+                            replayed += batch.size();
+                            batch.clear();
+                        }
+                    }
+                }
+                if (buffer.hasRemaining()) {
+                    System.err.println("Ignoring " + buffer.remaining() + " unreadable bytes at the end of "
+                            + segmentPath(directory, number));
+                }
+            }
+        }
+        storage.addPatientData(batch);
+        return replayed + batch.size();
+    }
+
+    /**
+     * @return the numbers of the segments in a directory, in ascending order
+     */
+    static List<Long> segments(Path directory) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return numbers;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("%s%016d%s", PREFIX, number, SUFFIX));
+    }
+
+    /**
+     * @return the number of bytes {@link #writeLabels} takes for the labels
+     */
+    static int labelsSize(String[] labels) {
+        int size = 2;
+        for (String label : labels) {
+            size += 2 + label.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return size;
+    }
+
+    /**
+     * Writes a label table: a short count, then every label as a short
+     * length and UTF-8 bytes.
+     */
+    static void writeLabels(ByteBuffer buffer, String[] labels) {
+        buffer.putShort((short) labels.length);
+        for (String label : labels) {
+            byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * @return whether a whole label table follows the position of a buffer
+     */
+    static boolean hasLabels(ByteBuffer buffer) {
+        ByteBuffer table = buffer.duplicate();
+        if (table.remaining() < 2) {
+            return false;
+        }
+        int count = table.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            if (table.remaining() < 2) {
+                return false;
+            }
+            int length = table.getShort() & 0xFFFF;
+            if (table.remaining() < length) {
+                return false;
+            }
+            table.position(table.position() + length);
+        }
+        return true;
+    }
+
+    /**
+     * Reads a label table written by {@link #writeLabels}.
+     *
+     * @return the {@link RecordTypes} code of every label, indexed by its
+     * position in the table
+     */
+    static int[] readLabels(ByteBuffer buffer) {
+        int[] codes = new int[buffer.getShort() & 0xFFFF];
+        for (int i = 0; i < codes.length; i++) {
+            byte[] bytes = new byte[buffer.getShort()];
+            buffer.get(bytes);
+            codes[i] = RecordTypes.codeOf(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return codes;
+    }
+}
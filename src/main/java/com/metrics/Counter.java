@@ -0,0 +1,37 @@
+package com.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count. Increments from many threads do not
+ * contend on a single memory location, so counters are cheap enough for the
+ * ingestion path.
+ */
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * @param amount the amount to add to the count
+     */
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    /**
+     * @return the count; not an atomic snapshot while other threads update it
+     */
+    public long get() {
+        return count.sum();
+    }
+}
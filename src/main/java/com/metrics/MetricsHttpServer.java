@@ -0,0 +1,68 @@
+package com.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the metrics of a {@link MetricsRegistry} as plain text, in the
+ * format of {@link MetricsRegistry#writeText}, at {@code GET /metrics}. The
+ * server only listens on the loopback interface.
+ */
+public class MetricsHttpServer {
+
+    /** Path the metrics are served at. */
+    public static final String PATH = "/metrics";
+
+    private final HttpServer server;
+
+    /**
+     * Starts serving the metrics.
+     *
+     * @param registry the registry to serve
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public MetricsHttpServer(MetricsRegistry registry, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(PATH, exchange -> respond(exchange, registry));
+        // the default executor handles the requests on the server thread, which is enough for scrapes
+        server.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, without waiting for requests in progress.
+     */
+    public void stop() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, MetricsRegistry registry) throws IOException {
+        // HttpExchange is only AutoCloseable from Java 14 on
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
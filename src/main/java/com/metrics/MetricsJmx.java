@@ -0,0 +1,143 @@
+package com.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exposes a {@link MetricsRegistry} as a read-only MBean, with one
+ * attribute per counter and gauge and the {@code count}, {@code mean}, {@code p50},
+ * {@code p99}, {@code p999} and {@code max} of every histogram as separate
+ * attributes. The attributes are listed afresh every time a JMX client asks,
+ * so metrics created after registration appear too.
+ */
+public class MetricsJmx implements DynamicMBean {
+
+    /** Name under which {@link #register(MetricsRegistry)} registers the default bean. */
+    public static final String OBJECT_NAME = "com.metrics:type=Metrics";
+
+    private final MetricsRegistry registry;
+
+    /**
+     * @param registry the registry to expose
+     */
+    public MetricsJmx(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Registers the registry with the platform MBean server under
+     * {@value #OBJECT_NAME}, replacing a bean registered there before.
+     *
+     * @param registry the registry to expose
+     * @return the name of the bean
+     * @throws JMException if the bean cannot be registered
+     */
+    public static ObjectName register(MetricsRegistry registry) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(new MetricsJmx(registry), name);
+        return name;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Counter counter = registry.getCounters().get(attribute);
+        if (counter != null) {
+            return counter.get();
+        }
+        LongSupplier gauge = registry.getGauges().get(attribute);
+        if (gauge != null) {
+            return gauge.getAsLong();
+        }
+        int dot = attribute.lastIndexOf('.');
+        Histogram histogram = dot < 0 ? null : registry.getHistograms().get(attribute.substring(0, dot));
+        if (histogram != null) {
+            switch (attribute.substring(dot + 1)) {
+                case "count":
+                    return histogram.getCount();
+                case "mean":
+                    return histogram.getMean();
+                case "p50":
+                    return histogram.getValueAtPercentile(50);
+                case "p99":
+                    return histogram.getValueAtPercentile(99);
+                case "p999":
+                    return histogram.getValueAtPercentile(99.9);
+                case "max":
+                    return histogram.getMax();
+                default:
+                    break;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList values = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                values.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // left out, as the contract asks
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("Metrics have no operations: " + actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : registry.getCounters().keySet()) {
+            attributes.add(attribute(name, "long", "Counter"));
+        }
+        for (String name : registry.getGauges().keySet()) {
+            attributes.add(attribute(name, "long", "Gauge"));
+        }
+        for (Map.Entry<String, Histogram> entry : registry.getHistograms().entrySet()) {
+            String name = entry.getKey();
+            attributes.add(attribute(name + ".count", "long", "Number of values"));
+            attributes.add(attribute(name + ".mean", "double", "Mean value"));
+            attributes.add(attribute(name + ".p50", "long", "Median"));
+            attributes.add(attribute(name + ".p99", "long", "99th percentile"));
+            attributes.add(attribute(name + ".p999", "long", "99.9th percentile"));
+            attributes.add(attribute(name + ".max", "long", "Largest value"));
+        }
+        return new MBeanInfo(getClass().getName(), "Metrics of the patient monitoring system",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    private static MBeanAttributeInfo attribute(String name, String type, String description) {
+        return new MBeanAttributeInfo(name, type, description, true, false, false);
+    }
+}
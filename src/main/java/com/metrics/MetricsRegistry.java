@@ -0,0 +1,132 @@
+package com.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, histograms and gauges. Counters and histograms are created
+ * on first use and live as long as the registry; hot paths look a metric up
+ * once and keep the reference. A gauge reads a value the component keeps
+ * anyway, for counts that are too hot to maintain twice. Names are dot-separated, lowercase, and end in the unit where
+ * there is one, e.g. {@code storage.get_records.nanos}.
+ *
+ * <p>The components of the system record into {@link #getDefault()}, which is
+ * exposed by {@link MetricsJmx} and {@link MetricsHttpServer}.
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * @return the registry the components of the system record into
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param name the name of the counter
+     * @return the counter with that name, created if needed
+     */
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * @param name the name of the histogram
+     * @return the histogram with that name, created if needed
+     */
+    public Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Registers a gauge, replacing a gauge registered under the same name
+     * before.
+     *
+     * @param name the name of the gauge
+     * @param value reads the current value; called whenever the metrics are
+     * read, from any thread
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @return the counters, sorted by name
+     */
+    public SortedMap<String, Counter> getCounters() {
+        return new TreeMap<>(counters);
+    }
+
+    /**
+     * @return the histograms, sorted by name
+     */
+    public SortedMap<String, Histogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * @return the gauges, sorted by name
+     */
+    public SortedMap<String, LongSupplier> getGauges() {
+        return new TreeMap<>(gauges);
+    }
+
+    /**
+     * Writes every metric as one {@code name value} line, sorted by name.
+     * A histogram {@code h} is written as {@code h.count}, {@code h.mean},
+     * {@code h.p50}, {@code h.p99}, {@code h.p999} and {@code h.max}.
+     *
+     * @param out where the metrics are written
+     * @throws IOException if {@code out} fails
+     */
+    public void writeText(Appendable out) throws IOException {
+        SortedMap<String, String> lines = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            lines.put(entry.getKey(), Long.toString(entry.getValue().get()));
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            lines.put(entry.getKey(), Long.toString(entry.getValue().getAsLong()));
+        }
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            String name = entry.getKey();
+            Histogram histogram = entry.getValue();
+            lines.put(name + ".count", Long.toString(histogram.getCount()));
+            lines.put(name + ".mean", String.format(Locale.ROOT, "%.1f", histogram.getMean()));
+            lines.put(name + ".p50", Long.toString(histogram.getValueAtPercentile(50)));
+            lines.put(name + ".p99", Long.toString(histogram.getValueAtPercentile(99)));
+            lines.put(name + ".p999", Long.toString(histogram.getValueAtPercentile(99.9)));
+            lines.put(name + ".max", Long.toString(histogram.getMax()));
+        }
+        for (Map.Entry<String, String> line : lines.entrySet()) {
+            out.append(line.getKey()).append(' ').append(line.getValue()).append('\n');
+        }
+    }
+
+    /**
+     * @return the metrics as written by {@link #writeText}
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        try {
+            writeText(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder does not fail
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package alerts;
+
+import com.alerts.AlertEvaluationScheduler;
+import com.alerts.AlertEvaluationScheduler.CycleReport;
+import com.alerts.strategy.AlertStrategy;
+import com.data_management.DataStorage;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class AlertEvaluationSchedulerTest {
+
+    @Test
+    void testEvaluatesEveryPatientOncePerCycle() {
+        DataStorage storage = new DataStorage();
+        for (int patientId = 1; patientId <= 5000; patientId++) {
+            storage.addPatientData(patientId, 98.0, "Saturation", 1000L);
+        }
+        Map<Integer, AtomicInteger> evaluations = new ConcurrentHashMap<>();
+        AlertStrategy counting = patient -> evaluations
+                .computeIfAbsent(patient.getPatientID(), id -> new AtomicInteger()).incrementAndGet();
+        AlertEvaluationScheduler scheduler = new AlertEvaluationScheduler(storage, List.of(counting), 4, report -> { });
+
+        CycleReport report = scheduler.runCycle();
+        scheduler.stop();
+
+        assertEquals(5000, report.getPatients());
+        assertEquals(5000, report.getEvaluated());
+        assertEquals(5000, evaluations.size());
+        for (AtomicInteger count : evaluations.values()) {
+            assertEquals(1, count.get());
+        }
+    }
+
+    @Test
+    void testSkipsPatientsWithoutNewData() {
+        DataStorage storage = new DataStorage();
+        storage.addPatientData(1, 98.0, "Saturation", 1000L);
+        storage.addPatientData(2, 98.0, "Saturation", 1000L);
+        AtomicInteger evaluations = new AtomicInteger();
+        AlertEvaluationScheduler scheduler = new AlertEvaluationScheduler(storage,
+                List.of(patient -> evaluations.incrementAndGet()), 2, report -> { });
+
+        assertEquals(2, scheduler.runCycle().getEvaluated());
+        CycleReport idle = scheduler.runCycle();
+        assertEquals(0, idle.getEvaluated());
+        assertEquals(2, idle.getSkipped());
+
+        //new data for one patient, even for a type it did not have before
+        storage.addPatientData(2, 120.0, "SystolicPressure", 2000L);
+        CycleReport next = scheduler.runCycle();
+        scheduler.stop();
+
+        assertEquals(1, next.getEvaluated());
+        assertEquals(3, evaluations.get());
+        assertTrue(next.getWallNanos() > 0);
+    }
+
+    @Test
+    void testFailingPatientDoesNotStopTheCycle() {
+        DataStorage storage = new DataStorage();
+        for (int patientId = 1; patientId <= 3; patientId++) {
+            storage.addPatientData(patientId, 98.0, "Saturation", 1000L);
+        }
+        AtomicInteger evaluations = new AtomicInteger();
+        AlertStrategy failing = patient -> {
+            if (patient.getPatientID() == 2) {
+                throw new IllegalStateException("broken rule");
+            }
+        };
+        AlertEvaluationScheduler scheduler = new AlertEvaluationScheduler(storage,
+                List.of(failing, patient -> evaluations.incrementAndGet()), 1, report -> { });
+
+        CycleReport report = scheduler.runCycle();
+        assertEquals(3, report.getEvaluated());
+        assertEquals(1, report.getFailed());
+        assertEquals(2, evaluations.get());
+
+        //only the failed patient is tried again, although it has no new data
+        CycleReport retry = scheduler.runCycle();
+        scheduler.stop();
+        assertEquals(1, retry.getEvaluated());
+        assertEquals(1, retry.getFailed());
+    }
+
+    @Test
+    void testRunsCyclesAtFixedRate() throws InterruptedException {
+        DataStorage storage = new DataStorage();
+        storage.addPatientData(1, 98.0, "Saturation", 1000L);
+        CountDownLatch cycles = new CountDownLatch(3);
+        AlertEvaluationScheduler scheduler = new AlertEvaluationScheduler(storage,
+                List.of(patient -> { }), 1, report -> cycles.countDown());
+
+        scheduler.start(10, TimeUnit.MILLISECONDS);
+        assertTrue(cycles.await(5, TimeUnit.SECONDS));
+        scheduler.stop();
+
+        assertEquals(1, scheduler.getLastCycle().getPatients());
+    }
+}
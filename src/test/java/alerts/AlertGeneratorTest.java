@@ -147,6 +147,28 @@ public class AlertGeneratorTest {
                 "Expected: 'Systolic Blood Pressure Critical Low Alert'\nReceived: " + output);
     }
 
+    @Test
+    void testForCriticalThresholdWithRollingStatistics() {
+        // a real storage keeps the day's extremes, which decide whether the records are scanned
+        DataStorage storage = new DataStorage();
+        AlertGenerator generator = new AlertGenerator(storage);
+        currentTime = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            storage.addPatientData(1, 120, "SystolicPressure", currentTime - 3_600_000L + i * 1000L);
+            storage.addPatientData(1, 80, "DiastolicPressure", currentTime - 3_600_000L + i * 1000L);
+        }
+
+        generator.evaluateData(new Patient(1));
+        assertTrue(!outContent.toString().contains("Blood Pressure Critical"),
+                "Expected no blood pressure critical alert\nReceived: " + outContent);
+
+        storage.addPatientData(1, 185, "SystolicPressure", currentTime - 1000L);
+        generator.evaluateData(new Patient(1));
+        String output = outContent.toString().trim();
+        assertTrue(output.contains("Systolic Blood Pressure Critical High Alert"),
+                "Expected: 'Systolic Blood Pressure Critical High Alert'\nReceived: " + output);
+    }
+
     @Test
     void testForCriticalThresholdDiastolic() {
         Patient mockPatient = new Patient(1);
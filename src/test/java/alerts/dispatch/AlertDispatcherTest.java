@@ -0,0 +1,165 @@
+package alerts.dispatch;
+
+import com.alerts.Alert;
+import com.alerts.AlertGenerator;
+import com.alerts.dispatch.AlertDispatcher;
+import com.alerts.dispatch.AlertSink;
+import com.alerts.dispatch.ConsoleAlertSink;
+import com.alerts.dispatch.FileAlertSink;
+import com.alerts.dispatch.InMemoryAlertSink;
+import com.alerts.dispatch.OutputStrategyAlertSink;
+import com.data_management.DataStorage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AlertDispatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testDeliversAlertsFromManyThreadsToEverySink() throws InterruptedException {
+        InMemoryAlertSink first = new InMemoryAlertSink();
+        InMemoryAlertSink second = new InMemoryAlertSink();
+        AlertDispatcher dispatcher = new AlertDispatcher(List.of(first, second));
+
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String patientId = Integer.toString(t);
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    dispatcher.accept(new Alert(patientId, "Low Saturation Alert", i));
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        dispatcher.flush();
+
+        assertEquals(20000, first.getAlerts().size());
+        assertEquals(20000, second.getAlerts().size());
+        //alerts of one producer keep their order
+        long previous = -1;
+        for (Alert alert : first.getAlerts()) {
+            if (alert.getPatientId().equals("2")) {
+                assertTrue(alert.getTimestamp() > previous);
+                previous = alert.getTimestamp();
+            }
+        }
+        dispatcher.close();
+    }
+
+    @Test
+    void testSlowSinkDoesNotBlockEvaluation() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger stuckDelivered = new AtomicInteger();
+        AlertSink stuck = alerts -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stuckDelivered.addAndGet(alerts.size());
+        };
+        InMemoryAlertSink fast = new InMemoryAlertSink();
+        AlertDispatcher dispatcher = new AlertDispatcher(List.of(stuck, fast), 100);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            dispatcher.accept(new Alert("1", "Critical Heart Rate Alert", i));
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(1));
+
+        //the stuck sink holds at most one batch and 100 queued alerts, the rest is dropped
+        release.countDown();
+        dispatcher.flush();
+        dispatcher.close();
+        assertTrue(dispatcher.getDroppedAlerts() > 0);
+        assertTrue(stuckDelivered.get() < 1000);
+        assertEquals(2000, stuckDelivered.get() + fast.getAlerts().size() + dispatcher.getDroppedAlerts());
+    }
+
+    @Test
+    void testFailingSinkIsCountedAndKeepsRunning() throws InterruptedException {
+        List<Alert> delivered = new ArrayList<>();
+        AlertSink flaky = alerts -> {
+            if (alerts.get(0).getTimestamp() == 1) {
+                throw new IOException("connection reset");
+            }
+            delivered.addAll(alerts);
+        };
+        AlertDispatcher dispatcher = new AlertDispatcher(List.of(flaky));
+
+        dispatcher.accept(new Alert("1", "Low Saturation Alert", 1));
+        dispatcher.flush();
+        dispatcher.accept(new Alert("1", "Low Saturation Alert", 2));
+        dispatcher.flush();
+        dispatcher.close();
+
+        assertEquals(1, dispatcher.getFailedBatches());
+        assertEquals(1, delivered.size());
+        assertEquals(2, delivered.get(0).getTimestamp());
+    }
+
+    @Test
+    void testCloseDeliversQueuedAlertsToFile() throws IOException {
+        Path file = tempDir.resolve("alerts").resolve("alerts.log");
+        AlertDispatcher dispatcher = new AlertDispatcher(List.of(new FileAlertSink(file)));
+
+        dispatcher.accept(new Alert("7", "Hypotensive Hypoxemia Alert", 1000L));
+        dispatcher.accept(new Alert("8", "Low Saturation Alert", 2000L));
+        dispatcher.close();
+
+        assertEquals(List.of(
+                "Patient ID: 7, Condition: Hypotensive Hypoxemia Alert, Timestamp: 1000",
+                "Patient ID: 8, Condition: Low Saturation Alert, Timestamp: 2000"),
+                Files.readAllLines(file));
+    }
+
+    @Test
+    void testConsoleAndOutputStrategySinks() throws IOException {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        new ConsoleAlertSink(new PrintStream(console, true))
+                .send(List.of(new Alert("3", "Low Saturation Alert", 5L)));
+        assertEquals("Patient ID: 3, Condition: Low Saturation Alert, Timestamp: 5" + System.lineSeparator(),
+                console.toString());
+
+        List<String> outputs = new ArrayList<>();
+        new OutputStrategyAlertSink((patientId, timestamp, label, data) ->
+                outputs.add(patientId + "," + timestamp + "," + label + "," + data))
+                .send(List.of(new Alert("3", "Low Saturation Alert", 5L)));
+        assertEquals(List.of("3,5,Alert,Low Saturation Alert"), outputs);
+    }
+
+    @Test
+    void testAlertGeneratorHandsAlertsToDispatcher() throws InterruptedException {
+        DataStorage storage = new DataStorage();
+        long now = System.currentTimeMillis();
+        storage.addPatientData(1, 85.0, "Saturation", now);
+        InMemoryAlertSink sink = new InMemoryAlertSink();
+        AlertDispatcher dispatcher = new AlertDispatcher(List.of(sink));
+
+        new AlertGenerator(storage, dispatcher).evaluateData(storage.getAllPatients().get(0));
+        dispatcher.flush();
+        dispatcher.close();
+
+        assertTrue(sink.getAlerts().stream()
+                .anyMatch(alert -> alert.getCondition().equals("Low Saturation Alert")));
+    }
+}
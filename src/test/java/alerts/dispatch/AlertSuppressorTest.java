@@ -0,0 +1,86 @@
+package alerts.dispatch;
+
+import com.alerts.Alert;
+import com.alerts.AlertGenerator;
+import com.alerts.decorator.RepeatedAlertDecorator;
+import com.alerts.dispatch.AlertSuppressor;
+import com.data_management.DataStorage;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class AlertSuppressorTest {
+
+    @Test
+    void testDropsReEvaluatedReadings() {
+        List<Alert> forwarded = new ArrayList<>();
+        AlertSuppressor suppressor = new AlertSuppressor(forwarded::add, 60_000, 100);
+
+        for (int pass = 0; pass < 10; pass++) {
+            suppressor.accept(new Alert("1", "Low Saturation Alert", 1000L));
+        }
+
+        assertEquals(1, forwarded.size());
+        assertEquals(9, suppressor.getDroppedDuplicates());
+        assertEquals(0, suppressor.getSuppressedRepeats());
+    }
+
+    @Test
+    void testCountsRepeatsWithinHoldOff() {
+        List<Alert> forwarded = new ArrayList<>();
+        AlertSuppressor suppressor = new AlertSuppressor(forwarded::add, 60_000, 100);
+
+        suppressor.accept(new Alert("1", "Low Saturation Alert", 0L));
+        for (long t = 1000; t < 60_000; t += 1000) {
+            suppressor.accept(new Alert("1", "Low Saturation Alert", t));
+        }
+        //another patient and another condition are tracked separately
+        suppressor.accept(new Alert("2", "Low Saturation Alert", 5000L));
+        suppressor.accept(new Alert("1", "Critical Heart Rate Alert", 5000L));
+        suppressor.accept(new Alert("1", "Low Saturation Alert", 60_000L));
+
+        assertEquals(4, forwarded.size());
+        assertEquals(59, suppressor.getSuppressedRepeats());
+        Alert repeated = forwarded.get(3);
+        assertTrue(repeated instanceof RepeatedAlertDecorator);
+        assertEquals("Low Saturation Alert (Repeated 59 times)", repeated.getCondition());
+        assertEquals(60_000L, repeated.getTimestamp());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedKeys() {
+        List<Alert> forwarded = new ArrayList<>();
+        AlertSuppressor suppressor = new AlertSuppressor(forwarded::add, 60_000, 16);
+
+        for (int patientId = 0; patientId < 1000; patientId++) {
+            suppressor.accept(new Alert(Integer.toString(patientId), "Low Saturation Alert", 1000L));
+        }
+
+        assertTrue(suppressor.size() <= 16);
+        //an evicted key is forgotten, so its next alert is forwarded again
+        suppressor.accept(new Alert("0", "Low Saturation Alert", 1000L));
+        assertEquals(1001, forwarded.size());
+    }
+
+    @Test
+    void testRepeatedEvaluationPassesReportEachReadingOnce() {
+        DataStorage storage = new DataStorage();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            storage.addPatientData(1, 85.0, "Saturation", now - 10_000 + i * 1000);
+        }
+        List<Alert> forwarded = new ArrayList<>();
+        AlertSuppressor suppressor = new AlertSuppressor(forwarded::add);
+        AlertGenerator generator = new AlertGenerator(storage, suppressor);
+
+        for (int pass = 0; pass < 5; pass++) {
+            generator.evaluateData(storage.getAllPatients().get(0));
+        }
+
+        assertEquals(1, forwarded.stream()
+                .filter(alert -> alert.getCondition().equals("Low Saturation Alert")).count());
+        assertEquals(9, suppressor.getSuppressedRepeats());
+    }
+}
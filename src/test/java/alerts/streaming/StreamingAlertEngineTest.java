@@ -0,0 +1,108 @@
+package alerts.streaming;
+
+import com.alerts.Alert;
+import com.alerts.AlertGenerator;
+import com.alerts.streaming.StreamingAlertEngine;
+import com.data_management.DataStorage;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class StreamingAlertEngineTest {
+
+    private DataStorage storage;
+    private List<Alert> alerts;
+
+    @BeforeEach
+    void setUp() {
+        storage = new DataStorage();
+        alerts = new ArrayList<>();
+        storage.addListener(new StreamingAlertEngine(alerts::add));
+    }
+
+    private boolean fired(String condition) {
+        for (Alert alert : alerts) {
+            if (alert.getCondition().contains(condition)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void testIncreasingTrend() {
+        storage.addPatientData(1, 130, "SystolicPressure", 1000L);
+        storage.addPatientData(1, 145, "SystolicPressure", 2000L);
+        assertFalse(fired("Increasing Trend Alert"));
+
+        storage.addPatientData(1, 160, "SystolicPressure", 3000L);
+        assertTrue(fired("Systolic Blood Pressure Increasing Trend Alert"));
+        assertEquals("1", alerts.get(0).getPatientId());
+        assertEquals(3000L, alerts.get(0).getTimestamp());
+    }
+
+    @Test
+    void testTrendNeedsEveryReadingOfTheDay() {
+        storage.addPatientData(1, 130, "SystolicPressure", 1000L);
+        storage.addPatientData(1, 125, "SystolicPressure", 2000L);
+        storage.addPatientData(1, 140, "SystolicPressure", 3000L);
+        storage.addPatientData(1, 155, "SystolicPressure", 4000L);
+        storage.addPatientData(1, 170, "SystolicPressure", 5000L);
+        assertFalse(fired("Trend Alert")); // 130 to 125 is within the day
+
+        long nextDay = 2000L + AlertGenerator.DAY_INTERVAL_MS + 1;
+        storage.addPatientData(1, 185, "SystolicPressure", nextDay);
+        assertTrue(fired("Systolic Blood Pressure Increasing Trend Alert"));
+    }
+
+    @Test
+    void testCriticalThresholds() {
+        storage.addPatientData(1, 131, "DiastolicPressure", 1000L);
+        storage.addPatientData(1, 59, "DiastolicPressure", 2000L);
+
+        assertTrue(fired("Diastolic Blood Pressure Critical High Alert"));
+        assertTrue(fired("Diastolic Blood Pressure Critical Low Alert"));
+    }
+
+    @Test
+    void testRapidDropAndLowSaturation() {
+        storage.addPatientData(1, 97, "Saturation", 1000L);
+        storage.addPatientData(1, 91, "Saturation", 2000L);
+
+        assertTrue(fired("Saturation Rapid Drop Alert"));
+        assertTrue(fired("Low Saturation Alert"));
+    }
+
+    @Test
+    void testHypotensiveHypoxemia() {
+        storage.addPatientData(1, 89, "SystolicPressure", 1000L);
+        assertFalse(fired("Hypotensive Hypoxemia Alert"));
+
+        storage.addPatientData(1, 91, "Saturation", 50000L);
+        assertTrue(fired("Hypotensive Hypoxemia Alert"));
+    }
+
+    @Test
+    void testHypotensiveHypoxemiaOutsideWindow() {
+        storage.addPatientData(1, 89, "SystolicPressure", 1000L);
+        storage.addPatientData(1, 91, "Saturation", 200000L);
+
+        assertFalse(fired("Hypotensive Hypoxemia Alert"));
+    }
+
+    @Test
+    void testIrregularHeartRate() {
+        for (int i = 0; i < 5; i++) {
+            storage.addPatientData(1, 60, "ECG", i * 1000L);
+        }
+        assertFalse(fired("Irregular Heart Rate Alert"));
+
+        storage.addPatientData(1, 100, "ECG", 5000L);
+        assertTrue(fired("Irregular Heart Rate Alert"));
+        assertFalse(fired("Critical Heart Rate Alert"));
+    }
+}
@@ -0,0 +1,39 @@
+package cardio_generator;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.ExecutorMode;
+
+class ExecutorModeTest {
+
+    @Test
+    void testFromName() {
+        assertEquals(ExecutorMode.PLATFORM, ExecutorMode.fromName("platform"));
+        assertEquals(ExecutorMode.VIRTUAL, ExecutorMode.fromName("Virtual"));
+        assertThrows(IllegalArgumentException.class, () -> ExecutorMode.fromName("green"));
+    }
+
+    @Test
+    void testVirtualThreadsMatchTheRuntime() throws InterruptedException {
+        boolean java21 = Runtime.version().feature() >= 21;
+        assertEquals(java21, ExecutorMode.VIRTUAL.isAvailable());
+        if (!java21) {
+            assertThrows(IllegalStateException.class, () -> ExecutorMode.VIRTUAL.newThreadFactory("test-"));
+            return;
+        }
+        boolean[] ran = new boolean[1];
+        Thread thread = ExecutorMode.VIRTUAL.newThreadFactory("test-").newThread(() -> ran[0] = true);
+        thread.start();
+        thread.join();
+        assertTrue(ran[0]);
+        assertEquals("test-1", thread.getName());
+    }
+
+    @Test
+    void testPlatformThreadsAreDaemons() {
+        Thread thread = ExecutorMode.PLATFORM.newThreadFactory("test-").newThread(() -> { });
+        assertTrue(thread.isDaemon());
+        assertEquals("test-1", thread.getName());
+    }
+}
@@ -0,0 +1,49 @@
+package cardio_generator;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.TickScheduler;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+class TickSchedulerTest {
+
+    @Test
+    void testRunsEveryPatientAtItsRate() throws InterruptedException {
+        int patients = 3000; // several batches
+        int[] ids = new int[patients];
+        for (int i = 0; i < patients; i++) {
+            ids[i] = i + 1;
+        }
+        AtomicIntegerArray fast = new AtomicIntegerArray(patients + 1);
+        AtomicIntegerArray slow = new AtomicIntegerArray(patients + 1);
+
+        TickScheduler scheduler = new TickScheduler(10, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(fast::incrementAndGet, ids, 0, 20, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(slow::incrementAndGet, ids, 100, 200, TimeUnit.MILLISECONDS);
+        scheduler.start();
+        Thread.sleep(1000);
+        scheduler.shutdownNow();
+
+        assertEquals(0, fast.get(0));
+        for (int id = 1; id <= patients; id++) {
+            // about 50 and 5 runs; generous bounds for a loaded machine
+            assertTrue(fast.get(id) >= 20 && fast.get(id) <= 51, "fast runs of " + id + ": " + fast.get(id));
+            assertTrue(slow.get(id) >= 2 && slow.get(id) <= 5, "slow runs of " + id + ": " + slow.get(id));
+        }
+    }
+
+    @Test
+    void testPeriodsLongerThanTheWheel() throws InterruptedException {
+        AtomicIntegerArray runs = new AtomicIntegerArray(2);
+        TickScheduler scheduler = new TickScheduler(100, TimeUnit.MICROSECONDS);
+        // 1024 ticks per wheel turn, so this period takes several turns
+        scheduler.scheduleAtFixedRate(runs::incrementAndGet, new int[] {1}, 0, 250, TimeUnit.MILLISECONDS);
+        scheduler.start();
+        Thread.sleep(900);
+        scheduler.shutdownNow();
+
+        assertTrue(runs.get(1) >= 3 && runs.get(1) <= 4, "runs: " + runs.get(1));
+    }
+}
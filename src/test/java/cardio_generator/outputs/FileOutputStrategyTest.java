@@ -0,0 +1,77 @@
+package cardio_generator.outputs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.outputs.FileOutputStrategy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class FileOutputStrategyTest {
+
+    @Test
+    void testFlushWritesQueuedSamples(@TempDir Path directory) throws IOException {
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString());
+        output.output(1, 1000L, "ECG", "0.5");
+        output.output(2, 2000L, "Saturation", "97.0%");
+        output.flush();
+
+        assertEquals(List.of("Patient ID: 1, Timestamp: 1000, Label: ECG, Data: 0.5"),
+                Files.readAllLines(directory.resolve("ECG.txt")));
+        assertEquals(List.of("Patient ID: 2, Timestamp: 2000, Label: Saturation, Data: 97.0%"),
+                Files.readAllLines(directory.resolve("Saturation.txt")));
+        output.close();
+    }
+
+    @Test
+    void testCloseWritesSamplesFromAllThreads(@TempDir Path directory) throws Exception {
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int patientId = t + 1;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 25000; i++) {
+                    output.output(patientId, i, "ECG", "0.5");
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        output.close();
+
+        assertEquals(100000, Files.readAllLines(directory.resolve("ECG.txt")).size());
+    }
+
+    @Test
+    void testBadSamplesDoNotStopTheWriter(@TempDir Path directory) throws IOException {
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString());
+        output.output(1, 1000L, null, "0.5");
+        output.output(1, 2000L, "ECG", null);
+        output.output(1, 3000L, "ECG", "0.6");
+        output.flush();
+
+        assertEquals(List.of("Patient ID: 1, Timestamp: 2000, Label: ECG, Data: null",
+                "Patient ID: 1, Timestamp: 3000, Label: ECG, Data: 0.6"),
+                Files.readAllLines(directory.resolve("ECG.txt")));
+        output.close();
+    }
+
+    @Test
+    void testFilesStayAppendable(@TempDir Path directory) throws IOException {
+        FileOutputStrategy first = new FileOutputStrategy(directory.toString());
+        first.output(1, 1000L, "ECG", "0.5");
+        first.close();
+        FileOutputStrategy second = new FileOutputStrategy(directory.toString());
+        second.output(1, 2000L, "ECG", "0.6");
+        second.close();
+
+        assertEquals(2, Files.readAllLines(directory.resolve("ECG.txt")).size());
+    }
+}
@@ -0,0 +1,82 @@
+package cardio_generator.outputs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.OverflowPolicy;
+import com.cardio_generator.outputs.TcpOutputStrategy;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+class TcpOutputStrategyTest {
+
+    private static void awaitClients(TcpOutputStrategy output, int count) throws InterruptedException {
+        for (int i = 0; i < 500 && output.getClientCount() != count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, output.getClientCount());
+    }
+
+    @Test
+    void testEveryClientReceivesEveryMessage() throws Exception {
+        TcpOutputStrategy output = new TcpOutputStrategy(0, Executors.defaultThreadFactory(),
+                OverflowPolicy.DROP_NEWEST, 1024);
+        try (Socket first = new Socket("localhost", output.getPort());
+                Socket second = new Socket("localhost", output.getPort())) {
+            awaitClients(output, 2);
+            for (int i = 0; i < 1000; i++) {
+                output.output(1, i, "ECG", "0.5");
+            }
+            for (Socket socket : new Socket[] {first, second}) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                for (int i = 0; i < 1000; i++) {
+                    assertEquals("1," + i + ",ECG,0.5", in.readLine());
+                }
+            }
+            assertEquals(0, output.getDroppedMessages());
+        } finally {
+            output.close();
+        }
+    }
+
+    @Test
+    void testSlowClientDropsNewestMessages() throws Exception {
+        TcpOutputStrategy output = new TcpOutputStrategy(0, Executors.defaultThreadFactory(),
+                OverflowPolicy.DROP_NEWEST, 16);
+        String data = "x".repeat(64 * 1024);
+        try (Socket idle = new Socket("localhost", output.getPort())) {
+            awaitClients(output, 1);
+            // far more than the socket buffers and the ring can hold
+            for (int i = 0; i < 2000; i++) {
+                output.output(1, i, "ECG", data);
+            }
+            assertTrue(output.getDroppedMessages() > 0);
+            TcpOutputStrategy.ClientStats stats = output.getClientStats().get(0);
+            assertEquals(output.getDroppedMessages(), stats.getDroppedFrames());
+            assertTrue(stats.getQueuedFrames() <= 16);
+            assertEquals(1, output.getClientCount());
+        } finally {
+            output.close();
+        }
+    }
+
+    @Test
+    void testSlowClientIsDisconnected() throws Exception {
+        TcpOutputStrategy output = new TcpOutputStrategy(0, Executors.defaultThreadFactory(),
+                OverflowPolicy.DISCONNECT, 16);
+        String data = "x".repeat(64 * 1024);
+        try (Socket idle = new Socket("localhost", output.getPort())) {
+            awaitClients(output, 1);
+            for (int i = 0; i < 2000 && output.getClientCount() > 0; i++) {
+                output.output(1, i, "ECG", data);
+            }
+            assertEquals(0, output.getClientCount());
+        } finally {
+            output.close();
+        }
+    }
+}
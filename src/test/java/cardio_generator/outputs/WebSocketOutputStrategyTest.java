@@ -0,0 +1,77 @@
+package cardio_generator.outputs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+class WebSocketOutputStrategyTest {
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static class CollectingClient extends WebSocketClient {
+
+        final List<String> messages = new CopyOnWriteArrayList<>();
+
+        CollectingClient(int port) {
+            super(URI.create("ws://localhost:" + port));
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+        }
+
+        @Override
+        public void onMessage(String message) {
+            messages.add(message);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(Exception ex) {
+        }
+    }
+
+    @Test
+    void testSamplesAreCoalescedIntoOneMessage() throws Exception {
+        int port = freePort();
+        WebSocketOutputStrategy output = new WebSocketOutputStrategy(port, 60000); // flushed by hand
+        CollectingClient first = new CollectingClient(port);
+        CollectingClient second = new CollectingClient(port);
+        try {
+            assertTrue(first.connectBlocking(5, TimeUnit.SECONDS));
+            assertTrue(second.connectBlocking(5, TimeUnit.SECONDS));
+            Thread.sleep(200); // let the server register both connections
+
+            output.output(1, 1000L, "ECG", "0.5");
+            output.output(2, 1000L, "Saturation", "97.0%");
+            output.flush();
+
+            for (CollectingClient client : new CollectingClient[] {first, second}) {
+                for (int i = 0; i < 100 && client.messages.isEmpty(); i++) {
+                    Thread.sleep(20);
+                }
+                assertEquals(List.of("1,1000,ECG,0.5\n2,1000,Saturation,97.0%"), client.messages);
+            }
+        } finally {
+            first.closeBlocking();
+            second.closeBlocking();
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.outputs.FileOutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.PatientRecord;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class BinaryRecordFormatTest {
+
+    @Test
+    void testBinaryRoundTrip(@TempDir Path directory) throws IOException {
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), true);
+        output.output(1, 1000L, "Saturation", "97.0%");
+        output.output(1, 2000L, "ECG", "0.19370658167173713");
+        output.output(2, 3000L, "SystolicPressure", "120.0");
+        output.output(1, 4000L, "Alert", "triggered"); // not numeric, skipped
+        output.close();
+
+        DataStorage storage = new DataStorage();
+        new FileDataReader(directory.toString()).readData(storage);
+
+        List<PatientRecord> records = storage.getRecords(1, 0L, 5000L);
+        assertEquals(2, records.size());
+        for (PatientRecord record : records) {
+            if (record.getRecordType().equals("Saturation")) {
+                assertEquals(97.0, record.getMeasurementValue());
+                assertEquals(1000L, record.getTimestamp());
+            } else {
+                assertEquals("ECG", record.getRecordType());
+                assertEquals(0.19370658167173713, record.getMeasurementValue());
+            }
+        }
+        assertEquals(120.0, storage.getRecords(2, 0L, 5000L).get(0).getMeasurementValue());
+    }
+
+    @Test
+    void testBinaryFilesAreSmaller(@TempDir Path directory) throws IOException {
+        Path text = Files.createDirectory(directory.resolve("text"));
+        Path binary = Files.createDirectory(directory.resolve("binary"));
+        FileOutputStrategy textOutput = new FileOutputStrategy(text.toString());
+        FileOutputStrategy binaryOutput = new FileOutputStrategy(binary.toString(), true);
+        for (int i = 0; i < 1000; i++) {
+            textOutput.output(i % 50 + 1, 1716683934356L + i, "ECG", Double.toString(Math.sin(i)));
+            binaryOutput.output(i % 50 + 1, 1716683934356L + i, "ECG", Double.toString(Math.sin(i)));
+        }
+        textOutput.close();
+        binaryOutput.close();
+
+        long textSize = Files.size(text.resolve("ECG.txt"));
+        long binarySize = Files.size(binary.resolve("ECG.bin"));
+        assertTrue(binarySize * 3 < textSize, "binary " + binarySize + " bytes, text " + textSize + " bytes");
+    }
+}
@@ -0,0 +1,66 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.data_management.BulkFileDataReader;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+class BulkFileDataReaderTest {
+
+    @Test
+    void testReadsTestFiles() throws IOException {
+        DataStorage storage = new DataStorage();
+        BulkFileDataReader reader = new BulkFileDataReader("src/test/java/data_management/testFiles");
+
+        reader.readData(storage);
+
+        List<PatientRecord> records = storage.getRecords(1, 1716683934356L, 1716683934356L);
+        assertEquals(2, records.size());
+        assertEquals(2, reader.getLastReport().getSamples());
+        assertEquals(0, reader.getLastReport().getErrors());
+    }
+
+    @Test
+    void testChunksSplitOnLineBoundaries(@TempDir Path directory) throws IOException {
+        int lines = 5000;
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(directory.resolve("Saturation.txt")))) {
+            for (int i = 0; i < lines; i++) {
+                out.printf("Patient ID: %d, Timestamp: %d, Label: Saturation, Data: %d.0%%%n", i % 7 + 1, 1000L * i, 90 + i % 10);
+            }
+            out.println("Patient ID: 1, Timestamp: 1, Label: Alert, Data: triggered");
+        }
+
+        DataStorage storage = new DataStorage();
+        // tiny chunks so that many lines cross a chunk boundary
+        BulkFileDataReader reader = new BulkFileDataReader(directory.toString(), new ForkJoinPool(4), 1000);
+        reader.readData(storage);
+
+        assertEquals(lines, reader.getLastReport().getSamples());
+        assertEquals(1, reader.getLastReport().getErrors());
+        int total = 0;
+        for (int patientId = 1; patientId <= 7; patientId++) {
+            List<PatientRecord> records = storage.getRecords(patientId, 0L, Long.MAX_VALUE);
+            for (int i = 1; i < records.size(); i++) {
+                assertTrue(records.get(i - 1).getTimestamp() < records.get(i).getTimestamp());
+            }
+            total += records.size();
+        }
+        assertEquals(lines, total);
+        assertEquals(93.0, storage.getRecords(4, 3000L, 3000L).get(0).getMeasurementValue());
+    }
+
+    @Test
+    void testRejectsMissingDirectory() {
+        BulkFileDataReader reader = new BulkFileDataReader("does/not/exist");
+        assertThrows(IOException.class, () -> reader.readData(new DataStorage()));
+    }
+}
@@ -5,10 +5,18 @@ import org.junit.jupiter.api.Test;
 
 import com.data_management.DataStorage;
 import com.data_management.FileDataReader;
+import com.data_management.OffHeapArena;
 import com.data_management.PatientRecord;
+import com.data_management.RetentionPolicy;
+import com.data_management.RollingWindow;
+import com.data_management.Rollup;
+import com.data_management.SampleBatch;
+import com.data_management.WindowStatistics;
 import java.io.IOException;
+import java.nio.file.Path;
 
 import java.util.List;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
 class DataStorageTest {
@@ -67,4 +75,519 @@ class DataStorageTest {
         }
     }
 
+    @Test
+    void testOutOfOrderRecordsAreSorted() {
+
+        DataStorage storage = new DataStorage();
+
+        //late samples should be placed by timestamp
+        storage.addPatientData(1, 3.0, "ECG", 3000L);
+        storage.addPatientData(1, 1.0, "ECG", 1000L);
+        storage.addPatientData(1, 2.0, "ECG", 2000L);
+
+        List<PatientRecord> records = storage.getRecords(1, 0L, 5000L);
+        assertEquals(3, records.size());
+        assertEquals(1000L, records.get(0).getTimestamp());
+        assertEquals(2000L, records.get(1).getTimestamp());
+        assertEquals(3000L, records.get(2).getTimestamp());
+    }
+
+    @Test
+    void testRangeQueryAcrossChunks() {
+
+        DataStorage storage = new DataStorage();
+
+        //enough samples to span several storage chunks
+        for (int i = 0; i < 5000; i++) {
+            storage.addPatientData(2, i, "Saturation", i * 1000L);
+            storage.addPatientData(2, -i, "ECG", i * 1000L);
+        }
+
+        List<PatientRecord> records = storage.getRecords(2, 1000000L, 1999000L);
+        assertEquals(2000, records.size()); // 1000 of each type
+        for (PatientRecord record : records) {
+            assertTrue(record.getTimestamp() >= 1000000L && record.getTimestamp() <= 1999000L);
+            assertEquals(2, record.getPatientId());
+        }
+
+        assertTrue(storage.getRecords(2, 6000000L, 7000000L).isEmpty());
+        assertTrue(storage.getRecords(3, 0L, 7000000L).isEmpty());
+    }
+
+    @Test
+    void testConcurrentWriters() throws InterruptedException {
+
+        DataStorage storage = new DataStorage();
+        int threadCount = 8;
+        int samplesPerThread = 5000;
+
+        //every thread writes to its own patient plus one shared patient
+        Thread[] writers = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            int patientId = t + 1;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < samplesPerThread; i++) {
+                    storage.addPatientData(patientId, i, "ECG", i);
+                    storage.addPatientData(100, i, "ECG", i);
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        for (int t = 1; t <= threadCount; t++) {
+            assertEquals(samplesPerThread, storage.getRecords(t, 0L, samplesPerThread).size());
+        }
+        List<PatientRecord> shared = storage.getRecords(100, 0L, samplesPerThread);
+        assertEquals(threadCount * samplesPerThread, shared.size());
+        for (int i = 1; i < shared.size(); i++) {
+            assertTrue(shared.get(i - 1).getTimestamp() <= shared.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    void testSnapshotIsNotAffectedByLaterWrites() {
+
+        DataStorage storage = new DataStorage();
+        storage.addPatientData(1, 1.0, "ECG", 1000L);
+        storage.addPatientData(1, 3.0, "ECG", 3000L);
+
+        List<PatientRecord> snapshot = storage.getRecords(1, 0L, 5000L);
+
+        //a late sample is inserted in the middle of the series
+        storage.addPatientData(1, 2.0, "ECG", 2000L);
+
+        assertEquals(2, snapshot.size());
+        assertEquals(1.0, snapshot.get(0).getMeasurementValue());
+        assertEquals(3.0, snapshot.get(1).getMeasurementValue());
+        assertEquals(3, storage.getRecords(1, 0L, 5000L).size());
+    }
+
+    @Test
+    void testBatchMatchesSingleAdds() {
+
+        DataStorage single = new DataStorage();
+        DataStorage batched = new DataStorage();
+        java.util.Random random = new java.util.Random(42);
+        String[] types = {"ECG", "Saturation", "SystolicPressure"};
+
+        //existing history, then batches with late, duplicate and unsorted timestamps
+        for (int i = 0; i < 3000; i++) {
+            single.addPatientData(1, i, "ECG", i * 10L);
+            batched.addPatientData(1, i, "ECG", i * 10L);
+        }
+        for (int round = 0; round < 5; round++) {
+            SampleBatch batch = new SampleBatch(16);
+            for (int i = 0; i < 2000; i++) {
+                int patientId = 1 + random.nextInt(4);
+                String type = types[random.nextInt(types.length)];
+                long timestamp = random.nextInt(40000);
+                double value = random.nextDouble();
+                single.addPatientData(patientId, value, type, timestamp);
+                batch.add(patientId, value, type, timestamp);
+            }
+            batched.addPatientData(batch);
+        }
+
+        for (int patientId = 1; patientId <= 4; patientId++) {
+            for (String type : types) {
+                List<PatientRecord> expected = recordsOfType(single, patientId, type);
+                List<PatientRecord> actual = recordsOfType(batched, patientId, type);
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+                    assertEquals(expected.get(i).getMeasurementValue(), actual.get(i).getMeasurementValue());
+                }
+            }
+        }
+    }
+
+    private static List<PatientRecord> recordsOfType(DataStorage storage, int patientId, String type) {
+        List<PatientRecord> records = new java.util.ArrayList<>();
+        for (PatientRecord record : storage.getRecords(patientId, 0L, Long.MAX_VALUE)) {
+            if (record.getRecordType().equals(type)) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Test
+    void testBatchNotifiesListenersInBatchOrder() {
+
+        DataStorage storage = new DataStorage();
+        List<Long> seen = new java.util.ArrayList<>();
+        storage.addListener((patientId, recordType, value, timestamp) -> seen.add(timestamp));
+
+        SampleBatch batch = new SampleBatch();
+        batch.add(2, 1.0, "ECG", 30L);
+        batch.add(1, 1.0, "ECG", 10L);
+        batch.add(2, 1.0, "Saturation", 20L);
+        storage.addPatientData(batch);
+
+        assertEquals(List.of(30L, 10L, 20L), seen);
+        assertEquals(2, storage.getRecords(2, 0L, 100L).size());
+        assertEquals(3, batch.size()); // the batch is left untouched
+    }
+
+    @Test
+    void testSampleCountIncludesBatches() {
+
+        DataStorage storage = new DataStorage();
+        SampleBatch batch = new SampleBatch();
+        batch.add(1, 1.0, "ECG", 10L);
+        batch.add(2, 1.0, "ECG", 20L);
+        batch.add(1, 1.0, "ECG", 30L);
+        storage.addPatientData(batch);
+        storage.addPatientData(1, 1.0, "ECG", 40L);
+
+        assertEquals(4, storage.getSampleCount());
+    }
+
+    @Test
+    void testRetentionRollsUpOldSamples() {
+
+        long minute = 60_000L;
+        long hour = 60 * minute;
+        DataStorage storage = new DataStorage(new RetentionPolicy(RetentionPolicy.Rule.KEEP_ALL)
+                .retain("ECG", new RetentionPolicy.Rule(10 * minute, Integer.MAX_VALUE, hour, 24 * hour)));
+
+        //one ECG sample per second for three hours, values 0..59 within each minute
+        for (long t = 0; t < 3 * hour; t += 1000L) {
+            storage.addPatientData(1, (t / 1000L) % 60, "ECG", t);
+            storage.addPatientData(1, 1.0, "Saturation", t);
+        }
+        long newest = 3 * hour - 1000L;
+
+        //raw ECG only reaches back ten minutes
+        List<PatientRecord> raw = storage.getRecords(1, newest - 10 * minute, newest);
+        assertEquals(10 * 60 + 1, recordsOf(raw, "ECG").size());
+        assertEquals(3 * 3600, recordsOf(storage.getRecords(1, 0L, newest), "Saturation").size());
+
+        //minute rollups hold the summary of the rolled-up samples
+        List<Rollup> minutes = storage.getRollups(1, "ECG", Rollup.Resolution.MINUTE, hour, 2 * hour - 1);
+        assertEquals(60, minutes.size());
+        Rollup first = minutes.get(0);
+        assertEquals(hour, first.getStartTime());
+        assertEquals(0.0, first.getMin());
+        assertEquals(59.0, first.getMax());
+        assertEquals(29.5, first.getAverage(), 1e-9);
+        assertEquals(60, first.getCount());
+
+        //minute rollups are dropped in whole hours once older than an hour; the hour rollup remains
+        assertTrue(storage.getRollups(1, "ECG", Rollup.Resolution.MINUTE, 0L, hour - 1).isEmpty());
+        List<Rollup> hours = storage.getRollups(1, "ECG", Rollup.Resolution.HOUR, 0L, newest);
+        assertEquals(3, hours.size());
+        assertEquals(3600, hours.get(0).getCount());
+
+        //a query over the whole range is served from hours, then minutes, then raw samples
+        List<PatientRecord> ecg = recordsOf(storage.getRecords(1, 0L, newest), "ECG");
+        assertEquals(1 + 109 + 11 * 60, ecg.size());
+        assertEquals(0L, ecg.get(0).getTimestamp());
+        assertEquals(29.5, ecg.get(0).getMeasurementValue(), 1e-9);
+        assertEquals(hour, ecg.get(1).getTimestamp());
+        for (int i = 1; i < ecg.size(); i++) {
+            assertTrue(ecg.get(i - 1).getTimestamp() < ecg.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    void testRetentionLimitsRawSampleCount() {
+
+        DataStorage storage = new DataStorage(new RetentionPolicy(
+                new RetentionPolicy.Rule(RetentionPolicy.FOREVER, 100, RetentionPolicy.FOREVER, RetentionPolicy.FOREVER)));
+
+        //ten samples per minute; whole minutes are rolled up once more than 100 are held
+        for (int i = 0; i < 10_000; i++) {
+            storage.addPatientData(1, i, "HeartRate", i * 6000L);
+        }
+
+        List<Rollup> minutes = storage.getRollups(1, "HeartRate", Rollup.Resolution.MINUTE, 0L, Long.MAX_VALUE);
+        long rolledUp = minutes.stream().mapToLong(Rollup::getCount).sum();
+        long raw = storage.getRecords(1, 0L, Long.MAX_VALUE).size() - minutes.size();
+        assertEquals(10_000, rolledUp + raw);
+        assertTrue(raw >= 100 && raw < 110);
+        assertEquals(0.0, minutes.get(0).getMin());
+        assertEquals(9.0, minutes.get(0).getMax());
+    }
+
+    @Test
+    void testLateSampleBeforeRetentionIsRolledUp() {
+
+        long minute = 60_000L;
+        DataStorage storage = new DataStorage(new RetentionPolicy(
+                new RetentionPolicy.Rule(5 * minute, Integer.MAX_VALUE, RetentionPolicy.FOREVER, RetentionPolicy.FOREVER)));
+        for (long t = 0; t <= 20 * minute; t += minute) {
+            storage.addPatientData(1, 1.0, "ECG", t);
+        }
+
+        //a sample older than the raw horizon goes straight into its minute bucket
+        storage.addPatientData(1, 3.0, "ECG", 2 * minute + 1);
+
+        List<Rollup> bucket = storage.getRollups(1, "ECG", Rollup.Resolution.MINUTE, 2 * minute, 2 * minute);
+        assertEquals(1, bucket.size());
+        assertEquals(2, bucket.get(0).getCount());
+        assertEquals(2.0, bucket.get(0).getAverage(), 1e-9);
+        assertTrue(storage.getRollups(1, "ECG", Rollup.Resolution.MINUTE, 15 * minute, 20 * minute).isEmpty());
+        assertEquals(6, storage.getRecords(1, 15 * minute, 20 * minute).size());
+    }
+
+    @Test
+    void testInvalidRetentionRule() {
+        assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy.Rule(60_000L, 0, 60_000L, 60_000L));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RetentionPolicy.Rule(3_600_000L, 10, 60_000L, RetentionPolicy.FOREVER));
+    }
+
+    @Test
+    void testOffHeapStorageMatchesHeapStorage() {
+
+        long minute = 60_000L;
+        RetentionPolicy policy = new RetentionPolicy(RetentionPolicy.Rule.KEEP_ALL)
+                .retain("ECG", new RetentionPolicy.Rule(30 * minute, Integer.MAX_VALUE, RetentionPolicy.FOREVER,
+                        RetentionPolicy.FOREVER));
+        OffHeapArena arena = OffHeapArena.direct(64L << 20);
+        DataStorage heap = new DataStorage(policy);
+        DataStorage offHeap = new DataStorage(policy, arena);
+        java.util.Random random = new java.util.Random(7);
+        String[] types = {"ECG", "Saturation"};
+
+        //in-order history, then late samples that land in chunks already moved off the heap
+        for (int i = 0; i < 5000; i++) {
+            for (String type : types) {
+                heap.addPatientData(1, i, type, i * 1000L);
+                offHeap.addPatientData(1, i, type, i * 1000L);
+            }
+        }
+        assertTrue(arena.getUsedBytes() > 0);
+        SampleBatch batch = new SampleBatch();
+        for (int i = 0; i < 3000; i++) {
+            String type = types[random.nextInt(types.length)];
+            long timestamp = random.nextInt(5_000_000);
+            double value = random.nextDouble();
+            heap.addPatientData(1, value, type, timestamp);
+            if (i % 2 == 0) {
+                offHeap.addPatientData(1, value, type, timestamp);
+            } else {
+                batch.add(1, value, type, timestamp);
+                offHeap.addPatientData(batch);
+                batch.clear();
+            }
+        }
+
+        for (String type : types) {
+            List<PatientRecord> expected = recordsOfType(heap, 1, type);
+            List<PatientRecord> actual = recordsOfType(offHeap, 1, type);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+                assertEquals(expected.get(i).getMeasurementValue(), actual.get(i).getMeasurementValue());
+            }
+        }
+        List<Rollup> expectedRollups = heap.getRollups(1, "ECG", Rollup.Resolution.MINUTE, 0L, Long.MAX_VALUE);
+        List<Rollup> actualRollups = offHeap.getRollups(1, "ECG", Rollup.Resolution.MINUTE, 0L, Long.MAX_VALUE);
+        assertFalse(expectedRollups.isEmpty());
+        assertEquals(expectedRollups.size(), actualRollups.size());
+        for (int i = 0; i < expectedRollups.size(); i++) {
+            assertEquals(expectedRollups.get(i).getCount(), actualRollups.get(i).getCount());
+            assertEquals(expectedRollups.get(i).getAverage(), actualRollups.get(i).getAverage());
+        }
+    }
+
+    @Test
+    void testFullOffHeapArenaKeepsSamplesOnHeap(@TempDir Path directory) throws IOException {
+
+        //room for a single chunk of 1024 samples
+        OffHeapArena arena = OffHeapArena.mapped(directory.resolve("arena"), 1024 * 16);
+        DataStorage storage = new DataStorage(RetentionPolicy.keepAll(), arena);
+        for (int i = 0; i < 5000; i++) {
+            storage.addPatientData(1, i, "ECG", i);
+        }
+
+        assertEquals(1024 * 16, arena.getUsedBytes());
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(5000, records.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, records.get(i).getTimestamp());
+            assertEquals(i, records.get(i).getMeasurementValue());
+        }
+    }
+
+    @Test
+    void testCompressedChunksKeepExactSamples() {
+
+        DataStorage storage = new DataStorage();
+        java.util.Random random = new java.util.Random(11);
+        java.util.TreeMap<Long, Double> saturation = new java.util.TreeMap<>();
+        java.util.TreeMap<Long, Double> ecg = new java.util.TreeMap<>();
+
+        //steady cadence with jitter, a gap, and values that are not small integers
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < 6000; i++) {
+            timestamp += i == 3000 ? 86_400_000L : 1000 + random.nextInt(7) - 3;
+            double value = i % 997 == 0 ? -0.1 * i : 95 + random.nextInt(5);
+            saturation.put(timestamp, value);
+            storage.addPatientData(1, value, "Saturation", timestamp);
+            ecg.put(timestamp, random.nextGaussian());
+            storage.addPatientData(1, ecg.get(timestamp), "ECG", timestamp);
+        }
+        //late samples land in sealed chunks, singly and in batches
+        SampleBatch batch = new SampleBatch();
+        for (int i = 0; i < 500; i++) {
+            long late = saturation.firstKey() + random.nextInt(5_000_000) * 2L + 1;
+            if (saturation.containsKey(late)) {
+                continue;
+            }
+            saturation.put(late, (double) i);
+            if (i % 2 == 0) {
+                storage.addPatientData(1, i, "Saturation", late);
+            } else {
+                batch.add(1, i, "Saturation", late);
+                storage.addPatientData(batch);
+                batch.clear();
+            }
+        }
+
+        List<PatientRecord> records = storage.getRecords(1, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertSameSamples(saturation, recordsOf(records, "Saturation"));
+        assertSameSamples(ecg, recordsOf(records, "ECG"));
+        //range queries whose bounds fall inside sealed chunks
+        for (int i = 0; i < 50; i++) {
+            long start = saturation.firstKey() + random.nextInt(5_000_000);
+            long end = start + random.nextInt(2_000_000);
+            assertSameSamples(saturation.subMap(start, true, end, true),
+                    recordsOf(storage.getRecords(1, start, end), "Saturation"));
+        }
+    }
+
+    @Test
+    void testWindowStatisticsFollowWrites() {
+
+        DataStorage storage = new DataStorage();
+        java.util.Random random = new java.util.Random(5);
+        RollingWindow lastHour = RollingWindow.lastMillis(3_600_000L);
+        RollingWindow lastFive = RollingWindow.lastSamples(5);
+        assertNull(storage.getWindowStatistics(1, "SystolicPressure", lastHour));
+
+        long timestamp = 0;
+        SampleBatch batch = new SampleBatch();
+        for (int round = 0; round < 40; round++) {
+            //appends, batches and late samples, into plain and compressed chunks
+            for (int i = 0; i < 200; i++) {
+                timestamp += 1000;
+                storage.addPatientData(1, 100 + random.nextInt(60), "SystolicPressure", timestamp);
+            }
+            for (int i = 0; i < 10; i++) {
+                batch.add(1, 100 + random.nextInt(60), "SystolicPressure", timestamp + 1 + i);
+            }
+            storage.addPatientData(batch);
+            batch.clear();
+            if (round % 4 == 3) {
+                storage.addPatientData(1, 200, "SystolicPressure", timestamp - random.nextInt(5_000_000));
+            }
+
+            List<PatientRecord> records = storage.getRecords(1, Long.MIN_VALUE, Long.MAX_VALUE);
+            long newest = records.get(records.size() - 1).getTimestamp();
+            assertSameStatistics(records.stream().filter(r -> r.getTimestamp() >= newest - 3_600_000L)
+                    .collect(java.util.stream.Collectors.toList()),
+                    storage.getWindowStatistics(1, "SystolicPressure", lastHour));
+            assertSameStatistics(records.subList(records.size() - 5, records.size()),
+                    storage.getWindowStatistics(1, "SystolicPressure", lastFive));
+        }
+    }
+
+    @Test
+    void testWindowStatisticsOnlyCoverRawSamples() {
+
+        RetentionPolicy policy = new RetentionPolicy(new RetentionPolicy.Rule(60_000L, Integer.MAX_VALUE,
+                RetentionPolicy.FOREVER, RetentionPolicy.FOREVER));
+        DataStorage storage = new DataStorage(policy);
+        RollingWindow lastHour = RollingWindow.lastMillis(3_600_000L);
+        storage.addPatientData(1, 0, "ECG", 0L);
+        assertTrue(storage.getWindowStatistics(1, "ECG", lastHour).isComplete());
+        for (int i = 1; i <= 600; i++) {
+            storage.addPatientData(1, i, "ECG", i * 1000L);
+        }
+
+        WindowStatistics statistics = storage.getWindowStatistics(1, "ECG", lastHour);
+        List<PatientRecord> raw = storage.getRecords(1, 540_000L, Long.MAX_VALUE);
+        assertFalse(statistics.isComplete());
+        assertSameStatistics(raw, statistics);
+        assertEquals(540_000L, statistics.getStartTime());
+        assertEquals(600_000L, statistics.getEndTime());
+    }
+
+    @Test
+    void testLatestValuesHoldNewestSamplePerType() {
+
+        DataStorage storage = new DataStorage();
+        SampleBatch latest = new SampleBatch();
+        assertTrue(storage.getLatestValues(latest).isEmpty());
+
+        for (int i = 0; i < 3000; i++) {
+            storage.addPatientData(1, 60 + i % 40, "ECG", i * 10L);
+            storage.addPatientData(2, 90 + i % 10, "Saturation", i * 1000L);
+        }
+        storage.addPatientData(2, 120, "SystolicPressure", 5000L);
+        storage.addPatientData(1, 0.5, "ECG", 100L); // late, so not the newest
+
+        assertSame(latest, storage.getLatestValues(latest));
+        assertEquals(3, latest.size());
+        for (int i = 0; i < latest.size(); i++) {
+            List<PatientRecord> records = storage.getRecords(latest.getPatientId(i), latest.getRecordTypeCode(i),
+                    Long.MIN_VALUE, Long.MAX_VALUE);
+            PatientRecord newest = records.get(records.size() - 1);
+            assertEquals(newest.getTimestamp(), latest.getTimestamp(i));
+            assertEquals(newest.getMeasurementValue(), latest.getMeasurementValue(i));
+        }
+
+        // a reused batch is refilled, not appended to
+        storage.addPatientData(1, 75, "ECG", 30000L);
+        assertEquals(3, storage.getLatestValues(latest).size());
+        assertEquals(3, storage.getLatestValues().size());
+    }
+
+    private static void assertSameStatistics(List<PatientRecord> expected, WindowStatistics actual) {
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (PatientRecord record : expected) {
+            sum += record.getMeasurementValue();
+            min = Math.min(min, record.getMeasurementValue());
+            max = Math.max(max, record.getMeasurementValue());
+        }
+        double mean = sum / expected.size();
+        double squares = 0;
+        for (PatientRecord record : expected) {
+            squares += (record.getMeasurementValue() - mean) * (record.getMeasurementValue() - mean);
+        }
+        assertEquals(expected.size(), actual.getCount());
+        assertEquals(sum, actual.getSum(), 1e-6);
+        assertEquals(mean, actual.getMean(), 1e-9);
+        assertEquals(squares / expected.size(), actual.getVariance(), 1e-6);
+        assertEquals(min, actual.getMin());
+        assertEquals(max, actual.getMax());
+        assertEquals(expected.get(0).getTimestamp(), actual.getStartTime());
+    }
+
+    private static void assertSameSamples(java.util.Map<Long, Double> expected, List<PatientRecord> actual) {
+        assertEquals(expected.size(), actual.size());
+        int i = 0;
+        for (java.util.Map.Entry<Long, Double> sample : expected.entrySet()) {
+            assertEquals(sample.getKey(), actual.get(i).getTimestamp());
+            assertEquals(sample.getValue(), actual.get(i++).getMeasurementValue());
+        }
+    }
+
+    private static List<PatientRecord> recordsOf(List<PatientRecord> records, String type) {
+        List<PatientRecord> result = new java.util.ArrayList<>();
+        for (PatientRecord record : records) {
+            if (record.getRecordType().equals(type)) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
 }
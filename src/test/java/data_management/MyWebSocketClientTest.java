@@ -2,6 +2,7 @@ package data_management;
 
 import com.data_management.DataStorage;
 import com.data_management.MyWebSocketClient;
+import com.data_management.PatientRecord;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import org.java_websocket.client.WebSocketClient;
@@ -12,6 +13,7 @@ import org.mockito.Mockito;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.junit.Before;
@@ -74,6 +76,23 @@ class MyWebSocketClientTest {
         verify(dataStorage, times(1)).addPatientData(eq(1), eq(0.19370658167173713), eq("ECG"), eq(1700000000000L));
     }
 
+    @Test
+    void testOnMessageBatchedData() throws URISyntaxException {
+        DataStorage storage = new DataStorage();
+        MyWebSocketClient client = new MyWebSocketClient(new URI("ws://localhost:8080"), storage);
+        String message = "1,1700000000000,ECG,0.5\n2,1700000000001,Saturation,97.0%\nInvalid data format";
+        client.onMessage(message);
+
+        List<PatientRecord> first = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(1, first.size());
+        assertEquals("ECG", first.get(0).getRecordType());
+        assertEquals(0.5, first.get(0).getMeasurementValue());
+        List<PatientRecord> second = storage.getRecords(2, 0L, Long.MAX_VALUE);
+        assertEquals(1, second.size());
+        assertEquals(97.0, second.get(0).getMeasurementValue());
+        assertEquals(1700000000001L, second.get(0).getTimestamp());
+    }
+
     @Test
     void testOnMessageInvalidData() {
         String message = "Invalid data format";
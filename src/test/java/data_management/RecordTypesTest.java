@@ -0,0 +1,79 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
+import com.data_management.SampleBatch;
+import com.data_management.SampleParser;
+import java.util.List;
+
+class RecordTypesTest {
+
+    @Test
+    void testBuiltInLabelsHaveFixedCodes() {
+        assertEquals(RecordTypes.ECG, RecordTypes.codeOf("ECG"));
+        assertEquals(RecordTypes.SATURATION, RecordTypes.find("Saturation"));
+        assertEquals("DiastolicPressure", RecordTypes.label(RecordTypes.DIASTOLIC_PRESSURE));
+        assertEquals(RecordTypes.CHOLESTEROL, RecordTypes.find("xCholesterolx", 1, 12));
+    }
+
+    @Test
+    void testNewLabelsAreRegisteredOnce() {
+        assertEquals(-1, RecordTypes.find("RecordTypesTestLabel"));
+        int code = RecordTypes.codeOf("RecordTypesTestLabel");
+        assertTrue(code > RecordTypes.ALERT);
+        assertEquals(code, RecordTypes.codeOf(new String("RecordTypesTestLabel")));
+        assertEquals("RecordTypesTestLabel", RecordTypes.label(code));
+        assertThrows(IllegalArgumentException.class, () -> RecordTypes.label(RecordTypes.count()));
+
+        //the parser resolves the same code without creating the label again
+        SampleParser parser = new SampleParser();
+        assertTrue(parser.parse("3,1000,RecordTypesTestLabel,1.5"));
+        assertEquals(code, parser.getRecordTypeCode());
+        assertSame(RecordTypes.label(code), parser.getRecordType());
+    }
+
+    @Test
+    void testInvalidLabelsAndCodesAreRejected() {
+        int count = RecordTypes.count();
+        SampleParser parser = new SampleParser();
+        assertFalse(parser.parse("3,1000,Heart Rate: 180 bpm,1.5"));
+        assertFalse(parser.parse("3,1000," + "x".repeat(RecordTypes.MAX_LABEL_LENGTH + 1) + ",1.5"));
+        assertThrows(IllegalArgumentException.class, () -> RecordTypes.codeOf(""));
+
+        //a record outside the storage keeps its label without registering it
+        assertEquals(-1, new PatientRecord(1, 1.0, "Blood Pressure", 1L).getRecordTypeCode());
+        assertEquals(count, RecordTypes.count());
+
+        DataStorage storage = new DataStorage();
+        assertThrows(IllegalArgumentException.class, () -> storage.addPatientData(1, 1.0, -1, 1L));
+        assertThrows(IllegalArgumentException.class, () -> new SampleBatch().add(1, 1.0, count, 1L));
+        assertTrue(storage.getAllPatients().isEmpty());
+    }
+
+    @Test
+    void testSelectByCode() {
+        DataStorage storage = new DataStorage();
+        for (int i = 0; i < 10; i++) {
+            storage.addPatientData(1, i, "ECG", i);
+            storage.addPatientData(1, 90 + i, "Saturation", i);
+        }
+
+        List<PatientRecord> records = storage.getRecords(1, 0L, 9L);
+        List<PatientRecord> saturation = RecordTypes.select(records, RecordTypes.SATURATION);
+        assertEquals(10, saturation.size());
+        assertEquals(90.0, saturation.get(0).getMeasurementValue());
+        assertTrue(RecordTypes.select(records, RecordTypes.CHOLESTEROL).isEmpty());
+        assertEquals(10, storage.getRecords(1, RecordTypes.ECG, 0L, 9L).size());
+
+        //plain lists are scanned
+        List<PatientRecord> mixed = List.of(new PatientRecord(1, 1.0, "ECG", 1L),
+                new PatientRecord(1, 2.0, "Saturation", 1L), new PatientRecord(1, 3.0, "ECG", 2L));
+        List<PatientRecord> ecg = RecordTypes.select(mixed, RecordTypes.ECG);
+        assertEquals(2, ecg.size());
+        assertEquals(3.0, ecg.get(1).getMeasurementValue());
+    }
+}
@@ -0,0 +1,69 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.SampleParser;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+class SampleParserTest {
+
+    @Test
+    void testVerboseFormat() {
+        SampleParser parser = new SampleParser();
+
+        assertTrue(parser.parse("Patient ID: 1, Timestamp: 1716683934356, Label: ECG, Data: 0.19370658167173713"));
+        assertEquals(1, parser.getPatientId());
+        assertEquals(1716683934356L, parser.getTimestamp());
+        assertEquals("ECG", parser.getRecordType());
+        assertEquals(0.19370658167173713, parser.getMeasurementValue());
+    }
+
+    @Test
+    void testCompactFormatWithPercent() {
+        SampleParser parser = new SampleParser();
+
+        assertTrue(parser.parse("42,1716683934356,Saturation,99.0%"));
+        assertEquals(42, parser.getPatientId());
+        assertEquals("Saturation", parser.getRecordType());
+        assertEquals(99.0, parser.getMeasurementValue());
+    }
+
+    @Test
+    void testByteBuffer() {
+        SampleParser parser = new SampleParser();
+        byte[] bytes = "xx7,100,Cholesterol,1.5E2\n".getBytes(StandardCharsets.US_ASCII);
+
+        assertTrue(parser.parse(ByteBuffer.wrap(bytes), 2, bytes.length - 1));
+        assertEquals(7, parser.getPatientId());
+        assertEquals(100L, parser.getTimestamp());
+        assertEquals("Cholesterol", parser.getRecordType());
+        assertEquals(150.0, parser.getMeasurementValue());
+    }
+
+    @Test
+    void testInvalidLines() {
+        SampleParser parser = new SampleParser();
+
+        assertFalse(parser.parse("Invalid data format"));
+        assertFalse(parser.parse("1,100,Alert,triggered"));
+        assertFalse(parser.parse("1,abc,ECG,1.0"));
+        assertFalse(parser.parse("1,100,ECG,1.0,extra"));
+        assertFalse(parser.parse("1,100,,1.0"));
+    }
+
+    @Test
+    void testValuesMatchDoubleParseDouble() {
+        SampleParser parser = new SampleParser();
+        Random random = new Random(1);
+
+        for (int i = 0; i < 100000; i++) {
+            double expected = i % 2 == 0 ? random.nextDouble() * 200 : random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+            String text = Double.toString(expected);
+            assertTrue(parser.parse("1,1," + "ECG," + text), text);
+            assertEquals(Double.parseDouble(text), parser.getMeasurementValue(), 0.0, text);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package data_management;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RetentionPolicy;
+import com.data_management.Rollup;
+import com.data_management.SampleBatch;
+import com.data_management.StoragePersistence;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StoragePersistenceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReplaysLogAfterRestart() throws IOException {
+        DataStorage storage = new DataStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(directory, storage)) {
+            storage.addPatientData(1, 72.0, "HeartRate", 1000L);
+            SampleBatch batch = new SampleBatch();
+            batch.add(1, 98.0, "Saturation", 2000L);
+            batch.add(2, 120.0, "SystolicPressure", 1500L);
+            batch.add(1, 75.0, "HeartRate", 3000L);
+            storage.addPatientData(batch);
+        }
+
+        DataStorage restored = new DataStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(directory, restored)) {
+            assertEquals(4, persistence.getReplayedSamples());
+            assertEquals(0, persistence.getRestoredSamples());
+        }
+        assertSameRecords(storage, restored, 1);
+        assertSameRecords(storage, restored, 2);
+        assertEquals(4, restored.getSampleCount());
+    }
+
+    @Test
+    void testCheckpointRestoresSnapshotAndLogTail() throws IOException {
+        DataStorage storage = new DataStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(directory, storage)) {
+            for (int i = 0; i < 3000; i++) {
+                storage.addPatientData(i % 3, i, "ECG", 1000L * i);
+            }
+            persistence.checkpoint();
+            for (int i = 3000; i < 3100; i++) {
+                storage.addPatientData(i % 3, i, "ECG", 1000L * i);
+            }
+        }
+
+        DataStorage restored = new DataStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(directory, restored)) {
+            assertEquals(3000, persistence.getRestoredSamples());
+            assertEquals(100, persistence.getReplayedSamples());
+            for (int patientId = 0; patientId < 3; patientId++) {
+                assertSameRecords(storage, restored, patientId);
+            }
+            assertEquals(3100, restored.getSampleCount());
+            // new samples keep being logged after recovery
+            restored.addPatientData(0, -1.0, "ECG", 0L);
+        }
+
+        DataStorage again = new DataStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(directory, again)) {
+            assertEquals(3101, again.getSampleCount());
+        }
+    }
+
+    @Test
+    void testCheckpointKeepsRollups() throws IOException {
+        long minute = 60_000L;
+        RetentionPolicy policy = new RetentionPolicy(new RetentionPolicy.Rule(10 * minute, Integer.MAX_VALUE,
+                RetentionPolicy.FOREVER, RetentionPolicy.FOREVER));
+        DataStorage storage = new DataStorage(policy);
+        try (StoragePersistence persistence = StoragePersistence.open(directory, storage)) {
+            for (int i = 0; i < 60 * 60; i++) {
+                storage.addPatientData(1, i % 100, "ECG", 1000L * i);
+            }
+            persistence.checkpoint();
+        }
+
+        DataStorage restored = new DataStorage(policy);
+        try (StoragePersistence persistence = StoragePersistence.open(directory, restored)) {
+            assertEquals(0, persistence.getReplayedSamples());
+        }
+        List<Rollup> expected = storage.getRollups(1, "ECG", Rollup.Resolution.MINUTE, 0L, Long.MAX_VALUE);
+        List<Rollup> actual = restored.getRollups(1, "ECG", Rollup.Resolution.MINUTE, 0L, Long.MAX_VALUE);
+        assertTrue(expected.size() > 40);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStartTime(), actual.get(i).getStartTime());
+            assertEquals(expected.get(i).getMin(), actual.get(i).getMin());
+            assertEquals(expected.get(i).getMax(), actual.get(i).getMax());
+            assertEquals(expected.get(i).getAverage(), actual.get(i).getAverage());
+            assertEquals(expected.get(i).getCount(), actual.get(i).getCount());
+        }
+        assertSameRecords(storage, restored, 1);
+    }
+
+    @Test
+    void testCheckpointDeletesCoveredFiles() throws IOException {
+        DataStorage storage = new DataStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(directory, storage)) {
+            storage.addPatientData(1, 1.0, "ECG", 1L);
+            persistence.checkpoint();
+            storage.addPatientData(1, 2.0, "ECG", 2L);
+            persistence.checkpoint();
+        }
+        List<String> files = fileNames();
+        assertEquals(1, files.stream().filter(name -> name.endsWith(".snap")).count(), files.toString());
+        assertEquals(1, files.stream().filter(name -> name.endsWith(".log")).count(), files.toString());
+    }
+
+    @Test
+    void testCheckpointsDuringIngestionKeepEverySampleOnce() throws Exception {
+        DataStorage storage = new DataStorage();
+        // tiny segments, so the log starts new segments while snapshots are written
+        try (StoragePersistence persistence = StoragePersistence.open(directory, storage, 512, 1)) {
+            Thread single = new Thread(() -> {
+                for (long i = 0; i < 20_000; i++) {
+                    storage.addPatientData(1, i, "ECG", i);
+                }
+            });
+            Thread batched = new Thread(() -> {
+                SampleBatch batch = new SampleBatch();
+                for (long i = 0; i < 20_000; i += 10) {
+                    batch.clear();
+                    for (int j = 0; j < 10; j++) {
+                        batch.add(2 + j % 2, i + j, "Saturation", i + j);
+                    }
+                    storage.addPatientData(batch);
+                }
+            });
+            single.start();
+            batched.start();
+            while (single.isAlive() || batched.isAlive()) {
+                persistence.checkpoint();
+            }
+            single.join();
+            batched.join();
+        }
+
+        DataStorage restored = new DataStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(directory, restored)) {
+            assertEquals(storage.getSampleCount(), restored.getSampleCount());
+        }
+        for (int patientId = 1; patientId <= 3; patientId++) {
+            assertSameRecords(storage, restored, patientId);
+        }
+    }
+
+    @Test
+    void testIgnoresTornLogTail() throws IOException {
+        DataStorage storage = new DataStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(directory, storage)) {
+            storage.addPatientData(1, 72.0, "HeartRate", 1000L);
+            persistence.getLog().sync();
+            storage.addPatientData(1, 73.0, "HeartRate", 2000L);
+        }
+        // a frame cut short by a crash
+        Path segment = directory.resolve(fileNames().stream().filter(name -> name.endsWith(".log"))
+                .reduce((first, second) -> second).get());
+        Files.write(segment, new byte[] {0, 0, 0, 22, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        DataStorage restored = new DataStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(directory, restored)) {
+            assertEquals(2, persistence.getReplayedSamples());
+        }
+        assertSameRecords(storage, restored, 1);
+    }
+
+    @Test
+    void testIgnoresEmptyLogSegment() throws IOException {
+        DataStorage storage = storeTenSamples();
+        // a segment created just before a crash
+        Files.write(nextSegment(), new byte[0]);
+
+        assertReopensWithTenSamples(storage);
+    }
+
+    @Test
+    void testIgnoresLogSegmentWithTruncatedHeader() throws IOException {
+        DataStorage storage = storeTenSamples();
+        // magic, version, record size and part of the label table
+        Files.write(nextSegment(), new byte[] {0x43, 0x57, 0x41, 0x4C, 0, 1, 0, 22, 0, 5, 0, 3, 'E'});
+
+        assertReopensWithTenSamples(storage);
+    }
+
+    private DataStorage storeTenSamples() throws IOException {
+        DataStorage storage = new DataStorage();
+        try (StoragePersistence persistence = StoragePersistence.open(directory, storage)) {
+            for (int i = 0; i < 10; i++) {
+                storage.addPatientData(1, 70.0 + i, "HeartRate", 1000L * i);
+            }
+        }
+        return storage;
+    }
+
+    private Path nextSegment() throws IOException {
+        String last = fileNames().stream().filter(name -> name.endsWith(".log")).reduce((first, second) -> second)
+                .get();
+        long number = Long.parseLong(last.substring("wal-".length(), last.length() - ".log".length()));
+        return directory.resolve(String.format("wal-%016d.log", number + 1));
+    }
+
+    private void assertReopensWithTenSamples(DataStorage storage) throws IOException {
+        // twice, as the broken segment is still there on the second restart
+        for (int i = 0; i < 2; i++) {
+            DataStorage restored = new DataStorage();
+            try (StoragePersistence persistence = StoragePersistence.open(directory, restored)) {
+                assertEquals(10, persistence.getReplayedSamples());
+            }
+            assertSameRecords(storage, restored, 1);
+        }
+    }
+
+    private List<String> fileNames() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static void assertSameRecords(DataStorage expected, DataStorage actual, int patientId) {
+        List<PatientRecord> expectedRecords = expected.getRecords(patientId, Long.MIN_VALUE, Long.MAX_VALUE);
+        List<PatientRecord> actualRecords = actual.getRecords(patientId, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(expectedRecords.size(), actualRecords.size());
+        for (int i = 0; i < expectedRecords.size(); i++) {
+            assertEquals(expectedRecords.get(i).getRecordType(), actualRecords.get(i).getRecordType());
+            assertEquals(expectedRecords.get(i).getTimestamp(), actualRecords.get(i).getTimestamp());
+            assertEquals(expectedRecords.get(i).getMeasurementValue(), actualRecords.get(i).getMeasurementValue());
+        }
+    }
+}
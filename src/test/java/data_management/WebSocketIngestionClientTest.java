@@ -0,0 +1,200 @@
+package data_management;
+
+import com.data_management.DataStorage;
+import com.data_management.SampleListener;
+import com.data_management.WebSocketIngestionClient;
+import com.data_management.WebSocketIngestionClient.Gap;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WebSocketIngestionClientTest {
+
+    private TestServer server;
+
+    /**
+     * Server that hands every opened connection to the test.
+     */
+    private static class TestServer extends WebSocketServer {
+
+        final BlockingQueue<WebSocket> connections = new LinkedBlockingQueue<>();
+
+        TestServer(int port) {
+            super(new InetSocketAddress("localhost", port));
+            setReuseAddr(true);
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+            connections.add(conn);
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+        }
+
+        @Override
+        public void onStart() {
+        }
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = new TestServer(port);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() throws InterruptedException {
+        server.stop(1000);
+    }
+
+    @Test
+    void testStoresBatchedMessagesOffTheReadThread() throws Exception {
+        DataStorage storage = new DataStorage();
+        WebSocketIngestionClient client = newClient(4);
+        client.readData(storage);
+        WebSocket connection = server.connections.poll(5, TimeUnit.SECONDS);
+
+        for (int message = 0; message < 100; message++) {
+            StringBuilder lines = new StringBuilder();
+            for (int patientId = 1; patientId <= 10; patientId++) {
+                lines.append(patientId).append(',').append(1000L + message).append(",ECG,0.5\n");
+            }
+            connection.send(lines.toString());
+        }
+        connection.send("not a sample");
+
+        awaitTrue(() -> storage.getSampleCount() == 1000);
+        client.close();
+
+        assertEquals(100, storage.getRecords(7, 0L, Long.MAX_VALUE).size());
+        assertEquals(1099L, client.getWatermark());
+        assertEquals(0, client.getReconnects());
+    }
+
+    @Test
+    void testReconnectsWithoutGapWithinThreshold() throws Exception {
+        DataStorage storage = new DataStorage();
+        WebSocketIngestionClient client = newClient(1);
+        client.readData(storage);
+
+        WebSocket first = server.connections.poll(5, TimeUnit.SECONDS);
+        first.send("1,1000,Saturation,97.0\n1,2000,Saturation,96.0");
+        awaitTrue(() -> client.getWatermark() == 2000L);
+        first.close(1011, "server restarting");
+
+        WebSocket second = server.connections.poll(5, TimeUnit.SECONDS);
+        assertTrue(second != null, "client did not reconnect");
+        second.send("1,2500,Saturation,95.0\n1,9000,Saturation,95.0");
+        awaitTrue(() -> client.getWatermark() == 9000L);
+        client.close();
+
+        assertEquals(1, client.getReconnects());
+        List<Gap> gaps = client.getGaps();
+        assertEquals(0, gaps.size()); //2500 follows 2000 within the threshold
+
+        assertEquals(4, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testReportsMissedSamples() throws Exception {
+        DataStorage storage = new DataStorage();
+        WebSocketIngestionClient client = newClient(1);
+        client.readData(storage);
+
+        WebSocket first = server.connections.poll(5, TimeUnit.SECONDS);
+        first.send("1,1000,ECG,0.5");
+        awaitTrue(() -> client.getWatermark() == 1000L);
+        first.close(1011, "server restarting");
+
+        WebSocket second = server.connections.poll(5, TimeUnit.SECONDS);
+        second.send("1,60000,ECG,0.5");
+        awaitTrue(() -> client.getWatermark() == 60000L);
+        client.close();
+
+        List<Gap> gaps = client.getGaps();
+        assertEquals(1, gaps.size());
+        assertEquals(1000L, gaps.get(0).getLastBefore());
+        assertEquals(60000L, gaps.get(0).getFirstAfter());
+        assertEquals(59000L, gaps.get(0).getMillis());
+    }
+
+    @Test
+    void testComparesAgainstSamplesStoredAfterTheDisconnect() throws Exception {
+        DataStorage storage = new DataStorage();
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        storage.addListener(new SampleListener() {
+            @Override
+            public void onSample(int patientId, String recordType, double measurementValue, long timestamp) {
+                if (timestamp == 2000L) {
+                    storing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        WebSocketIngestionClient client = newClient(1);
+        client.readData(storage);
+
+        WebSocket first = server.connections.poll(5, TimeUnit.SECONDS);
+        first.send("1,1000,ECG,0.5");
+        awaitTrue(() -> client.getWatermark() == 1000L);
+        first.send("1,2000,ECG,0.5");
+        assertTrue(storing.await(5, TimeUnit.SECONDS));
+        // lost while the storage is behind
+        first.close(1011, "server restarting");
+
+        WebSocket second = server.connections.poll(5, TimeUnit.SECONDS);
+        assertTrue(second != null, "client did not reconnect");
+        second.send("1,2500,ECG,0.5");
+        release.countDown();
+        awaitTrue(() -> client.getWatermark() == 2500L);
+        client.close();
+
+        assertEquals(0, client.getGaps().size()); //2500 follows 2000, stored after the disconnect
+    }
+
+    private WebSocketIngestionClient newClient(int workers) {
+        return new WebSocketIngestionClient(URI.create("ws://localhost:" + server.getPort()), workers, 16, 10, 100);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within 5 s");
+            Thread.sleep(10);
+        }
+    }
+}
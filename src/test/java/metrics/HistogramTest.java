@@ -0,0 +1,53 @@
+package metrics;
+
+import com.metrics.Histogram;
+import com.metrics.MetricsRegistry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class HistogramTest {
+
+    @Test
+    void testSmallValuesAreExact() {
+        Histogram histogram = new MetricsRegistry().histogram("sizes");
+        for (int value = 1; value <= 10; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(10, histogram.getCount());
+        assertEquals(55, histogram.getSum());
+        assertEquals(5.5, histogram.getMean(), 1e-9);
+        assertEquals(5, histogram.getValueAtPercentile(50));
+        assertEquals(10, histogram.getValueAtPercentile(100));
+        assertEquals(10, histogram.getMax());
+    }
+
+    @Test
+    void testLargeValuesWithinRelativeError() {
+        Histogram histogram = new MetricsRegistry().histogram("latency.nanos");
+        for (long value = 1; value <= 1_000_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        long median = histogram.getValueAtPercentile(50);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(Math.abs(median - 500_000_000L) <= 500_000_000L * 0.07, "median " + median);
+        assertTrue(Math.abs(p99 - 990_000_000L) <= 990_000_000L * 0.07, "p99 " + p99);
+        assertEquals(1_000_000_000L, histogram.getMax());
+        assertEquals(1_000_000_000L, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void testEmptyAndNegative() {
+        Histogram histogram = new MetricsRegistry().histogram("empty");
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMean(), 0);
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+}
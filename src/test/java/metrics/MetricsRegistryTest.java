@@ -0,0 +1,122 @@
+package metrics;
+
+import com.alerts.Alert;
+import com.alerts.AlertCounters;
+import com.alerts.AlertGenerator;
+import com.data_management.DataStorage;
+import com.metrics.MetricsHttpServer;
+import com.metrics.MetricsJmx;
+import com.metrics.MetricsRegistry;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class MetricsRegistryTest {
+
+    @Test
+    void testMetricsAreCreatedOnceByName() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("storage.samples.ingested").add(3);
+        registry.counter("storage.samples.ingested").increment();
+
+        assertSame(registry.counter("storage.samples.ingested"), registry.counter("storage.samples.ingested"));
+        assertEquals(4, registry.counter("storage.samples.ingested").get());
+        assertSame(registry.histogram("storage.get_records.nanos"), registry.histogram("storage.get_records.nanos"));
+    }
+
+    @Test
+    void testWritesSortedTextLines() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("b.count").add(2);
+        registry.counter("a.count").increment();
+        registry.histogram("c.nanos").record(7);
+        registry.gauge("d.size", () -> 9);
+
+        assertEquals("a.count 1\n"
+                + "b.count 2\n"
+                + "c.nanos.count 1\n"
+                + "c.nanos.max 7\n"
+                + "c.nanos.mean 7.0\n"
+                + "c.nanos.p50 7\n"
+                + "c.nanos.p99 7\n"
+                + "c.nanos.p999 7\n"
+                + "d.size 9\n", registry.toString());
+    }
+
+    @Test
+    void testStorageAndAlertsRecordIntoDefaultRegistry() {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        long queries = metrics.histogram("storage.get_records.nanos").getCount();
+        long fired = metrics.counter("alerts.fired.saturation.low").get();
+
+        DataStorage storage = new DataStorage();
+        storage.registerMetrics(metrics);
+        long now = System.currentTimeMillis();
+        storage.addPatientData(1, 85.0, "Saturation", now);
+        storage.addPatientData(1, 86.0, "Saturation", now + 1);
+        new AlertGenerator(storage, (Alert alert) -> { }).evaluateData(storage.getAllPatients().get(0));
+
+        assertEquals(2, metrics.getGauges().get("storage.samples.ingested").getAsLong());
+        assertEquals(1, metrics.getGauges().get("storage.patients").getAsLong());
+        assertEquals(queries + 4, metrics.histogram("storage.get_records.nanos").getCount());
+        assertEquals(fired + 2, metrics.counter("alerts.fired.saturation.low").get());
+    }
+
+    @Test
+    void testAlertConditionsMapToFamilies() {
+        assertSame(AlertCounters.BLOOD_PRESSURE_CRITICAL_HIGH, AlertCounters.forCondition(
+                "Systolic Blood Pressure Critical High Alert: Systolic Blood Pressure has exceeded 180 mmHg"));
+        assertSame(AlertCounters.BLOOD_PRESSURE_DECREASING_TREND,
+                AlertCounters.forCondition("Diastolic Blood Pressure Decreasing Trend Alert"));
+        assertSame(AlertCounters.HEART_RATE_IRREGULAR, AlertCounters.forCondition("Irregular Heart Rate Alert"));
+        assertSame(AlertCounters.OTHER, AlertCounters.forCondition("Triggered Alert"));
+        for (String name : MetricsRegistry.getDefault().getCounters().keySet()) {
+            if (name.startsWith("alerts.fired.")) {
+                assertTrue(name.matches("[a-z_.]+"), name);
+            }
+        }
+    }
+
+    @Test
+    void testServesTextOverHttp() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("reader.file.parse_errors").add(5);
+        MetricsHttpServer server = new MetricsHttpServer(registry, 0);
+        try {
+            URL url = new URL("http://localhost:" + server.getPort() + MetricsHttpServer.PATH);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(200, connection.getResponseCode());
+            try (InputStream in = connection.getInputStream()) {
+                assertEquals("reader.file.parse_errors 5\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testExposesAttributesOverJmx() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        ObjectName name = MetricsJmx.register(registry);
+        registry.counter("reader.websocket.parse_errors").add(2);
+        registry.histogram("output.FileOutputStrategy.nanos").record(100);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(2L, server.getAttribute(name, "reader.websocket.parse_errors"));
+            assertEquals(1L, server.getAttribute(name, "output.FileOutputStrategy.nanos.count"));
+            assertEquals(100L, server.getAttribute(name, "output.FileOutputStrategy.nanos.max"));
+            assertTrue(server.getMBeanInfo(name).getAttributes().length == 7);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}